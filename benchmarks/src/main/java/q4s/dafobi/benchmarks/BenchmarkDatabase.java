@@ -0,0 +1,108 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+/**
+ * Подготовка базы данных HSQLDB в памяти для тестов, работающих с JDBC.
+ * 
+ * @author Q4S
+ * 
+ */
+final class BenchmarkDatabase {
+
+	/**
+	 * Запрос, выбирающий все колонки тестовой таблицы.
+	 */
+	static final String SELECT_ALL = "SELECT ID, STR, AMOUNT, DT, TS FROM BENCH ORDER BY ID";
+
+	/**
+	 * Запрос вставки строки с именованными параметрами.
+	 */
+	static final String INSERT = "INSERT INTO BENCH(ID, STR, AMOUNT, DT, TS) VALUES(:id, :str, :amount, :dt, :ts)";
+
+	private BenchmarkDatabase() {
+	}
+
+	/**
+	 * Создание новой пустой базы данных в памяти с тестовой таблицей.
+	 * 
+	 * @return Подключение к базе данных.
+	 * 
+	 * @throws SQLException
+	 */
+	static Connection open() throws SQLException {
+		Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:" + UUID.randomUUID().toString(),
+				"sa", "");
+		try (Statement stmt = connection.createStatement();) {
+			stmt.execute("CREATE TABLE BENCH (ID INTEGER PRIMARY KEY, STR VARCHAR(100), "
+					+ "AMOUNT DECIMAL(18,2), DT DATE, TS TIMESTAMP)");
+		}
+		return connection;
+	}
+
+	/**
+	 * Заполнение тестовой таблицы. Все значения заполнены, пустых нет.
+	 * 
+	 * @param connection
+	 *            Подключение к базе данных.
+	 * 
+	 * @param rows
+	 *            Число строк.
+	 * 
+	 * @throws SQLException
+	 */
+	static void fill(Connection connection, int rows) throws SQLException {
+		try (PreparedStatement stmt = connection
+				.prepareStatement("INSERT INTO BENCH(ID, STR, AMOUNT, DT, TS) VALUES(?, ?, ?, ?, ?)");) {
+			long now = System.currentTimeMillis();
+			for (int i = 0; i < rows; i++) {
+				stmt.setInt(1, i);
+				stmt.setString(2, "Строка номер " + i);
+				stmt.setBigDecimal(3, BigDecimal.valueOf(i * 100L + 99, 2));
+				stmt.setDate(4, new java.sql.Date(now - i * 86400000L));
+				stmt.setTimestamp(5, new java.sql.Timestamp(now - i * 1000L));
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		}
+	}
+
+	/**
+	 * Закрытие базы данных в памяти.
+	 * 
+	 * @param connection
+	 *            Подключение к базе данных.
+	 * 
+	 * @throws SQLException
+	 */
+	static void close(Connection connection) throws SQLException {
+		try (Statement stmt = connection.createStatement();) {
+			stmt.execute("SHUTDOWN");
+		}
+		connection.close();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Преобразование значений методом {@link DataType#convert(Object)} для всех
+ * пар исходного и целевого типов.
+ * <p>
+ * Не все пары поддерживаются. Для неподдерживаемых пар измеряется стоимость
+ * отказа (исключения), т.к. она тоже встречается в реальной работе.
+ * 
+ * @author Q4S
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class DataTypeConvertBenchmark {
+
+	@Param({ "STRING", "LONGSTRING", "CHAR", "SHORT", "INTEGER", "LONG", "FLOAT", "DOUBLE", "DECIMAL", "DATE",
+			"TIME", "TIMESTAMP" })
+	public DataType source;
+
+	@Param({ "STRING", "LONGSTRING", "CHAR", "SHORT", "INTEGER", "LONG", "FLOAT", "DOUBLE", "DECIMAL", "DATE",
+			"TIME", "TIMESTAMP" })
+	public DataType target;
+
+	private Object value;
+
+	@Setup
+	public void setUp() {
+		value = sample(source);
+	}
+
+	/**
+	 * Типичное значение для каждого типа данных.
+	 * 
+	 * @param type
+	 *            Тип данных.
+	 * 
+	 * @return Значение класса {@link DataType#typeClass()}.
+	 */
+	static Object sample(DataType type) {
+		switch (type) {
+		case STRING:
+		case LONGSTRING:
+			return "12345";
+		case CHAR:
+			return Character.valueOf('7');
+		case SHORT:
+			return Short.valueOf((short) 12345);
+		case INTEGER:
+			return Integer.valueOf(12345);
+		case LONG:
+			return Long.valueOf(12345L);
+		case FLOAT:
+			return Float.valueOf(12345f);
+		case DOUBLE:
+			return Double.valueOf(12345d);
+		case DECIMAL:
+			return new BigDecimal("12345");
+		case DATE:
+			return Date.valueOf("2018-05-17");
+		case TIME:
+			return Time.valueOf("12:34:56");
+		case TIMESTAMP:
+			return Timestamp.valueOf("2018-05-17 12:34:56");
+		default:
+			throw new IllegalArgumentException(type.name());
+		}
+	}
+
+	@Benchmark
+	public Object convert() {
+		try {
+			return target.convert(value);
+
+		} catch (RuntimeException e) {
+			return e;
+		}
+	}
+}
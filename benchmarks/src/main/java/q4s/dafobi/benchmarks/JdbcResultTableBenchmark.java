@@ -0,0 +1,214 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.benchmarks;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.data.ColumnHandle;
+import q4s.dafobi.data.IResultTable;
+import q4s.dafobi.data.IRow;
+import q4s.dafobi.data.RowImpl;
+import q4s.dafobi.data.jdbc.JdbcConnection;
+
+/**
+ * Выборка данных через {@link q4s.dafobi.data.jdbc.JdbcResultTable} и
+ * создание строк {@link RowImpl} на базе HSQLDB в памяти. Для сравнения
+ * приведена выборка тех же данных напрямую через JDBC.
+ * 
+ * @author Q4S
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcResultTableBenchmark {
+
+	/**
+	 * Число строк в таблице.
+	 */
+	@Param({ "100", "10000" })
+	public int rows;
+
+	private Connection jdbcConnection;
+
+	private JdbcConnection connection;
+
+	private final Map<String, DataParam> noParams = Collections.emptyMap();
+
+	/**
+	 * Открытая таблица, используемая как описание колонок при создании строк.
+	 */
+	private IResultTable meta;
+
+	private Object[] values;
+
+	@Setup
+	public void setUp() throws SQLException {
+		jdbcConnection = BenchmarkDatabase.open();
+		BenchmarkDatabase.fill(jdbcConnection, rows);
+		connection = new JdbcConnection(jdbcConnection);
+
+		meta = connection.query(BenchmarkDatabase.SELECT_ALL, noParams);
+		for (IRow row : meta) {
+			values = new Object[meta.count()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = row.get(i);
+			}
+			break;
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		meta.close();
+		connection.close();
+		BenchmarkDatabase.close(jdbcConnection);
+	}
+
+	/**
+	 * Перебор всех строк с чтением всех колонок по номеру.
+	 */
+	@Benchmark
+	public void iterateByIndex(Blackhole blackhole) {
+		try (IResultTable table = connection.query(BenchmarkDatabase.SELECT_ALL, noParams);) {
+			int count = table.count();
+			for (IRow row : table) {
+				for (int i = 0; i < count; i++) {
+					blackhole.consume(row.get(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Перебор всех строк в режиме курсора с чтением всех колонок по номеру.
+	 */
+	@Benchmark
+	public void cursorByIndex(Blackhole blackhole) {
+		try (IResultTable table = connection.query(BenchmarkDatabase.SELECT_ALL, noParams);) {
+			int count = table.count();
+			for (IRow row : table.cursor()) {
+				for (int i = 0; i < count; i++) {
+					blackhole.consume(row.get(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Суммирование числовой колонки в режиме курсора без упаковки значений.
+	 */
+	@Benchmark
+	public long cursorSumPrimitive() {
+		long sum = 0;
+		try (IResultTable table = connection.query(BenchmarkDatabase.SELECT_ALL, noParams);) {
+			for (IRow row : table.cursor()) {
+				sum += row.getLong(0);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Перебор всех строк с чтением колонок по имени.
+	 */
+	@Benchmark
+	public void iterateByName(Blackhole blackhole) {
+		try (IResultTable table = connection.query(BenchmarkDatabase.SELECT_ALL, noParams);) {
+			for (IRow row : table) {
+				blackhole.consume(row.getInteger("id"));
+				blackhole.consume(row.getString("str"));
+				blackhole.consume(row.getDecimal("amount"));
+				blackhole.consume(row.getDate("dt"));
+				blackhole.consume(row.getTimestamp("ts"));
+			}
+		}
+	}
+
+	/**
+	 * Перебор всех строк в режиме курсора с чтением колонок через заранее
+	 * найденные описатели.
+	 */
+	@Benchmark
+	public void cursorByHandle(Blackhole blackhole) {
+		try (IResultTable table = connection.query(BenchmarkDatabase.SELECT_ALL, noParams);) {
+			ColumnHandle id = table.getColumn("id");
+			ColumnHandle str = table.getColumn("str");
+			ColumnHandle amount = table.getColumn("amount");
+			ColumnHandle dt = table.getColumn("dt");
+			ColumnHandle ts = table.getColumn("ts");
+			for (IRow row : table.cursor()) {
+				blackhole.consume(id.getLong(row));
+				blackhole.consume(str.getString(row));
+				blackhole.consume(amount.getDecimal(row));
+				blackhole.consume(dt.getDate(row));
+				blackhole.consume(ts.getTimestamp(row));
+			}
+		}
+	}
+
+	/**
+	 * Те же данные, выбранные напрямую через JDBC.
+	 */
+	@Benchmark
+	public void iterateJdbc(Blackhole blackhole) throws SQLException {
+		try (PreparedStatement stmt = jdbcConnection.prepareStatement(BenchmarkDatabase.SELECT_ALL);
+				ResultSet resultSet = stmt.executeQuery();) {
+			int count = resultSet.getMetaData().getColumnCount();
+			while (resultSet.next()) {
+				for (int i = 1; i <= count; i++) {
+					blackhole.consume(resultSet.getObject(i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Создание одной строки данных из уже выбранных значений.
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public IRow rowImpl() {
+		return new RowImpl(meta, values);
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.data.IStatement;
+import q4s.dafobi.data.ParamSet;
+import q4s.dafobi.data.jdbc.JdbcConnection;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Создание операторов {@link q4s.dafobi.data.jdbc.JdbcStatement} и установка
+ * значений их параметров на базе HSQLDB в памяти.
+ * 
+ * @author Q4S
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcStatementBenchmark {
+
+	/**
+	 * Размер кеша операторов подключения. Значение 0 отключает кеш, и каждый
+	 * раз оператор готовится заново.
+	 */
+	@Param({ "0", "64" })
+	public int statementCacheSize;
+
+	private Connection jdbcConnection;
+
+	private JdbcConnection connection;
+
+	private IStatement statement;
+
+	private DataParam id;
+
+	private DataParam str;
+
+	private DataParam amount;
+
+	private DataParam dt;
+
+	private DataParam ts;
+
+	private ParamSet paramSet;
+
+	private int idSlot;
+
+	private int strSlot;
+
+	private int amountSlot;
+
+	private int dtSlot;
+
+	private int tsSlot;
+
+	/**
+	 * Ключ очередной вставляемой строки.
+	 */
+	private int nextId = 0;
+
+	@Setup
+	public void setUp() throws SQLException {
+		jdbcConnection = BenchmarkDatabase.open();
+		connection = new JdbcConnection(jdbcConnection, statementCacheSize);
+		statement = connection.prepare(BenchmarkDatabase.INSERT);
+
+		id = DataType.INTEGER.param(1);
+		str = DataType.STRING.param("Строка");
+		amount = DataType.DECIMAL.param(new BigDecimal("123.45"));
+		dt = DataType.DATE.param(new java.sql.Date(System.currentTimeMillis()));
+		ts = DataType.TIMESTAMP.param(new Timestamp(System.currentTimeMillis()));
+
+		paramSet = statement.createParamSet();
+		idSlot = paramSet.slot("id");
+		strSlot = paramSet.slot("str");
+		amountSlot = paramSet.slot("amount");
+		dtSlot = paramSet.slot("dt");
+		tsSlot = paramSet.slot("ts");
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		statement.close();
+		connection.close();
+		BenchmarkDatabase.close(jdbcConnection);
+	}
+
+	/**
+	 * Подготовка и закрытие оператора с пятью параметрами.
+	 */
+	@Benchmark
+	public IStatement prepareAndClose() {
+		IStatement stmt = connection.prepare(BenchmarkDatabase.INSERT);
+		stmt.close();
+		return stmt;
+	}
+
+	/**
+	 * Подготовка и закрытие простого запроса.
+	 */
+	@Benchmark
+	public IStatement prepareSelectAndClose() {
+		IStatement stmt = connection.prepare(BenchmarkDatabase.SELECT_ALL);
+		stmt.close();
+		return stmt;
+	}
+
+	/**
+	 * Установка значений всех пяти параметров подготовленного оператора.
+	 */
+	@Benchmark
+	public IStatement setParams() {
+		statement.setParam("id", id);
+		statement.setParam("str", str);
+		statement.setParam("amount", amount);
+		statement.setParam("dt", dt);
+		statement.setParam("ts", ts);
+		return statement;
+	}
+
+	/**
+	 * Установка всех пяти параметров через набор {@link ParamSet} со слотами,
+	 * найденными заранее.
+	 */
+	@Benchmark
+	public IStatement setParamSet() {
+		paramSet.setInt(idSlot, ++nextId);
+		paramSet.setString(strSlot, "Строка");
+		paramSet.setDecimal(amountSlot, (BigDecimal) amount.getValue());
+		paramSet.setDate(dtSlot, (java.sql.Date) dt.getValue());
+		paramSet.setTimestamp(tsSlot, (Timestamp) ts.getValue());
+		statement.addBatch(paramSet);
+		statement.executeBatch();
+		return statement;
+	}
+
+	/**
+	 * То же через карту параметров, создаваемую для каждого выполнения.
+	 */
+	@Benchmark
+	public IStatement setParamMap() {
+		Map<String, DataParam> params = new TreeMap<String, DataParam>();
+		params.put("id", DataType.INTEGER.param(++nextId));
+		params.put("str", DataType.STRING.param("Строка"));
+		params.put("amount", amount);
+		params.put("dt", dt);
+		params.put("ts", ts);
+		statement.addBatch(params);
+		statement.executeBatch();
+		return statement;
+	}
+
+	/**
+	 * Установка параметра, которого в запросе нет. Такие вызовы обычны для
+	 * форм, которые передают оператору все свои переменные подряд.
+	 */
+	@Benchmark
+	public IStatement setUnknownParam() {
+		statement.setParam("unknown", id);
+		return statement;
+	}
+}
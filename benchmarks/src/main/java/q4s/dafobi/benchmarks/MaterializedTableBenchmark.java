@@ -0,0 +1,236 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import q4s.dafobi.data.AutoclosableResultTable;
+import q4s.dafobi.data.ColumnarResultTable;
+import q4s.dafobi.data.IResultTable;
+import q4s.dafobi.data.IRow;
+import q4s.dafobi.data.MemoryResultTable;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Таблицы, скопированные в память, с колонками, в которых мало различных
+ * значений (состояние, код валюты, категория). Исходные строки, как и строки
+ * драйвера JDBC, содержат для каждого значения свой экземпляр
+ * {@link String}.
+ * <p>
+ * Замеряется время копирования в {@link MemoryResultTable} (общие экземпляры
+ * значений) и в {@link ColumnarResultTable} (коды в словаре), а также поиск
+ * и группировка по перебору строк и по кодам. Занимаемая таблицами память -
+ * не время, поэтому она замеряется отдельно, методом {@link #main(String[])}.
+ * 
+ * @author Q4S
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaterializedTableBenchmark {
+
+	private static final String[] STATUSES = { "NEW", "OPEN", "IN_PROGRESS", "CLOSED", "REJECTED" };
+
+	private static final String[] CURRENCIES = { "RUB", "USD", "EUR", "CNY" };
+
+	private static final String[] NAMES = { "id", "status", "currency", "category", "amount" };
+
+	private static final DataType[] TYPES = { DataType.LONG, DataType.STRING, DataType.STRING, DataType.STRING,
+			DataType.DECIMAL };
+
+	/**
+	 * Число строк в таблице.
+	 */
+	@Param({ "10000", "100000" })
+	public int rows;
+
+	/**
+	 * Исходная таблица без общих экземпляров значений.
+	 */
+	private MemoryResultTable source;
+
+	private MemoryResultTable memory;
+
+	private ColumnarResultTable columnar;
+
+	private int status;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		source = MemoryResultTable.of(NAMES, TYPES, values(rows));
+		memory = MemoryResultTable.copyOf(copySource());
+		columnar = ColumnarResultTable.copyOf(copySource());
+		status = columnar.getColumnIndex("status");
+	}
+
+	/**
+	 * Замер памяти, занимаемой таблицами:
+	 * 
+	 * <pre>
+	 * java -cp benchmarks.jar q4s.dafobi.benchmarks.MaterializedTableBenchmark 10000 100000
+	 * </pre>
+	 * 
+	 * @param args
+	 *            Числа строк в таблице (по-умолчанию 10000 и 100000).
+	 */
+	public static void main(String[] args) {
+		String[] sizes = args.length > 0 ? args : new String[] { "10000", "100000" };
+		for (String size : sizes) {
+			MaterializedTableBenchmark benchmark = new MaterializedTableBenchmark();
+			benchmark.rows = Integer.parseInt(size);
+			benchmark.setUp();
+
+			long plain = retained(() -> MemoryResultTable.of(NAMES, TYPES, values(benchmark.rows)));
+			long interned = retained(() -> MemoryResultTable.copyOf(benchmark.copySource()));
+			long columns = retained(() -> ColumnarResultTable.copyOf(benchmark.copySource()));
+			System.out.println("Память на " + size + " строк, КБ: без словаря " + plain / 1024 //
+					+ ", MemoryResultTable " + interned / 1024 //
+					+ ", ColumnarResultTable " + columns / 1024 //
+					+ " (оценка " + benchmark.columnar.getMemorySize() / 1024 + ")");
+		}
+	}
+
+	/**
+	 * Значения строк. Каждое строковое значение - отдельный экземпляр.
+	 */
+	private static List<Object[]> values(int rows) {
+		List<Object[]> values = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			values.add(new Object[] { Long.valueOf(i), new String(STATUSES[i % STATUSES.length]),
+					new String(CURRENCIES[i % 7 % CURRENCIES.length]), "Категория " + i % 50,
+					BigDecimal.valueOf(i * 100L + 99, 2) });
+		}
+		return values;
+	}
+
+	/**
+	 * Исходная таблица под видом произвольной таблицы, чтобы методы copyOf
+	 * действительно копировали ее.
+	 */
+	private IResultTable copySource() {
+		return new AutoclosableResultTable(source, null);
+	}
+
+	/**
+	 * Приблизительный объем памяти, занимаемый созданным объектом.
+	 */
+	private static long retained(Supplier<Object> factory) {
+		long before = usedMemory();
+		Object result = factory.get();
+		long after = usedMemory();
+		if (result == null) {
+			throw new IllegalStateException();
+		}
+		return after - before;
+	}
+
+	private static long usedMemory() {
+		// Одна сборка мусора может освободить не все, поэтому она
+		// повторяется, и берется наименьшее значение занятой памяти.
+		Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			System.gc();
+			long current = runtime.totalMemory() - runtime.freeMemory();
+			used = Math.min(used, current);
+		}
+		return used;
+	}
+
+	/**
+	 * Копирование в таблицу строк с общими экземплярами значений.
+	 */
+	@Benchmark
+	public MemoryResultTable copyMemory() {
+		return MemoryResultTable.copyOf(copySource());
+	}
+
+	/**
+	 * Копирование в таблицу колонок со словарями.
+	 */
+	@Benchmark
+	public ColumnarResultTable copyColumnar() {
+		return ColumnarResultTable.copyOf(copySource());
+	}
+
+	/**
+	 * Поиск строк с заданным состоянием перебором строк.
+	 */
+	@Benchmark
+	public int filterRows() {
+		int count = 0;
+		for (IRow row : memory) {
+			if ("OPEN".equals(row.getString(status))) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Поиск строк с заданным состоянием по кодам.
+	 */
+	@Benchmark
+	public int filterCodes() {
+		return columnar.filterEquals(status, "OPEN").cardinality();
+	}
+
+	/**
+	 * Подсчет строк по состояниям перебором строк.
+	 */
+	@Benchmark
+	public Map<Object, Integer> groupRows() {
+		Map<Object, Integer> counts = new HashMap<>();
+		for (IRow row : memory) {
+			counts.merge(row.getString(status), 1, Integer::sum);
+		}
+		return counts;
+	}
+
+	/**
+	 * Подсчет строк по состояниям по кодам.
+	 */
+	@Benchmark
+	public Map<Object, int[]> groupCodes() {
+		return columnar.groupBy(status);
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import q4s.dafobi.data.jdbc.SqlLexer;
+
+/**
+ * Сравнение однопроходного разборщика {@link SqlLexer} с прежней цепочкой
+ * регулярных выражений на процедурных блоках размером в несколько килобайт
+ * (такие блоки типичны для операций insertrow/updaterow форм).
+ * 
+ * @author Q4S
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlLexerBenchmark {
+
+	/**
+	 * Число повторений типового фрагмента в блоке.
+	 */
+	@Param({ "1", "10", "50" })
+	public int blocks;
+
+	private String query;
+
+	@Setup
+	public void setUp() {
+		query = procedureBlock(blocks);
+	}
+
+	/**
+	 * Формирование PL/SQL блока, похожего на операцию сохранения строки формы.
+	 * 
+	 * @param blocks
+	 *            Число повторений типового фрагмента.
+	 * 
+	 * @return Текст блока.
+	 */
+	static String procedureBlock(int blocks) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("\r\n  /*\r\n   * Сохранение строки документа.\r\n   * Автор: it's me\r\n   */\r\n");
+		sb.append("DECLARE\r\n  v_id NUMBER;\r\n  v_cnt NUMBER := 0;\r\nBEGIN\r\n");
+		for (int i = 0; i < blocks; i++) {
+			sb.append("  -- Проверка наличия записи номер ").append(i).append("\r\n");
+			sb.append("  SELECT count(*) INTO v_cnt\r\n    FROM acpdba.bank_registers r\r\n");
+			sb.append("   WHERE r.doc_id = :doc_id\r\n     AND r.note <> 'a :fake ''param'''\r\n");
+			sb.append("     AND r.doc_date BETWEEN :date_from AND :date_to;\r\n");
+			sb.append("  IF v_cnt = 0 THEN\r\n");
+			sb.append("    INSERT INTO acpdba.bank_registers(doc_id, doc_number, doc_date, amount_start)\r\n");
+			sb.append("    VALUES (:doc_id, :doc_number, :doc_date, :amount_start);\r\n");
+			sb.append("  ELSE\r\n    /* Обновление существующей записи */\r\n");
+			sb.append("    UPDATE acpdba.bank_registers\r\n       SET doc_number = :doc_number,\r\n");
+			sb.append("           amount_start = nvl(:amount_start, 0)\r\n     WHERE doc_id = :doc_id;\r\n");
+			sb.append("  END IF;\r\n");
+		}
+		sb.append("  :result := v_cnt;\r\nEND;\r\n");
+		return sb.toString();
+	}
+
+	@Benchmark
+	public void lexer(Blackhole blackhole) {
+		SqlLexer lexer = new SqlLexer(query);
+		blackhole.consume(lexer.getParsedQuery());
+		blackhole.consume(lexer.getProcessedQuery());
+		blackhole.consume(lexer.getIndexMap());
+	}
+
+	@Benchmark
+	public void legacy(Blackhole blackhole) {
+		Map<String, int[]> indexMap = new TreeMap<String, int[]>();
+		Map<String, Integer> outParams = new TreeMap<String, Integer>();
+		String parsed = legacyParse(query.replaceAll("^\\s+", ""), indexMap, outParams);
+		String processed = legacyDropComment(parsed).replaceAll("\\s+", " ").trim();
+		blackhole.consume(parsed);
+		blackhole.consume(processed);
+		blackhole.consume(indexMap);
+	}
+
+	/**
+	 * Копия разбора запроса, который использовался в JdbcStatement до
+	 * появления {@link SqlLexer}. Нужна только как точка отсчета.
+	 */
+	private static String legacyParse(final String query, final Map<String, int[]> paramMap,
+			final Map<String, Integer> inOutParams) {
+		int length = query.length();
+		StringBuffer parsedQuery = new StringBuffer(length);
+		Map<String, List<Integer>> lists = new TreeMap<String, List<Integer>>();
+		boolean inSingleQuote = false;
+		boolean inDoubleQuote = false;
+		boolean inComment = false;
+		int index = 1;
+
+		for (int i = 0; i < length; i++) {
+			char c = query.charAt(i);
+			if (inSingleQuote) {
+				if (c == '\'') {
+					inSingleQuote = false;
+				}
+
+			} else if (inDoubleQuote) {
+				if (c == '"') {
+					inDoubleQuote = false;
+				}
+
+			} else if (inComment) {
+				if (c == '*' && i + 1 < length && query.charAt(i + 1) == '/') {
+					inComment = false;
+					parsedQuery.append(c);
+					c = query.charAt(++i);
+				}
+
+			} else {
+				if (c == '\'') {
+					inSingleQuote = true;
+
+				} else if (c == '"') {
+					inDoubleQuote = true;
+
+				} else if (c == '/' && i + 1 < length && query.charAt(i + 1) == '*') {
+					inComment = true;
+					parsedQuery.append(c);
+					c = query.charAt(++i);
+
+				} else if ((c == ':' || c == '&') && i + 1 < length
+						&& Character.isJavaIdentifierStart(query.charAt(i + 1))) {
+					int j = i + 2;
+					while (j < length && Character.isJavaIdentifierPart(query.charAt(j))) {
+						j++;
+					}
+					String name = query.substring(i + 1, j).toLowerCase();
+					i += name.length();
+
+					List<Integer> indexList = lists.get(name);
+					if (indexList == null) {
+						indexList = new ArrayList<Integer>();
+						lists.put(name, indexList);
+					}
+					indexList.add(new Integer(index));
+					if (c == '&') {
+						inOutParams.put(name, new Integer(index));
+					}
+					c = '?';
+					index++;
+				}
+			}
+			parsedQuery.append(c);
+		}
+
+		for (Map.Entry<String, List<Integer>> entry : lists.entrySet()) {
+			List<Integer> list = entry.getValue();
+			int[] indexes = new int[list.size()];
+			for (int i = 0; i < indexes.length; i++) {
+				indexes[i] = list.get(i);
+			}
+			paramMap.put(entry.getKey(), indexes);
+		}
+		return parsedQuery.toString();
+	}
+
+	/**
+	 * Копия прежнего удаления комментариев (с компиляцией шаблона при каждом
+	 * вызове).
+	 */
+	private static String legacyDropComment(String query) {
+		Pattern p = Pattern.compile("/\\*[\\s\\S]*?\\*/", Pattern.DOTALL | Pattern.UNIX_LINES | Pattern.UNICODE_CASE);
+		Matcher m = p.matcher(query);
+		StringBuffer sb = new StringBuffer();
+		while (m.find()) {
+			m.appendReplacement(sb, "");
+		}
+		m.appendTail(sb);
+		return sb.toString();
+	}
+}
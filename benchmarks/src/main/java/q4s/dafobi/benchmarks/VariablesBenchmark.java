@@ -0,0 +1,137 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import javax.el.ExpressionFactory;
+import javax.el.ValueExpression;
+
+import org.apache.el.ExpressionFactoryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import q4s.dafobi.jaxb.common.DataType;
+import q4s.dafobi.variables.Expression;
+import q4s.dafobi.variables.IVar;
+import q4s.dafobi.variables.Var;
+import q4s.dafobi.variables.VarMap;
+import q4s.dafobi.variables.context.Context;
+
+/**
+ * Работа с переменными форм: чтение и запись в {@link VarMap} и вычисление
+ * типичных выражений {@link Expression}.
+ * 
+ * @author Q4S
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariablesBenchmark {
+
+	/**
+	 * Число переменных в карте (примерно столько полей у типичной формы).
+	 */
+	private static final int VARIABLES = 50;
+
+	private VarMap map;
+
+	private IVar var;
+
+	private Expression simple;
+
+	private Expression typed;
+
+	private Expression arithmetic;
+
+	private Expression conditional;
+
+	@Setup
+	public void setUp() {
+		map = new VarMap();
+		for (int i = 0; i < VARIABLES; i++) {
+			map.put("n" + i, new Var(new BigDecimal(i + ".5"), DataType.DECIMAL));
+			map.put("s" + i, new Var("Значение " + i, DataType.STRING));
+		}
+		var = new Var(new BigDecimal("100.12"), DataType.DECIMAL);
+
+		final ExpressionFactory factory = new ExpressionFactoryImpl();
+		Context context = new Context() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected ValueExpression resolveVariable(String variable) {
+				switch (variable.toUpperCase()) {
+				case "M":
+					return factory.createValueExpression(map, VarMap.class);
+				default:
+					return super.resolveVariable(variable);
+				}
+			}
+		};
+
+		simple = new Expression(context, "#{m.n1}");
+		typed = new Expression(context, "#{m.n1}", DataType.DECIMAL);
+		arithmetic = new Expression(context, "#{m.n1 + m.n2 * 2 - m.n3}", DataType.DECIMAL);
+		conditional = new Expression(context, "#{empty m.s1 ? m.s2 : m.s1}", DataType.STRING);
+	}
+
+	@Benchmark
+	public IVar varMapGet() {
+		return map.get("n25");
+	}
+
+	@Benchmark
+	public IVar varMapPut() {
+		return map.put("n25", var);
+	}
+
+	@Benchmark
+	public Object expressionSimple() {
+		return simple.get();
+	}
+
+	@Benchmark
+	public Object expressionTyped() {
+		return typed.get();
+	}
+
+	@Benchmark
+	public Object expressionArithmetic() {
+		return arithmetic.get();
+	}
+
+	@Benchmark
+	public Object expressionConditional() {
+		return conditional.get();
+	}
+}
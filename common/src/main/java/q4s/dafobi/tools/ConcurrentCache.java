@@ -0,0 +1,249 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.tools;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Потокобезопасный кеш с ограничением по числу элементов.
+ * <p>
+ * Чтение из кеша не требует блокировок. Каждый элемент помнит "время"
+ * последнего обращения к нему (это не реальное время, а номер последней
+ * вставки в кеш). Когда число элементов превышает заданный предел, из кеша
+ * разом удаляется порция самых давно использовавшихся элементов, так что
+ * вытеснение работает по принципу LRU, но с точностью до порции.
+ * 
+ * @author Q4S
+ * 
+ * @param <K>
+ *            Класс ключа.
+ * 
+ * @param <V>
+ *            Класс значения.
+ */
+public class ConcurrentCache<K, V> {
+
+	/**
+	 * Элемент кеша вместе с отметкой последнего обращения к нему.
+	 */
+	private static final class Entry<V> {
+		final V value;
+
+		volatile long touched;
+
+		Entry(V value, long touched) {
+			this.value = value;
+			this.touched = touched;
+		}
+	}
+
+	private final ConcurrentHashMap<K, Entry<V>> map;
+
+	private final int maxSize;
+
+	/**
+	 * Счетчик вставок, используемый как логические часы.
+	 */
+	private final AtomicLong clock = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @see ConcurrentCache
+	 * 
+	 * @param maxSize
+	 *            Максимальное число элементов в кеше.
+	 */
+	public ConcurrentCache(final int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Размер кеша должен быть положительным");
+		}
+		this.maxSize = maxSize;
+		this.map = new ConcurrentHashMap<K, Entry<V>>(Math.min(maxSize, 1024));
+	}
+
+	/**
+	 * Получение значения из кеша.
+	 * 
+	 * @param key
+	 *            Ключ.
+	 * 
+	 * @return Значение или null, если значения с таким ключом в кеше нет.
+	 */
+	public V get(final K key) {
+		Entry<V> entry = map.get(key);
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		entry.touched = clock.get();
+		return entry.value;
+	}
+
+	/**
+	 * Получение значения из кеша, а если его там нет, то вычисление и
+	 * помещение в кеш. Если вычисление завершилось исключением, то в кеш
+	 * ничего не помещается.
+	 * 
+	 * @param key
+	 *            Ключ.
+	 * 
+	 * @param factory
+	 *            Функция вычисления значения по ключу.
+	 * 
+	 * @return Значение из кеша.
+	 */
+	public V computeIfAbsent(final K key, final Function<? super K, ? extends V> factory) {
+		V value = get(key);
+		if (value != null) {
+			return value;
+		}
+
+		// Значение вычисляется вне блокировок. Если два потока одновременно
+		// вычислили одно и то же значение, то в кеше остается первое.
+		value = factory.apply(key);
+		Entry<V> entry = new Entry<V>(value, clock.incrementAndGet());
+		Entry<V> existing = map.putIfAbsent(key, entry);
+		if (existing != null) {
+			return existing.value;
+		}
+		if (map.size() > maxSize) {
+			evict();
+		}
+		return value;
+	}
+
+	/**
+	 * Помещение значения в кеш.
+	 * 
+	 * @param key
+	 *            Ключ.
+	 * 
+	 * @param value
+	 *            Значение.
+	 */
+	public void put(final K key, final V value) {
+		map.put(key, new Entry<V>(value, clock.incrementAndGet()));
+		if (map.size() > maxSize) {
+			evict();
+		}
+	}
+
+	/**
+	 * Удаление значения из кеша.
+	 * 
+	 * @param key
+	 *            Ключ.
+	 * 
+	 * @return Удаленное значение или null.
+	 */
+	public V remove(final K key) {
+		Entry<V> entry = map.remove(key);
+		return entry == null ? null : entry.value;
+	}
+
+	/**
+	 * Удаление всех значений из кеша.
+	 */
+	public void clear() {
+		map.clear();
+	}
+
+	/**
+	 * Удаление из кеша порции самых давно использовавшихся элементов так,
+	 * чтобы осталось не более 90% от максимального размера.
+	 */
+	private synchronized void evict() {
+		int size = map.size();
+		if (size <= maxSize) {
+			// Пока мы ждали блокировку, место уже освободил другой поток.
+			return;
+		}
+
+		long[] stamps = new long[size];
+		int count = 0;
+		for (Entry<V> entry : map.values()) {
+			if (count == stamps.length) {
+				break;
+			}
+			stamps[count++] = entry.touched;
+		}
+		Arrays.sort(stamps, 0, count);
+
+		int toRemove = Math.min(count, size - maxSize + maxSize / 10);
+		if (toRemove <= 0) {
+			return;
+		}
+		long threshold = stamps[toRemove - 1];
+
+		Iterator<Map.Entry<K, Entry<V>>> iterator = map.entrySet().iterator();
+		while (iterator.hasNext() && toRemove > 0) {
+			if (iterator.next().getValue().touched <= threshold) {
+				iterator.remove();
+				evictions.incrementAndGet();
+				toRemove--;
+			}
+		}
+	}
+
+	/**
+	 * @return Текущее число элементов в кеше.
+	 */
+	public int size() {
+		return map.size();
+	}
+
+	/**
+	 * @return Максимальное число элементов в кеше.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return Число успешных обращений к кешу.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return Число обращений, при которых значения в кеше не нашлось.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return Число элементов, вытесненных из кеша.
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+}
@@ -18,8 +18,13 @@
  */
 package q4s.dafobi.data;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 import q4s.dafobi.common.DataParam;
 
@@ -55,7 +60,23 @@ public abstract class AbstractConnection implements IConnection {
 	 */
 	@Override
 	public final int[] executeScript(String script, Map<String, DataParam> parameters) {
-		String[] operators = parseScript(script);
+		return executeOperators(parseScript(script), parameters);
+	}
+
+	/**
+	 * Выполнение разобранных операторов скрипта по порядку. Наследники могут
+	 * переопределить метод, чтобы выполнять операторы эффективнее (например,
+	 * объединяя их в пакеты), сохранив порядок выполнения и результат.
+	 * 
+	 * @param operators
+	 *            Тексты операторов.
+	 * 
+	 * @param parameters
+	 *            Значения параметров для всех операторов.
+	 * 
+	 * @return Количество затронутых каждым из операторов строк.
+	 */
+	protected int[] executeOperators(String[] operators, Map<String, DataParam> parameters) {
 		int[] rc = new int[operators.length];
 
 		int i = 0;
@@ -65,6 +86,43 @@ public abstract class AbstractConnection implements IConnection {
 		return rc;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IConnection#executeScript(java.io.Reader,
+	 * java.util.Map)
+	 */
+	@Override
+	public final BulkResult executeScript(Reader script, Map<String, DataParam> parameters) {
+		long start = System.nanoTime();
+		long statements = 0;
+		long updated = 0;
+		try (ScriptReader reader = new ScriptReader(script)) {
+			String operator;
+			while ((operator = reader.nextStatement()) != null) {
+				updated += execute(operator, parameters);
+				statements++;
+			}
+		}
+		return new BulkResult(statements, statements, updated, 0, 0, System.nanoTime() - start);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IConnection#executeScript(java.nio.file.Path,
+	 * java.util.Map)
+	 */
+	@Override
+	public final BulkResult executeScript(Path script, Map<String, DataParam> parameters) {
+		try {
+			return executeScript(Files.newBufferedReader(script, StandardCharsets.UTF_8), parameters);
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -73,11 +131,16 @@ public abstract class AbstractConnection implements IConnection {
 	 */
 	@Override
 	public final IResultTable query(final String statement, final Map<String, DataParam> parameters) {
-		IResultTable result = null;
-		try (IStatement stmt = prepare(statement);) {
-			result = new AutoclosableResultTable(stmt.query(parameters));
+		// Оператор нельзя закрывать сразу, иначе вместе с ним будет закрыт и
+		// набор данных. Его закроет AutoclosableResultTable.
+		IStatement stmt = prepare(statement);
+		try {
+			return new AutoclosableResultTable(stmt.query(parameters), stmt);
+
+		} catch (RuntimeException e) {
+			stmt.close();
+			throw e;
 		}
-		return result;
 	}
 
 	/*
@@ -88,12 +151,22 @@ public abstract class AbstractConnection implements IConnection {
 	 */
 	@Override
 	public final IRow queryRow(final String statement, final Map<String, DataParam> parameters) {
-		try (IResultTable result = query(statement, parameters)) {
-			for (IRow row : result) {
-				return row;
-			}
+		return queryRow(statement, parameters, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IConnection#queryRow(java.lang.String,
+	 * java.util.Map, boolean)
+	 */
+	@Override
+	public final IRow queryRow(final String statement, final Map<String, DataParam> parameters,
+			boolean exactlyOne) {
+		// Строка не зависит от оператора, так что его можно закрыть сразу.
+		try (IStatement stmt = prepare(statement);) {
+			return stmt.queryRow(parameters, exactlyOne);
 		}
-		return null;
 	}
 
 	/*
@@ -103,6 +176,13 @@ public abstract class AbstractConnection implements IConnection {
 	 */
 	@Override
 	public void close() {
+		endTransaction();
+	}
+
+	/**
+	 * Завершение текущей транзакции при закрытии подключения.
+	 */
+	protected final void endTransaction() {
 		// Изменения должны фиксировать явно с помощью оператора commit
 		// кроме случаев, когда установлен флаг autocommit.
 		if (getAutocommit()) {
@@ -123,13 +203,8 @@ public abstract class AbstractConnection implements IConnection {
 	 *         методом {@link #execute(String, Map)}.
 	 */
 	public String[] parseScript(String script) {
-		// Ниже реализован самый примитивный подход - разделителем
-		// операторов считается строка, состоящая только из одного
-		// символа '/'. При этом не учитывается, что она может находиться
-		// в стоковой константе или в комментарии.
-		String deviderStr = "\\n[\\s]*\\/[\\s]*\\n";
-		Pattern p = Pattern.compile(deviderStr, Pattern.DOTALL | Pattern.UNIX_LINES | Pattern.UNICODE_CASE);
-		String[] operators = p.split(script + "\n");
-		return operators;
+		// Разделителем операторов считается строка, состоящая только из
+		// одного символа '/' вне строковых констант и комментариев.
+		return ScriptReader.parse(script);
 	}
 }
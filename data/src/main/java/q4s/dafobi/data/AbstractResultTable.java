@@ -20,7 +20,10 @@ package q4s.dafobi.data;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import q4s.dafobi.jaxb.common.DataType;
 
@@ -62,6 +65,16 @@ public abstract class AbstractResultTable implements IResultTable {
 	 */
 	private ColumnMetaInfo[] columnMeta = null;
 
+	/**
+	 * Описатели колонок в порядке их индексов.
+	 */
+	private ColumnHandle[] columnHandles = null;
+
+	/**
+	 * Индекс колонок по именам в нижнем регистре. Строится при защите данных.
+	 */
+	private Map<String, Integer> columnIndex = null;
+
 	/**
 	 * Метод добавляет информацию о колонке данных для строки. Индекс колонки
 	 * при этом будет соответствовать порядку добавления информации.
@@ -89,7 +102,15 @@ public abstract class AbstractResultTable implements IResultTable {
 		if (isProtected()) {
 			throw new UnsupportedOperationException("Данные уже были закрыты для изменения");
 		} else {
-			columnMeta = columnMetaList.toArray(new ColumnMetaInfo[0]);
+			ColumnMetaInfo[] meta = columnMetaList.toArray(new ColumnMetaInfo[0]);
+			columnHandles = new ColumnHandle[meta.length];
+			columnIndex = new HashMap<String, Integer>(meta.length * 2);
+			for (int i = 0; i < meta.length; i++) {
+				columnHandles[i] = new ColumnHandle(i, meta[i].name, meta[i].type);
+				// При совпадении имен находится первая колонка.
+				columnIndex.putIfAbsent(meta[i].name, i);
+			}
+			columnMeta = meta;
 			columnMetaList = null;
 		}
 	}
@@ -120,15 +141,29 @@ public abstract class AbstractResultTable implements IResultTable {
 	 */
 	@Override
 	public final int getColumnIndex(String name) {
+		return getColumn(name).getIndex();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IResultTable#getColumn(java.lang.String)
+	 */
+	@Override
+	public final ColumnHandle getColumn(String name) {
 		if (!isProtected()) {
 			throw new UnsupportedOperationException(INFO_IS_NOT_PROTECTED_YET);
 		}
-		for (int i = 0; i < columnMeta.length; i++) {
-			if (columnMeta[i].name.equalsIgnoreCase(name)) {
-				return i;
+		// Обычно имя уже задано в нижнем регистре, и тогда лишняя строка не
+		// создается.
+		Integer index = columnIndex.get(name);
+		if (index == null) {
+			index = columnIndex.get(name.toLowerCase());
+			if (index == null) {
+				throw new IllegalArgumentException(MessageFormat.format("Неверное имя колонки запроса: {0}", name));
 			}
 		}
-		throw new IllegalArgumentException(MessageFormat.format("Неверное имя колонки запроса: {0}", name));
+		return columnHandles[index];
 	}
 
 	/*
@@ -157,6 +192,38 @@ public abstract class AbstractResultTable implements IResultTable {
 		return columnMeta[index].type;
 	}
 
+	/**
+	 * По умолчанию курсор ничем не отличается от обычного перебора строк.
+	 * Наследники, умеющие читать данные без создания копий строк, должны
+	 * переопределить этот метод.
+	 * 
+	 * @see q4s.dafobi.data.IResultTable#cursor()
+	 */
+	@Override
+	public Iterable<IRow> cursor() {
+		return this;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IResultTable#stream()
+	 */
+	@Override
+	public Stream<IRow> stream() {
+		return RowSpliterator.stream(this, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IResultTable#parallelStream()
+	 */
+	@Override
+	public Stream<IRow> parallelStream() {
+		return RowSpliterator.stream(this, true);
+	}
+
 	/**
 	 * @return Оператор, вернувший данный набор данных.
 	 */
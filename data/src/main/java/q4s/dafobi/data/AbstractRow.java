@@ -0,0 +1,295 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import q4s.dafobi.exception.WrongIndexException;
+
+/**
+ * Данный класс реализует общую часть функционала строки данных: доступ к
+ * значениям по имени колонки и типизированные методы доступа. Наследникам
+ * достаточно реализовать методы {@link #get(int)} и {@link #detach()}, а
+ * методы получения примитивных значений переопределять только тогда, когда
+ * данные можно прочитать без упаковки в объект.
+ * <p>
+ * Признак {@link #wasNull()} хранится в самой строке, поэтому один объект
+ * строки не стоит читать одновременно из нескольких потоков. Таблицы, которые
+ * можно читать из нескольких потоков ({@link MemoryResultTable},
+ * {@link ColumnarResultTable}), при каждом обращении выдают новый объект
+ * строки.
+ * 
+ * @author Q4S
+ */
+public abstract class AbstractRow implements IRow {
+
+	/**
+	 * Ссылка на информацию, описывающую данные, находящиеся в строке.
+	 */
+	private final IResultTable rowInfo;
+
+	/**
+	 * Признак того, что последнее прочитанное значение было пустым.
+	 */
+	private boolean wasNull = false;
+
+	/**
+	 * @param rowInfo
+	 *            Информация о колонках строки.
+	 */
+	protected AbstractRow(IResultTable rowInfo) {
+		this.rowInfo = rowInfo;
+	}
+
+	/**
+	 * @return Информация о колонках строки.
+	 */
+	protected final IResultTable getMeta() {
+		return rowInfo;
+	}
+
+	/**
+	 * Запоминает, было ли пустым последнее прочитанное значение.
+	 * 
+	 * @param wasNull
+	 *            true - если значение было пустым.
+	 */
+	protected final void setWasNull(boolean wasNull) {
+		this.wasNull = wasNull;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#wasNull()
+	 */
+	@Override
+	public boolean wasNull() {
+		return wasNull;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#get(java.lang.String)
+	 */
+	@Override
+	public final Object get(String columnName) throws WrongIndexException {
+		int index = rowInfo.getColumnIndex(columnName);
+		return get(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getString(java.lang.String)
+	 */
+	@Override
+	public final String getString(String columnName) throws WrongIndexException {
+		int index = rowInfo.getColumnIndex(columnName);
+		return getString(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getInteger(java.lang.String)
+	 */
+	@Override
+	public final Long getInteger(String columnName) throws WrongIndexException {
+		int index = rowInfo.getColumnIndex(columnName);
+		return getInteger(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getDecimal(java.lang.String)
+	 */
+	@Override
+	public final BigDecimal getDecimal(String columnName) throws WrongIndexException {
+		int index = rowInfo.getColumnIndex(columnName);
+		return getDecimal(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getDate(java.lang.String)
+	 */
+	@Override
+	public final Date getDate(String columnName) throws WrongIndexException {
+		int index = rowInfo.getColumnIndex(columnName);
+		return getDate(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getTime(java.lang.String)
+	 */
+	@Override
+	public final Time getTime(String columnName) throws WrongIndexException {
+		int index = rowInfo.getColumnIndex(columnName);
+		return getTime(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getTimestamp(java.lang.String)
+	 */
+	@Override
+	public final Timestamp getTimestamp(String columnName) throws WrongIndexException {
+		int index = rowInfo.getColumnIndex(columnName);
+		return getTimestamp(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getLong(java.lang.String)
+	 */
+	@Override
+	public final long getLong(String columnName) throws WrongIndexException {
+		int index = rowInfo.getColumnIndex(columnName);
+		return getLong(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getInt(java.lang.String)
+	 */
+	@Override
+	public final int getInt(String columnName) throws WrongIndexException {
+		int index = rowInfo.getColumnIndex(columnName);
+		return getInt(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getDouble(java.lang.String)
+	 */
+	@Override
+	public final double getDouble(String columnName) throws WrongIndexException {
+		int index = rowInfo.getColumnIndex(columnName);
+		return getDouble(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getString(int)
+	 */
+	@Override
+	public String getString(int columnNum) throws WrongIndexException {
+		return (String) get(columnNum);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getInteger(int)
+	 */
+	@Override
+	public Long getInteger(int columnNum) throws WrongIndexException {
+		return (Long) get(columnNum);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getDecimal(int)
+	 */
+	@Override
+	public BigDecimal getDecimal(int columnNum) throws WrongIndexException {
+		return (BigDecimal) get(columnNum);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getDate(int)
+	 */
+	@Override
+	public Date getDate(int columnNum) throws WrongIndexException {
+		return (Date) get(columnNum);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getTime(int)
+	 */
+	@Override
+	public Time getTime(int columnNum) throws WrongIndexException {
+		return (Time) get(columnNum);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getTimestamp(int)
+	 */
+	@Override
+	public Timestamp getTimestamp(int columnNum) throws WrongIndexException {
+		return (Timestamp) get(columnNum);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getLong(int)
+	 */
+	@Override
+	public long getLong(int columnNum) throws WrongIndexException {
+		Number value = (Number) get(columnNum);
+		setWasNull(value == null);
+		return value == null ? 0L : value.longValue();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getInt(int)
+	 */
+	@Override
+	public int getInt(int columnNum) throws WrongIndexException {
+		Number value = (Number) get(columnNum);
+		setWasNull(value == null);
+		return value == null ? 0 : value.intValue();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRow#getDouble(int)
+	 */
+	@Override
+	public double getDouble(int columnNum) throws WrongIndexException {
+		Number value = (Number) get(columnNum);
+		setWasNull(value == null);
+		return value == null ? 0d : value.doubleValue();
+	}
+}
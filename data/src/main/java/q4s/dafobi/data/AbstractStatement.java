@@ -19,10 +19,12 @@
 package q4s.dafobi.data;
 
 import java.text.MessageFormat;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import q4s.dafobi.common.DataParam;
+import q4s.dafobi.exception.DataException;
 import q4s.dafobi.jaxb.common.DataType;
 
 /**
@@ -33,6 +35,12 @@ import q4s.dafobi.jaxb.common.DataType;
  */
 public abstract class AbstractStatement implements IStatement {
 
+	private int fetchSize = 0;
+
+	private int maxRows = 0;
+
+	private long fetchMemory = 0;
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -46,6 +54,64 @@ public abstract class AbstractStatement implements IStatement {
 		return query();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#queryRow(java.util.Map, boolean)
+	 */
+	@Override
+	public final IRow queryRow(Map<String, DataParam> parameters, boolean exactlyOne) {
+		for (Entry<String, DataParam> param : parameters.entrySet()) {
+			setParam(param.getKey(), param.getValue());
+		}
+		return queryRow(exactlyOne);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#queryRow(boolean)
+	 */
+	@Override
+	public IRow queryRow(boolean exactlyOne) {
+		try (IResultTable table = query()) {
+			Iterator<IRow> rows = table.iterator();
+			if (!rows.hasNext()) {
+				if (exactlyOne) {
+					throw noRows(null);
+				}
+				return null;
+			}
+			IRow row = rows.next();
+			if (exactlyOne && rows.hasNext()) {
+				throw tooManyRows(null);
+			}
+			return row;
+		}
+	}
+
+	/**
+	 * @param operator
+	 *            Текст запроса или null.
+	 * 
+	 * @return Исключение для случая, когда запрос в режиме
+	 *         {@link #queryRow(boolean)} не вернул строк.
+	 */
+	protected static DataException noRows(String operator) {
+		return new DataException("02000", 0, "Запрос не вернул ни одной строки", operator);
+	}
+
+	/**
+	 * @param operator
+	 *            Текст запроса или null.
+	 * 
+	 * @return Исключение для случая, когда запрос в режиме
+	 *         {@link #queryRow(boolean)} вернул больше одной строки.
+	 */
+	protected static DataException tooManyRows(String operator) {
+		return new DataException("21000", 0, "Запрос вернул больше одной строки", operator);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -75,6 +141,180 @@ public abstract class AbstractStatement implements IStatement {
 		return count;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#query(q4s.dafobi.data.ParamSet)
+	 */
+	@Override
+	public final IResultTable query(ParamSet parameters) {
+		checkParams(parameters);
+		setParams(parameters);
+		return query();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#execute(q4s.dafobi.data.ParamSet)
+	 */
+	@Override
+	public final int execute(ParamSet parameters) {
+		checkParams(parameters);
+		setParams(parameters);
+
+		int count = execute();
+
+		for (String name : getOutParamNames()) {
+			int slot = parameters.slot(name);
+			DataType type = parameters.getType(slot);
+			parameters.set(slot, type, getParam(name, type));
+		}
+		return count;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#addBatch(q4s.dafobi.data.ParamSet)
+	 */
+	@Override
+	public final void addBatch(ParamSet parameters) {
+		checkParams(parameters);
+		setParams(parameters);
+		addBatch();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#createParamSet()
+	 */
+	@Override
+	public ParamSet createParamSet() {
+		return new ParamSet(getParamNames());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#setFetchSize(int)
+	 */
+	@Override
+	public void setFetchSize(int rows) {
+		if (rows < 0) {
+			throw new IllegalArgumentException("Размер порции не может быть отрицательным");
+		}
+		this.fetchSize = rows;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#getFetchSize()
+	 */
+	@Override
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#setMaxRows(int)
+	 */
+	@Override
+	public void setMaxRows(int rows) {
+		if (rows < 0) {
+			throw new IllegalArgumentException("Число строк не может быть отрицательным");
+		}
+		this.maxRows = rows;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#getMaxRows()
+	 */
+	@Override
+	public int getMaxRows() {
+		return maxRows;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#setFetchMemory(long)
+	 */
+	@Override
+	public void setFetchMemory(long bytes) {
+		if (bytes < 0) {
+			throw new IllegalArgumentException("Объем памяти не может быть отрицательным");
+		}
+		this.fetchMemory = bytes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IStatement#getFetchMemory()
+	 */
+	@Override
+	public long getFetchMemory() {
+		return fetchMemory;
+	}
+
+	/**
+	 * Сброс подсказок выборки к значениям по-умолчанию. Вызывается
+	 * наследниками при повторном использовании оператора.
+	 */
+	protected final void clearHints() {
+		fetchSize = 0;
+		maxRows = 0;
+		fetchMemory = 0;
+	}
+
+	/**
+	 * Проверка того, что в наборе установлены значения всех параметров
+	 * оператора. Иначе для пропущенного параметра осталось бы значение,
+	 * установленное для предыдущего запроса или строки пакета.
+	 * 
+	 * Реализация по-умолчанию ищет каждый параметр по имени; наследники
+	 * могут проверять набор, построенный для их описания параметров, без
+	 * обращения к именам (см. {@link ParamSet#getLayout()}).
+	 * 
+	 * @param parameters
+	 *            Набор параметров.
+	 */
+	protected void checkParams(ParamSet parameters) {
+		for (String name : getParamNames()) {
+			int slot = parameters.slot(name);
+			if (slot < 0 || !parameters.isSet(slot)) {
+				throw new IllegalArgumentException(
+						MessageFormat.format("Отсутствует описание параметра с именем: {0}", name));
+			}
+		}
+	}
+
+	/**
+	 * Установка значений параметров из набора. Неустановленные слоты
+	 * пропускаются. Реализация по-умолчанию устанавливает параметры по
+	 * именам; наследники могут устанавливать их напрямую по номерам слотов,
+	 * если набор построен для их описания параметров (см.
+	 * {@link ParamSet#getLayout()}).
+	 * 
+	 * @param parameters
+	 *            Набор параметров.
+	 */
+	protected void setParams(ParamSet parameters) {
+		for (int slot = 0; slot < parameters.size(); slot++) {
+			if (parameters.isSet(slot)) {
+				DataType type = parameters.getType(slot);
+				setParam(parameters.getName(slot), type.param(parameters.getValue(slot)));
+			}
+		}
+	}
+
 	/*
 	 * 
 	 * (non-Javadoc)
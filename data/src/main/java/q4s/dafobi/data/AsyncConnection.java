@@ -0,0 +1,196 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import q4s.dafobi.common.DataParam;
+
+/**
+ * Асинхронное выполнение запросов и операторов.
+ * <p>
+ * Подключения не рассчитаны на работу из нескольких потоков, поэтому каждая
+ * асинхронная операция получает собственное подключение из источника
+ * (обычно это пул подключений), выполняется в отдельной транзакции и
+ * закрывает подключение по окончании. Операторы, изменяющие данные,
+ * фиксируются при успешном завершении и откатываются при ошибке. Результаты
+ * запросов полностью читаются в память ({@link MemoryResultTable}), т.к. к
+ * моменту их получения подключение уже возвращено в пул.
+ * <p>
+ * Операции выполняются исполнителем, который можно передать в
+ * конструкторе. Исполнитель по-умолчанию в Java 21 и выше запускает каждую
+ * операцию в виртуальном потоке, а в более ранних версиях использует пул из
+ * ограниченного числа обычных потоков.
+ * 
+ * <pre>
+ * JdbcConnectionPool pool = ...;
+ * try (AsyncConnection async = new AsyncConnection(pool::getConnection, pool.getMaxSize())) {
+ * 	async.queryAsync("SELECT * FROM T WHERE ID = :id", params) //
+ * 			.thenAccept(table -&gt; ...);
+ * }
+ * </pre>
+ * 
+ * Карты параметров не должны изменяться, пока операция не завершена.
+ * 
+ * @author Q4S
+ * 
+ */
+public class AsyncConnection implements AutoCloseable {
+
+	private final Supplier<? extends IConnection> connections;
+
+	private final Executor executor;
+
+	/**
+	 * Исполнитель, созданный самим объектом и закрываемый вместе с ним.
+	 */
+	private final ExecutorService ownExecutor;
+
+	/**
+	 * @see AsyncConnection
+	 * 
+	 * @param connections
+	 *            Источник подключений, например
+	 *            {@code JdbcConnectionPool::getConnection}.
+	 * 
+	 * @param executor
+	 *            Исполнитель операций. Он не закрывается методом
+	 *            {@link #close()}.
+	 */
+	public AsyncConnection(Supplier<? extends IConnection> connections, Executor executor) {
+		this.connections = connections;
+		this.executor = executor;
+		this.ownExecutor = null;
+	}
+
+	/**
+	 * Создание объекта с исполнителем по-умолчанию.
+	 * 
+	 * @see AsyncConnection
+	 * 
+	 * @param connections
+	 *            Источник подключений, например
+	 *            {@code JdbcConnectionPool::getConnection}.
+	 * 
+	 * @param maxThreads
+	 *            Максимальное число обычных потоков, если виртуальные потоки
+	 *            недоступны. Как правило, это размер пула подключений.
+	 */
+	public AsyncConnection(Supplier<? extends IConnection> connections, int maxThreads) {
+		if (maxThreads <= 0) {
+			throw new IllegalArgumentException("Число потоков должно быть положительным");
+		}
+		this.connections = connections;
+		this.ownExecutor = AsyncExecutors.create(maxThreads);
+		this.executor = ownExecutor;
+	}
+
+	/**
+	 * Выполнение произвольной работы с подключением. Подключение закрывается
+	 * после выполнения, поэтому результат не должен на него ссылаться.
+	 * 
+	 * @param action
+	 *            Работа с подключением.
+	 * 
+	 * @return Результат работы.
+	 */
+	public <T> CompletableFuture<T> callAsync(Function<? super IConnection, ? extends T> action) {
+		return CompletableFuture.supplyAsync(() -> {
+			try (IConnection connection = connections.get()) {
+				T result = action.apply(connection);
+				if (!connection.getAutocommit()) {
+					connection.commit();
+				}
+				return result;
+			}
+		}, executor);
+	}
+
+	/**
+	 * @see IConnection#query(String, Map)
+	 * 
+	 * @param statement
+	 *            Текст запроса.
+	 * 
+	 * @param parameters
+	 *            Значения параметров.
+	 * 
+	 * @return Все строки результата, прочитанные в память.
+	 */
+	public CompletableFuture<MemoryResultTable> queryAsync(final String statement,
+			final Map<String, DataParam> parameters) {
+		return callAsync(connection -> {
+			try (IResultTable table = connection.query(statement, parameters)) {
+				return MemoryResultTable.copyOf(table);
+			}
+		});
+	}
+
+	/**
+	 * @see IConnection#execute(String, Map)
+	 * 
+	 * @param statement
+	 *            Текст оператора.
+	 * 
+	 * @param parameters
+	 *            Значения параметров.
+	 * 
+	 * @return Количество затронутых оператором строк.
+	 */
+	public CompletableFuture<Integer> executeAsync(final String statement, final Map<String, DataParam> parameters) {
+		return callAsync(connection -> connection.execute(statement, parameters));
+	}
+
+	/**
+	 * Пакетное выполнение оператора (см. {@link BulkExecutor}) для всех
+	 * наборов параметров.
+	 * 
+	 * @param statement
+	 *            Текст оператора.
+	 * 
+	 * @param parameters
+	 *            Наборы значений параметров.
+	 * 
+	 * @return Итог выполнения.
+	 */
+	public CompletableFuture<BulkResult> executeBatchAsync(final String statement,
+			final Iterable<? extends Map<String, DataParam>> parameters) {
+		return callAsync(connection -> {
+			try (BulkExecutor bulk = new BulkExecutor(connection, statement)) {
+				return bulk.executeMaps(parameters);
+			}
+		});
+	}
+
+	/**
+	 * Закрытие исполнителя по-умолчанию. Уже начатые операции завершаются.
+	 * Переданный в конструкторе исполнитель не закрывается.
+	 */
+	@Override
+	public void close() {
+		if (ownExecutor != null) {
+			ownExecutor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Создание исполнителя асинхронных операций, используемого по-умолчанию (см.
+ * {@link AsyncConnection}).
+ * <p>
+ * Это вариант для Java 8: пул из ограниченного числа обычных потоков.
+ * Простаивающие потоки завершаются. Для Java 21 и выше в многоверсионном
+ * jar-файле находится вариант этого класса, использующий виртуальные
+ * потоки (src/main/java21).
+ * 
+ * @author Q4S
+ * 
+ */
+final class AsyncExecutors {
+
+	private static final AtomicInteger COUNTER = new AtomicInteger();
+
+	private AsyncExecutors() {
+	}
+
+	/**
+	 * @param maxThreads
+	 *            Максимальное число одновременно выполняемых операций.
+	 * 
+	 * @return Новый исполнитель.
+	 */
+	static ExecutorService create(int maxThreads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), runnable -> {
+					Thread thread = new Thread(runnable, "dafobi-async-" + COUNTER.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+}
@@ -19,6 +19,7 @@
 package q4s.dafobi.data;
 
 import java.util.Iterator;
+import java.util.stream.Stream;
 
 import q4s.dafobi.jaxb.common.DataType;
 
@@ -39,25 +40,49 @@ public class AutoclosableResultTable implements IResultTable {
 
 	private final IResultTable resultTable;
 
+	private final IStatement statement;
+
 	/**
 	 * @see AutoclosableResultTable
 	 * 
 	 * @param resultTable
 	 */
 	public AutoclosableResultTable(IResultTable resultTable) {
+		this(resultTable, resultTable.getStatement());
+	}
+
+	/**
+	 * @see AutoclosableResultTable
+	 * 
+	 * @param resultTable
+	 *            Результат запроса.
+	 * 
+	 * @param statement
+	 *            Оператор, который надо закрыть вместе с результатом. Нужен
+	 *            тогда, когда результат не связан с оператором (например,
+	 *            взят из кеша результатов).
+	 */
+	public AutoclosableResultTable(IResultTable resultTable, IStatement statement) {
 		super();
 		this.resultTable = resultTable;
+		this.statement = statement;
 	}
 
 	@Override
 	public void close() {
-		resultTable.close();
-		resultTable.getStatement().close();
+		try {
+			resultTable.close();
+
+		} finally {
+			if (statement != null) {
+				statement.close();
+			}
+		}
 	}
 
 	@Override
 	public IStatement getStatement() {
-		return resultTable.getStatement();
+		return statement;
 	}
 
 	@Override
@@ -65,6 +90,21 @@ public class AutoclosableResultTable implements IResultTable {
 		return resultTable.iterator();
 	}
 
+	@Override
+	public Iterable<IRow> cursor() {
+		return resultTable.cursor();
+	}
+
+	@Override
+	public Stream<IRow> stream() {
+		return RowSpliterator.stream(this, false);
+	}
+
+	@Override
+	public Stream<IRow> parallelStream() {
+		return RowSpliterator.stream(this, true);
+	}
+
 	@Override
 	public boolean isClosed() {
 		return resultTable.isClosed();
@@ -82,7 +122,12 @@ public class AutoclosableResultTable implements IResultTable {
 
 	@Override
 	public int getColumnIndex(String name) {
-		return getColumnIndex(name);
+		return resultTable.getColumnIndex(name);
+	}
+
+	@Override
+	public ColumnHandle getColumn(String name) {
+		return resultTable.getColumn(name);
 	}
 
 	@Override
@@ -0,0 +1,465 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.math.BigDecimal;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.MessageFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.exception.DataException;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Пакетное выполнение одного оператора для большого числа наборов
+ * параметров. Наборы передаются в оператор методом
+ * {@link IStatement#addBatch()}, а накопленный пакет отправляется в базу,
+ * как только в нем набирается заданное число строк или заданный объем
+ * данных. При необходимости после каждого пакета выполняется фиксация
+ * транзакции.
+ * 
+ * <pre>
+ * try (BulkExecutor bulk = new BulkExecutor(connection, "INSERT INTO T(ID, NAME) VALUES(:id, :name)")) {
+ * 	bulk.setBatchSize(500);
+ * 	BulkResult result = bulk.executeRows(sourceTable);
+ * }
+ * </pre>
+ * 
+ * Вызываемые операторы (процедуры) в пакетах не поддерживаются.
+ * <p>
+ * Если очередной пакет завершился ошибкой, то она передается вызывающему
+ * коду. Пакеты, выполненные до этого, остаются зафиксированными, если
+ * включена фиксация после каждого пакета.
+ * 
+ * @author Q4S
+ * 
+ */
+public class BulkExecutor implements AutoCloseable {
+
+	/**
+	 * Число строк в пакете, используемое по-умолчанию.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	/**
+	 * Предельный объем данных пакета, используемый по-умолчанию (4 Мб).
+	 */
+	public static final long DEFAULT_MAX_BATCH_BYTES = 4L * 1024 * 1024;
+
+	private final IConnection connection;
+
+	private final IStatement statement;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	private long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+
+	private boolean commitEachBatch = false;
+
+	private IBulkListener listener = null;
+
+	/**
+	 * @see BulkExecutor
+	 * 
+	 * @param connection
+	 *            Подключение.
+	 * 
+	 * @param query
+	 *            Текст оператора с именованными параметрами.
+	 */
+	public BulkExecutor(IConnection connection, String query) {
+		this.connection = connection;
+		this.statement = connection.prepare(query);
+	}
+
+	/**
+	 * @return Максимальное число строк в одном пакете.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize
+	 *            Максимальное число строк в одном пакете.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Размер пакета должен быть положительным");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @return Предельный объем данных одного пакета в байтах (0 - без
+	 *         ограничения).
+	 */
+	public long getMaxBatchBytes() {
+		return maxBatchBytes;
+	}
+
+	/**
+	 * Задает предельный объем данных одного пакета. Объем оценивается
+	 * приблизительно по значениям параметров (строки считаются по два байта
+	 * на символ). Пакет отправляется, как только объем достигнут, даже если
+	 * число строк в нем меньше {@link #getBatchSize()}.
+	 * 
+	 * @param maxBatchBytes
+	 *            Объем в байтах. Значение 0 снимает ограничение.
+	 */
+	public void setMaxBatchBytes(long maxBatchBytes) {
+		if (maxBatchBytes < 0) {
+			throw new IllegalArgumentException("Объем пакета не может быть отрицательным");
+		}
+		this.maxBatchBytes = maxBatchBytes;
+	}
+
+	/**
+	 * @return true - если после каждого пакета фиксируется транзакция.
+	 */
+	public boolean isCommitEachBatch() {
+		return commitEachBatch;
+	}
+
+	/**
+	 * @param commitEachBatch
+	 *            true - фиксировать транзакцию после каждого пакета.
+	 */
+	public void setCommitEachBatch(boolean commitEachBatch) {
+		this.commitEachBatch = commitEachBatch;
+	}
+
+	/**
+	 * @return Получатель сведений о ходе выполнения или null.
+	 */
+	public IBulkListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * @param listener
+	 *            Получатель сведений о ходе выполнения. Вызывается после
+	 *            каждого выполненного пакета.
+	 */
+	public void setListener(IBulkListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @return Оператор, выполняемый пакетами.
+	 */
+	public IStatement getStatement() {
+		return statement;
+	}
+
+	/**
+	 * Создание набора параметров, подходящего для оператора (см.
+	 * {@link IStatement#createParamSet()}).
+	 * 
+	 * @return Новый набор параметров.
+	 */
+	public ParamSet createParamSet() {
+		return statement.createParamSet();
+	}
+
+	/**
+	 * Выполнение оператора для всех наборов параметров. Один и тот же объект
+	 * набора может выдаваться итератором многократно с новыми значениями.
+	 * 
+	 * @param params
+	 *            Наборы параметров.
+	 * 
+	 * @return Итог выполнения.
+	 */
+	public BulkResult executeParams(Iterable<ParamSet> params) {
+		return run(params.iterator(), p -> {
+			statement.addBatch(p);
+			return estimateSize(p);
+		});
+	}
+
+	/**
+	 * Выполнение оператора для всех карт параметров.
+	 * 
+	 * @param params
+	 *            Карты параметров.
+	 * 
+	 * @return Итог выполнения.
+	 */
+	public BulkResult executeMaps(Iterable<? extends Map<String, DataParam>> params) {
+		return run(params.iterator(), p -> {
+			statement.addBatch(p);
+			long size = 0;
+			for (DataParam param : p.values()) {
+				size += estimateSize(param.getValue());
+			}
+			return size;
+		});
+	}
+
+	/**
+	 * Выполнение оператора для всех строк таблицы. Значения параметров
+	 * берутся из одноименных колонок. Строки перебираются в режиме курсора
+	 * (см. {@link IResultTable#cursor()}).
+	 * 
+	 * @param table
+	 *            Исходные данные.
+	 * 
+	 * @return Итог выполнения.
+	 */
+	public BulkResult executeRows(IResultTable table) {
+		return executeRows(table.cursor(), table);
+	}
+
+	/**
+	 * Выполнение оператора для всех строк. Значения параметров берутся из
+	 * одноименных колонок.
+	 * 
+	 * @param rows
+	 *            Исходные строки.
+	 * 
+	 * @param columns
+	 *            Таблица, описывающая колонки строк.
+	 * 
+	 * @return Итог выполнения.
+	 */
+	public BulkResult executeRows(Iterable<IRow> rows, IResultTable columns) {
+		final ParamSet params = statement.createParamSet();
+		final int[] columnIndexes = new int[params.size()];
+		final DataType[] columnTypes = new DataType[params.size()];
+		for (int slot = 0; slot < params.size(); slot++) {
+			ColumnHandle column = columns.getColumn(params.getName(slot));
+			columnIndexes[slot] = column.getIndex();
+			columnTypes[slot] = column.getType();
+		}
+
+		return run(rows.iterator(), row -> {
+			copyRow(row, columnIndexes, columnTypes, params);
+			statement.addBatch(params);
+			return estimateSize(params);
+		});
+	}
+
+	/**
+	 * Основной цикл: добавление строк в пакет и отправка пакетов.
+	 * 
+	 * @param iterator
+	 *            Источник строк.
+	 * 
+	 * @param adder
+	 *            Функция, добавляющая строку в пакет и возвращающая
+	 *            примерный объем ее данных.
+	 * 
+	 * @return Итог выполнения.
+	 */
+	private <T> BulkResult run(Iterator<T> iterator, ToLongFunction<T> adder) {
+		long start = System.nanoTime();
+		// Строки, пакеты, измененные записи, строки без информации,
+		// невыполненные строки.
+		long[] totals = new long[5];
+		int pendingRows = 0;
+		long pendingBytes = 0;
+
+		while (iterator.hasNext()) {
+			pendingBytes += adder.applyAsLong(iterator.next());
+			pendingRows++;
+			totals[0]++;
+			if (pendingRows >= batchSize || (maxBatchBytes > 0 && pendingBytes >= maxBatchBytes)) {
+				flush(totals, start);
+				pendingRows = 0;
+				pendingBytes = 0;
+			}
+		}
+		if (pendingRows > 0) {
+			flush(totals, start);
+		}
+		return result(totals, start);
+	}
+
+	private static BulkResult result(long[] totals, long start) {
+		return new BulkResult(totals[0], totals[1], totals[2], totals[3], totals[4], System.nanoTime() - start);
+	}
+
+	/**
+	 * Отправка накопленного пакета.
+	 * 
+	 * @param totals
+	 *            Счетчики (см. {@link #run(Iterator, ToLongFunction)}).
+	 * 
+	 * @param start
+	 *            Время начала выполнения.
+	 */
+	private void flush(long[] totals, long start) {
+		int[] counts = statement.executeBatch();
+		totals[1]++;
+		for (int count : counts) {
+			if (count >= 0) {
+				totals[2] += count;
+			} else if (count == Statement.SUCCESS_NO_INFO) {
+				totals[3]++;
+			} else if (count == Statement.EXECUTE_FAILED) {
+				totals[4]++;
+			}
+		}
+		if (commitEachBatch) {
+			connection.commit();
+		}
+		if (listener != null) {
+			listener.batchExecuted(result(totals, start));
+		}
+	}
+
+	/**
+	 * Перенос значений колонок строки в набор параметров.
+	 * 
+	 * @param row
+	 *            Исходная строка.
+	 * 
+	 * @param columns
+	 *            Номера колонок для каждого слота набора параметров.
+	 * 
+	 * @param types
+	 *            Типы колонок.
+	 * 
+	 * @param params
+	 *            Заполняемый набор параметров.
+	 */
+	static void copyRow(IRow row, int[] columns, DataType[] types, ParamSet params) {
+		for (int slot = 0; slot < columns.length; slot++) {
+			copyValue(row, columns[slot], types[slot], params, slot);
+		}
+	}
+
+	/**
+	 * Перенос значения колонки строки в слот набора параметров без упаковки
+	 * числовых значений.
+	 */
+	private static void copyValue(IRow row, int column, DataType type, ParamSet params, int slot) {
+		switch (type) {
+		case SHORT:
+		case INTEGER: {
+			int value = row.getInt(column);
+			if (row.wasNull()) {
+				params.setNull(slot, DataType.INTEGER);
+			} else {
+				params.setInt(slot, value);
+			}
+			break;
+		}
+
+		case LONG: {
+			long value = row.getLong(column);
+			if (row.wasNull()) {
+				params.setNull(slot, DataType.LONG);
+			} else {
+				params.setLong(slot, value);
+			}
+			break;
+		}
+
+		case FLOAT:
+		case DOUBLE: {
+			double value = row.getDouble(column);
+			if (row.wasNull()) {
+				params.setNull(slot, DataType.DOUBLE);
+			} else {
+				params.setDouble(slot, value);
+			}
+			break;
+		}
+
+		case CHAR: {
+			Object value = row.get(column);
+			params.set(slot, DataType.STRING, value == null ? null : value.toString());
+			break;
+		}
+
+		case LONGSTRING: {
+			Object value = row.get(column);
+			params.set(slot, DataType.LONGSTRING, value instanceof Clob ? readClob((Clob) value) : value);
+			break;
+		}
+
+		default:
+			params.set(slot, type, row.get(column));
+		}
+	}
+
+	/**
+	 * Чтение значения CLOB целиком в строку.
+	 */
+	static String readClob(Clob clob) {
+		try {
+			long length = clob.length();
+			if (length > Integer.MAX_VALUE) {
+				throw new UnsupportedOperationException(
+						MessageFormat.format("Слишком большое значение CLOB: {0}", length));
+			}
+			return clob.getSubString(1, (int) length);
+
+		} catch (SQLException e) {
+			throw new DataException(e);
+		}
+	}
+
+	/**
+	 * Примерный объем данных набора параметров.
+	 */
+	private static long estimateSize(ParamSet params) {
+		long size = 0;
+		for (int slot = 0; slot < params.size(); slot++) {
+			if (params.isLong(slot) || params.isDouble(slot)) {
+				size += 8;
+			} else if (params.isSet(slot) && !params.isNull(slot)) {
+				size += estimateSize(params.getValue(slot));
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Примерный объем одного значения.
+	 */
+	private static long estimateSize(Object value) {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof String) {
+			return 2L * ((String) value).length();
+		} else if (value instanceof BigDecimal) {
+			return 8 + ((BigDecimal) value).unscaledValue().bitLength() / 8;
+		} else {
+			return 8;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close() {
+		statement.close();
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.sql.Statement;
+import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Итог пакетного выполнения оператора методами {@link BulkExecutor}.
+ * 
+ * @author Q4S
+ * 
+ */
+public final class BulkResult {
+
+	private final long rowCount;
+
+	private final long batchCount;
+
+	private final long updateCount;
+
+	private final long unknownCount;
+
+	private final long failedCount;
+
+	private final long elapsedNanos;
+
+	BulkResult(long rowCount, long batchCount, long updateCount, long unknownCount, long failedCount,
+			long elapsedNanos) {
+		this.rowCount = rowCount;
+		this.batchCount = batchCount;
+		this.updateCount = updateCount;
+		this.unknownCount = unknownCount;
+		this.failedCount = failedCount;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * @return Число строк (наборов параметров), переданных в пакеты.
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return Число выполненных пакетов.
+	 */
+	public long getBatchCount() {
+		return batchCount;
+	}
+
+	/**
+	 * @return Суммарное число измененных записей по тем строкам, для которых
+	 *         драйвер его сообщил.
+	 */
+	public long getUpdateCount() {
+		return updateCount;
+	}
+
+	/**
+	 * @return Число строк, выполненных успешно, но без информации о числе
+	 *         измененных записей ({@link Statement#SUCCESS_NO_INFO}).
+	 */
+	public long getUnknownCount() {
+		return unknownCount;
+	}
+
+	/**
+	 * @return Число строк, которые драйвер пометил как невыполненные
+	 *         ({@link Statement#EXECUTE_FAILED}).
+	 */
+	public long getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * @return Общее время выполнения в наносекундах.
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return Общее время выполнения в миллисекундах.
+	 */
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+	}
+
+	/**
+	 * @return Средняя скорость обработки строк в секунду.
+	 */
+	public double getRowsPerSecond() {
+		return elapsedNanos == 0 ? 0 : rowCount * 1e9 / elapsedNanos;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return MessageFormat.format(
+				"rows={0,number,#}, batches={1,number,#}, updated={2,number,#}, unknown={3,number,#}, failed={4,number,#}, time={5,number,#} ms",
+				rowCount, batchCount, updateCount, unknownCount, failedCount, getElapsedMillis());
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import q4s.dafobi.exception.WrongIndexException;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Заранее найденная колонка таблицы данных. Имя колонки ищется один раз при
+ * получении описателя методом {@link IResultTable#getColumn(String)}, а затем
+ * значение можно читать из любой строки этой таблицы без поиска по имени:
+ * 
+ * <pre>
+ * ColumnHandle amount = table.getColumn("amount");
+ * for (IRow row : table.cursor()) {
+ * 	sum += amount.getDouble(row);
+ * }
+ * </pre>
+ * 
+ * Описатель годится только для строк той таблицы, из которой он получен
+ * (проверка этого не производится).
+ * 
+ * @author Q4S
+ * 
+ */
+public final class ColumnHandle {
+
+	private final int index;
+
+	private final String name;
+
+	private final DataType type;
+
+	ColumnHandle(int index, String name, DataType type) {
+		this.index = index;
+		this.name = name;
+		this.type = type;
+	}
+
+	/**
+	 * @return Индекс колонки.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return Имя колонки в нижнем регистре.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return Тип данных колонки.
+	 */
+	public DataType getType() {
+		return type;
+	}
+
+	/**
+	 * @see IRow#get(int)
+	 */
+	public Object get(IRow row) throws WrongIndexException {
+		return row.get(index);
+	}
+
+	/**
+	 * @see IRow#getString(int)
+	 */
+	public String getString(IRow row) throws WrongIndexException {
+		return row.getString(index);
+	}
+
+	/**
+	 * @see IRow#getInteger(int)
+	 */
+	public Long getInteger(IRow row) throws WrongIndexException {
+		return row.getInteger(index);
+	}
+
+	/**
+	 * @see IRow#getDecimal(int)
+	 */
+	public BigDecimal getDecimal(IRow row) throws WrongIndexException {
+		return row.getDecimal(index);
+	}
+
+	/**
+	 * @see IRow#getDate(int)
+	 */
+	public Date getDate(IRow row) throws WrongIndexException {
+		return row.getDate(index);
+	}
+
+	/**
+	 * @see IRow#getTime(int)
+	 */
+	public Time getTime(IRow row) throws WrongIndexException {
+		return row.getTime(index);
+	}
+
+	/**
+	 * @see IRow#getTimestamp(int)
+	 */
+	public Timestamp getTimestamp(IRow row) throws WrongIndexException {
+		return row.getTimestamp(index);
+	}
+
+	/**
+	 * @see IRow#getLong(int)
+	 */
+	public long getLong(IRow row) throws WrongIndexException {
+		return row.getLong(index);
+	}
+
+	/**
+	 * @see IRow#getInt(int)
+	 */
+	public int getInt(IRow row) throws WrongIndexException {
+		return row.getInt(index);
+	}
+
+	/**
+	 * @see IRow#getDouble(int)
+	 */
+	public double getDouble(IRow row) throws WrongIndexException {
+		return row.getDouble(index);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return name + "[" + index + "]: " + type;
+	}
+}
@@ -0,0 +1,864 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Значения одной колонки {@link ColumnarResultTable}, хранящиеся в массиве
+ * примитивного типа. Пустые значения отмечаются в битовой маске, которая
+ * создается только при появлении первого пустого значения.
+ * <p>
+ * Вид хранения выбирается по типу колонки, но значения, которые в нем нельзя
+ * сохранить без потерь (например, {@link Date}, не приходящуюся на полночь),
+ * не отвергаются: метод {@link #append(Object)} возвращает false, и таблица
+ * переводит колонку в более общий вид (см. {@link #fallback()}), в конечном
+ * счете - в универсальный вид {@link ObjectVector}.
+ * 
+ * @author Q4S
+ * 
+ */
+abstract class ColumnVector {
+
+	static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * Число значений.
+	 */
+	protected int size = 0;
+
+	/**
+	 * Битовая маска пустых значений или null, если их нет. Маска растет
+	 * только при добавлении пустых значений, поэтому может быть короче
+	 * колонки.
+	 */
+	private long[] nulls = null;
+
+	/**
+	 * Создание колонки для значений заданного типа.
+	 * 
+	 * @param type
+	 *            Тип колонки (может быть null).
+	 * 
+	 * @return Пустая колонка.
+	 */
+	static ColumnVector forType(DataType type) {
+		if (type == null) {
+			return new ObjectVector();
+		}
+		switch (type) {
+		case SHORT:
+		case INTEGER:
+		case LONG:
+			return new LongVector();
+		case FLOAT:
+		case DOUBLE:
+			return new DoubleVector();
+		case DECIMAL:
+			return new DecimalVector();
+		case DATE:
+			return new DateVector();
+		case TIME:
+			return new TimeVector();
+		case TIMESTAMP:
+			return new TimestampVector();
+		case STRING:
+		case CHAR:
+			return new DictionaryVector();
+		case LONGSTRING:
+			return new StringVector();
+		default:
+			return new ObjectVector();
+		}
+	}
+
+	/**
+	 * Добавление значения в конец колонки.
+	 * 
+	 * @param value
+	 *            Значение (может быть null).
+	 * 
+	 * @return false - если значение нельзя сохранить в этом виде колонки.
+	 *         Колонка в этом случае не меняется.
+	 */
+	final boolean append(Object value) {
+		if (value == null) {
+			int word = size >>> 6;
+			if (nulls == null) {
+				nulls = new long[Math.max(word + 1, INITIAL_CAPACITY >>> 6)];
+			} else if (word >= nulls.length) {
+				nulls = Arrays.copyOf(nulls, Math.max(word + 1, nulls.length * 2));
+			}
+			nulls[word] |= 1L << size;
+			appendNull();
+		} else if (!appendValue(value)) {
+			return false;
+		}
+		size++;
+		return true;
+	}
+
+	/**
+	 * Добавление места под пустое значение.
+	 */
+	protected abstract void appendNull();
+
+	/**
+	 * Добавление непустого значения.
+	 * 
+	 * @return false - если значение нельзя сохранить в этом виде колонки.
+	 */
+	protected abstract boolean appendValue(Object value);
+
+	/**
+	 * @return Новая емкость массива, вмещающая еще одно значение.
+	 */
+	protected final int grow(int capacity) {
+		if (size < capacity) {
+			return capacity;
+		}
+		return Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1));
+	}
+
+	/**
+	 * Завершение заполнения колонки.
+	 * 
+	 * @return Колонка в окончательном виде (эта же или ее копия в более
+	 *         подходящем виде).
+	 */
+	ColumnVector finish() {
+		trim();
+		return this;
+	}
+
+	/**
+	 * @return Копия колонки в более общем виде, способном хранить значение,
+	 *         отвергнутое методом {@link #append(Object)}.
+	 */
+	ColumnVector fallback() {
+		return toObjects();
+	}
+
+	/**
+	 * Освобождение незанятого места в массивах после заполнения колонки.
+	 */
+	void trim() {
+		if (nulls != null) {
+			nulls = Arrays.copyOf(nulls, (size + 63) >>> 6);
+		}
+	}
+
+	/**
+	 * @return Число значений.
+	 */
+	final int size() {
+		return size;
+	}
+
+	/**
+	 * @param row
+	 *            Номер строки.
+	 * 
+	 * @return true - если значение пустое.
+	 */
+	final boolean isNull(int row) {
+		int word = row >>> 6;
+		return nulls != null && word < nulls.length && (nulls[word] & (1L << row)) != 0;
+	}
+
+	/**
+	 * @param row
+	 *            Номер строки.
+	 * 
+	 * @return Значение или null.
+	 */
+	final Object get(int row) {
+		return isNull(row) ? null : value(row);
+	}
+
+	/**
+	 * @param row
+	 *            Номер непустого значения.
+	 * 
+	 * @return Значение.
+	 */
+	protected abstract Object value(int row);
+
+	/**
+	 * @param row
+	 *            Номер непустого числового значения.
+	 * 
+	 * @return Значение, приведенное к long.
+	 */
+	long getLong(int row) {
+		return ((Number) value(row)).longValue();
+	}
+
+	/**
+	 * @param row
+	 *            Номер непустого числового значения.
+	 * 
+	 * @return Значение, приведенное к int.
+	 */
+	int getInt(int row) {
+		return ((Number) value(row)).intValue();
+	}
+
+	/**
+	 * @param row
+	 *            Номер непустого числового значения.
+	 * 
+	 * @return Значение, приведенное к double.
+	 */
+	double getDouble(int row) {
+		return ((Number) value(row)).doubleValue();
+	}
+
+	/**
+	 * Поиск строк с заданным значением.
+	 * 
+	 * @param value
+	 *            Значение (может быть null).
+	 * 
+	 * @return Номера строк, значение в которых равно заданному.
+	 */
+	BitSet equalTo(Object value) {
+		BitSet rows = new BitSet(size);
+		for (int row = 0; row < size; row++) {
+			if (value == null ? isNull(row) : !isNull(row) && value.equals(value(row))) {
+				rows.set(row);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Группировка строк по значению.
+	 * 
+	 * @return Номера строк (по возрастанию) для каждого значения колонки, в
+	 *         том числе для null, если есть пустые значения, в порядке первого
+	 *         появления значений.
+	 */
+	Map<Object, int[]> groupBy() {
+		Map<Object, Integer> groups = new HashMap<Object, Integer>();
+		List<Object> keys = new ArrayList<Object>();
+		int[] rowGroups = new int[size];
+		for (int row = 0; row < size; row++) {
+			Object value = get(row);
+			Integer group = groups.get(value);
+			if (group == null) {
+				group = keys.size();
+				groups.put(value, group);
+				keys.add(value);
+			}
+			rowGroups[row] = group;
+		}
+		return group(rowGroups, keys.toArray());
+	}
+
+	/**
+	 * Раскладка строк по группам.
+	 * 
+	 * @param rowGroups
+	 *            Номер группы каждой строки.
+	 * 
+	 * @param keys
+	 *            Значения групп по номерам.
+	 * 
+	 * @return Номера строк каждой группы в порядке номеров групп.
+	 */
+	static Map<Object, int[]> group(int[] rowGroups, Object[] keys) {
+		int[][] rows = new int[keys.length][];
+		int[] counts = new int[keys.length];
+		for (int group : rowGroups) {
+			counts[group]++;
+		}
+		for (int group = 0; group < keys.length; group++) {
+			rows[group] = new int[counts[group]];
+			counts[group] = 0;
+		}
+		for (int row = 0; row < rowGroups.length; row++) {
+			int group = rowGroups[row];
+			rows[group][counts[group]++] = row;
+		}
+
+		Map<Object, int[]> result = new LinkedHashMap<Object, int[]>(keys.length * 2);
+		for (int group = 0; group < keys.length; group++) {
+			result.put(keys[group], rows[group]);
+		}
+		return result;
+	}
+
+	/**
+	 * @return Оценка памяти, занимаемой колонкой, в байтах.
+	 */
+	long memorySize() {
+		return 16 + (nulls == null ? 0 : 16 + 8L * nulls.length) + dataSize();
+	}
+
+	/**
+	 * @return Оценка памяти, занимаемой значениями, в байтах.
+	 */
+	protected abstract long dataSize();
+
+	/**
+	 * @return Копия колонки в универсальном виде.
+	 */
+	final ColumnVector toObjects() {
+		ObjectVector vector = new ObjectVector();
+		for (int row = 0; row < size; row++) {
+			vector.append(get(row));
+		}
+		return vector;
+	}
+
+	/**
+	 * Значения произвольных типов.
+	 */
+	static final class ObjectVector extends ColumnVector {
+
+		private Object[] values = new Object[0];
+
+		@Override
+		protected void appendNull() {
+			appendValue(null);
+		}
+
+		@Override
+		protected boolean appendValue(Object value) {
+			values = size < values.length ? values : Arrays.copyOf(values, grow(values.length));
+			values[size] = value;
+			return true;
+		}
+
+		@Override
+		protected Object value(int row) {
+			return values[row];
+		}
+
+		@Override
+		void trim() {
+			super.trim();
+			values = Arrays.copyOf(values, size);
+		}
+
+		@Override
+		protected long dataSize() {
+			long total = 16 + 4L * values.length;
+			for (int row = 0; row < size; row++) {
+				total += SpillingResultTable.estimate(values[row], null);
+			}
+			return total;
+		}
+	}
+
+	/**
+	 * Целые числа ({@link Long}; {@link Integer} приводится к {@link Long},
+	 * как и в {@link RowImpl}).
+	 */
+	static final class LongVector extends ColumnVector {
+
+		private long[] values = new long[0];
+
+		@Override
+		protected void appendNull() {
+			values = size < values.length ? values : Arrays.copyOf(values, grow(values.length));
+		}
+
+		@Override
+		protected boolean appendValue(Object value) {
+			if (!(value instanceof Long || value instanceof Integer)) {
+				return false;
+			}
+			appendNull();
+			values[size] = ((Number) value).longValue();
+			return true;
+		}
+
+		@Override
+		protected Object value(int row) {
+			return Long.valueOf(values[row]);
+		}
+
+		@Override
+		long getLong(int row) {
+			return values[row];
+		}
+
+		@Override
+		int getInt(int row) {
+			return (int) values[row];
+		}
+
+		@Override
+		double getDouble(int row) {
+			return values[row];
+		}
+
+		@Override
+		void trim() {
+			super.trim();
+			values = Arrays.copyOf(values, size);
+		}
+
+		@Override
+		protected long dataSize() {
+			return 16 + 8L * values.length;
+		}
+	}
+
+	/**
+	 * Числа {@link Double}.
+	 */
+	static final class DoubleVector extends ColumnVector {
+
+		private double[] values = new double[0];
+
+		@Override
+		protected void appendNull() {
+			values = size < values.length ? values : Arrays.copyOf(values, grow(values.length));
+		}
+
+		@Override
+		protected boolean appendValue(Object value) {
+			if (!(value instanceof Double)) {
+				return false;
+			}
+			appendNull();
+			values[size] = (Double) value;
+			return true;
+		}
+
+		@Override
+		protected Object value(int row) {
+			return Double.valueOf(values[row]);
+		}
+
+		@Override
+		long getLong(int row) {
+			return (long) values[row];
+		}
+
+		@Override
+		int getInt(int row) {
+			return (int) values[row];
+		}
+
+		@Override
+		double getDouble(int row) {
+			return values[row];
+		}
+
+		@Override
+		void trim() {
+			super.trim();
+			values = Arrays.copyOf(values, size);
+		}
+
+		@Override
+		protected long dataSize() {
+			return 16 + 8L * values.length;
+		}
+	}
+
+	/**
+	 * Числа {@link BigDecimal}, мантисса которых помещается в long, а порядок
+	 * - в short. Хранятся как мантисса и порядок, так что значение
+	 * восстанавливается вместе с порядком.
+	 */
+	static final class DecimalVector extends ColumnVector {
+
+		private long[] unscaled = new long[0];
+
+		private short[] scales = new short[0];
+
+		@Override
+		protected void appendNull() {
+			if (size == unscaled.length) {
+				int capacity = grow(unscaled.length);
+				unscaled = Arrays.copyOf(unscaled, capacity);
+				scales = Arrays.copyOf(scales, capacity);
+			}
+		}
+
+		@Override
+		protected boolean appendValue(Object value) {
+			if (value.getClass() != BigDecimal.class) {
+				return false;
+			}
+			BigDecimal decimal = (BigDecimal) value;
+			if (decimal.unscaledValue().bitLength() > 63 || decimal.scale() != (short) decimal.scale()) {
+				return false;
+			}
+			appendNull();
+			unscaled[size] = decimal.unscaledValue().longValue();
+			scales[size] = (short) decimal.scale();
+			return true;
+		}
+
+		@Override
+		protected Object value(int row) {
+			return BigDecimal.valueOf(unscaled[row], scales[row]);
+		}
+
+		@Override
+		void trim() {
+			super.trim();
+			unscaled = Arrays.copyOf(unscaled, size);
+			scales = Arrays.copyOf(scales, size);
+		}
+
+		@Override
+		protected long dataSize() {
+			return 32 + 10L * unscaled.length;
+		}
+	}
+
+	/**
+	 * Даты {@link Date}, приходящиеся на полночь по местному времени (так их
+	 * возвращает JDBC). Хранятся как число дней от 1970-01-01.
+	 */
+	static final class DateVector extends ColumnVector {
+
+		private int[] days = new int[0];
+
+		@Override
+		protected void appendNull() {
+			days = size < days.length ? days : Arrays.copyOf(days, grow(days.length));
+		}
+
+		@Override
+		protected boolean appendValue(Object value) {
+			if (value.getClass() != Date.class) {
+				return false;
+			}
+			LocalDate date = ((Date) value).toLocalDate();
+			if (Date.valueOf(date).getTime() != ((Date) value).getTime()) {
+				return false;
+			}
+			appendNull();
+			days[size] = (int) date.toEpochDay();
+			return true;
+		}
+
+		@Override
+		protected Object value(int row) {
+			return Date.valueOf(LocalDate.ofEpochDay(days[row]));
+		}
+
+		@Override
+		void trim() {
+			super.trim();
+			days = Arrays.copyOf(days, size);
+		}
+
+		@Override
+		protected long dataSize() {
+			return 16 + 4L * days.length;
+		}
+	}
+
+	/**
+	 * Время {@link Time}. Хранится в миллисекундах.
+	 */
+	static final class TimeVector extends ColumnVector {
+
+		private long[] millis = new long[0];
+
+		@Override
+		protected void appendNull() {
+			millis = size < millis.length ? millis : Arrays.copyOf(millis, grow(millis.length));
+		}
+
+		@Override
+		protected boolean appendValue(Object value) {
+			if (value.getClass() != Time.class) {
+				return false;
+			}
+			appendNull();
+			millis[size] = ((Time) value).getTime();
+			return true;
+		}
+
+		@Override
+		protected Object value(int row) {
+			return new Time(millis[row]);
+		}
+
+		@Override
+		void trim() {
+			super.trim();
+			millis = Arrays.copyOf(millis, size);
+		}
+
+		@Override
+		protected long dataSize() {
+			return 16 + 8L * millis.length;
+		}
+	}
+
+	/**
+	 * Моменты времени {@link Timestamp}. Хранятся в миллисекундах и
+	 * наносекундах.
+	 */
+	static final class TimestampVector extends ColumnVector {
+
+		private long[] millis = new long[0];
+
+		private int[] nanos = new int[0];
+
+		@Override
+		protected void appendNull() {
+			if (size == millis.length) {
+				int capacity = grow(millis.length);
+				millis = Arrays.copyOf(millis, capacity);
+				nanos = Arrays.copyOf(nanos, capacity);
+			}
+		}
+
+		@Override
+		protected boolean appendValue(Object value) {
+			if (value.getClass() != Timestamp.class) {
+				return false;
+			}
+			appendNull();
+			millis[size] = ((Timestamp) value).getTime();
+			nanos[size] = ((Timestamp) value).getNanos();
+			return true;
+		}
+
+		@Override
+		protected Object value(int row) {
+			Timestamp value = new Timestamp(millis[row]);
+			value.setNanos(nanos[row]);
+			return value;
+		}
+
+		@Override
+		void trim() {
+			super.trim();
+			millis = Arrays.copyOf(millis, size);
+			nanos = Arrays.copyOf(nanos, size);
+		}
+
+		@Override
+		protected long dataSize() {
+			return 32 + 12L * millis.length;
+		}
+	}
+
+	/**
+	 * Строки. Символы всех строк хранятся подряд в одном массиве, а для
+	 * каждой строки - смещение ее конца.
+	 */
+	static final class StringVector extends ColumnVector {
+
+		private char[] chars = new char[0];
+
+		/**
+		 * Смещение конца каждой строки в {@link #chars}.
+		 */
+		private int[] ends = new int[0];
+
+		private int length = 0;
+
+		@Override
+		protected void appendNull() {
+			ends = size < ends.length ? ends : Arrays.copyOf(ends, grow(ends.length));
+			ends[size] = length;
+		}
+
+		@Override
+		protected boolean appendValue(Object value) {
+			if (!(value instanceof String)) {
+				return false;
+			}
+			String string = (String) value;
+			int end = length + string.length();
+			if (end < 0) {
+				// Символы колонки не помещаются в один массив.
+				return false;
+			}
+			if (end > chars.length) {
+				long capacity = Math.max(end, Math.max(INITIAL_CAPACITY, chars.length + (long) (chars.length >> 1)));
+				chars = Arrays.copyOf(chars, (int) Math.min(capacity, Integer.MAX_VALUE - 8));
+				if (end > chars.length) {
+					return false;
+				}
+			}
+			string.getChars(0, string.length(), chars, length);
+			length = end;
+			appendNull();
+			return true;
+		}
+
+		@Override
+		protected Object value(int row) {
+			int start = row == 0 ? 0 : ends[row - 1];
+			return new String(chars, start, ends[row] - start);
+		}
+
+		@Override
+		void trim() {
+			super.trim();
+			chars = Arrays.copyOf(chars, length);
+			ends = Arrays.copyOf(ends, size);
+		}
+
+		@Override
+		protected long dataSize() {
+			return 32 + 2L * chars.length + 4L * ends.length;
+		}
+	}
+
+	/**
+	 * Значения колонки с малым числом различных значений: коды в словаре
+	 * {@link ValueDictionary}. Сравнение и группировка выполняются по кодам,
+	 * без обращения к самим значениям. Если различных значений оказывается
+	 * слишком много, колонка переводится в вид {@link StringVector}.
+	 */
+	static final class DictionaryVector extends ColumnVector {
+
+		private final ValueDictionary dictionary = new ValueDictionary(ValueDictionary.DEFAULT_MAX_SIZE);
+
+		/**
+		 * Коды значений; -1 - пустое значение.
+		 */
+		private int[] codes = new int[0];
+
+		@Override
+		protected void appendNull() {
+			codes = size < codes.length ? codes : Arrays.copyOf(codes, grow(codes.length));
+			codes[size] = -1;
+		}
+
+		@Override
+		protected boolean appendValue(Object value) {
+			if (!(value instanceof String || value instanceof Character)) {
+				return false;
+			}
+			int code = dictionary.encode(value);
+			if (code < 0) {
+				return false;
+			}
+			appendNull();
+			codes[size] = code;
+			return true;
+		}
+
+		@Override
+		protected Object value(int row) {
+			return dictionary.decode(codes[row]);
+		}
+
+		/**
+		 * Словарь, в котором различных значений больше половины числа строк,
+		 * памяти не экономит.
+		 */
+		@Override
+		ColumnVector finish() {
+			if (size > 0 && dictionary.size() * 2 > size) {
+				return fallback().finish();
+			}
+			return super.finish();
+		}
+
+		/**
+		 * Строковые значения переводятся в вид {@link StringVector}, иначе -
+		 * в универсальный.
+		 */
+		@Override
+		ColumnVector fallback() {
+			StringVector vector = new StringVector();
+			for (int row = 0; row < size; row++) {
+				if (!vector.append(get(row))) {
+					return toObjects();
+				}
+			}
+			return vector;
+		}
+
+		@Override
+		BitSet equalTo(Object value) {
+			if (value == null) {
+				return super.equalTo(null);
+			}
+			BitSet rows = new BitSet(size);
+			int code = dictionary.find(value);
+			if (code >= 0) {
+				for (int row = 0; row < size; row++) {
+					if (codes[row] == code) {
+						rows.set(row);
+					}
+				}
+			}
+			return rows;
+		}
+
+		/**
+		 * Коды уже являются номерами групп в порядке первого появления
+		 * значений; пустым значениям отводится группа после всех кодов.
+		 */
+		@Override
+		Map<Object, int[]> groupBy() {
+			int nullGroup = dictionary.size();
+			boolean hasNulls = false;
+			int[] rowGroups = new int[size];
+			for (int row = 0; row < size; row++) {
+				int code = codes[row];
+				if (code < 0) {
+					hasNulls = true;
+					rowGroups[row] = nullGroup;
+				} else {
+					rowGroups[row] = code;
+				}
+			}
+
+			Object[] keys = new Object[hasNulls ? nullGroup + 1 : nullGroup];
+			for (int code = 0; code < nullGroup; code++) {
+				keys[code] = dictionary.decode(code);
+			}
+			return group(rowGroups, keys);
+		}
+
+		@Override
+		void trim() {
+			super.trim();
+			codes = Arrays.copyOf(codes, size);
+		}
+
+		@Override
+		protected long dataSize() {
+			return 16 + 4L * codes.length + dictionary.memorySize();
+		}
+	}
+}
@@ -0,0 +1,402 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.sql.Clob;
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import q4s.dafobi.exception.WrongIndexException;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Неизменяемая таблица данных в памяти, хранящая значения по колонкам.
+ * Каждая колонка - это массив примитивного типа, выбранного по типу колонки:
+ * long[] для целых чисел, double[] для чисел с плавающей точкой, мантисса и
+ * порядок для {@link java.math.BigDecimal}, число дней для дат, один общий
+ * массив символов со смещениями для строк (см. {@link ColumnVector}). Пустые
+ * значения отмечаются битовой маской. Колонки STRING и CHAR с малым числом
+ * различных значений хранятся как коды в словаре (см.
+ * {@link ValueDictionary}); поиск по значению {@link #filterEquals(int, Object)}
+ * и группировка {@link #groupBy(int)} для них работают с кодами. В отличие от {@link MemoryResultTable},
+ * где на каждую строку приходится отдельный объект с массивом объектов
+ * значений, здесь объекты не создаются вовсе, поэтому таблица занимает в
+ * несколько раз меньше памяти.
+ * <p>
+ * Строки таблицы - это легкие представления, создаваемые при обращении:
+ * значения объектных типов ({@link String}, {@link java.sql.Date} и т.п.)
+ * создаются при каждом чтении, а примитивные методы {@link IRow#getLong(int)},
+ * {@link IRow#getDouble(int)} работают без создания объектов. Для обработки
+ * колонок целиком есть методы {@link #getLongs(int)},
+ * {@link #getDoubles(int)} и {@link #getNulls(int)}.
+ * <p>
+ * Таблица не зависит ни от оператора, ни от подключения, поэтому ее можно
+ * передавать между потоками и использовать после возврата подключения в пул.
+ * Значения CLOB при копировании читаются в строки.
+ * 
+ * @author Q4S
+ * 
+ */
+public final class ColumnarResultTable extends AbstractResultTable {
+
+	private final ColumnVector[] columns;
+
+	private final int rowCount;
+
+	/**
+	 * Все строки таблицы по порядку.
+	 */
+	private final List<IRow> rows = new AbstractList<IRow>() {
+
+		@Override
+		public IRow get(int index) {
+			return getRow(index);
+		}
+
+		@Override
+		public int size() {
+			return rowCount;
+		}
+	};
+
+	private ColumnarResultTable(IResultTable source) {
+		super(null);
+		for (int i = 0; i < source.count(); i++) {
+			addColumnInfo(source.getColumnName(i), source.getColumnType(i));
+		}
+		protect();
+
+		columns = new ColumnVector[count()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = ColumnVector.forType(getColumnType(i));
+		}
+
+		int count = 0;
+		for (IRow row : source.cursor()) {
+			for (int i = 0; i < columns.length; i++) {
+				Object value = row.get(i);
+				if (value instanceof Clob) {
+					value = BulkExecutor.readClob((Clob) value);
+				}
+				while (!columns[i].append(value)) {
+					// Значение не подходит для вида колонки, выбранного по
+					// типу.
+					columns[i] = columns[i].fallback();
+				}
+			}
+			count++;
+		}
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = columns[i].finish();
+		}
+		this.rowCount = count;
+	}
+
+	/**
+	 * Копирование всех строк таблицы в память по колонкам. Исходная таблица
+	 * не закрывается.
+	 * 
+	 * @param source
+	 *            Исходная таблица.
+	 * 
+	 * @return Копия таблицы.
+	 */
+	public static ColumnarResultTable copyOf(IResultTable source) {
+		if (source instanceof ColumnarResultTable) {
+			return (ColumnarResultTable) source;
+		}
+		return new ColumnarResultTable(source);
+	}
+
+	/**
+	 * @return Число строк таблицы.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @param index
+	 *            Номер строки (начиная с 0).
+	 * 
+	 * @return Строка таблицы.
+	 */
+	public IRow getRow(int index) {
+		if (index < 0 || index >= rowCount) {
+			throw new IndexOutOfBoundsException("Номер строки вне таблицы: " + index);
+		}
+		return new Row(index);
+	}
+
+	/**
+	 * @param row
+	 *            Номер строки.
+	 * 
+	 * @param column
+	 *            Номер колонки.
+	 * 
+	 * @return true - если значение пустое.
+	 */
+	public boolean isNull(int row, int column) {
+		return columns[column].isNull(row);
+	}
+
+	/**
+	 * @param column
+	 *            Номер колонки.
+	 * 
+	 * @return Номера строк с пустыми значениями в колонке.
+	 */
+	public BitSet getNulls(int column) {
+		ColumnVector vector = columns[column];
+		BitSet nulls = new BitSet(rowCount);
+		for (int row = 0; row < rowCount; row++) {
+			if (vector.isNull(row)) {
+				nulls.set(row);
+			}
+		}
+		return nulls;
+	}
+
+	/**
+	 * Значения числовой колонки в виде массива. Пустые значения заменяются
+	 * нулями (см. {@link #getNulls(int)}).
+	 * 
+	 * @param column
+	 *            Номер колонки.
+	 * 
+	 * @return Новый массив значений длиной {@link #getRowCount()}.
+	 * 
+	 * @throws ClassCastException
+	 *             Если колонка не числовая.
+	 */
+	public long[] getLongs(int column) {
+		ColumnVector vector = columns[column];
+		long[] values = new long[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			values[row] = vector.isNull(row) ? 0 : vector.getLong(row);
+		}
+		return values;
+	}
+
+	/**
+	 * Значения числовой колонки в виде массива. Пустые значения заменяются
+	 * нулями (см. {@link #getNulls(int)}).
+	 * 
+	 * @param column
+	 *            Номер колонки.
+	 * 
+	 * @return Новый массив значений длиной {@link #getRowCount()}.
+	 * 
+	 * @throws ClassCastException
+	 *             Если колонка не числовая.
+	 */
+	public double[] getDoubles(int column) {
+		ColumnVector vector = columns[column];
+		double[] values = new double[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			values[row] = vector.isNull(row) ? 0 : vector.getDouble(row);
+		}
+		return values;
+	}
+
+	/**
+	 * @param column
+	 *            Номер колонки.
+	 * 
+	 * @return Новый массив значений колонки длиной {@link #getRowCount()}.
+	 */
+	public Object[] getValues(int column) {
+		ColumnVector vector = columns[column];
+		Object[] values = new Object[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			values[row] = vector.get(row);
+		}
+		return values;
+	}
+
+	/**
+	 * Поиск строк, в которых значение колонки равно заданному. Для колонок,
+	 * хранящихся в словаре, значение ищется в словаре один раз, а строки
+	 * сравниваются по кодам.
+	 * 
+	 * @param column
+	 *            Номер колонки.
+	 * 
+	 * @param value
+	 *            Значение (может быть null). Integer приводится к Long, как и
+	 *            в строках таблицы.
+	 * 
+	 * @return Номера найденных строк.
+	 */
+	public BitSet filterEquals(int column, Object value) {
+		return columns[column].equalTo(RowImpl.convertValue(value));
+	}
+
+	/**
+	 * Группировка строк по значению колонки. Для колонок, хранящихся в
+	 * словаре, строки раскладываются по кодам за один проход.
+	 * 
+	 * @param column
+	 *            Номер колонки.
+	 * 
+	 * @return Номера строк (по возрастанию) для каждого значения колонки, в
+	 *         том числе для null, если есть пустые значения. Группы идут в
+	 *         порядке первого появления значений, но группа пустых значений
+	 *         колонки со словарем всегда последняя.
+	 */
+	public Map<Object, int[]> groupBy(int column) {
+		return columns[column].groupBy();
+	}
+
+	/**
+	 * @param column
+	 *            Номер колонки.
+	 * 
+	 * @return true - если значения колонки хранятся как коды в словаре.
+	 */
+	public boolean isDictionaryEncoded(int column) {
+		return columns[column] instanceof ColumnVector.DictionaryVector;
+	}
+
+	/**
+	 * @return Оценка памяти, занимаемой значениями таблицы, в байтах.
+	 */
+	public long getMemorySize() {
+		long total = 16 + 4L * columns.length;
+		for (ColumnVector column : columns) {
+			total += column.memorySize();
+		}
+		return total;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<IRow> iterator() {
+		return rows.iterator();
+	}
+
+	/**
+	 * Таблице в памяти нечего освобождать, поэтому метод ничего не делает, и
+	 * таблицей можно пользоваться и после закрытия.
+	 */
+	@Override
+	public void close() {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IResultTable#isClosed()
+	 */
+	@Override
+	public boolean isClosed() {
+		return false;
+	}
+
+	/**
+	 * Строка таблицы - представление значений колонок с заданным номером
+	 * строки.
+	 */
+	private final class Row extends AbstractRow {
+
+		private final int index;
+
+		Row(int index) {
+			super(ColumnarResultTable.this);
+			this.index = index;
+		}
+
+		private ColumnVector column(int columnNum) {
+			if (columnNum < 0 || columnNum >= columns.length) {
+				throw new WrongIndexException();
+			}
+			return columns[columnNum];
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see q4s.dafobi.data.IRow#get(int)
+		 */
+		@Override
+		public Object get(int columnNum) throws WrongIndexException {
+			Object value = column(columnNum).get(index);
+			setWasNull(value == null);
+			return value;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see q4s.dafobi.data.AbstractRow#getLong(int)
+		 */
+		@Override
+		public long getLong(int columnNum) throws WrongIndexException {
+			ColumnVector column = column(columnNum);
+			boolean isNull = column.isNull(index);
+			setWasNull(isNull);
+			return isNull ? 0L : column.getLong(index);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see q4s.dafobi.data.AbstractRow#getInt(int)
+		 */
+		@Override
+		public int getInt(int columnNum) throws WrongIndexException {
+			ColumnVector column = column(columnNum);
+			boolean isNull = column.isNull(index);
+			setWasNull(isNull);
+			return isNull ? 0 : column.getInt(index);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see q4s.dafobi.data.AbstractRow#getDouble(int)
+		 */
+		@Override
+		public double getDouble(int columnNum) throws WrongIndexException {
+			ColumnVector column = column(columnNum);
+			boolean isNull = column.isNull(index);
+			setWasNull(isNull);
+			return isNull ? 0d : column.getDouble(index);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see q4s.dafobi.data.IRow#detach()
+		 */
+		@Override
+		public IRow detach() {
+			// Строка и так неизменяема.
+			return this;
+		}
+	}
+}
@@ -18,6 +18,8 @@
  */
 package q4s.dafobi.data;
 
+import java.io.Reader;
+import java.nio.file.Path;
 import java.util.Map;
 
 import q4s.dafobi.common.DataParam;
@@ -104,6 +106,48 @@ public interface IConnection extends AutoCloseable {
 	 */
 	public int[] executeScript(final String script, final Map<String, DataParam> parameters);
 
+	/**
+	 * Потоковое выполнение скрипта: операторы выполняются по мере чтения (см.
+	 * {@link ScriptReader}), так что в памяти находится только текст текущего
+	 * оператора. Подходит для скриптов любого размера.
+	 * 
+	 * @see #executeScript(String, Map)
+	 * 
+	 * @param script
+	 *            Источник текста скрипта. Закрывается по окончании
+	 *            выполнения.
+	 * 
+	 * @param parameters
+	 *            Значения параметров, с которыми будут выполняться все
+	 *            операторы.
+	 * 
+	 * @return Итог выполнения: число операторов и суммарное количество
+	 *         затронутых ими строк.
+	 * 
+	 * @throws DataException
+	 *             if an error occurred
+	 */
+	public BulkResult executeScript(final Reader script, final Map<String, DataParam> parameters);
+
+	/**
+	 * Потоковое выполнение скрипта из файла в кодировке UTF-8.
+	 * 
+	 * @see #executeScript(Reader, Map)
+	 * 
+	 * @param script
+	 *            Путь к файлу скрипта.
+	 * 
+	 * @param parameters
+	 *            Значения параметров, с которыми будут выполняться все
+	 *            операторы.
+	 * 
+	 * @return Итог выполнения.
+	 * 
+	 * @throws DataException
+	 *             if an error occurred
+	 */
+	public BulkResult executeScript(final Path script, final Map<String, DataParam> parameters);
+
 	/**
 	 * Сокращенная версия кода:
 	 * 
@@ -156,6 +200,27 @@ public interface IConnection extends AutoCloseable {
 	 */
 	public IRow queryRow(final String statement, final Map<String, DataParam> parameters);
 
+	/**
+	 * То же, что {@link #queryRow(String, Map)}, но с возможностью проверить,
+	 * что запрос вернул ровно одну строку (см.
+	 * {@link IStatement#queryRow(boolean)}).
+	 * 
+	 * @param statement
+	 *            Текст оператора, который надо будет выполнить.
+	 * 
+	 * @param parameters
+	 *            Значения параметров, с которыми выполняется запрос.
+	 * 
+	 * @param exactlyOne
+	 *            true - запрос должен вернуть ровно одну строку.
+	 * 
+	 * @return Первая строка, которую вернул запрос, или null.
+	 * 
+	 * @throws DataException
+	 *             if an error occurred
+	 */
+	public IRow queryRow(final String statement, final Map<String, DataParam> parameters, boolean exactlyOne);
+
 	/**
 	 * @param flag
 	 *            true - приводит к тому, что commit будет делаться после
@@ -18,6 +18,8 @@
  */
 package q4s.dafobi.data;
 
+import java.util.stream.Stream;
+
 import q4s.dafobi.jaxb.common.DataType;
 
 public interface IResultTable extends Iterable<IRow>, AutoCloseable {
@@ -65,6 +67,18 @@ public interface IResultTable extends Iterable<IRow>, AutoCloseable {
 	 */
 	public int getColumnIndex(String name);
 
+	/**
+	 * Возвращает описатель колонки по ее имени. Имя ищется один раз, после
+	 * чего значение колонки можно читать из любой строки этой таблицы без
+	 * повторного поиска.
+	 * 
+	 * @param name
+	 *            Имя колонки (регистр не важен).
+	 * 
+	 * @return Описатель колонки.
+	 */
+	public ColumnHandle getColumn(String name);
+
 	/**
 	 * Возвращает тип данных колонки. 
 	 * 
@@ -73,4 +87,38 @@ public interface IResultTable extends Iterable<IRow>, AutoCloseable {
 	 * @return
 	 */
 	public DataType getColumnType(int index);
+
+	/**
+	 * Перебор строк в режиме курсора. В отличие от обычного итератора, который
+	 * для каждой строки создает отдельный объект со своей копией значений,
+	 * здесь на все строки выдается один и тот же объект {@link IRow}, который
+	 * читает значения прямо из текущей позиции источника данных. Поэтому
+	 * полученную строку нельзя сохранять и использовать после перехода к
+	 * следующей. Если строку все же надо сохранить, то следует получить ее
+	 * неизменяемую копию методом {@link IRow#detach()}.
+	 * <p>
+	 * Как и обычный итератор, курсор можно использовать только один раз.
+	 * 
+	 * @return Набор строк для использования в цикле for.
+	 */
+	public Iterable<IRow> cursor();
+
+	/**
+	 * Последовательный поток строк. Как и итератор, его можно получить только
+	 * один раз. Закрытие потока закрывает таблицу, поэтому поток удобно
+	 * использовать в блоке try-with-resources.
+	 * 
+	 * @return Поток строк в порядке их чтения.
+	 */
+	public Stream<IRow> stream();
+
+	/**
+	 * Параллельный поток строк. Строки по-прежнему читаются из источника
+	 * последовательно, порциями, а обработка порций распределяется между
+	 * потоками ForkJoin. Имеет смысл, когда обработка каждой строки заметно
+	 * дороже ее чтения. Закрытие потока закрывает таблицу.
+	 * 
+	 * @return Поток строк.
+	 */
+	public Stream<IRow> parallelStream();
 }
@@ -81,4 +81,72 @@ public interface IRow {
 
 	public Timestamp getTimestamp(String columnName) throws WrongIndexException;
 
+	/**
+	 * Получение целочисленного значения без упаковки в объект. Если значение
+	 * пустое, то возвращается 0, а метод {@link #wasNull()} вернет true.
+	 * 
+	 * @param columnNum
+	 *            Номер колонки
+	 * 
+	 * @return Значение колонки или 0.
+	 */
+	public long getLong(int columnNum) throws WrongIndexException;
+
+	/**
+	 * @see #getLong(int)
+	 */
+	public long getLong(String columnName) throws WrongIndexException;
+
+	/**
+	 * Получение целочисленного значения без упаковки в объект. Если значение
+	 * пустое, то возвращается 0, а метод {@link #wasNull()} вернет true.
+	 * 
+	 * @param columnNum
+	 *            Номер колонки
+	 * 
+	 * @return Значение колонки или 0.
+	 */
+	public int getInt(int columnNum) throws WrongIndexException;
+
+	/**
+	 * @see #getInt(int)
+	 */
+	public int getInt(String columnName) throws WrongIndexException;
+
+	/**
+	 * Получение числового значения без упаковки в объект. Если значение
+	 * пустое, то возвращается 0, а метод {@link #wasNull()} вернет true.
+	 * 
+	 * @param columnNum
+	 *            Номер колонки
+	 * 
+	 * @return Значение колонки или 0.
+	 */
+	public double getDouble(int columnNum) throws WrongIndexException;
+
+	/**
+	 * @see #getDouble(int)
+	 */
+	public double getDouble(String columnName) throws WrongIndexException;
+
+	/**
+	 * Аналог {@link java.sql.ResultSet#wasNull()}: позволяет отличить пустое
+	 * значение от нуля после вызова методов {@link #getLong(int)},
+	 * {@link #getInt(int)} и {@link #getDouble(int)}.
+	 * 
+	 * @return true - если последнее прочитанное из строки значение было
+	 *         пустым.
+	 */
+	public boolean wasNull();
+
+	/**
+	 * Получение неизменяемой копии строки. Нужно для строк, полученных в
+	 * режиме курсора (см. {@link IResultTable#cursor()}), которые меняют свое
+	 * содержимое при переходе к следующей строке.
+	 * 
+	 * @return Неизменяемая строка с теми же значениями. Если строка и так
+	 *         неизменяема, то возвращается она сама.
+	 */
+	public IRow detach();
+
 }
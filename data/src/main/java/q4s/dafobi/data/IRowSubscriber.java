@@ -0,0 +1,64 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+/**
+ * Получатель строк от {@link RowPublisher}. Повторяет контракт
+ * <tt>java.util.concurrent.Flow.Subscriber</tt>, но доступен и в Java 8.
+ * Методы вызываются последовательно, никогда одновременно: сначала
+ * {@link #onSubscribe(IRowSubscription)}, затем не больше строк, чем было
+ * запрошено через {@link IRowSubscription#request(long)}, и в конце один из
+ * методов {@link #onComplete()} или {@link #onError(Throwable)}.
+ * 
+ * @author Q4S
+ * 
+ */
+public interface IRowSubscriber {
+
+	/**
+	 * Начало подписки. Строки не передаются, пока получатель их не запросит.
+	 * 
+	 * @param subscription
+	 *            Подписка, через которую запрашиваются строки.
+	 */
+	public void onSubscribe(IRowSubscription subscription);
+
+	/**
+	 * Очередная строка результата. Строка не зависит от курсора, ее можно
+	 * сохранять.
+	 * 
+	 * @param row
+	 *            Строка.
+	 */
+	public void onNext(IRow row);
+
+	/**
+	 * Ошибка выполнения запроса или чтения строк. Курсор к этому моменту уже
+	 * закрыт.
+	 * 
+	 * @param error
+	 *            Ошибка.
+	 */
+	public void onError(Throwable error);
+
+	/**
+	 * Все строки переданы, курсор закрыт.
+	 */
+	public void onComplete();
+}
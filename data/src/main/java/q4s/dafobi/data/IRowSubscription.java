@@ -0,0 +1,47 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+/**
+ * Подписка на строки {@link RowPublisher}. Повторяет контракт
+ * <tt>java.util.concurrent.Flow.Subscription</tt>. Методы можно вызывать из
+ * любого потока, в том числе из методов получателя.
+ * 
+ * @author Q4S
+ * 
+ */
+public interface IRowSubscription {
+
+	/**
+	 * Запрос очередных строк. Запросы суммируются; {@link Long#MAX_VALUE}
+	 * означает "все строки".
+	 * 
+	 * @param n
+	 *            Число строк, которое получатель готов принять. Должно быть
+	 *            положительным, иначе подписка завершается с ошибкой
+	 *            {@link IllegalArgumentException}.
+	 */
+	public void request(long n);
+
+	/**
+	 * Отказ от получения строк. Курсор закрывается, получатель больше не
+	 * вызывается (кроме строки, передача которой уже началась).
+	 */
+	public void cancel();
+}
@@ -76,6 +76,55 @@ public interface IStatement extends AutoCloseable {
 	 */
 	public IResultTable query(final Map<String, DataParam> parameters);
 
+	/**
+	 * То же, что {@link #query(Map)}, но значения параметров берутся из
+	 * набора {@link ParamSet}. Все параметры оператора должны быть
+	 * установлены.
+	 * 
+	 * @param parameters
+	 *            Набор параметров, созданный методом {@link #createParamSet()}.
+	 * 
+	 * @return the query results
+	 * 
+	 * @throws DataException
+	 *             if an error occurred
+	 */
+	public IResultTable query(final ParamSet parameters);
+
+	/**
+	 * Выполнить запрос и вернуть только первую строку результата. Реализация
+	 * может ограничить выборку на стороне базы одной строкой (двумя - при
+	 * проверке единственности) и не создавать итераторов.
+	 * 
+	 * @param exactlyOne
+	 *            true - запрос должен вернуть ровно одну строку, иначе
+	 *            генерируется исключение с состоянием SQL 02000 (нет строк)
+	 *            или 21000 (больше одной строки).
+	 * 
+	 * @return Первая строка или null, если запрос не вернул строк.
+	 * 
+	 * @throws DataException
+	 *             if an error occurred
+	 */
+	public IRow queryRow(boolean exactlyOne);
+
+	/**
+	 * То же, что {@link #queryRow(boolean)}, но предварительно
+	 * устанавливаются значения параметров.
+	 * 
+	 * @param parameters
+	 *            Карта входных параметров.
+	 * 
+	 * @param exactlyOne
+	 *            true - запрос должен вернуть ровно одну строку.
+	 * 
+	 * @return Первая строка или null, если запрос не вернул строк.
+	 * 
+	 * @throws DataException
+	 *             if an error occurred
+	 */
+	public IRow queryRow(final Map<String, DataParam> parameters, boolean exactlyOne);
+
 	/**
 	 * Выполнить оператор, который не возвращает таблицу с данными. В случае
 	 * JDBC это могут быть DDL запросы или вызов процедуры, не возвращающей
@@ -129,6 +178,24 @@ public interface IStatement extends AutoCloseable {
 	 */
 	public int execute(final Map<String, DataParam> parameters);
 
+	/**
+	 * То же, что {@link #execute(Map)}, но значения параметров берутся из
+	 * набора {@link ParamSet}. Все параметры оператора должны быть
+	 * установлены. Значения выходных параметров после выполнения помещаются
+	 * обратно в набор.
+	 * 
+	 * @param parameters
+	 *            Набор параметров, созданный методом {@link #createParamSet()}.
+	 * 
+	 * @return either (1) the row count for SQL Data Manipulation Language (DML)
+	 *         statements or (2) 0 for statements that return nothing or
+	 *         procedures and functions.
+	 * 
+	 * @throws DataException
+	 *             if an error occurred
+	 */
+	public int execute(final ParamSet parameters);
+
 	/**
 	 * Adds the current set of parameters as a batch entry.
 	 * 
@@ -158,6 +225,19 @@ public interface IStatement extends AutoCloseable {
 	 */
 	public void addBatch(final Map<String, DataParam> parameters);
 
+	/**
+	 * То же, что {@link #addBatch(Map)}, но значения параметров берутся из
+	 * набора {@link ParamSet}. Все параметры оператора должны быть
+	 * установлены, иначе строка пакета получила бы значения от предыдущей.
+	 * 
+	 * @param parameters
+	 *            Набор параметров, созданный методом {@link #createParamSet()}.
+	 * 
+	 * @throws DataException
+	 *             if something went wrong
+	 */
+	public void addBatch(final ParamSet parameters);
+
 	/**
 	 * Executes all of the batched statements.
 	 * 
@@ -192,6 +272,63 @@ public interface IStatement extends AutoCloseable {
 	 */
 	public String[] getOutParamNames();
 
+	/**
+	 * Создание набора параметров, слоты которого соответствуют параметрам
+	 * данного оператора (см. {@link #getParamNames()}). Набор можно
+	 * использовать многократно и с другими операторами с тем же текстом.
+	 * 
+	 * @return Новый пустой набор параметров.
+	 */
+	public ParamSet createParamSet();
+
+	/**
+	 * Подсказка: сколько строк драйвер должен выбирать за одно обращение к
+	 * базе. Большое значение сокращает число обращений, малое - расход памяти.
+	 * Результаты запросов всегда однонаправленные и только для чтения, так
+	 * что драйвер может выдавать их потоком, не буферизуя целиком.
+	 * <p>
+	 * Подсказки действуют, пока оператор не закрыт.
+	 * 
+	 * @param rows
+	 *            Число строк или 0, чтобы его выбирал драйвер.
+	 */
+	public void setFetchSize(int rows);
+
+	/**
+	 * @return Число строк, выбираемых за одно обращение к базе, или 0.
+	 */
+	public int getFetchSize();
+
+	/**
+	 * Ограничение числа строк результата. Лишние строки драйвер отбрасывает
+	 * молча.
+	 * 
+	 * @param rows
+	 *            Максимальное число строк или 0 - без ограничения.
+	 */
+	public void setMaxRows(int rows);
+
+	/**
+	 * @return Максимальное число строк результата или 0.
+	 */
+	public int getMaxRows();
+
+	/**
+	 * Включает адаптивный подбор порции выборки: по мере чтения результата
+	 * размер порции подбирается так, чтобы строки одной порции занимали не
+	 * больше указанного объема памяти.
+	 * 
+	 * @param bytes
+	 *            Примерный объем памяти на порцию строк курсора или 0, чтобы
+	 *            выключить адаптивный подбор.
+	 */
+	public void setFetchMemory(long bytes);
+
+	/**
+	 * @return Объем памяти на порцию строк или 0.
+	 */
+	public long getFetchMemory();
+
 	/**
 	 * Sets a parameter.
 	 * 
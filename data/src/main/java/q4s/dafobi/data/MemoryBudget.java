@@ -0,0 +1,97 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничение памяти, которую могут занять таблицы
+ * {@link SpillingResultTable}. Один объект можно разделять между многими
+ * таблицами (например, сделать общим для всего приложения), тогда
+ * ограничение действует на их суммарный размер. Память, занятая таблицей,
+ * возвращается при ее закрытии.
+ * <p>
+ * Размеры оцениваются приблизительно (см.
+ * {@link SpillingResultTable#estimate(Object, q4s.dafobi.jaxb.common.DataType)}), поэтому
+ * ограничение задает порядок величины, а не точную границу.
+ * 
+ * @author Q4S
+ * 
+ */
+public final class MemoryBudget {
+
+	private final long limit;
+
+	private final AtomicLong used = new AtomicLong();
+
+	/**
+	 * @param limit
+	 *            Максимальный объем памяти в байтах.
+	 */
+	public MemoryBudget(long limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("Объем памяти не может быть отрицательным");
+		}
+		this.limit = limit;
+	}
+
+	/**
+	 * Резервирование памяти.
+	 * 
+	 * @param bytes
+	 *            Объем памяти в байтах.
+	 * 
+	 * @return false - если после резервирования ограничение было бы
+	 *         превышено. Память в этом случае не резервируется.
+	 */
+	public boolean reserve(long bytes) {
+		long current;
+		do {
+			current = used.get();
+			if (current + bytes > limit) {
+				return false;
+			}
+		} while (!used.compareAndSet(current, current + bytes));
+		return true;
+	}
+
+	/**
+	 * Возврат зарезервированной памяти.
+	 * 
+	 * @param bytes
+	 *            Объем памяти в байтах.
+	 */
+	public void release(long bytes) {
+		used.addAndGet(-bytes);
+	}
+
+	/**
+	 * @return Максимальный объем памяти в байтах.
+	 */
+	public long getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return Зарезервированный объем памяти в байтах.
+	 */
+	public long getUsed() {
+		return used.get();
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.sql.Clob;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import q4s.dafobi.exception.WrongIndexException;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Неизменяемая таблица данных, целиком хранящаяся в памяти. Такая таблица не
+ * зависит ни от оператора, ни от подключения, поэтому ее можно передавать
+ * между потоками и использовать после возврата подключения в пул. Метод
+ * {@link #getStatement()} у нее возвращает null.
+ * <p>
+ * Таблицу можно одновременно читать из нескольких потоков: при каждом
+ * обращении к строке создается свой легкий объект строки над общими
+ * значениями, так что признак {@link IRow#wasNull()} у каждого читающего
+ * свой.
+ * <p>
+ * Значения CLOB при копировании читаются в строки. Повторяющиеся значения
+ * колонок STRING и CHAR при копировании заменяются общими экземплярами (см.
+ * {@link ValueDictionary}).
+ * 
+ * @author Q4S
+ * 
+ */
+public final class MemoryResultTable extends AbstractResultTable {
+
+	/**
+	 * Значения строк. Массивы не изменяются и не выдаются наружу.
+	 */
+	private final List<Object[]> values;
+
+	/**
+	 * Все строки таблицы по порядку.
+	 */
+	private final List<IRow> rows = new AbstractList<IRow>() {
+
+		@Override
+		public IRow get(int index) {
+			return getRow(index);
+		}
+
+		@Override
+		public int size() {
+			return values.size();
+		}
+	};
+
+	private MemoryResultTable(IResultTable source) {
+		super(null);
+		for (int i = 0; i < source.count(); i++) {
+			addColumnInfo(source.getColumnName(i), source.getColumnType(i));
+		}
+		protect();
+
+		ValueDictionary[] dictionaries = new ValueDictionary[count()];
+		for (int i = 0; i < dictionaries.length; i++) {
+			dictionaries[i] = ValueDictionary.forType(getColumnType(i));
+		}
+
+		List<Object[]> list = new ArrayList<Object[]>();
+		for (IRow row : source.cursor()) {
+			Object[] values = new Object[count()];
+			for (int i = 0; i < values.length; i++) {
+				Object value = row.get(i);
+				values[i] = value instanceof Clob ? BulkExecutor.readClob((Clob) value) : value;
+				if (dictionaries[i] != null) {
+					values[i] = dictionaries[i].intern(values[i]);
+				}
+			}
+			list.add(values);
+		}
+		this.values = list;
+	}
+
+	private MemoryResultTable(String[] columnNames, DataType[] columnTypes, List<Object[]> values) {
+		super(null);
+		if (columnNames.length != columnTypes.length) {
+			throw new IllegalArgumentException("Число имен колонок не совпадает с числом типов");
+		}
+		for (int i = 0; i < columnNames.length; i++) {
+			addColumnInfo(columnNames[i], columnTypes[i]);
+		}
+		protect();
+
+		List<Object[]> list = new ArrayList<Object[]>(values.size());
+		for (Object[] row : values) {
+			if (row.length != columnNames.length) {
+				throw new IllegalArgumentException("Число значений в строке не совпадает с числом колонок");
+			}
+			Object[] copy = new Object[row.length];
+			for (int i = 0; i < copy.length; i++) {
+				copy[i] = RowImpl.convertValue(row[i]);
+			}
+			list.add(copy);
+		}
+		this.values = list;
+	}
+
+	/**
+	 * Копирование всех строк таблицы в память. Исходная таблица не
+	 * закрывается.
+	 * 
+	 * @param source
+	 *            Исходная таблица.
+	 * 
+	 * @return Копия таблицы.
+	 */
+	public static MemoryResultTable copyOf(IResultTable source) {
+		if (source instanceof MemoryResultTable) {
+			return (MemoryResultTable) source;
+		}
+		return new MemoryResultTable(source);
+	}
+
+	/**
+	 * Создание таблицы из готовых значений (например, прочитанных из файла).
+	 * 
+	 * @param columnNames
+	 *            Имена колонок.
+	 * 
+	 * @param columnTypes
+	 *            Типы колонок.
+	 * 
+	 * @param values
+	 *            Значения строк. Массивы копируются.
+	 * 
+	 * @return Таблица.
+	 */
+	public static MemoryResultTable of(String[] columnNames, DataType[] columnTypes, List<Object[]> values) {
+		return new MemoryResultTable(columnNames, columnTypes, values);
+	}
+
+	/**
+	 * @return Число строк таблицы.
+	 */
+	public int getRowCount() {
+		return values.size();
+	}
+
+	/**
+	 * @param index
+	 *            Номер строки (начиная с 0).
+	 * 
+	 * @return Строка таблицы. При каждом вызове создается новый объект
+	 *         строки.
+	 */
+	public IRow getRow(int index) {
+		return new Row(values.get(index));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<IRow> iterator() {
+		return rows.iterator();
+	}
+
+	/**
+	 * Таблице в памяти нечего освобождать, поэтому метод ничего не делает, и
+	 * таблицей можно пользоваться и после закрытия.
+	 */
+	@Override
+	public void close() {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IResultTable#isClosed()
+	 */
+	@Override
+	public boolean isClosed() {
+		return false;
+	}
+
+	/**
+	 * Строка таблицы: общие для всех читающих значения и собственный признак
+	 * {@link #wasNull()}.
+	 */
+	private final class Row extends AbstractRow {
+
+		private final Object[] values;
+
+		Row(Object[] values) {
+			super(MemoryResultTable.this);
+			this.values = values;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see q4s.dafobi.data.IRow#get(int)
+		 */
+		@Override
+		public Object get(int columnNum) throws WrongIndexException {
+			if (columnNum < 0 || columnNum >= values.length) {
+				throw new WrongIndexException();
+			}
+			Object value = values[columnNum];
+			setWasNull(value == null);
+			return value;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see q4s.dafobi.data.IRow#detach()
+		 */
+		@Override
+		public IRow detach() {
+			// Значения и так неизменяемы.
+			return this;
+		}
+	}
+}
@@ -0,0 +1,438 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Набор значений параметров оператора, альтернативный
+ * {@code Map<String, DataParam>}. Каждому параметру оператора соответствует
+ * слот с постоянным номером, который находится по имени один раз (методом
+ * {@link #slot(String)}), после чего значения устанавливаются по номеру без
+ * поиска и без создания объектов {@link DataParam}. Целые и дробные числа
+ * хранятся без упаковки в объекты.
+ * <p>
+ * Набор создается методом {@link IStatement#createParamSet()} и может
+ * использоваться многократно: для очередного выполнения или очередной строки
+ * пакета достаточно установить новые значения (или вызвать {@link #reset()}).
+ * 
+ * <pre>
+ * ParamSet params = statement.createParamSet();
+ * int id = params.slot("id");
+ * int name = params.slot("name");
+ * for (...) {
+ * 	params.setLong(id, ...);
+ * 	params.setString(name, ...);
+ * 	statement.addBatch(params);
+ * }
+ * statement.executeBatch();
+ * </pre>
+ * 
+ * Набор не рассчитан на одновременную работу из нескольких потоков.
+ * 
+ * @author Q4S
+ * 
+ */
+public final class ParamSet {
+
+	/**
+	 * Значение слота не установлено.
+	 */
+	private static final byte UNSET = 0;
+
+	/**
+	 * Установлено пустое значение.
+	 */
+	private static final byte NULL = 1;
+
+	/**
+	 * Значение хранится в массиве {@link #objects}.
+	 */
+	private static final byte OBJECT = 2;
+
+	/**
+	 * Значение хранится в массиве {@link #longs}.
+	 */
+	private static final byte LONG = 3;
+
+	/**
+	 * Значение хранится в массиве {@link #doubles}.
+	 */
+	private static final byte DOUBLE = 4;
+
+	private final String[] names;
+
+	private final Map<String, Integer> slots;
+
+	/**
+	 * Описание параметров, для которого был построен набор. Позволяет
+	 * оператору убедиться, что номера слотов совпадают с его собственными.
+	 */
+	private final Object layout;
+
+	private final byte[] states;
+
+	/**
+	 * Число неустановленных слотов.
+	 */
+	private int unset;
+
+	private final DataType[] types;
+
+	private final Object[] objects;
+
+	private final long[] longs;
+
+	private final double[] doubles;
+
+	/**
+	 * @see ParamSet
+	 * 
+	 * @param names
+	 *            Имена параметров в порядке слотов.
+	 */
+	public ParamSet(String[] names) {
+		this(names, null);
+	}
+
+	/**
+	 * @see ParamSet
+	 * 
+	 * @param names
+	 *            Имена параметров в порядке слотов.
+	 * 
+	 * @param layout
+	 *            Объект, описывающий параметры оператора, для которого
+	 *            строится набор (см. {@link #getLayout()}).
+	 */
+	public ParamSet(String[] names, Object layout) {
+		int count = names.length;
+		this.names = names.clone();
+		this.layout = layout;
+		this.slots = new HashMap<String, Integer>(count * 2);
+		for (int i = 0; i < count; i++) {
+			slots.putIfAbsent(names[i].toLowerCase(), i);
+		}
+		this.states = new byte[count];
+		this.unset = count;
+		this.types = new DataType[count];
+		this.objects = new Object[count];
+		this.longs = new long[count];
+		this.doubles = new double[count];
+	}
+
+	/**
+	 * @return Объект, описывающий параметры оператора, для которого был
+	 *         построен набор, или null. Если он совпадает с описанием
+	 *         параметров оператора, то оператор может устанавливать значения
+	 *         по номерам слотов, не обращаясь к именам.
+	 */
+	public Object getLayout() {
+		return layout;
+	}
+
+	/**
+	 * @return Число слотов.
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * Поиск номера слота по имени параметра.
+	 * 
+	 * @param name
+	 *            Имя параметра (регистр не важен).
+	 * 
+	 * @return Номер слота или -1, если такого параметра нет.
+	 */
+	public int slot(String name) {
+		Integer slot = slots.get(name);
+		if (slot == null) {
+			slot = slots.get(name.toLowerCase());
+			if (slot == null) {
+				return -1;
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @return Имя параметра.
+	 */
+	public String getName(int slot) {
+		return names[slot];
+	}
+
+	/**
+	 * @return true - если установлены значения всех слотов (в том числе
+	 *         пустые). Проверка не требует перебора слотов.
+	 */
+	public boolean isComplete() {
+		return unset == 0;
+	}
+
+	/**
+	 * Сброс всех значений. После сброса ни один слот не считается
+	 * установленным.
+	 */
+	public void reset() {
+		Arrays.fill(states, UNSET);
+		unset = states.length;
+		Arrays.fill(types, null);
+		Arrays.fill(objects, null);
+	}
+
+	/**
+	 * Установка значения в слот.
+	 * 
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @param type
+	 *            Тип данных.
+	 * 
+	 * @param value
+	 *            Значение класса {@link DataType#typeClass()} или null.
+	 */
+	public void set(int slot, DataType type, Object value) {
+		if (value != null && !type.typeClass().isInstance(value)) {
+			throw new IllegalArgumentException(MessageFormat.format("Класс {0} не может быть преобразован к типу {1}.",
+					value.getClass().getName(), type));
+		}
+		types[slot] = type;
+		objects[slot] = value;
+		mark(slot, value == null ? NULL : OBJECT);
+	}
+
+	/**
+	 * Установка значения в слот.
+	 * 
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @param param
+	 *            Значение вместе с типом.
+	 */
+	public void set(int slot, DataParam param) {
+		set(slot, param.getType(), param.getValue());
+	}
+
+	/**
+	 * Установка значения по имени параметра. Если такого параметра нет, то
+	 * значение игнорируется.
+	 * 
+	 * @param name
+	 *            Имя параметра.
+	 * 
+	 * @param type
+	 *            Тип данных.
+	 * 
+	 * @param value
+	 *            Значение или null.
+	 */
+	public void set(String name, DataType type, Object value) {
+		int slot = slot(name);
+		if (slot >= 0) {
+			set(slot, type, value);
+		}
+	}
+
+	/**
+	 * Установка пустого значения.
+	 * 
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @param type
+	 *            Тип данных.
+	 */
+	public void setNull(int slot, DataType type) {
+		types[slot] = type;
+		objects[slot] = null;
+		mark(slot, NULL);
+	}
+
+	/**
+	 * Установка значения типа {@link DataType#LONG} без упаковки.
+	 */
+	public void setLong(int slot, long value) {
+		setPrimitive(slot, DataType.LONG, value);
+	}
+
+	/**
+	 * Установка значения типа {@link DataType#INTEGER} без упаковки.
+	 */
+	public void setInt(int slot, int value) {
+		setPrimitive(slot, DataType.INTEGER, value);
+	}
+
+	/**
+	 * Установка значения типа {@link DataType#DOUBLE} без упаковки.
+	 */
+	public void setDouble(int slot, double value) {
+		types[slot] = DataType.DOUBLE;
+		objects[slot] = null;
+		doubles[slot] = value;
+		mark(slot, DOUBLE);
+	}
+
+	private void setPrimitive(int slot, DataType type, long value) {
+		types[slot] = type;
+		objects[slot] = null;
+		longs[slot] = value;
+		mark(slot, LONG);
+	}
+
+	private void mark(int slot, byte state) {
+		if (states[slot] == UNSET) {
+			unset--;
+		}
+		states[slot] = state;
+	}
+
+	public void setString(int slot, String value) {
+		set(slot, DataType.STRING, value);
+	}
+
+	public void setDecimal(int slot, BigDecimal value) {
+		set(slot, DataType.DECIMAL, value);
+	}
+
+	public void setDate(int slot, Date value) {
+		set(slot, DataType.DATE, value);
+	}
+
+	public void setTime(int slot, Time value) {
+		set(slot, DataType.TIME, value);
+	}
+
+	public void setTimestamp(int slot, Timestamp value) {
+		set(slot, DataType.TIMESTAMP, value);
+	}
+
+	/**
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @return true - если значение слота установлено (в том числе пустое).
+	 */
+	public boolean isSet(int slot) {
+		return states[slot] != UNSET;
+	}
+
+	/**
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @return true - если в слоте установлено пустое значение.
+	 */
+	public boolean isNull(int slot) {
+		return states[slot] == NULL;
+	}
+
+	/**
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @return true - если значение хранится как целое число без упаковки
+	 *         (см. {@link #getLong(int)}).
+	 */
+	public boolean isLong(int slot) {
+		return states[slot] == LONG;
+	}
+
+	/**
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @return true - если значение хранится как дробное число без упаковки
+	 *         (см. {@link #getDouble(int)}).
+	 */
+	public boolean isDouble(int slot) {
+		return states[slot] == DOUBLE;
+	}
+
+	/**
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @return Тип данных установленного значения или null, если значение не
+	 *         установлено.
+	 */
+	public DataType getType(int slot) {
+		return types[slot];
+	}
+
+	/**
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @return Значение слота, установленное методами {@link #setLong(int, long)}
+	 *         или {@link #setInt(int, int)}.
+	 */
+	public long getLong(int slot) {
+		return longs[slot];
+	}
+
+	/**
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @return Значение слота, установленное методом
+	 *         {@link #setDouble(int, double)}.
+	 */
+	public double getDouble(int slot) {
+		return doubles[slot];
+	}
+
+	/**
+	 * Получение значения слота в виде объекта (с упаковкой примитивных
+	 * значений).
+	 * 
+	 * @param slot
+	 *            Номер слота.
+	 * 
+	 * @return Значение класса {@link DataType#typeClass()} или null.
+	 */
+	public Object getValue(int slot) {
+		switch (states[slot]) {
+		case LONG:
+			return types[slot] == DataType.INTEGER ? (Object) Integer.valueOf((int) longs[slot])
+					: (Object) Long.valueOf(longs[slot]);
+		case DOUBLE:
+			return Double.valueOf(doubles[slot]);
+		default:
+			return objects[slot];
+		}
+	}
+}
@@ -0,0 +1,290 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Итератор строк с упреждающим чтением. Отдельный поток читает строки
+ * таблицы порциями, пока вызывающий поток обрабатывает предыдущую порцию,
+ * так что ожидание очередного обращения драйвера к базе перекрывается
+ * обработкой. Порции используются повторно: одна заполняется, одна
+ * обрабатывается, и еще несколько (по-умолчанию одна) могут ждать в очереди.
+ * <p>
+ * Итератор владеет таблицей и закрывает ее, когда строки кончились, при
+ * ошибке чтения или при вызове {@link #close()}. Если обработка может
+ * прерваться раньше, итератор надо закрывать явно:
+ * 
+ * <pre>
+ * try (PrefetchingIterator rows = new PrefetchingIterator(connection.query(sql, params), 500)) {
+ * 	while (rows.hasNext()) {
+ * 		process(rows.next());
+ * 	}
+ * }
+ * </pre>
+ * 
+ * Таблица читается только потоком упреждающего чтения и закрывается только
+ * после его завершения, поэтому с ней не нужно ничего делать, пока итератор
+ * не закрыт.
+ * 
+ * @author Q4S
+ * 
+ */
+public final class PrefetchingIterator implements Iterator<IRow>, AutoCloseable {
+
+	/**
+	 * Интервал, с которым ожидающие потоки проверяют признак отмены.
+	 */
+	private static final long POLL_MILLIS = 100;
+
+	/**
+	 * Признак конца данных в очереди порций.
+	 */
+	private static final List<IRow> END = Collections.unmodifiableList(new ArrayList<IRow>(0));
+
+	private final IResultTable table;
+
+	private final int chunkSize;
+
+	/**
+	 * Заполненные порции.
+	 */
+	private final BlockingQueue<List<IRow>> filled;
+
+	/**
+	 * Обработанные порции, возвращенные для повторного использования.
+	 */
+	private final BlockingQueue<List<IRow>> free;
+
+	private final Thread thread;
+
+	private volatile boolean cancelled = false;
+
+	private volatile Throwable error = null;
+
+	/**
+	 * Обрабатываемая порция.
+	 */
+	private List<IRow> chunk = null;
+
+	private int position = 0;
+
+	private boolean finished = false;
+
+	private boolean closed = false;
+
+	/**
+	 * @see PrefetchingIterator
+	 * 
+	 * @param table
+	 *            Таблица, строки которой надо перебрать. Закрывается
+	 *            итератором.
+	 * 
+	 * @param chunkSize
+	 *            Число строк в порции.
+	 */
+	public PrefetchingIterator(IResultTable table, int chunkSize) {
+		this(table, chunkSize, 1);
+	}
+
+	/**
+	 * @see PrefetchingIterator
+	 * 
+	 * @param table
+	 *            Таблица, строки которой надо перебрать. Закрывается
+	 *            итератором.
+	 * 
+	 * @param chunkSize
+	 *            Число строк в порции.
+	 * 
+	 * @param readyChunks
+	 *            Сколько заполненных порций может ждать обработки.
+	 */
+	public PrefetchingIterator(IResultTable table, int chunkSize, int readyChunks) {
+		if (chunkSize <= 0 || readyChunks <= 0) {
+			throw new IllegalArgumentException("Размер порции и очереди должен быть положительным");
+		}
+		this.table = table;
+		this.chunkSize = chunkSize;
+		this.filled = new ArrayBlockingQueue<List<IRow>>(readyChunks + 1);
+		this.free = new ArrayBlockingQueue<List<IRow>>(readyChunks + 2);
+		for (int i = 0; i < readyChunks + 2; i++) {
+			free.add(new ArrayList<IRow>(chunkSize));
+		}
+
+		this.thread = new Thread(this::read, "dafobi-prefetch");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Чтение строк в потоке упреждающего чтения.
+	 */
+	private void read() {
+		try {
+			Iterator<IRow> rows = table.iterator();
+			List<IRow> buffer = nextFree();
+			while (buffer != null && rows.hasNext()) {
+				buffer.add(rows.next());
+				if (buffer.size() == chunkSize) {
+					if (!offer(buffer)) {
+						return;
+					}
+					buffer = nextFree();
+				}
+			}
+			if (buffer == null || (!buffer.isEmpty() && !offer(buffer))) {
+				return;
+			}
+
+		} catch (Throwable e) {
+			error = e;
+		}
+		offer(END);
+	}
+
+	/**
+	 * @return Пустая порция или null, если чтение отменено.
+	 */
+	private List<IRow> nextFree() {
+		try {
+			while (!cancelled) {
+				List<IRow> buffer = free.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (buffer != null) {
+					buffer.clear();
+					return buffer;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return null;
+	}
+
+	/**
+	 * Передача порции в очередь с ожиданием места в ней.
+	 * 
+	 * @return false - если чтение отменено.
+	 */
+	private boolean offer(List<IRow> buffer) {
+		try {
+			while (!cancelled) {
+				if (filled.offer(buffer, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+					return true;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.Iterator#hasNext()
+	 */
+	@Override
+	public boolean hasNext() {
+		if (chunk != null && position < chunk.size()) {
+			return true;
+		}
+		if (finished) {
+			return false;
+		}
+		if (closed) {
+			throw new IllegalStateException("Итератор закрыт");
+		}
+
+		// Обработанная порция возвращается в оборот.
+		if (chunk != null) {
+			free.offer(chunk);
+			chunk = null;
+		}
+		List<IRow> next = null;
+		try {
+			while (next == null) {
+				next = filled.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			close();
+			throw new RuntimeException("Чтение строк прервано", e);
+		}
+
+		if (next == END) {
+			finished = true;
+			close();
+			if (error != null) {
+				throw new RuntimeException("Ошибка чтения строк", error);
+			}
+			return false;
+		}
+		chunk = next;
+		position = 0;
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.Iterator#next()
+	 */
+	@Override
+	public IRow next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return chunk.get(position++);
+	}
+
+	/**
+	 * Остановка упреждающего чтения и закрытие таблицы. Метод ждет, пока
+	 * поток чтения дочитает текущую строку.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		cancelled = true;
+		filled.clear();
+
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		table.close();
+	}
+}
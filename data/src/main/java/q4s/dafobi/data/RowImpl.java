@@ -18,22 +18,14 @@
  */
 package q4s.dafobi.data;
 
-import java.math.BigDecimal;
-import java.sql.Date;
-import java.sql.Time;
-import java.sql.Timestamp;
-
 import q4s.dafobi.exception.WrongIndexException;
 
 /**
+ * Неизменяемая строка данных, значения которой хранятся в памяти.
+ * 
  * @author Q4S
  */
-public class RowImpl implements IRow {
-
-	/**
-	 * Ссылка на информацию, описывающую данные, находящиеся в строке.
-	 */
-	private final IResultTable rowInfo;
+public class RowImpl extends AbstractRow {
 
 	/**
 	 * Значения данных строки.
@@ -46,7 +38,7 @@ public class RowImpl implements IRow {
 	 * @param values
 	 */
 	public RowImpl(IResultTable rowInfo, Object[] values) {
-		this.rowInfo = rowInfo;
+		super(rowInfo);
 		this.values = converValues(values);
 	}
 
@@ -61,97 +53,27 @@ public class RowImpl implements IRow {
 	private Object[] converValues(final Object[] values) {
 		Object[] newValues = new Object[values.length];
 		for (int i = 0; i < values.length; i++) {
-			Class<?> clazz = values[i].getClass();
-			// Integer хранится как Long
-			if (Integer.class.equals(clazz)) {
-				newValues[i] = new Long((Integer) values[i]);
-
-			} else {
-				newValues[i] = values[i];
-			}
+			newValues[i] = convertValue(values[i]);
 		}
 		return newValues;
 	}
 
-	IResultTable getMeta() {
-		return rowInfo;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see q4s.dafobi.data.IRow#get(java.lang.String)
-	 */
-	@Override
-	public final Object get(String columnName) throws WrongIndexException {
-		int index = rowInfo.getColumnIndex(columnName);
-		return get(index);
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see q4s.dafobi.data.IRow#getString(java.lang.String)
-	 */
-	@Override
-	public final String getString(String columnName) throws WrongIndexException {
-		int index = rowInfo.getColumnIndex(columnName);
-		return getString(index);
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see q4s.dafobi.data.IRow#getInteger(java.lang.String)
-	 */
-	@Override
-	public final Long getInteger(String columnName) throws WrongIndexException {
-		int index = rowInfo.getColumnIndex(columnName);
-		return getInteger(index);
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see q4s.dafobi.data.IRow#getDecimal(java.lang.String)
-	 */
-	@Override
-	public final BigDecimal getDecimal(String columnName) throws WrongIndexException {
-		int index = rowInfo.getColumnIndex(columnName);
-		return getDecimal(index);
-	}
-
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Приведение одного значения к разрешенному типу данных.
 	 * 
-	 * @see q4s.dafobi.data.IRow#getDate(java.lang.String)
-	 */
-	@Override
-	public final Date getDate(String columnName) throws WrongIndexException {
-		int index = rowInfo.getColumnIndex(columnName);
-		return getDate(index);
-	}
-
-	/*
-	 * (non-Javadoc)
+	 * @param value
+	 *            Значение, переданное из JDBC (может быть null).
 	 * 
-	 * @see q4s.dafobi.data.IRow#getTime(java.lang.String)
+	 * @return Значение с приведенным типом.
 	 */
-	@Override
-	public final Time getTime(String columnName) throws WrongIndexException {
-		int index = rowInfo.getColumnIndex(columnName);
-		return getTime(index);
-	}
+	public static Object convertValue(final Object value) {
+		// Integer хранится как Long
+		if (value instanceof Integer) {
+			return Long.valueOf((Integer) value);
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see q4s.dafobi.data.IRow#getTimestamp(java.lang.String)
-	 */
-	@Override
-	public final Timestamp getTimestamp(String columnName) throws WrongIndexException {
-		int index = rowInfo.getColumnIndex(columnName);
-		return getTimestamp(index);
+		} else {
+			return value;
+		}
 	}
 
 	/*
@@ -165,67 +87,19 @@ public class RowImpl implements IRow {
 			throw new WrongIndexException();
 		}
 		// Ожидается, что все данные будут неизменяемые по своей природе.
-		return values[columnNum];
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see q4s.dafobi.data.IRow#getString(int)
-	 */
-	@Override
-	public String getString(int columnNum) throws WrongIndexException {
-		return (String) get(columnNum);
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see q4s.dafobi.data.IRow#getInteger(int)
-	 */
-	@Override
-	public Long getInteger(int columnNum) throws WrongIndexException {
-		return (Long) get(columnNum);
+		Object value = values[columnNum];
+		setWasNull(value == null);
+		return value;
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see q4s.dafobi.data.IRow#getDecimal(int)
+	 * @see q4s.dafobi.data.IRow#detach()
 	 */
 	@Override
-	public BigDecimal getDecimal(int columnNum) throws WrongIndexException {
-		return (BigDecimal) get(columnNum);
+	public IRow detach() {
+		// Строка и так неизменяема.
+		return this;
 	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see q4s.dafobi.data.IRow#getDate(int)
-	 */
-	@Override
-	public Date getDate(int columnNum) throws WrongIndexException {
-		return (Date) get(columnNum);
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see q4s.dafobi.data.IRow#getTime(int)
-	 */
-	@Override
-	public Time getTime(int columnNum) throws WrongIndexException {
-		return (Time) get(columnNum);
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see q4s.dafobi.data.IRow#getTimestamp(int)
-	 */
-	@Override
-	public Timestamp getTimestamp(int columnNum) throws WrongIndexException {
-		return (Timestamp) get(columnNum);
-	}
-
 }
@@ -0,0 +1,151 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Разбиение строк таблицы для потоков {@link Stream} (см.
+ * {@link IResultTable#stream()}).
+ * <p>
+ * Источник у таблицы один - курсор, который можно читать только
+ * последовательно. Поэтому при разбиении от курсора отрезается очередная
+ * порция строк, которая полностью читается в массив, а уже массив делится
+ * между потоками ForkJoin дальше обычным образом. Размер порций растет от
+ * разбиения к разбиению, так что для небольших результатов порции остаются
+ * маленькими, а для больших накладные расходы на разбиение не заметны.
+ * <p>
+ * Строки передаются копиями, не зависящими от курсора, поэтому разбиение
+ * объявляет себя упорядоченным, без пустых элементов и неизменяемым.
+ * 
+ * @author Q4S
+ * 
+ */
+final class RowSpliterator implements Spliterator<IRow> {
+
+	/**
+	 * Размер первой порции.
+	 */
+	static final int INITIAL_CHUNK_SIZE = 256;
+
+	/**
+	 * Максимальный размер порции.
+	 */
+	static final int MAX_CHUNK_SIZE = 1 << 16;
+
+	static final int CHARACTERISTICS = ORDERED | NONNULL | IMMUTABLE;
+
+	private final Iterator<IRow> rows;
+
+	/**
+	 * Размер следующей порции.
+	 */
+	private int chunkSize = INITIAL_CHUNK_SIZE;
+
+	RowSpliterator(Iterator<IRow> rows) {
+		this.rows = rows;
+	}
+
+	/**
+	 * Поток строк таблицы. Закрытие потока закрывает таблицу.
+	 * 
+	 * @param table
+	 *            Таблица.
+	 * 
+	 * @param parallel
+	 *            true - параллельный поток.
+	 * 
+	 * @return Поток строк.
+	 */
+	static Stream<IRow> stream(IResultTable table, boolean parallel) {
+		return StreamSupport.stream(new RowSpliterator(table.iterator()), parallel).onClose(table::close);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.Spliterator#tryAdvance(java.util.function.Consumer)
+	 */
+	@Override
+	public boolean tryAdvance(Consumer<? super IRow> action) {
+		if (rows.hasNext()) {
+			action.accept(rows.next());
+			return true;
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.Spliterator#forEachRemaining(java.util.function.Consumer)
+	 */
+	@Override
+	public void forEachRemaining(Consumer<? super IRow> action) {
+		while (rows.hasNext()) {
+			action.accept(rows.next());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.Spliterator#trySplit()
+	 */
+	@Override
+	public Spliterator<IRow> trySplit() {
+		IRow[] chunk = new IRow[chunkSize];
+		int count = 0;
+		while (count < chunk.length && rows.hasNext()) {
+			chunk[count++] = rows.next();
+		}
+		if (count == 0) {
+			return null;
+		}
+		if (chunkSize < MAX_CHUNK_SIZE) {
+			chunkSize *= 2;
+		}
+		return Spliterators.spliterator(chunk, 0, count, CHARACTERISTICS);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.Spliterator#estimateSize()
+	 */
+	@Override
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.Spliterator#characteristics()
+	 */
+	@Override
+	public int characteristics() {
+		return CHARACTERISTICS;
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import q4s.dafobi.common.DataParam;
+
+/**
+ * Подписка {@link RowPublisher}: передача строк получателю по мере спроса.
+ * <p>
+ * Запрос выполняется при первом запросе строк, и размер порции, которую
+ * драйвер читает из базы за одно обращение, берется из этого запроса (но не
+ * больше {@link RowPublisher#getMaxFetchSize()}). Следующая строка читается
+ * только тогда, когда получатель ее запросил, поэтому в памяти находится не
+ * больше одной порции драйвера, каким бы большим ни был результат.
+ * <p>
+ * Передача строк идет циклом, который одновременно выполняется не более чем
+ * в одном потоке: запросы, сделанные из другого потока или из самого
+ * получателя, только увеличивают спрос и будят цикл. Курсор используется и
+ * закрывается только внутри этого цикла.
+ * 
+ * @author Q4S
+ * 
+ */
+final class RowSubscription implements IRowSubscription {
+
+	/**
+	 * Подписка, которая ничего не делает. Выдается получателю перед
+	 * сообщением об ошибке, если подписаться не удалось.
+	 */
+	static final IRowSubscription EMPTY = new IRowSubscription() {
+
+		@Override
+		public void request(long n) {
+		}
+
+		@Override
+		public void cancel() {
+		}
+	};
+
+	private final RowPublisher publisher;
+
+	private final IRowSubscriber subscriber;
+
+	private final IStatement statement;
+
+	private final Map<String, DataParam> params;
+
+	private final Executor executor;
+
+	/**
+	 * Запрошенные, но еще не переданные строки.
+	 */
+	private final AtomicLong requested = new AtomicLong();
+
+	/**
+	 * Число поводов выполнить цикл передачи. Цикл выполняется, пока есть
+	 * необработанные поводы, и только тем потоком, который увеличил счетчик с
+	 * нуля.
+	 */
+	private final AtomicInteger wip = new AtomicInteger();
+
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Ошибка в параметре {@link #request(long)}.
+	 */
+	private volatile Throwable badRequest = null;
+
+	private IResultTable table = null;
+
+	private Iterator<IRow> rows = null;
+
+	/**
+	 * Прочитанная, но еще не переданная строка. Итератор таблицы может
+	 * переходить к следующей строке при каждом вызове
+	 * {@link Iterator#hasNext()}, поэтому проверка конца данных заранее
+	 * читает строку.
+	 */
+	private IRow next = null;
+
+	private boolean done = false;
+
+	RowSubscription(RowPublisher publisher, IRowSubscriber subscriber, IStatement statement,
+			Map<String, DataParam> params, Executor executor) {
+		this.publisher = publisher;
+		this.subscriber = subscriber;
+		this.statement = statement;
+		this.params = params;
+		this.executor = executor;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRowSubscription#request(long)
+	 */
+	@Override
+	public void request(long n) {
+		if (n <= 0) {
+			badRequest = new IllegalArgumentException("Число запрашиваемых строк должно быть положительным: " + n);
+		} else {
+			long current;
+			long next;
+			do {
+				current = requested.get();
+				next = current + n;
+				if (next < 0) {
+					next = Long.MAX_VALUE;
+				}
+			} while (!requested.compareAndSet(current, next));
+		}
+		schedule();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IRowSubscription#cancel()
+	 */
+	@Override
+	public void cancel() {
+		cancelled = true;
+		schedule();
+	}
+
+	/**
+	 * Запуск цикла передачи, если он еще не выполняется.
+	 */
+	void schedule() {
+		if (wip.getAndIncrement() == 0) {
+			executor.execute(this::drain);
+		}
+	}
+
+	/**
+	 * Цикл передачи строк.
+	 */
+	private void drain() {
+		int missed = 1;
+		while (true) {
+			if (done) {
+				return;
+			}
+			if (cancelled) {
+				finish();
+				return;
+			}
+			if (badRequest != null) {
+				fail(badRequest);
+				return;
+			}
+
+			long demand = requested.get();
+			long emitted = 0;
+			while (emitted != demand) {
+				if (cancelled) {
+					finish();
+					return;
+				}
+				if (!hasNext()) {
+					return;
+				}
+
+				IRow row = next;
+				next = null;
+				try {
+					subscriber.onNext(row);
+				} catch (RuntimeException | Error e) {
+					// Получатель, нарушивший контракт, теряет подписку.
+					cancelled = true;
+					finish();
+					throw e;
+				}
+				emitted++;
+			}
+
+			// Конец данных сообщается, не дожидаясь следующего запроса.
+			if (table != null && !hasNext()) {
+				return;
+			}
+
+			if (emitted != 0 && demand != Long.MAX_VALUE) {
+				requested.addAndGet(-emitted);
+			}
+			missed = wip.addAndGet(-missed);
+			if (missed == 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Проверка наличия следующей строки. Запрос выполняется при первом
+	 * обращении. При конце данных или ошибке подписка завершается.
+	 * 
+	 * @return false - если подписка завершена.
+	 */
+	private boolean hasNext() {
+		try {
+			if (table == null) {
+				long demand = requested.get();
+				int fetchSize = (int) Math.min(demand, publisher.getMaxFetchSize());
+				int previous = statement.getFetchSize();
+				statement.setFetchSize(fetchSize);
+				try {
+					table = statement.query(params);
+				} finally {
+					statement.setFetchSize(previous);
+				}
+				rows = table.iterator();
+			}
+			if (next != null) {
+				return true;
+			}
+			if (rows.hasNext()) {
+				next = rows.next();
+				return true;
+			}
+
+		} catch (RuntimeException e) {
+			fail(e);
+			return false;
+		}
+
+		RuntimeException error = finish();
+		if (error == null) {
+			subscriber.onComplete();
+		} else {
+			subscriber.onError(error);
+		}
+		return false;
+	}
+
+	/**
+	 * Завершение подписки с ошибкой.
+	 */
+	private void fail(Throwable error) {
+		RuntimeException closeError = finish();
+		if (closeError != null && closeError != error) {
+			error.addSuppressed(closeError);
+		}
+		subscriber.onError(error);
+	}
+
+	/**
+	 * Закрытие курсора и освобождение оператора для следующей подписки.
+	 * 
+	 * @return Ошибка закрытия курсора или null.
+	 */
+	private RuntimeException finish() {
+		if (done) {
+			return null;
+		}
+		done = true;
+		try {
+			if (table != null) {
+				table.close();
+			}
+			return null;
+
+		} catch (RuntimeException e) {
+			return e;
+
+		} finally {
+			table = null;
+			rows = null;
+			next = null;
+			publisher.release();
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковый разбор скрипта на операторы.
+ * <p>
+ * Разделителем операторов считается строка, состоящая только из символа
+ * <tt>/</tt> (и, возможно, пробелов). Такая строка внутри строковой
+ * константы, идентификатора в кавычках или комментария разделителем не
+ * является. Скрипт читается порциями, и в памяти хранится только текст
+ * текущего оператора, поэтому размер скрипта не ограничен.
+ * <p>
+ * Операторы, состоящие только из пробелов и комментариев, пропускаются.
+ * 
+ * @author Q4S
+ * 
+ */
+public final class ScriptReader implements Closeable {
+
+	private static final int NORMAL = 0;
+
+	private static final int SINGLE_QUOTE = 1;
+
+	private static final int DOUBLE_QUOTE = 2;
+
+	private static final int BLOCK_COMMENT = 3;
+
+	private static final int LINE_COMMENT = 4;
+
+	private final Reader reader;
+
+	private final char[] buffer = new char[8192];
+
+	private int position = 0;
+
+	private int limit = 0;
+
+	/**
+	 * Текст текущего оператора. Буфер используется повторно.
+	 */
+	private final StringBuilder statement = new StringBuilder();
+
+	/**
+	 * @see ScriptReader
+	 * 
+	 * @param reader
+	 *            Источник текста скрипта. Закрывается методом
+	 *            {@link #close()}.
+	 */
+	public ScriptReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Разбор скрипта, целиком находящегося в памяти.
+	 * 
+	 * @param script
+	 *            Текст скрипта.
+	 * 
+	 * @return Тексты операторов.
+	 */
+	public static String[] parse(String script) {
+		List<String> statements = new ArrayList<String>();
+		try (ScriptReader reader = new ScriptReader(new StringReader(script))) {
+			String statement;
+			while ((statement = reader.nextStatement()) != null) {
+				statements.add(statement);
+			}
+		}
+		return statements.toArray(new String[0]);
+	}
+
+	private int read() throws IOException {
+		if (position == limit && !fill()) {
+			return -1;
+		}
+		return buffer[position++];
+	}
+
+	private int peek() throws IOException {
+		if (position == limit && !fill()) {
+			return -1;
+		}
+		return buffer[position];
+	}
+
+	private boolean fill() throws IOException {
+		int count = reader.read(buffer, 0, buffer.length);
+		position = 0;
+		limit = Math.max(count, 0);
+		return count > 0;
+	}
+
+	/**
+	 * Чтение очередного оператора.
+	 * 
+	 * @return Текст оператора без строки-разделителя или null, если скрипт
+	 *         закончился.
+	 * 
+	 * @throws UncheckedIOException
+	 *             при ошибке чтения.
+	 */
+	public String nextStatement() {
+		try {
+			return readStatement();
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private String readStatement() throws IOException {
+		statement.setLength(0);
+		int state = NORMAL;
+		// Признак того, что в операторе есть что-то кроме пробелов и
+		// комментариев.
+		boolean meaningful = false;
+		// Начало текущей строки в буфере оператора.
+		int lineStart = 0;
+		// Строка пока что состоит только из пробелов и символов '/' вне
+		// комментариев и констант.
+		boolean lineClean = true;
+		int slashes = 0;
+
+		while (true) {
+			int c = read();
+			if (c < 0) {
+				break;
+			}
+			statement.append((char) c);
+
+			if (c == '\n') {
+				if (state == LINE_COMMENT) {
+					state = NORMAL;
+
+				} else if (state == NORMAL && lineClean && slashes == 1) {
+					statement.setLength(lineStart);
+					if (meaningful) {
+						return statement.toString();
+					}
+					// Пустой оператор просто пропускается.
+					statement.setLength(0);
+
+				} else if (slashes > 0) {
+					meaningful = true;
+				}
+				lineStart = statement.length();
+				lineClean = state == NORMAL;
+				slashes = 0;
+				continue;
+			}
+
+			switch (state) {
+			case SINGLE_QUOTE:
+			case DOUBLE_QUOTE:
+				if (c == (state == SINGLE_QUOTE ? '\'' : '"')) {
+					state = NORMAL;
+				}
+				continue;
+
+			case BLOCK_COMMENT:
+				if (c == '*' && peek() == '/') {
+					statement.append((char) read());
+					state = NORMAL;
+				}
+				continue;
+
+			case LINE_COMMENT:
+				continue;
+			}
+
+			if (Character.isWhitespace(c)) {
+				continue;
+			}
+
+			if ((c == '/' && peek() == '*') || (c == '-' && peek() == '-')) {
+				statement.append((char) read());
+				state = c == '/' ? BLOCK_COMMENT : LINE_COMMENT;
+				meaningful |= slashes > 0;
+				lineClean = false;
+				continue;
+			}
+
+			if (c == '/' && lineClean) {
+				slashes++;
+				continue;
+			}
+
+			// Символ '/', стоявший в начале строки, оказался частью
+			// оператора.
+			lineClean = false;
+			meaningful = true;
+			if (c == '\'') {
+				state = SINGLE_QUOTE;
+			} else if (c == '"') {
+				state = DOUBLE_QUOTE;
+			}
+		}
+
+		if (state == NORMAL && lineClean && slashes == 1) {
+			statement.setLength(lineStart);
+		} else if (slashes > 0) {
+			meaningful = true;
+		}
+		return meaningful ? statement.toString() : null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() {
+		try {
+			reader.close();
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
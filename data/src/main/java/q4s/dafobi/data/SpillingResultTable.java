@@ -0,0 +1,530 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Clob;
+import java.text.MessageFormat;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Неизменяемая копия таблицы данных, занимающая в памяти не больше заданного
+ * объема. Строки читаются в память, пока их оценочный размер (см.
+ * {@link #estimate(Object, DataType)}) укладывается в ограничение таблицы и
+ * в общее ограничение {@link MemoryBudget}. Все последующие строки
+ * записываются во временный файл в компактном двоичном виде (см.
+ * {@link ValueCodec}) и читаются из него через отображение файла в память,
+ * так что их хранением занимается операционная система, а не куча Java. В
+ * памяти для каждой такой строки остается только ее смещение в файле (8
+ * байт).
+ * <p>
+ * Как и у {@link MemoryResultTable}, строки доступны в любом порядке по
+ * номеру, независимо от того, где они хранятся, а сама таблица не зависит от
+ * оператора и подключения. Но, в отличие от нее, таблицу обязательно надо
+ * закрыть: при закрытии удаляется временный файл и возвращается
+ * зарезервированная память. Строки, сброшенные на диск, после закрытия
+ * недоступны.
+ * <p>
+ * Значения CLOB при копировании читаются в строки. Повторяющиеся значения
+ * колонок STRING и CHAR в памяти заменяются общими экземплярами (см.
+ * {@link ValueDictionary}) и учитываются в оценке размера один раз. Значения
+ * типов, которые не умеет записывать {@link ValueCodec}, можно хранить только
+ * в памяти.
+ * 
+ * @author Q4S
+ * 
+ */
+public final class SpillingResultTable extends AbstractResultTable {
+
+	/**
+	 * Оценка размера строки без значений: объект строки, массив значений и
+	 * ссылка на строку в списке.
+	 */
+	static final long ROW_OVERHEAD = 56;
+
+	/**
+	 * Оценка размера ссылки на значение в массиве значений строки.
+	 */
+	static final long REFERENCE_SIZE = 8;
+
+	/**
+	 * Максимальный размер одного отображаемого в память участка файла.
+	 */
+	static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+	/**
+	 * Строки, хранящиеся в памяти. Они всегда идут перед строками в файле.
+	 */
+	private final List<IRow> memoryRows;
+
+	/**
+	 * Оценочный размер строк в памяти.
+	 */
+	private final long memorySize;
+
+	/**
+	 * Общее ограничение, в котором зарезервирован {@link #memorySize}, или
+	 * null.
+	 */
+	private final MemoryBudget budget;
+
+	/**
+	 * Временный файл или null, если все строки уместились в памяти.
+	 */
+	private final Path file;
+
+	/**
+	 * Смещения строк в файле.
+	 */
+	private final long[] offsets;
+
+	/**
+	 * Число строк в файле.
+	 */
+	private final int spilledCount;
+
+	/**
+	 * Размер файла.
+	 */
+	private final long spilledSize;
+
+	/**
+	 * Отображенные в память участки файла. Строка никогда не пересекает
+	 * границу участка.
+	 */
+	private ByteBuffer[] segments;
+
+	/**
+	 * Номер первой строки файла в каждом участке.
+	 */
+	private int[] segmentRows;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Все строки таблицы по порядку.
+	 */
+	private final List<IRow> rows = new AbstractList<IRow>() {
+
+		@Override
+		public IRow get(int index) {
+			return getRow(index);
+		}
+
+		@Override
+		public int size() {
+			return getRowCount();
+		}
+	};
+
+	private SpillingResultTable(IResultTable source, long tableLimit, MemoryBudget budget, Path directory) {
+		super(null);
+		for (int i = 0; i < source.count(); i++) {
+			addColumnInfo(source.getColumnName(i), source.getColumnType(i));
+		}
+		protect();
+
+		DataType[] types = new DataType[count()];
+		ValueDictionary[] dictionaries = new ValueDictionary[types.length];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = getColumnType(i);
+			dictionaries[i] = ValueDictionary.forType(types[i]);
+		}
+
+		this.budget = budget;
+		List<IRow> list = new ArrayList<IRow>();
+		long size = 0;
+		Path spillFile = null;
+		OutputStream out = null;
+		long[] positions = new long[0];
+		int spilled = 0;
+		long position = 0;
+		boolean success = false;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream data = new DataOutputStream(bytes);
+			for (IRow row : source.cursor()) {
+				Object[] values = new Object[types.length];
+				for (int i = 0; i < values.length; i++) {
+					Object value = row.get(i);
+					values[i] = value instanceof Clob ? BulkExecutor.readClob((Clob) value) : value;
+				}
+
+				if (out == null) {
+					long rowSize = estimateRow(values, types, dictionaries);
+					if (size + rowSize <= tableLimit && (budget == null || budget.reserve(rowSize))) {
+						list.add(new RowImpl(this, values));
+						size += rowSize;
+						continue;
+					}
+					spillFile = directory == null ? Files.createTempFile("dafobi-", ".spill")
+							: Files.createTempFile(directory, "dafobi-", ".spill");
+					out = new BufferedOutputStream(Files.newOutputStream(spillFile));
+				}
+
+				bytes.reset();
+				for (int i = 0; i < values.length; i++) {
+					if (!ValueCodec.isSupported(values[i])) {
+						throw new UnsupportedOperationException(MessageFormat.format(
+								"Значение типа {0} в колонке {1} нельзя записать на диск",
+								values[i].getClass().getName(), getColumnName(i)));
+					}
+					ValueCodec.write(data, RowImpl.convertValue(values[i]));
+				}
+				if (spilled == positions.length) {
+					positions = Arrays.copyOf(positions, Math.max(16, spilled * 2));
+				}
+				positions[spilled++] = position;
+				bytes.writeTo(out);
+				position += bytes.size();
+			}
+
+			if (out != null) {
+				out.close();
+				out = null;
+				map(spillFile, positions, spilled, position);
+			}
+			success = true;
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+
+		} finally {
+			if (!success) {
+				if (budget != null) {
+					budget.release(size);
+				}
+				try {
+					if (out != null) {
+						out.close();
+					}
+				} catch (IOException e) {
+					// Файл все равно удаляется.
+				}
+				delete(spillFile);
+			}
+		}
+
+		this.memoryRows = list;
+		this.memorySize = size;
+		this.file = spillFile;
+		this.offsets = positions;
+		this.spilledCount = spilled;
+		this.spilledSize = position;
+	}
+
+	/**
+	 * Копирование всех строк таблицы с ограничением памяти только для этой
+	 * таблицы. Исходная таблица не закрывается.
+	 * 
+	 * @param source
+	 *            Исходная таблица.
+	 * 
+	 * @param limit
+	 *            Максимальный объем памяти для строк в байтах.
+	 * 
+	 * @return Копия таблицы.
+	 */
+	public static SpillingResultTable copyOf(IResultTable source, long limit) {
+		return copyOf(source, limit, null, null);
+	}
+
+	/**
+	 * Копирование всех строк таблицы с общим ограничением памяти. Исходная
+	 * таблица не закрывается.
+	 * 
+	 * @param source
+	 *            Исходная таблица.
+	 * 
+	 * @param budget
+	 *            Общее ограничение памяти.
+	 * 
+	 * @return Копия таблицы.
+	 */
+	public static SpillingResultTable copyOf(IResultTable source, MemoryBudget budget) {
+		return copyOf(source, Long.MAX_VALUE, budget, null);
+	}
+
+	/**
+	 * Копирование всех строк таблицы. Строки сбрасываются на диск, как только
+	 * оказывается превышенным любое из ограничений. Исходная таблица не
+	 * закрывается.
+	 * 
+	 * @param source
+	 *            Исходная таблица.
+	 * 
+	 * @param limit
+	 *            Максимальный объем памяти для строк этой таблицы в байтах.
+	 * 
+	 * @param budget
+	 *            Общее ограничение памяти или null.
+	 * 
+	 * @param directory
+	 *            Каталог для временного файла или null, если файл надо
+	 *            создавать в стандартном каталоге временных файлов.
+	 * 
+	 * @return Копия таблицы.
+	 */
+	public static SpillingResultTable copyOf(IResultTable source, long limit, MemoryBudget budget,
+			Path directory) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("Объем памяти не может быть отрицательным");
+		}
+		return new SpillingResultTable(source, limit, budget, directory);
+	}
+
+	/**
+	 * Оценка памяти, которую занимает значение. Для значений переменной
+	 * длины (строк, чисел {@link BigDecimal}, массивов байт) учитывается их
+	 * фактическая длина, для остальных размер определяется типом колонки.
+	 * Оценка рассчитана на 64-разрядную JVM со сжатыми ссылками.
+	 * 
+	 * @param value
+	 *            Значение (может быть null).
+	 * 
+	 * @param type
+	 *            Тип колонки (может быть null).
+	 * 
+	 * @return Размер значения в байтах без ссылки на него.
+	 */
+	public static long estimate(Object value, DataType type) {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof String) {
+			return 40 + 2L * ((String) value).length();
+		} else if (value instanceof BigDecimal) {
+			int bits = ((BigDecimal) value).unscaledValue().bitLength();
+			return bits < 64 ? 40 : 80 + bits / 8;
+		} else if (value instanceof byte[]) {
+			return 16 + ((byte[]) value).length;
+		} else if (type == null) {
+			return 16;
+		}
+
+		switch (type) {
+		case DATE:
+		case TIME:
+			return 24;
+		case TIMESTAMP:
+			return 32;
+		case DECIMAL:
+			return 40;
+		default:
+			return 16;
+		}
+	}
+
+	/**
+	 * Оценка памяти, которую занимает строка. Значения колонок со словарем
+	 * заменяются общими экземплярами; уже встречавшееся значение отдельной
+	 * памяти не занимает.
+	 */
+	private static long estimateRow(Object[] values, DataType[] types, ValueDictionary[] dictionaries) {
+		long size = ROW_OVERHEAD;
+		for (int i = 0; i < values.length; i++) {
+			size += REFERENCE_SIZE;
+			ValueDictionary dictionary = dictionaries[i];
+			if (dictionary != null && values[i] != null) {
+				int known = dictionary.size();
+				Object value = dictionary.intern(values[i]);
+				if (value != values[i] || dictionary.size() == known && !dictionary.isOverflowed()) {
+					values[i] = value;
+					continue;
+				}
+			}
+			size += estimate(values[i], types[i]);
+		}
+		return size;
+	}
+
+	/**
+	 * Отображение файла в память участками, границы которых совпадают с
+	 * началом строк.
+	 */
+	private void map(Path spillFile, long[] positions, int count, long end) throws IOException {
+		List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+		List<Integer> firstRows = new ArrayList<Integer>();
+		try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.READ)) {
+			int first = 0;
+			while (first < count) {
+				long base = positions[first];
+				int next = first + 1;
+				while (next < count && positions[next] - base <= MAX_SEGMENT_SIZE) {
+					next++;
+				}
+				long limit = next < count ? positions[next] : end;
+				if (limit - base > Integer.MAX_VALUE) {
+					throw new IOException("Строка слишком велика для записи на диск");
+				}
+				buffers.add(channel.map(FileChannel.MapMode.READ_ONLY, base, limit - base));
+				firstRows.add(first);
+				first = next;
+			}
+		}
+
+		segments = buffers.toArray(new ByteBuffer[0]);
+		segmentRows = new int[firstRows.size()];
+		for (int i = 0; i < segmentRows.length; i++) {
+			segmentRows[i] = firstRows.get(i);
+		}
+	}
+
+	/**
+	 * Удаление временного файла. Если файл удалить нельзя (например, в
+	 * Windows, пока он отображен в память), он удаляется при завершении
+	 * работы JVM.
+	 */
+	private static void delete(Path spillFile) {
+		if (spillFile == null) {
+			return;
+		}
+		try {
+			Files.deleteIfExists(spillFile);
+		} catch (IOException e) {
+			spillFile.toFile().deleteOnExit();
+		}
+	}
+
+	/**
+	 * @return Число строк таблицы.
+	 */
+	public int getRowCount() {
+		return memoryRows.size() + spilledCount;
+	}
+
+	/**
+	 * @return Число строк, хранящихся в памяти.
+	 */
+	public int getMemoryRowCount() {
+		return memoryRows.size();
+	}
+
+	/**
+	 * @return Число строк, сброшенных на диск.
+	 */
+	public int getSpilledRowCount() {
+		return spilledCount;
+	}
+
+	/**
+	 * @return Оценочный размер строк, хранящихся в памяти, в байтах.
+	 */
+	public long getMemorySize() {
+		return memorySize;
+	}
+
+	/**
+	 * @return Размер временного файла в байтах.
+	 */
+	public long getSpilledSize() {
+		return spilledSize;
+	}
+
+	/**
+	 * Получение строки по номеру. Строки из файла читаются при каждом
+	 * обращении заново, поэтому полученную строку стоит сохранить, если она
+	 * нужна несколько раз. Метод можно вызывать из разных потоков
+	 * одновременно.
+	 * 
+	 * @param index
+	 *            Номер строки (начиная с 0).
+	 * 
+	 * @return Строка таблицы.
+	 */
+	public IRow getRow(int index) {
+		if (index < memoryRows.size()) {
+			return memoryRows.get(index);
+		}
+		int spilled = index - memoryRows.size();
+		if (spilled >= spilledCount) {
+			throw new IndexOutOfBoundsException(
+					MessageFormat.format("Номер строки {0} вне таблицы из {1} строк", index, getRowCount()));
+		}
+		if (closed) {
+			throw new IllegalStateException("Таблица закрыта");
+		}
+
+		int segment = Arrays.binarySearch(segmentRows, spilled);
+		if (segment < 0) {
+			segment = -segment - 2;
+		}
+		ByteBuffer buffer = segments[segment].duplicate();
+		buffer.position((int) (offsets[spilled] - offsets[segmentRows[segment]]));
+		Object[] values = new Object[count()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = ValueCodec.read(buffer);
+		}
+		return new RowImpl(this, values);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<IRow> iterator() {
+		return rows.iterator();
+	}
+
+	/**
+	 * Удаление временного файла и возврат зарезервированной памяти. Строки,
+	 * хранящиеся в памяти, остаются доступны.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		if (budget != null) {
+			budget.release(memorySize);
+		}
+		delete(file);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.IResultTable#isClosed()
+	 */
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+}
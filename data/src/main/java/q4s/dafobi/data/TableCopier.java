@@ -0,0 +1,449 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Потоковое копирование результата запроса из одного подключения в другое.
+ * <p>
+ * Исходные строки перебираются отдельным потоком-поставщиком, который
+ * переносит значения колонок в наборы параметров ({@link ParamSet}) и
+ * передает их через ограниченную очередь. Вызывающий поток забирает наборы
+ * из очереди и выполняет оператор вставки пакетами (см.
+ * {@link BulkExecutor}). Таким образом чтение и запись выполняются
+ * одновременно. Если запись не успевает, то очередь заполняется и
+ * поставщик приостанавливается, так что в памяти никогда не находится
+ * больше {@link #getQueueSize()} строк.
+ * <p>
+ * Параметры оператора вставки по-умолчанию заполняются из одноименных
+ * колонок запроса. Другое соответствие задается методами
+ * {@link #mapColumn(String, String)} и {@link #mapColumn(String, int)}.
+ * 
+ * <pre>
+ * TableCopier copier = new TableCopier(source, target);
+ * copier.mapColumn("name", "FULL_NAME");
+ * copier.setListener(progress -&gt; log.info(progress.toString()));
+ * BulkResult result = copier.copy("SELECT ID, FULL_NAME FROM A", params, //
+ * 		"INSERT INTO B(ID, NAME) VALUES(:id, :name)");
+ * </pre>
+ * 
+ * Подключения не рассчитаны на работу из нескольких потоков, поэтому
+ * источник и приемник должны быть разными подключениями.
+ * 
+ * @author Q4S
+ * 
+ */
+public class TableCopier {
+
+	/**
+	 * Размер очереди, используемый по-умолчанию.
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+	/**
+	 * Интервал, с которым поставщик проверяет, не отменено ли копирование,
+	 * пока ждет места в очереди.
+	 */
+	private static final long POLL_MILLIS = 100;
+
+	/**
+	 * Признак конца данных в очереди.
+	 */
+	private static final ParamSet END = new ParamSet(new String[0]);
+
+	private final IConnection source;
+
+	private final IConnection target;
+
+	/**
+	 * Соответствие параметров колонкам: имя параметра в нижнем регистре -
+	 * имя колонки (String) или ее номер (Integer).
+	 */
+	private final Map<String, Object> mapping = new HashMap<String, Object>();
+
+	private int queueSize = DEFAULT_QUEUE_SIZE;
+
+	private int batchSize = BulkExecutor.DEFAULT_BATCH_SIZE;
+
+	private long maxBatchBytes = BulkExecutor.DEFAULT_MAX_BATCH_BYTES;
+
+	private boolean commitEachBatch = false;
+
+	private IBulkListener listener = null;
+
+	/**
+	 * @see TableCopier
+	 * 
+	 * @param source
+	 *            Подключение, из которого читаются данные.
+	 * 
+	 * @param target
+	 *            Подключение, в которое записываются данные.
+	 */
+	public TableCopier(IConnection source, IConnection target) {
+		if (source == target) {
+			throw new IllegalArgumentException("Источник и приемник должны быть разными подключениями");
+		}
+		this.source = source;
+		this.target = target;
+	}
+
+	/**
+	 * Параметр оператора вставки заполняется из колонки с заданным именем.
+	 * <p>
+	 * Имя ищется среди имен колонок результата запроса (см.
+	 * {@link IResultTable#getColumnIndex(String)}). Для JDBC это имена из
+	 * {@link java.sql.ResultSetMetaData#getColumnName(int)}, то есть для
+	 * колонки таблицы - ее собственное имя, а не псевдоним из запроса
+	 * ("STR AS NAME" доступна по имени STR). Колонку с псевдонимом надежнее
+	 * указывать по номеру (см. {@link #mapColumn(String, int)}).
+	 * 
+	 * @param param
+	 *            Имя параметра (регистр не важен).
+	 * 
+	 * @param column
+	 *            Имя колонки запроса.
+	 */
+	public void mapColumn(String param, String column) {
+		mapping.put(param.toLowerCase(), column);
+	}
+
+	/**
+	 * Параметр оператора вставки заполняется из колонки с заданным номером.
+	 * 
+	 * @param param
+	 *            Имя параметра (регистр не важен).
+	 * 
+	 * @param column
+	 *            Номер колонки запроса (начиная с 0).
+	 */
+	public void mapColumn(String param, int column) {
+		mapping.put(param.toLowerCase(), column);
+	}
+
+	/**
+	 * Возврат к соответствию параметров и колонок по именам.
+	 */
+	public void clearMapping() {
+		mapping.clear();
+	}
+
+	/**
+	 * @return Максимальное число строк в очереди между чтением и записью.
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * @param queueSize
+	 *            Максимальное число строк в очереди между чтением и записью.
+	 */
+	public void setQueueSize(int queueSize) {
+		if (queueSize <= 0) {
+			throw new IllegalArgumentException("Размер очереди должен быть положительным");
+		}
+		this.queueSize = queueSize;
+	}
+
+	/**
+	 * @see BulkExecutor#setBatchSize(int)
+	 * 
+	 * @param batchSize
+	 *            Максимальное число строк в одном пакете.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Размер пакета должен быть положительным");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @see BulkExecutor#setMaxBatchBytes(long)
+	 * 
+	 * @param maxBatchBytes
+	 *            Предельный объем данных пакета в байтах.
+	 */
+	public void setMaxBatchBytes(long maxBatchBytes) {
+		if (maxBatchBytes < 0) {
+			throw new IllegalArgumentException("Объем пакета не может быть отрицательным");
+		}
+		this.maxBatchBytes = maxBatchBytes;
+	}
+
+	/**
+	 * @see BulkExecutor#setCommitEachBatch(boolean)
+	 * 
+	 * @param commitEachBatch
+	 *            true - фиксировать транзакцию приемника после каждого
+	 *            пакета.
+	 */
+	public void setCommitEachBatch(boolean commitEachBatch) {
+		this.commitEachBatch = commitEachBatch;
+	}
+
+	/**
+	 * @see BulkExecutor#setListener(IBulkListener)
+	 * 
+	 * @param listener
+	 *            Получатель сведений о ходе копирования.
+	 */
+	public void setListener(IBulkListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Копирование данных.
+	 * 
+	 * @param sourceQuery
+	 *            Запрос к источнику.
+	 * 
+	 * @param parameters
+	 *            Параметры запроса к источнику.
+	 * 
+	 * @param targetStatement
+	 *            Оператор вставки в приемник с именованными параметрами.
+	 * 
+	 * @return Итог выполнения оператора вставки.
+	 */
+	public BulkResult copy(String sourceQuery, Map<String, DataParam> parameters, String targetStatement) {
+		try (IResultTable table = source.query(sourceQuery, parameters);
+				BulkExecutor bulk = new BulkExecutor(target, targetStatement)) {
+			bulk.setBatchSize(batchSize);
+			bulk.setMaxBatchBytes(maxBatchBytes);
+			bulk.setCommitEachBatch(commitEachBatch);
+			bulk.setListener(listener);
+
+			Producer producer = new Producer(table, bulk);
+			Thread thread = new Thread(producer, "dafobi-copy");
+			thread.setDaemon(true);
+			thread.start();
+			try {
+				return bulk.executeParams(() -> producer.consumer());
+
+			} finally {
+				// Если запись прервалась ошибкой, то поставщик увидит отмену
+				// и завершится сам. Источник закрывается только после этого.
+				producer.cancelled = true;
+				join(thread);
+			}
+		}
+	}
+
+	private static void join(Thread thread) {
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Поток, читающий исходные строки.
+	 */
+	private final class Producer implements Runnable {
+
+		private final IResultTable table;
+
+		private final BulkExecutor bulk;
+
+		private final int[] columns;
+
+		private final DataType[] types;
+
+		/**
+		 * Заполненные наборы параметров.
+		 */
+		private final BlockingQueue<ParamSet> filled;
+
+		/**
+		 * Наборы параметров, возвращенные после записи для повторного
+		 * использования.
+		 */
+		private final BlockingQueue<ParamSet> free;
+
+		private int created = 0;
+
+		volatile boolean cancelled = false;
+
+		volatile Throwable error = null;
+
+		Producer(IResultTable table, BulkExecutor bulk) {
+			this.table = table;
+			this.bulk = bulk;
+			this.filled = new ArrayBlockingQueue<ParamSet>(queueSize);
+			this.free = new ArrayBlockingQueue<ParamSet>(queueSize + 1);
+
+			// Соответствие проверяется до начала копирования, чтобы ошибка
+			// возникла в вызывающем потоке.
+			ParamSet params = bulk.createParamSet();
+			this.columns = new int[params.size()];
+			this.types = new DataType[params.size()];
+			for (int slot = 0; slot < columns.length; slot++) {
+				columns[slot] = columnIndex(params.getName(slot));
+				types[slot] = table.getColumnType(columns[slot]);
+			}
+			free.add(params);
+			created++;
+		}
+
+		private int columnIndex(String param) {
+			Object column = mapping.get(param.toLowerCase());
+			if (column == null) {
+				return table.getColumnIndex(param);
+
+			} else if (column instanceof Integer) {
+				int index = (Integer) column;
+				if (index < 0 || index >= table.count()) {
+					throw new IllegalArgumentException(
+							MessageFormat.format("Колонки с номером {0} нет в запросе (параметр {1})", index, param));
+				}
+				return index;
+
+			} else {
+				return table.getColumnIndex((String) column);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			try {
+				for (IRow row : table.cursor()) {
+					ParamSet params = nextFree();
+					if (params == null) {
+						return;
+					}
+					BulkExecutor.copyRow(row, columns, types, params);
+					if (!offer(params)) {
+						return;
+					}
+				}
+			} catch (Throwable e) {
+				error = e;
+			}
+			offer(END);
+		}
+
+		/**
+		 * Получение свободного набора параметров. Пока их создано меньше
+		 * емкости очередей, новые создаются без ожидания.
+		 * 
+		 * @return Набор параметров или null, если копирование отменено.
+		 */
+		private ParamSet nextFree() throws InterruptedException {
+			ParamSet params = free.poll();
+			if (params == null && created <= queueSize) {
+				created++;
+				return bulk.createParamSet();
+			}
+			while (params == null && !cancelled) {
+				params = free.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			}
+			return params;
+		}
+
+		/**
+		 * Передача набора в очередь с ожиданием места в ней.
+		 * 
+		 * @return false - если копирование отменено.
+		 */
+		private boolean offer(ParamSet params) {
+			try {
+				while (!cancelled) {
+					if (filled.offer(params, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return false;
+		}
+
+		/**
+		 * @return Итератор заполненных наборов для вызывающего потока. Набор,
+		 *         выданный методом next(), возвращается в оборот при
+		 *         следующем вызове hasNext().
+		 */
+		Iterator<ParamSet> consumer() {
+			return new Iterator<ParamSet>() {
+
+				private ParamSet current = null;
+
+				private ParamSet next = null;
+
+				@Override
+				public boolean hasNext() {
+					if (current != null) {
+						free.offer(current);
+						current = null;
+					}
+					if (next == null) {
+						try {
+							next = filled.take();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new RuntimeException("Копирование прервано", e);
+						}
+					}
+					if (next == END) {
+						if (error != null) {
+							throw new RuntimeException("Ошибка чтения исходных данных", error);
+						}
+						return false;
+					}
+					return true;
+				}
+
+				@Override
+				public ParamSet next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					current = next;
+					next = null;
+					return current;
+				}
+			};
+		}
+	}
+}
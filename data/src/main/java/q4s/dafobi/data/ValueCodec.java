@@ -0,0 +1,278 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.text.MessageFormat;
+
+/**
+ * Компактное двоичное представление значений колонок и параметров. Каждое
+ * значение записывается как байт-признак класса, за которым следуют данные
+ * (пустое значение - один байт). Запись выполняется в {@link DataOutput}, а
+ * чтение - из {@link ByteBuffer}, так что читать можно прямо из файла,
+ * отображенного в память.
+ * <p>
+ * Поддерживаются классы, которые выдают читатели колонок JDBC: строки, числа
+ * (включая {@link BigDecimal} и {@link BigInteger}), даты и время
+ * {@link java.sql}, логические значения, символы и массивы байтов.
+ * 
+ * @author Q4S
+ * 
+ */
+public final class ValueCodec {
+
+	private static final byte NULL = 0;
+
+	private static final byte STRING = 1;
+
+	private static final byte INTEGER = 2;
+
+	private static final byte LONG = 3;
+
+	private static final byte SHORT = 4;
+
+	private static final byte BYTE = 5;
+
+	private static final byte DOUBLE = 6;
+
+	private static final byte FLOAT = 7;
+
+	private static final byte DECIMAL = 8;
+
+	private static final byte DATE = 9;
+
+	private static final byte TIME = 10;
+
+	private static final byte TIMESTAMP = 11;
+
+	private static final byte BOOLEAN = 12;
+
+	private static final byte BYTES = 13;
+
+	private static final byte CHAR = 14;
+
+	private static final byte BIG_INTEGER = 15;
+
+	private static final byte UTIL_DATE = 16;
+
+	private ValueCodec() {
+	}
+
+	/**
+	 * @param value
+	 *            Значение.
+	 * 
+	 * @return true - если значение может быть записано методом
+	 *         {@link #write(DataOutput, Object)}.
+	 */
+	public static boolean isSupported(Object value) {
+		return value == null || tag(value) != -1;
+	}
+
+	private static byte tag(Object value) {
+		if (value instanceof String) {
+			return STRING;
+		} else if (value instanceof Integer) {
+			return INTEGER;
+		} else if (value instanceof Long) {
+			return LONG;
+		} else if (value instanceof BigDecimal) {
+			return DECIMAL;
+		} else if (value instanceof Timestamp) {
+			return TIMESTAMP;
+		} else if (value instanceof Time) {
+			return TIME;
+		} else if (value instanceof java.sql.Date) {
+			return DATE;
+		} else if (value instanceof java.util.Date) {
+			return UTIL_DATE;
+		} else if (value instanceof Double) {
+			return DOUBLE;
+		} else if (value instanceof Short) {
+			return SHORT;
+		} else if (value instanceof Byte) {
+			return BYTE;
+		} else if (value instanceof Float) {
+			return FLOAT;
+		} else if (value instanceof Boolean) {
+			return BOOLEAN;
+		} else if (value instanceof byte[]) {
+			return BYTES;
+		} else if (value instanceof Character) {
+			return CHAR;
+		} else if (value instanceof BigInteger) {
+			return BIG_INTEGER;
+		}
+		return -1;
+	}
+
+	/**
+	 * Запись значения.
+	 * 
+	 * @param out
+	 *            Поток записи.
+	 * 
+	 * @param value
+	 *            Значение или null.
+	 * 
+	 * @throws IOException
+	 * 
+	 * @throws IllegalArgumentException
+	 *             если класс значения не поддерживается.
+	 */
+	public static void write(DataOutput out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+			return;
+		}
+		byte tag = tag(value);
+		out.writeByte(tag);
+		switch (tag) {
+		case STRING:
+			writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+			break;
+		case INTEGER:
+			out.writeInt((Integer) value);
+			break;
+		case LONG:
+			out.writeLong((Long) value);
+			break;
+		case SHORT:
+			out.writeShort((Short) value);
+			break;
+		case BYTE:
+			out.writeByte((Byte) value);
+			break;
+		case DOUBLE:
+			out.writeDouble((Double) value);
+			break;
+		case FLOAT:
+			out.writeFloat((Float) value);
+			break;
+		case DECIMAL:
+			BigDecimal decimal = (BigDecimal) value;
+			out.writeInt(decimal.scale());
+			writeBytes(out, decimal.unscaledValue().toByteArray());
+			break;
+		case BIG_INTEGER:
+			writeBytes(out, ((BigInteger) value).toByteArray());
+			break;
+		case TIMESTAMP:
+			out.writeLong(((Timestamp) value).getTime());
+			out.writeInt(((Timestamp) value).getNanos());
+			break;
+		case DATE:
+		case TIME:
+		case UTIL_DATE:
+			out.writeLong(((java.util.Date) value).getTime());
+			break;
+		case BOOLEAN:
+			out.writeBoolean((Boolean) value);
+			break;
+		case BYTES:
+			writeBytes(out, (byte[]) value);
+			break;
+		case CHAR:
+			out.writeChar((Character) value);
+			break;
+		default:
+			throw new IllegalArgumentException(
+					MessageFormat.format("Класс {0} не поддерживается", value.getClass().getName()));
+		}
+	}
+
+	private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Чтение значения, записанного методом {@link #write(DataOutput, Object)}.
+	 * 
+	 * @param in
+	 *            Буфер, позиция которого указывает на начало значения. После
+	 *            чтения позиция указывает на следующее значение.
+	 * 
+	 * @return Значение или null.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             если данные повреждены.
+	 */
+	public static Object read(ByteBuffer in) {
+		byte tag = in.get();
+		switch (tag) {
+		case NULL:
+			return null;
+		case STRING:
+			return new String(readBytes(in), StandardCharsets.UTF_8);
+		case INTEGER:
+			return in.getInt();
+		case LONG:
+			return in.getLong();
+		case SHORT:
+			return in.getShort();
+		case BYTE:
+			return in.get();
+		case DOUBLE:
+			return in.getDouble();
+		case FLOAT:
+			return in.getFloat();
+		case DECIMAL:
+			int scale = in.getInt();
+			return new BigDecimal(new BigInteger(readBytes(in)), scale);
+		case BIG_INTEGER:
+			return new BigInteger(readBytes(in));
+		case TIMESTAMP:
+			Timestamp timestamp = new Timestamp(in.getLong());
+			timestamp.setNanos(in.getInt());
+			return timestamp;
+		case DATE:
+			return new java.sql.Date(in.getLong());
+		case TIME:
+			return new Time(in.getLong());
+		case UTIL_DATE:
+			return new java.util.Date(in.getLong());
+		case BOOLEAN:
+			return in.get() != 0;
+		case BYTES:
+			return readBytes(in);
+		case CHAR:
+			return in.getChar();
+		default:
+			throw new IllegalArgumentException(MessageFormat.format("Неизвестный признак значения: {0}", tag));
+		}
+	}
+
+	private static byte[] readBytes(ByteBuffer in) {
+		int length = in.getInt();
+		if (length < 0 || length > in.remaining()) {
+			throw new IllegalArgumentException("Неверная длина значения");
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Словарь значений колонки с малым числом различных значений (коды
+ * состояний, валют, названия категорий и т.п.). Каждому различному значению
+ * присваивается код - его номер в словаре, а одинаковые значения заменяются
+ * одним общим экземпляром. Драйвер JDBC создает для каждой строки свой
+ * экземпляр {@link String}, так что без словаря повторяющееся значение
+ * занимает память столько раз, сколько раз встречается.
+ * <p>
+ * Если различных значений оказывается больше заданного предела, словарь
+ * считается переполненным: он освобождает хеш-таблицу и больше не принимает
+ * значений, потому что для колонки с большим числом различных значений
+ * словарь не экономит, а только расходует память.
+ * <p>
+ * Словарь используется при копировании таблиц в память:
+ * {@link MemoryResultTable} и {@link SpillingResultTable} заменяют
+ * повторяющиеся значения общими экземплярами, а {@link ColumnarResultTable}
+ * хранит вместо значений их коды.
+ * 
+ * @author Q4S
+ * 
+ */
+final class ValueDictionary {
+
+	/**
+	 * Максимальное число различных значений по-умолчанию.
+	 */
+	static final int DEFAULT_MAX_SIZE = 1 << 16;
+
+	/**
+	 * Оценка памяти, занимаемой одним значением в словаре помимо самого
+	 * значения: элемент хеш-таблицы, упакованный код и ссылка в массиве.
+	 */
+	static final long ENTRY_SIZE = 64;
+
+	private final int maxSize;
+
+	/**
+	 * Коды значений или null, если словарь переполнен.
+	 */
+	private Map<Object, Integer> codes = new HashMap<Object, Integer>();
+
+	/**
+	 * Значения по кодам.
+	 */
+	private Object[] values = new Object[16];
+
+	private int size = 0;
+
+	/**
+	 * @param maxSize
+	 *            Максимальное число различных значений.
+	 */
+	ValueDictionary(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param type
+	 *            Тип колонки (может быть null).
+	 * 
+	 * @return Словарь для колонки, значения которой стоит кодировать, или
+	 *         null.
+	 */
+	static ValueDictionary forType(DataType type) {
+		return type == DataType.STRING || type == DataType.CHAR ? new ValueDictionary(DEFAULT_MAX_SIZE) : null;
+	}
+
+	/**
+	 * Получение кода значения. Новое значение добавляется в словарь.
+	 * 
+	 * @param value
+	 *            Непустое значение.
+	 * 
+	 * @return Код значения или -1, если словарь переполнен.
+	 */
+	int encode(Object value) {
+		if (codes == null) {
+			return -1;
+		}
+		Integer code = codes.get(value);
+		if (code != null) {
+			return code;
+		}
+		if (size == maxSize) {
+			// Значений слишком много - словарь не нужен. Уже известные
+			// значения остаются доступны по кодам.
+			codes = null;
+			return -1;
+		}
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size] = value;
+		codes.put(value, size);
+		return size++;
+	}
+
+	/**
+	 * Поиск кода значения без добавления в словарь.
+	 * 
+	 * @param value
+	 *            Значение.
+	 * 
+	 * @return Код значения или -1, если его нет в словаре.
+	 */
+	int find(Object value) {
+		Integer code = codes == null || value == null ? null : codes.get(value);
+		return code == null ? -1 : code;
+	}
+
+	/**
+	 * @param code
+	 *            Код значения.
+	 * 
+	 * @return Значение.
+	 */
+	Object decode(int code) {
+		return values[code];
+	}
+
+	/**
+	 * Замена значения общим экземпляром.
+	 * 
+	 * @param value
+	 *            Значение (может быть null).
+	 * 
+	 * @return Экземпляр, хранящийся в словаре, или само значение, если
+	 *         словарь переполнен.
+	 */
+	Object intern(Object value) {
+		if (value == null) {
+			return null;
+		}
+		int code = encode(value);
+		return code < 0 ? value : values[code];
+	}
+
+	/**
+	 * @return true - если словарь переполнен и больше не используется.
+	 */
+	boolean isOverflowed() {
+		return codes == null;
+	}
+
+	/**
+	 * @return Число значений в словаре.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return Оценка памяти, занимаемой словарем вместе со значениями, в
+	 *         байтах.
+	 */
+	long memorySize() {
+		if (codes == null) {
+			return 0;
+		}
+		long total = 64 + 4L * values.length;
+		for (int code = 0; code < size; code++) {
+			total += ENTRY_SIZE + SpillingResultTable.estimate(values[code], null);
+		}
+		return total;
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import q4s.dafobi.data.RowImpl;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Способ чтения значения колонки из {@link ResultSet}. Выбирается один раз
+ * для каждой колонки по ее типу данных, что позволяет не вызывать для каждой
+ * ячейки универсальный {@link ResultSet#getObject(int)} и не преобразовывать
+ * затем его результат.
+ * <p>
+ * Значения возвращаются в тех же классах, в которых их хранит
+ * {@link RowImpl}.
+ * 
+ * @author Q4S
+ * 
+ */
+enum JdbcColumnReader {
+
+	STRING {
+		@Override
+		Object read(ResultSet resultSet, int index) throws SQLException {
+			return resultSet.getString(index);
+		}
+	},
+
+	INTEGER {
+		@Override
+		Object read(ResultSet resultSet, int index) throws SQLException {
+			// Integer хранится как Long
+			long value = resultSet.getInt(index);
+			return resultSet.wasNull() ? null : Long.valueOf(value);
+		}
+	},
+
+	LONG {
+		@Override
+		Object read(ResultSet resultSet, int index) throws SQLException {
+			long value = resultSet.getLong(index);
+			return resultSet.wasNull() ? null : Long.valueOf(value);
+		}
+	},
+
+	DECIMAL {
+		@Override
+		Object read(ResultSet resultSet, int index) throws SQLException {
+			return resultSet.getBigDecimal(index);
+		}
+	},
+
+	DATE {
+		@Override
+		Object read(ResultSet resultSet, int index) throws SQLException {
+			return resultSet.getDate(index);
+		}
+	},
+
+	TIME {
+		@Override
+		Object read(ResultSet resultSet, int index) throws SQLException {
+			return resultSet.getTime(index);
+		}
+	},
+
+	TIMESTAMP {
+		@Override
+		Object read(ResultSet resultSet, int index) throws SQLException {
+			return resultSet.getTimestamp(index);
+		}
+	},
+
+	/**
+	 * Типы, для которых нет специального способа чтения.
+	 */
+	OBJECT {
+		@Override
+		Object read(ResultSet resultSet, int index) throws SQLException {
+			return RowImpl.convertValue(resultSet.getObject(index));
+		}
+	};
+
+	/**
+	 * Чтение значения колонки текущей строки.
+	 * 
+	 * @param resultSet
+	 *            Источник данных.
+	 * 
+	 * @param index
+	 *            Номер колонки в терминах JDBC (начиная с 1).
+	 * 
+	 * @return Значение колонки или null.
+	 * 
+	 * @throws SQLException
+	 */
+	abstract Object read(ResultSet resultSet, int index) throws SQLException;
+
+	/**
+	 * Выбор способа чтения для типа данных.
+	 * 
+	 * @param type
+	 *            Тип данных колонки.
+	 * 
+	 * @return Способ чтения.
+	 */
+	static JdbcColumnReader forType(DataType type) {
+		switch (type) {
+		case STRING:
+			return STRING;
+		case INTEGER:
+			return INTEGER;
+		case LONG:
+			return LONG;
+		case DECIMAL:
+			return DECIMAL;
+		case DATE:
+			return DATE;
+		case TIME:
+			return TIME;
+		case TIMESTAMP:
+			return TIMESTAMP;
+		default:
+			// LONGSTRING (CLOB) и прочие типы читаются как и раньше.
+			return OBJECT;
+		}
+	}
+}
@@ -20,17 +20,74 @@ package q4s.dafobi.data.jdbc;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
+import q4s.dafobi.common.DataParam;
 import q4s.dafobi.data.AbstractConnection;
 import q4s.dafobi.data.IStatement;
 import q4s.dafobi.exception.DataException;
 
 public class JdbcConnection extends AbstractConnection {
 
+	/**
+	 * Размер кеша операторов, используемый по-умолчанию.
+	 */
+	public static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
 	private final Connection connection;
 
+	/**
+	 * Кеш подготовленных операторов данного подключения.
+	 */
+	private final JdbcStatementCache statementCache;
+
+	/**
+	 * Признак использования {@link java.sql.ParameterMetaData} при подготовке
+	 * операторов.
+	 */
+	private boolean useParameterMetaData = false;
+
+	/**
+	 * Признак объединения операторов скрипта в пакеты.
+	 */
+	private boolean batchScripts = true;
+
+	/**
+	 * Объем памяти на порцию строк курсора для адаптивной выборки.
+	 */
+	private long fetchMemory = 0;
+
+	/**
+	 * Кеш результатов запросов или null, если он не используется.
+	 */
+	private JdbcResultCache resultCache;
+
+	/**
+	 * Таблицы, измененные в текущей транзакции, или null, если изменений не
+	 * было. Элемент {@link #ALL_TABLES} означает, что измененные таблицы
+	 * неизвестны.
+	 */
+	private Set<String> modifiedTables;
+
+	private static final String ALL_TABLES = "*";
+
 	public JdbcConnection(Connection connection) {
+		this(connection, DEFAULT_STATEMENT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param connection
+	 *            Подключение JDBC.
+	 * 
+	 * @param statementCacheSize
+	 *            Максимальное число операторов, хранящихся в кеше. Значение 0
+	 *            отключает кеширование.
+	 */
+	public JdbcConnection(Connection connection, int statementCacheSize) {
 		this.connection = connection;
+		this.statementCache = new JdbcStatementCache(statementCacheSize);
 	}
 
 	/**
@@ -40,6 +97,168 @@ public class JdbcConnection extends AbstractConnection {
 		return this.connection;
 	}
 
+	/**
+	 * @return true - если при подготовке операторов запрашиваются описания
+	 *         параметров у драйвера.
+	 */
+	public final boolean isUseParameterMetaData() {
+		return useParameterMetaData;
+	}
+
+	/**
+	 * Включает запрос описаний параметров ({@link java.sql.ParameterMetaData})
+	 * при подготовке новых операторов. Объявленные в базе типы параметров
+	 * используются при установке пустых значений. Для некоторых драйверов
+	 * такой запрос означает лишнее обращение к серверу, поэтому по-умолчанию
+	 * он выключен. Операторы, уже находящиеся в кеше, не меняются.
+	 * 
+	 * @param useParameterMetaData
+	 *            true - запрашивать описания параметров.
+	 */
+	public final void setUseParameterMetaData(boolean useParameterMetaData) {
+		this.useParameterMetaData = useParameterMetaData;
+	}
+
+	/**
+	 * @return true - если однотипные операторы скрипта объединяются в пакеты.
+	 */
+	public final boolean isBatchScripts() {
+		return batchScripts;
+	}
+
+	/**
+	 * Включает объединение подряд идущих однотипных операторов DML и DDL в
+	 * пакеты при выполнении скриптов методом
+	 * {@link #executeScript(String, Map)} (см. {@link JdbcScriptBatch}).
+	 * Порядок выполнения и возвращаемые количества строк сохраняются, но
+	 * некоторые драйверы вместо количества строк в пакете возвращают
+	 * {@link java.sql.Statement#SUCCESS_NO_INFO}. По-умолчанию включено.
+	 * 
+	 * @param batchScripts
+	 *            true - объединять операторы в пакеты.
+	 */
+	public final void setBatchScripts(boolean batchScripts) {
+		this.batchScripts = batchScripts;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.AbstractConnection#executeOperators(java.lang.String[],
+	 * java.util.Map)
+	 */
+	@Override
+	protected int[] executeOperators(String[] operators, Map<String, DataParam> parameters) {
+		if (!batchScripts || operators.length < 2) {
+			return super.executeOperators(operators, parameters);
+		}
+		try {
+			return new JdbcScriptBatch(this, operators, parameters).execute();
+
+		} finally {
+			// Часть операторов пакета выполняется в обход JdbcStatement.
+			if (resultCache != null) {
+				for (String operator : operators) {
+					tablesModified(SqlLexer.findTables(new SqlLexer(operator).getProcessedQuery()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Объем памяти на порцию строк курсора или 0.
+	 */
+	public final long getFetchMemory() {
+		return fetchMemory;
+	}
+
+	/**
+	 * Включает адаптивный подбор порции выборки для всех запросов этого
+	 * подключения, у операторов которых не заданы ни размер порции, ни свой
+	 * объем памяти (см. {@link IStatement#setFetchMemory(long)}).
+	 * 
+	 * @param fetchMemory
+	 *            Примерный объем памяти на порцию строк курсора в байтах или
+	 *            0, чтобы выключить адаптивный подбор.
+	 */
+	public final void setFetchMemory(long fetchMemory) {
+		if (fetchMemory < 0) {
+			throw new IllegalArgumentException("Объем памяти не может быть отрицательным");
+		}
+		this.fetchMemory = fetchMemory;
+	}
+
+	/**
+	 * @return Кеш результатов запросов или null, если он не используется.
+	 */
+	public final JdbcResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Подключение кеша результатов запросов (см. {@link JdbcResultCache}).
+	 * Один кеш может использоваться несколькими подключениями к одной базе.
+	 * 
+	 * @param resultCache
+	 *            Кеш или null, чтобы отключить кеширование.
+	 */
+	public final void setResultCache(JdbcResultCache resultCache) {
+		this.resultCache = resultCache;
+		this.modifiedTables = null;
+	}
+
+	/**
+	 * Метод вызывается после выполнения оператора, изменяющего данные.
+	 * Результаты, прочитанные из затронутых таблиц, инвалидируются сразу, а
+	 * если изменения не зафиксированы, то еще раз при фиксации: до нее другие
+	 * подключения могли снова поместить в кеш старые данные.
+	 * 
+	 * @param tables
+	 *            Измененные таблицы. Пустой массив означает, что таблицы
+	 *            неизвестны.
+	 */
+	final void tablesModified(String[] tables) {
+		if (resultCache == null) {
+			return;
+		}
+		resultCache.invalidate(tables);
+		if (!getAutocommit()) {
+			if (modifiedTables == null) {
+				modifiedTables = new HashSet<String>();
+			}
+			if (tables.length == 0) {
+				modifiedTables.add(ALL_TABLES);
+			} else {
+				for (String table : tables) {
+					modifiedTables.add(table);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param tables
+	 *            Таблицы запроса.
+	 * 
+	 * @return true - если какая-то из таблиц изменена в текущей транзакции.
+	 *         Такой запрос выполняется в обход кеша: он должен видеть
+	 *         незафиксированные изменения, а в кеш они попасть не должны.
+	 */
+	final boolean isModified(String[] tables) {
+		if (modifiedTables == null) {
+			return false;
+		}
+		if (modifiedTables.contains(ALL_TABLES)) {
+			return true;
+		}
+		for (String table : tables) {
+			if (modifiedTables.contains(table)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -47,10 +266,63 @@ public class JdbcConnection extends AbstractConnection {
 	 */
 	@Override
 	public IStatement prepare(final String statement) {
+		JdbcStatement stmt = statementCache.lease(statement);
+		if (stmt == null) {
+			stmt = createStatement(statement);
+		}
+		return stmt;
+	}
+
+	/**
+	 * Создание нового оператора. Метод вызывается только тогда, когда
+	 * подходящего оператора не нашлось в кеше.
+	 * 
+	 * @param statement
+	 *            Текст оператора.
+	 * 
+	 * @return Новый оператор.
+	 */
+	protected JdbcStatement createStatement(final String statement) {
 		// TODO здесь должен быть механизм выбора правильной имплементации
 		return new JdbcStatement(this, statement);
 	}
 
+	/**
+	 * Возврат закрытого пользователем оператора в кеш.
+	 * 
+	 * @param statement
+	 *            Закрываемый оператор.
+	 * 
+	 * @return true - если оператор остался в кеше; false - если его надо
+	 *         закрыть физически.
+	 */
+	boolean releaseStatement(final JdbcStatement statement) {
+		return statementCache.release(statement);
+	}
+
+	/**
+	 * @return Кеш подготовленных операторов данного подключения. Через него
+	 *         можно получить статистику попаданий и вытеснений.
+	 */
+	public final JdbcStatementCache getStatementCache() {
+		return statementCache;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.AbstractConnection#close()
+	 */
+	@Override
+	public void close() {
+		try {
+			super.close();
+
+		} finally {
+			statementCache.clear();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -94,6 +366,17 @@ public class JdbcConnection extends AbstractConnection {
 		} catch (SQLException e) {
 			throw new DataException(e);
 		}
+
+		if (modifiedTables != null) {
+			if (resultCache != null) {
+				if (modifiedTables.contains(ALL_TABLES)) {
+					resultCache.invalidateAll();
+				} else {
+					resultCache.invalidate(modifiedTables.toArray(new String[modifiedTables.size()]));
+				}
+			}
+			modifiedTables = null;
+		}
 	}
 
 	/*
@@ -109,6 +392,7 @@ public class JdbcConnection extends AbstractConnection {
 		} catch (SQLException e) {
 			throw new DataException(e);
 		}
+		modifiedTables = null;
 	}
 
 	/*
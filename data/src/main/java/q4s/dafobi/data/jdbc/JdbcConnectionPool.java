@@ -0,0 +1,839 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import q4s.dafobi.exception.DataException;
+
+/**
+ * Пул подключений JDBC.
+ * <p>
+ * Пул выдает подключения {@link JdbcConnection}, каждое из которых
+ * привязано к своему физическому подключению и сохраняет кеш подготовленных
+ * операторов на все время его жизни. Закрытие выданного подключения
+ * завершает транзакцию (как и у обычного подключения) и возвращает его в
+ * пул.
+ * <p>
+ * Число физических подключений не превышает {@link #getMaxSize()}. Если все
+ * подключения заняты, то запрос ожидает освобождения одного из них не
+ * дольше {@link #getMaxWaitMillis()}; ожидающие обслуживаются в порядке
+ * очереди, и новые запросы не обходят их, даже если подключение освободилось
+ * в момент запроса. Свободные подключения проверяются перед выдачей, а те, что
+ * простаивают дольше {@link #getIdleTimeoutMillis()}, закрываются фоновой
+ * задачей, пока их число больше {@link #getMinSize()}. Эта же задача
+ * открывает подключения, если их меньше минимального числа.
+ * <p>
+ * Настройки задаются до первого получения подключения.
+ * 
+ * <pre>
+ * try (JdbcConnectionPool pool = new JdbcConnectionPool(url, user, password)) {
+ * 	pool.setMaxSize(20);
+ * 	try (IConnection connection = pool.getConnection()) {
+ * 		...
+ * 	}
+ * }
+ * </pre>
+ * 
+ * @author Q4S
+ * 
+ */
+public class JdbcConnectionPool implements AutoCloseable {
+
+	/**
+	 * Источник физических подключений.
+	 */
+	@FunctionalInterface
+	private interface ConnectionFactory {
+		Connection open() throws SQLException;
+	}
+
+	private final ConnectionFactory factory;
+
+	private int minSize = 0;
+
+	private int maxSize = 10;
+
+	private long maxWaitMillis = 30000;
+
+	private long idleTimeoutMillis = 600000;
+
+	private long maintenanceIntervalMillis = 30000;
+
+	private boolean validateOnBorrow = true;
+
+	private int validationTimeout = 5;
+
+	private boolean autocommit = false;
+
+	private int statementCacheSize = JdbcConnection.DEFAULT_STATEMENT_CACHE_SIZE;
+
+	private JdbcResultCache resultCache;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Очередь ожидающих подключения: у каждого свое условие, и сигнал
+	 * получает только первый в очереди. Пока очередь не пуста, новые запросы
+	 * встают в ее конец.
+	 */
+	private final Deque<Condition> waiters = new ArrayDeque<Condition>();
+
+	/**
+	 * Свободные подключения. Последнее возвращенное выдается первым, чтобы
+	 * редко используемые подключения дольше простаивали и закрывались.
+	 */
+	private final Deque<PooledJdbcConnection> idle = new ArrayDeque<PooledJdbcConnection>();
+
+	/**
+	 * Число физических подключений, включая те, что сейчас открываются.
+	 */
+	private int total = 0;
+
+	private int active = 0;
+
+	private boolean closed = false;
+
+	private ScheduledExecutorService maintenance = null;
+
+	private long borrows = 0;
+
+	private long waits = 0;
+
+	private long totalWaitNanos = 0;
+
+	private long maxWaitNanos = 0;
+
+	private long timeouts = 0;
+
+	private long created = 0;
+
+	private long destroyed = 0;
+
+	private long validationFailures = 0;
+
+	/**
+	 * @see JdbcConnectionPool
+	 * 
+	 * @param dataSource
+	 *            Источник физических подключений.
+	 */
+	public JdbcConnectionPool(DataSource dataSource) {
+		this.factory = dataSource::getConnection;
+	}
+
+	/**
+	 * @see JdbcConnectionPool
+	 * 
+	 * @param url
+	 *            Адрес базы данных для {@link DriverManager}.
+	 * 
+	 * @param user
+	 *            Пользователь.
+	 * 
+	 * @param password
+	 *            Пароль.
+	 */
+	public JdbcConnectionPool(String url, String user, String password) {
+		this.factory = () -> DriverManager.getConnection(url, user, password);
+	}
+
+	/**
+	 * @return Минимальное число физических подключений.
+	 */
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * @param minSize
+	 *            Минимальное число физических подключений, которые не
+	 *            закрываются при простое.
+	 */
+	public void setMinSize(int minSize) {
+		if (minSize < 0) {
+			throw new IllegalArgumentException("Размер пула не может быть отрицательным");
+		}
+		this.minSize = minSize;
+	}
+
+	/**
+	 * @return Максимальное число физических подключений.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @param maxSize
+	 *            Максимальное число физических подключений.
+	 */
+	public void setMaxSize(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Размер пула должен быть положительным");
+		}
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return Максимальное время ожидания свободного подключения в
+	 *         миллисекундах.
+	 */
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+
+	/**
+	 * @param maxWaitMillis
+	 *            Максимальное время ожидания свободного подключения в
+	 *            миллисекундах.
+	 */
+	public void setMaxWaitMillis(long maxWaitMillis) {
+		if (maxWaitMillis < 0) {
+			throw new IllegalArgumentException("Время ожидания не может быть отрицательным");
+		}
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	/**
+	 * @return Время простоя в миллисекундах, после которого свободное
+	 *         подключение закрывается.
+	 */
+	public long getIdleTimeoutMillis() {
+		return idleTimeoutMillis;
+	}
+
+	/**
+	 * @param idleTimeoutMillis
+	 *            Время простоя в миллисекундах, после которого свободное
+	 *            подключение закрывается. Значение 0 отключает закрытие.
+	 */
+	public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+		if (idleTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Время простоя не может быть отрицательным");
+		}
+		this.idleTimeoutMillis = idleTimeoutMillis;
+	}
+
+	/**
+	 * @param maintenanceIntervalMillis
+	 *            Интервал запуска фоновой задачи обслуживания пула в
+	 *            миллисекундах. Значение 0 отключает задачу, и тогда
+	 *            обслуживание выполняется только методом {@link #maintain()}.
+	 */
+	public void setMaintenanceIntervalMillis(long maintenanceIntervalMillis) {
+		if (maintenanceIntervalMillis < 0) {
+			throw new IllegalArgumentException("Интервал не может быть отрицательным");
+		}
+		this.maintenanceIntervalMillis = maintenanceIntervalMillis;
+	}
+
+	/**
+	 * @param validateOnBorrow
+	 *            true - проверять свободное подключение перед выдачей (см.
+	 *            {@link Connection#isValid(int)}).
+	 */
+	public void setValidateOnBorrow(boolean validateOnBorrow) {
+		this.validateOnBorrow = validateOnBorrow;
+	}
+
+	/**
+	 * @param validationTimeout
+	 *            Время проверки подключения в секундах.
+	 */
+	public void setValidationTimeout(int validationTimeout) {
+		this.validationTimeout = validationTimeout;
+	}
+
+	/**
+	 * @param autocommit
+	 *            Режим автоматической фиксации, в котором подключения
+	 *            выдаются пользователю. Если пользователь его изменил, то при
+	 *            возврате в пул режим восстанавливается.
+	 */
+	public void setAutocommit(boolean autocommit) {
+		this.autocommit = autocommit;
+	}
+
+	/**
+	 * @param statementCacheSize
+	 *            Размер кеша операторов каждого физического подключения.
+	 */
+	public void setStatementCacheSize(int statementCacheSize) {
+		if (statementCacheSize < 0) {
+			throw new IllegalArgumentException("Размер кеша не может быть отрицательным");
+		}
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	/**
+	 * @return Общий для подключений пула кеш результатов запросов или null.
+	 */
+	public JdbcResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Установка кеша результатов запросов, общего для всех подключений пула
+	 * (см. {@link JdbcConnection#setResultCache(JdbcResultCache)}). Как и
+	 * размер кеша операторов, действует на подключения, открытые после
+	 * вызова.
+	 * 
+	 * @param resultCache
+	 *            Кеш или null.
+	 */
+	public void setResultCache(JdbcResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * Получение подключения из пула. Подключение надо обязательно закрыть,
+	 * чтобы вернуть его в пул.
+	 * 
+	 * @return Подключение.
+	 * 
+	 * @throws DataException
+	 *             если подключение не удалось открыть или свободное
+	 *             подключение не появилось за отведенное время.
+	 */
+	public JdbcConnection getConnection() {
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		boolean waited = false;
+
+		while (true) {
+			PooledJdbcConnection connection = null;
+			lock.lock();
+			try {
+				if (closed) {
+					throw new IllegalStateException("Пул подключений закрыт");
+				}
+				startMaintenance();
+
+				if (waiters.isEmpty() && !isExhausted()) {
+					connection = take();
+				} else {
+					waited = true;
+					Condition ready = lock.newCondition();
+					waiters.addLast(ready);
+					try {
+						await(ready, deadline);
+						connection = take();
+					} finally {
+						waiters.remove(ready);
+						signalNext();
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			if (connection == null) {
+				connection = open();
+			} else if (!isValid(connection)) {
+				continue;
+			}
+
+			lock.lock();
+			try {
+				long waitNanos = System.nanoTime() - start;
+				borrows++;
+				if (waited) {
+					waits++;
+				}
+				totalWaitNanos += waitNanos;
+				maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+				active++;
+			} finally {
+				lock.unlock();
+			}
+			connection.lease();
+			return connection;
+		}
+	}
+
+	/**
+	 * @return true - если нет ни свободных подключений, ни места для нового.
+	 *         Вызывается под блокировкой.
+	 */
+	private boolean isExhausted() {
+		return idle.isEmpty() && total >= maxSize;
+	}
+
+	/**
+	 * Ожидание своей очереди и свободного подключения (или места для него).
+	 * Вызывается под блокировкой.
+	 * 
+	 * @param ready
+	 *            Условие ожидающего в очереди {@link #waiters}.
+	 * 
+	 * @param deadline
+	 *            Момент окончания ожидания по {@link System#nanoTime()}.
+	 */
+	private void await(Condition ready, long deadline) {
+		while (waiters.peekFirst() != ready || isExhausted()) {
+			if (closed) {
+				throw new IllegalStateException("Пул подключений закрыт");
+			}
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				timeouts++;
+				throw new DataException(new SQLTimeoutException(
+						MessageFormat.format("Нет свободных подключений в течение {0} мс (всего подключений: {1})",
+								maxWaitMillis, total)));
+			}
+			try {
+				ready.awaitNanos(remaining);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Ожидание подключения прервано", e);
+			}
+		}
+		if (closed) {
+			throw new IllegalStateException("Пул подключений закрыт");
+		}
+	}
+
+	/**
+	 * Получение свободного подключения или резервирование места для нового.
+	 * Вызывается под блокировкой.
+	 * 
+	 * @return Свободное подключение или null, если место зарезервировано.
+	 */
+	private PooledJdbcConnection take() {
+		PooledJdbcConnection connection = idle.pollFirst();
+		if (connection == null) {
+			// Место для нового подключения резервируется заранее, а само
+			// подключение открывается без блокировки.
+			total++;
+		}
+		return connection;
+	}
+
+	/**
+	 * Сигнал первому в очереди ожидающих, если для него есть подключение или
+	 * место. Вызывается под блокировкой.
+	 */
+	private void signalNext() {
+		Condition head = waiters.peekFirst();
+		if (head != null && !isExhausted()) {
+			head.signal();
+		}
+	}
+
+	/**
+	 * Открытие нового физического подключения, место для которого уже
+	 * зарезервировано. При любой ошибке место освобождается.
+	 */
+	private PooledJdbcConnection open() {
+		Connection connection = null;
+		try {
+			connection = factory.open();
+			if (connection == null) {
+				throw new IllegalStateException("Источник подключений не вернул подключение");
+			}
+			connection.setAutoCommit(autocommit);
+			lock.lock();
+			try {
+				created++;
+			} finally {
+				lock.unlock();
+			}
+			PooledJdbcConnection pooled = new PooledJdbcConnection(this, connection, statementCacheSize);
+			pooled.setResultCache(resultCache);
+			return pooled;
+
+		} catch (SQLException e) {
+			abandon(connection, e);
+			throw new DataException(e);
+
+		} catch (RuntimeException | Error e) {
+			abandon(connection, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Закрытие подключения, которое не удалось открыть полностью, и
+	 * освобождение зарезервированного для него места.
+	 * 
+	 * @param connection
+	 *            Физическое подключение или null.
+	 * 
+	 * @param cause
+	 *            Ошибка открытия, к которой добавляется ошибка закрытия.
+	 */
+	private void abandon(Connection connection, Throwable cause) {
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (SQLException suppressed) {
+				cause.addSuppressed(suppressed);
+			}
+		}
+		lock.lock();
+		try {
+			total--;
+			signalNext();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Проверка свободного подключения перед выдачей. Неисправное подключение
+	 * закрывается.
+	 */
+	private boolean isValid(PooledJdbcConnection connection) {
+		if (!validateOnBorrow) {
+			return true;
+		}
+		boolean valid;
+		try {
+			valid = connection.getConnection().isValid(validationTimeout);
+		} catch (SQLException e) {
+			valid = false;
+		}
+		if (!valid) {
+			lock.lock();
+			try {
+				validationFailures++;
+			} finally {
+				lock.unlock();
+			}
+			destroy(connection);
+		}
+		return valid;
+	}
+
+	/**
+	 * Возврат подключения в пул. Вызывается при закрытии подключения.
+	 * 
+	 * @param connection
+	 *            Возвращаемое подключение.
+	 * 
+	 * @param reusable
+	 *            false - если транзакцию не удалось завершить, и подключение
+	 *            надо закрыть.
+	 */
+	void release(PooledJdbcConnection connection, boolean reusable) {
+		if (reusable) {
+			try {
+				if (connection.getAutocommit() != autocommit) {
+					connection.setAutocommit(autocommit);
+				}
+			} catch (DataException e) {
+				reusable = false;
+			}
+		}
+
+		lock.lock();
+		try {
+			active--;
+			if (reusable && !closed) {
+				idle.addFirst(connection);
+				signalNext();
+				return;
+			}
+		} finally {
+			lock.unlock();
+		}
+		destroy(connection);
+	}
+
+	/**
+	 * Физическое закрытие подключения и освобождение места в пуле.
+	 */
+	private void destroy(PooledJdbcConnection connection) {
+		connection.destroy();
+		lock.lock();
+		try {
+			total--;
+			destroyed++;
+			signalNext();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Запуск фоновой задачи обслуживания. Вызывается под блокировкой.
+	 */
+	private void startMaintenance() {
+		if (maintenance == null && maintenanceIntervalMillis > 0) {
+			maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "dafobi-pool");
+				thread.setDaemon(true);
+				return thread;
+			});
+			maintenance.scheduleWithFixedDelay(this::maintain, 0, maintenanceIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Обслуживание пула: закрытие подключений, простаивающих дольше
+	 * {@link #getIdleTimeoutMillis()} (пока подключений больше минимального
+	 * числа), и открытие недостающих до минимального числа подключений.
+	 */
+	public void maintain() {
+		List<PooledJdbcConnection> expired = new ArrayList<PooledJdbcConnection>();
+		int missing;
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			if (idleTimeoutMillis > 0) {
+				long limit = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+				// Дольше всех простаивают подключения в конце очереди.
+				Iterator<PooledJdbcConnection> iterator = idle.descendingIterator();
+				while (iterator.hasNext() && total - expired.size() > minSize) {
+					PooledJdbcConnection connection = iterator.next();
+					if (connection.getReleasedAt() - limit > 0) {
+						break;
+					}
+					iterator.remove();
+					expired.add(connection);
+				}
+			}
+			missing = Math.max(0, Math.min(minSize, maxSize) - total);
+			total += missing;
+		} finally {
+			lock.unlock();
+		}
+
+		for (PooledJdbcConnection connection : expired) {
+			destroy(connection);
+		}
+		for (int i = 0; i < missing; i++) {
+			PooledJdbcConnection connection;
+			try {
+				connection = open();
+			} catch (DataException e) {
+				// Место уже освобождено; попытка повторится при следующем
+				// обслуживании.
+				continue;
+			}
+			lock.lock();
+			try {
+				if (!closed) {
+					idle.addLast(connection);
+					signalNext();
+					connection = null;
+				}
+			} finally {
+				lock.unlock();
+			}
+			if (connection != null) {
+				destroy(connection);
+			}
+		}
+	}
+
+	/**
+	 * Закрытие пула. Свободные подключения закрываются сразу, а выданные -
+	 * при возврате в пул. Ожидающие получения подключения завершаются
+	 * исключением.
+	 */
+	@Override
+	public void close() {
+		List<PooledJdbcConnection> connections;
+		lock.lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (maintenance != null) {
+				maintenance.shutdownNow();
+			}
+			connections = new ArrayList<PooledJdbcConnection>(idle);
+			idle.clear();
+			for (Condition waiter : waiters) {
+				waiter.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+		for (PooledJdbcConnection connection : connections) {
+			destroy(connection);
+		}
+	}
+
+	/**
+	 * @return Число подключений, выданных пользователям.
+	 */
+	public int getActiveCount() {
+		lock.lock();
+		try {
+			return active;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Число свободных подключений.
+	 */
+	public int getIdleCount() {
+		lock.lock();
+		try {
+			return idle.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Число запросов, ожидающих подключения.
+	 */
+	public int getWaitingCount() {
+		lock.lock();
+		try {
+			return waiters.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Общее число физических подключений.
+	 */
+	public int getTotalCount() {
+		lock.lock();
+		try {
+			return total;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Число выданных подключений.
+	 */
+	public long getBorrowCount() {
+		lock.lock();
+		try {
+			return borrows;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Число выдач, которым пришлось ждать освобождения подключения.
+	 */
+	public long getWaitCount() {
+		lock.lock();
+		try {
+			return waits;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Суммарное время получения подключений в наносекундах.
+	 */
+	public long getTotalWaitNanos() {
+		lock.lock();
+		try {
+			return totalWaitNanos;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Наибольшее время получения подключения в наносекундах.
+	 */
+	public long getMaxWaitNanos() {
+		lock.lock();
+		try {
+			return maxWaitNanos;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Число запросов, не дождавшихся свободного подключения.
+	 */
+	public long getTimeoutCount() {
+		lock.lock();
+		try {
+			return timeouts;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Число открытых физических подключений за время работы пула.
+	 */
+	public long getCreatedCount() {
+		lock.lock();
+		try {
+			return created;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Число закрытых физических подключений за время работы пула.
+	 */
+	public long getDestroyedCount() {
+		lock.lock();
+		try {
+			return destroyed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Число подключений, не прошедших проверку перед выдачей.
+	 */
+	public long getValidationFailureCount() {
+		lock.lock();
+		try {
+			return validationFailures;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
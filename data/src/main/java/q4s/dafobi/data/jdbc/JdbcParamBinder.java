@@ -0,0 +1,198 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Способ установки значения параметра оператора JDBC. Выбирается по типу
+ * данных параметра без перебора вариантов при каждой установке (см.
+ * {@link #forType(DataType)}). Пустые значения устанавливаются методом
+ * {@link PreparedStatement#setNull(int, int)}.
+ * 
+ * @author Q4S
+ * 
+ */
+enum JdbcParamBinder {
+
+	STRING {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setString(index, (String) value);
+		}
+	},
+
+	CLOB {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			// Значения типа LONGSTRING хранятся как строки, но на всякий
+			// случай поддержим и передачу самого CLOB.
+			if (value instanceof Clob) {
+				statement.setClob(index, (Clob) value);
+			} else {
+				statement.setString(index, value.toString());
+			}
+		}
+	},
+
+	CHAR {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setString(index, value.toString());
+		}
+	},
+
+	SHORT {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setShort(index, ((Number) value).shortValue());
+		}
+	},
+
+	INTEGER {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setInt(index, ((Number) value).intValue());
+		}
+	},
+
+	LONG {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setLong(index, ((Number) value).longValue());
+		}
+	},
+
+	FLOAT {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setFloat(index, ((Number) value).floatValue());
+		}
+	},
+
+	DOUBLE {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setDouble(index, ((Number) value).doubleValue());
+		}
+	},
+
+	DECIMAL {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setBigDecimal(index, (BigDecimal) value);
+		}
+	},
+
+	DATE {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setDate(index, (Date) value);
+		}
+	},
+
+	TIME {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			statement.setTime(index, (Time) value);
+		}
+	},
+
+	TIMESTAMP {
+		@Override
+		void bindValue(PreparedStatement statement, int index, Object value) throws SQLException {
+			// С полем Timestamp в Оракле происходит хрень. Если понадобится,
+			// баг можно купировать путем перевода в другой тип:
+			// statement.setObject(index, new Date(((Timestamp) value).getTime()));
+			statement.setTimestamp(index, (Timestamp) value);
+		}
+	};
+
+	/**
+	 * Способы установки, упорядоченные по {@link DataType#ordinal()}.
+	 */
+	private static final JdbcParamBinder[] BY_TYPE;
+
+	static {
+		DataType[] types = DataType.values();
+		BY_TYPE = new JdbcParamBinder[types.length];
+		for (DataType type : types) {
+			BY_TYPE[type.ordinal()] = type == DataType.LONGSTRING ? CLOB : valueOf(type.name());
+		}
+	}
+
+	/**
+	 * Установка непустого значения параметра.
+	 * 
+	 * @param statement
+	 *            Оператор.
+	 * 
+	 * @param index
+	 *            Позиция параметра в операторе (начиная с 1).
+	 * 
+	 * @param value
+	 *            Значение (не null).
+	 * 
+	 * @throws SQLException
+	 */
+	abstract void bindValue(PreparedStatement statement, int index, Object value) throws SQLException;
+
+	/**
+	 * Установка значения параметра, в том числе пустого.
+	 * 
+	 * @param statement
+	 *            Оператор.
+	 * 
+	 * @param index
+	 *            Позиция параметра в операторе (начиная с 1).
+	 * 
+	 * @param value
+	 *            Значение или null.
+	 * 
+	 * @param sqlType
+	 *            Тип JDBC, с которым устанавливается пустое значение.
+	 * 
+	 * @throws SQLException
+	 */
+	final void bind(PreparedStatement statement, int index, Object value, int sqlType) throws SQLException {
+		if (value == null) {
+			statement.setNull(index, sqlType);
+		} else {
+			bindValue(statement, index, value);
+		}
+	}
+
+	/**
+	 * @param type
+	 *            Тип данных параметра.
+	 * 
+	 * @return Способ установки значений этого типа.
+	 */
+	static JdbcParamBinder forType(DataType type) {
+		return BY_TYPE[type.ordinal()];
+	}
+}
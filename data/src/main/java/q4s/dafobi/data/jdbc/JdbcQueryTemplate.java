@@ -0,0 +1,233 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Результат разбора текста запроса: запрос в форме, пригодной для JDBC,
+ * соответствие имен параметров их позициям и т.п. Объект неизменяем, поэтому
+ * один и тот же шаблон разделяется всеми операторами с одинаковым текстом во
+ * всех подключениях (см. {@link JdbcStatement#getTemplateCache()}).
+ * 
+ * @author Q4S
+ * 
+ */
+public final class JdbcQueryTemplate {
+
+	/**
+	 * Исходный текст запроса.
+	 */
+	private final String query;
+
+	/**
+	 * Запрос, превращенный в форму, пригодную для использования в JDBC.
+	 */
+	private final String parsedQuery;
+
+	/**
+	 * Запрос, из которого в дополнение ко всему удалены комментарии.
+	 */
+	private final String processedQuery;
+
+	/**
+	 * Maps all parameter names to arrays of ints which are the parameter
+	 * indices.
+	 */
+	private final Map<String, int[]> indexMap;
+
+	/**
+	 * Maps out parameter names to the parameter indices.
+	 */
+	private final Map<String, Integer> inOutParams;
+
+	private final String[] paramNames;
+
+	/**
+	 * Номера параметров (слотов) по именам. Номер параметра - это его
+	 * позиция в массиве {@link #paramNames}.
+	 */
+	private final Map<String, Integer> slots;
+
+	/**
+	 * Позиции в запросе для каждого слота.
+	 */
+	private final int[][] slotIndexes;
+
+	private final String[] outParamNames;
+
+	private final boolean callable;
+
+	/**
+	 * Время жизни результата в кеше из подсказки <tt>/&#42;+dafobi_cache&#42;/</tt>
+	 * или -1, если запрос не кешируется.
+	 */
+	private final long cacheTtl;
+
+	/**
+	 * Таблицы, упоминаемые в запросе (см. {@link SqlLexer#findTables(String)}).
+	 */
+	private final String[] tables;
+
+	JdbcQueryTemplate(String query, String parsedQuery, String processedQuery, Map<String, int[]> indexMap,
+			Map<String, Integer> inOutParams, boolean callable, long cacheTtl) {
+		this.query = query;
+		this.parsedQuery = parsedQuery;
+		this.processedQuery = processedQuery;
+		this.indexMap = Collections.unmodifiableMap(indexMap);
+		this.inOutParams = Collections.unmodifiableMap(inOutParams);
+		this.paramNames = indexMap.keySet().toArray(new String[0]);
+		this.slots = new HashMap<String, Integer>(paramNames.length * 2);
+		this.slotIndexes = new int[paramNames.length][];
+		for (int i = 0; i < paramNames.length; i++) {
+			slots.put(paramNames[i], i);
+			slotIndexes[i] = indexMap.get(paramNames[i]);
+		}
+		this.outParamNames = callable ? inOutParams.keySet().toArray(new String[0]) : new String[0];
+		this.callable = callable;
+		this.cacheTtl = callable ? -1 : cacheTtl;
+		this.tables = SqlLexer.findTables(processedQuery);
+	}
+
+	/**
+	 * @return Исходный текст запроса.
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return Запрос в форме, пригодной для JDBC.
+	 */
+	public String getParsedQuery() {
+		return parsedQuery;
+	}
+
+	/**
+	 * @return Запрос без комментариев и лишних пробелов.
+	 */
+	public String getProcessedQuery() {
+		return processedQuery;
+	}
+
+	/**
+	 * @return true - если запрос является вызовом процедуры.
+	 */
+	public boolean isCallable() {
+		return callable;
+	}
+
+	/**
+	 * @return Время жизни результата в кеше в миллисекундах; 0 - время жизни
+	 *         определяет кеш; -1 - результат запроса не кешируется (см.
+	 *         {@link SqlLexer#getCacheTtl()}).
+	 */
+	public long getCacheTtl() {
+		return cacheTtl;
+	}
+
+	/**
+	 * @return Таблицы, которые читает или изменяет запрос, в нижнем регистре.
+	 */
+	public String[] getTables() {
+		return tables.clone();
+	}
+
+	/**
+	 * @return Имена всех параметров запроса в нижнем регистре.
+	 */
+	public String[] getParamNames() {
+		return paramNames.clone();
+	}
+
+	/**
+	 * @return Имена выходных параметров запроса в нижнем регистре.
+	 */
+	public String[] getOutParamNames() {
+		return outParamNames.clone();
+	}
+
+	/**
+	 * Поиск номера параметра (слота) по имени. Исключение при этом не
+	 * генерируется, т.к. установка неиспользуемых параметров - обычное дело.
+	 * 
+	 * @param name
+	 *            Имя параметра (регистр не важен).
+	 * 
+	 * @return Номер параметра или -1, если такого параметра в запросе нет.
+	 */
+	int getSlot(String name) {
+		Integer slot = slots.get(name);
+		if (slot == null) {
+			slot = slots.get(name.toLowerCase());
+			if (slot == null) {
+				return -1;
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * @return Число различных параметров запроса.
+	 */
+	int getSlotCount() {
+		return slotIndexes.length;
+	}
+
+	/**
+	 * @param slot
+	 *            Номер параметра (см. {@link #getSlot(String)}).
+	 * 
+	 * @return Позиции параметра в запросе. Массив не должен изменяться.
+	 */
+	int[] getSlotIndexes(int slot) {
+		return slotIndexes[slot];
+	}
+
+	/**
+	 * @param name
+	 *            Имя параметра в нижнем регистре.
+	 * 
+	 * @return Позиции параметра в запросе или null, если такого параметра
+	 *         нет. Массив не должен изменяться.
+	 */
+	int[] getIndexes(String name) {
+		return indexMap.get(name);
+	}
+
+	/**
+	 * @param name
+	 *            Имя параметра в нижнем регистре.
+	 * 
+	 * @return Позиция выходного параметра или null, если такого выходного
+	 *         параметра нет.
+	 */
+	Integer getOutIndex(String name) {
+		return inOutParams.get(name);
+	}
+
+	/**
+	 * @return Таблицы запроса. Массив не должен изменяться.
+	 */
+	String[] tables() {
+		return tables;
+	}
+}
@@ -0,0 +1,447 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import q4s.dafobi.data.IRow;
+import q4s.dafobi.data.MemoryResultTable;
+import q4s.dafobi.tools.ConcurrentCache;
+
+/**
+ * Кеш результатов запросов, общий для одного или нескольких подключений
+ * {@link JdbcConnection} (например, для всех подключений пула).
+ * <p>
+ * Кешируются только запросы, помеченные подсказкой
+ * <tt>/&#42;+dafobi_cache(60s)&#42;/</tt> (см. {@link SqlLexer#getCacheTtl()}).
+ * Ключом служит обработанный текст запроса вместе со значениями параметров,
+ * а значением - неизменяемая копия результата {@link MemoryResultTable},
+ * которую можно одновременно читать из разных потоков: каждый читающий
+ * получает свои объекты строк со своим признаком {@link IRow#wasNull()}.
+ * Число элементов ограничено, давно не использовавшиеся элементы
+ * вытесняются (см. {@link ConcurrentCache}), а устаревшие по времени жизни
+ * удаляются при обращении к ним.
+ * <p>
+ * Выполнение оператора, изменяющего данные, делает недействительными все
+ * результаты, прочитанные из затронутых им таблиц (см.
+ * {@link SqlLexer#findTables(String)}). Если таблицы определить не удалось
+ * (например, при вызове процедуры), то недействительным становится весь кеш.
+ * Для этого каждой таблице сопоставляется отметка ее последнего изменения, а
+ * элемент кеша считается устаревшим, если хотя бы одна из его таблиц
+ * изменилась после того, как запрос был начат. Поэтому инвалидация не требует
+ * перебора элементов кеша. Изменения, сделанные в обход подключений с этим
+ * кешем (другими приложениями, триггерами и т.п.), не отслеживаются: для
+ * таких данных надо задавать время жизни.
+ * <p>
+ * К кешу можно подключить дисковый уровень {@link JdbcResultDiskStore}: тогда
+ * результаты с ограниченным временем жизни сохраняются еще и в файлах и
+ * переживают перезапуск приложения.
+ * 
+ * @author Q4S
+ * 
+ */
+public class JdbcResultCache {
+
+	/**
+	 * Ключ кеша: текст запроса и значения параметров по слотам.
+	 */
+	private static final class Key {
+		private final String query;
+
+		private final Object[] values;
+
+		private final int hash;
+
+		Key(String query, Object[] values) {
+			this.query = query;
+			this.values = values;
+			this.hash = 31 * query.hashCode() + Arrays.deepHashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hash == other.hash && query.equals(other.query) && Arrays.deepEquals(values, other.values);
+		}
+	}
+
+	/**
+	 * Элемент кеша.
+	 */
+	private static final class Entry {
+		final MemoryResultTable table;
+
+		final String[] tables;
+
+		/**
+		 * Отметка, полученная перед выполнением запроса.
+		 */
+		final long stamp;
+
+		/**
+		 * Момент устаревания по {@link System#nanoTime()} или 0, если время
+		 * жизни не ограничено.
+		 */
+		final long expiresAt;
+
+		Entry(MemoryResultTable table, String[] tables, long stamp, long expiresAt) {
+			this.table = table;
+			this.tables = tables;
+			this.stamp = stamp;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	private final ConcurrentCache<Key, Entry> entries;
+
+	/**
+	 * Время жизни для запросов, в подсказке которых время не указано.
+	 */
+	private final long defaultTtlMillis;
+
+	/**
+	 * Логические часы для отметок изменения таблиц.
+	 */
+	private final AtomicLong clock = new AtomicLong();
+
+	/**
+	 * Отметки последнего изменения по именам таблиц.
+	 */
+	private final ConcurrentHashMap<String, Long> changed = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * Отметка последней инвалидации всего кеша.
+	 */
+	private volatile long changedAll = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong expirations = new AtomicLong();
+
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Дисковый уровень кеша или null.
+	 */
+	private volatile JdbcResultDiskStore diskStore;
+
+	/**
+	 * @see JdbcResultCache
+	 * 
+	 * @param maxSize
+	 *            Максимальное число результатов в кеше.
+	 */
+	public JdbcResultCache(int maxSize) {
+		this(maxSize, 0);
+	}
+
+	/**
+	 * @see JdbcResultCache
+	 * 
+	 * @param maxSize
+	 *            Максимальное число результатов в кеше.
+	 * 
+	 * @param defaultTtlMillis
+	 *            Время жизни результатов запросов, в подсказке которых время
+	 *            не указано. Значение 0 означает, что такие результаты
+	 *            хранятся до вытеснения или изменения данных.
+	 */
+	public JdbcResultCache(int maxSize, long defaultTtlMillis) {
+		if (defaultTtlMillis < 0) {
+			throw new IllegalArgumentException("Время жизни не может быть отрицательным");
+		}
+		this.entries = new ConcurrentCache<Key, Entry>(maxSize);
+		this.defaultTtlMillis = defaultTtlMillis;
+	}
+
+	/**
+	 * @return Отметка, которую надо получить перед выполнением запроса и
+	 *         передать в {@link #put}.
+	 */
+	long stamp() {
+		return clock.get();
+	}
+
+	/**
+	 * Получение результата из кеша.
+	 * 
+	 * @param query
+	 *            Обработанный текст запроса.
+	 * 
+	 * @param values
+	 *            Значения параметров по слотам.
+	 * 
+	 * @return Результат или null, если его нет в кеше или он устарел.
+	 */
+	MemoryResultTable get(String query, Object[] values) {
+		Key key = new Key(query, values);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return loadFromDisk(query, values);
+		}
+		if (entry.expiresAt != 0 && System.nanoTime() - entry.expiresAt > 0) {
+			entries.remove(key);
+			expirations.incrementAndGet();
+			misses.incrementAndGet();
+			return null;
+		}
+		if (isChanged(entry.tables, entry.stamp)) {
+			entries.remove(key);
+			invalidations.incrementAndGet();
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.table;
+	}
+
+	/**
+	 * Поиск результата на диске. Найденный результат помещается в память.
+	 */
+	private MemoryResultTable loadFromDisk(String query, Object[] values) {
+		JdbcResultDiskStore diskStore = this.diskStore;
+		if (diskStore != null) {
+			long stamp = stamp();
+			JdbcResultDiskStore.Loaded loaded = diskStore.load(query, values);
+			if (loaded != null && loaded.remainingMillis > 0) {
+				hits.incrementAndGet();
+				putMemory(query, values, loaded.tables, loaded.table, loaded.remainingMillis, stamp);
+				return loaded.table;
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Помещение результата в кеш. Если пока выполнялся запрос, какая-то из
+	 * его таблиц изменилась, то результат в кеш не помещается.
+	 * 
+	 * @param query
+	 *            Обработанный текст запроса.
+	 * 
+	 * @param values
+	 *            Значения параметров по слотам. Массив копируется.
+	 * 
+	 * @param tables
+	 *            Таблицы, из которых читает запрос.
+	 * 
+	 * @param table
+	 *            Результат запроса.
+	 * 
+	 * @param ttlMillis
+	 *            Время жизни в миллисекундах или 0 для времени по-умолчанию.
+	 * 
+	 * @param stamp
+	 *            Отметка, полученная методом {@link #stamp()} перед
+	 *            выполнением запроса.
+	 */
+	void put(String query, Object[] values, String[] tables, MemoryResultTable table, long ttlMillis, long stamp) {
+		long ttl = ttlMillis > 0 ? ttlMillis : defaultTtlMillis;
+		if (!putMemory(query, values, tables, table, ttl, stamp)) {
+			return;
+		}
+
+		JdbcResultDiskStore diskStore = this.diskStore;
+		if (diskStore != null && ttl > 0) {
+			diskStore.store(query, values, tables, table, ttl);
+			if (isChanged(tables, stamp)) {
+				// Данные изменились, пока результат писался на диск.
+				diskStore.remove(query, values);
+			}
+		}
+	}
+
+	/**
+	 * Помещение результата в память.
+	 * 
+	 * @return false - если результат устарел еще до помещения в кеш.
+	 */
+	private boolean putMemory(String query, Object[] values, String[] tables, MemoryResultTable table, long ttl,
+			long stamp) {
+		if (isChanged(tables, stamp)) {
+			return false;
+		}
+		long expiresAt = 0;
+		if (ttl > 0) {
+			expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl);
+			if (expiresAt == 0) {
+				expiresAt = 1;
+			}
+		}
+		entries.put(new Key(query, values.clone()), new Entry(table, tables, stamp, expiresAt));
+		return true;
+	}
+
+	/**
+	 * @return true - если хотя бы одна из таблиц менялась после отметки.
+	 */
+	private boolean isChanged(String[] tables, long stamp) {
+		if (changedAll > stamp) {
+			return true;
+		}
+		for (String table : tables) {
+			Long last = changed.get(table);
+			if (last != null && last > stamp) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Инвалидация результатов, прочитанных из таблицы.
+	 * 
+	 * @param table
+	 *            Имя таблицы (без схемы, регистр не важен).
+	 */
+	public void invalidate(String table) {
+		changed.merge(table.toLowerCase(), clock.incrementAndGet(), Math::max);
+		JdbcResultDiskStore diskStore = this.diskStore;
+		if (diskStore != null) {
+			diskStore.invalidate(table);
+		}
+	}
+
+	/**
+	 * Инвалидация результатов, прочитанных из таблиц.
+	 * 
+	 * @param tables
+	 *            Имена таблиц. Если массив пуст, то инвалидируется весь кеш.
+	 */
+	public void invalidate(String[] tables) {
+		if (tables.length == 0) {
+			invalidateAll();
+			return;
+		}
+		for (String table : tables) {
+			invalidate(table);
+		}
+	}
+
+	/**
+	 * Инвалидация всех результатов в кеше.
+	 */
+	public void invalidateAll() {
+		changedAll = clock.incrementAndGet();
+		JdbcResultDiskStore diskStore = this.diskStore;
+		if (diskStore != null) {
+			diskStore.clear();
+		}
+	}
+
+	/**
+	 * Удаление всех результатов из кеша.
+	 */
+	public void clear() {
+		invalidateAll();
+		entries.clear();
+	}
+
+	/**
+	 * @return Дисковый уровень кеша или null.
+	 */
+	public JdbcResultDiskStore getDiskStore() {
+		return diskStore;
+	}
+
+	/**
+	 * Подключение дискового уровня кеша. Результаты, уже находящиеся на
+	 * диске, становятся доступны сразу.
+	 * 
+	 * @param diskStore
+	 *            Дисковый уровень или null, чтобы отключить его.
+	 */
+	public void setDiskStore(JdbcResultDiskStore diskStore) {
+		this.diskStore = diskStore;
+	}
+
+	/**
+	 * @return Текущее число результатов в кеше (включая еще не удаленные
+	 *         устаревшие).
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Максимальное число результатов в кеше.
+	 */
+	public int getMaxSize() {
+		return entries.getMaxSize();
+	}
+
+	/**
+	 * @return Время жизни для запросов, в подсказке которых время не указано.
+	 */
+	public long getDefaultTtlMillis() {
+		return defaultTtlMillis;
+	}
+
+	/**
+	 * @return Число запросов, результат которых был взят из кеша.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return Число запросов, которые пришлось выполнить.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return Число результатов, удаленных из-за окончания времени жизни.
+	 */
+	public long getExpirations() {
+		return expirations.get();
+	}
+
+	/**
+	 * @return Число результатов, удаленных из-за изменения данных.
+	 */
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	/**
+	 * @return Число результатов, вытесненных из-за переполнения кеша.
+	 */
+	public long getEvictions() {
+		return entries.getEvictions();
+	}
+}
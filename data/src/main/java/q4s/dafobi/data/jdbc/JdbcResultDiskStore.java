@@ -0,0 +1,743 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import q4s.dafobi.data.IRow;
+import q4s.dafobi.data.MemoryResultTable;
+import q4s.dafobi.data.ValueCodec;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Дисковый уровень кеша результатов запросов (см.
+ * {@link JdbcResultCache#setDiskStore(JdbcResultDiskStore)}). Позволяет
+ * перезапущенному приложению отвечать на частые запросы к справочникам, не
+ * обращаясь к базе.
+ * <p>
+ * Каждый результат хранится в отдельном двоичном файле каталога: ключ
+ * (текст запроса и значения параметров), типы колонок {@link DataType} и
+ * значения строк в формате {@link ValueCodec}, а в конце - контрольная сумма
+ * CRC32. При чтении файл отображается в память. Сведения о всех файлах (отпечаток
+ * запроса, хеш параметров, время создания, время жизни, размер и таблицы)
+ * хранятся в текстовом файле {@value #MANIFEST}.
+ * <p>
+ * Частичная запись не портит кеш: файлы сначала пишутся под временным
+ * именем, сбрасываются на диск и только потом переименовываются, а при
+ * чтении проверяется контрольная сумма. При открытии каталога удаляются
+ * временные файлы, файлы, не упомянутые в манифесте, и устаревшие
+ * результаты. Общий размер файлов ограничен: при превышении удаляются
+ * результаты, к которым дольше всего не обращались.
+ * <p>
+ * Новый результат добавляет в манифест одну строку без сброса на диск, так
+ * что запрос, заполняющий кеш, не ждет перезаписи всего манифеста.
+ * Недописанная строка при чтении пропускается, а файл без строки удаляется
+ * при следующем открытии. Манифест переписывается целиком при открытии,
+ * удалении результатов и когда устаревших строк в нем становится слишком
+ * много.
+ * <p>
+ * На диск попадают только результаты с ограниченным временем жизни, так как
+ * изменения данных, сделанные до перезапуска, новому процессу неизвестны.
+ * 
+ * @author Q4S
+ * 
+ */
+public class JdbcResultDiskStore {
+
+	/**
+	 * Имя файла манифеста.
+	 */
+	public static final String MANIFEST = "manifest";
+
+	private static final String MANIFEST_HEADER = "# dafobi result cache 1";
+
+	private static final String SUFFIX = ".dfr";
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static final int MAGIC = 0x44465243;
+
+	private static final int END_MAGIC = 0x2E454E44;
+
+	private static final short VERSION = 1;
+
+	/**
+	 * Сведения о файле результата.
+	 */
+	private static final class Entry {
+		final String name;
+
+		final String sqlFingerprint;
+
+		final String paramHash;
+
+		final long created;
+
+		final long ttl;
+
+		final long size;
+
+		final String[] tables;
+
+		long accessed;
+
+		Entry(String name, String sqlFingerprint, String paramHash, long created, long ttl, long size,
+				String[] tables) {
+			this.name = name;
+			this.sqlFingerprint = sqlFingerprint;
+			this.paramHash = paramHash;
+			this.created = created;
+			this.ttl = ttl;
+			this.size = size;
+			this.tables = tables;
+			this.accessed = created;
+		}
+
+		boolean isExpired(long now) {
+			return now - created >= ttl;
+		}
+	}
+
+	/**
+	 * Результат, прочитанный с диска, и оставшееся время его жизни.
+	 */
+	static final class Loaded {
+		final MemoryResultTable table;
+
+		final String[] tables;
+
+		final long remainingMillis;
+
+		Loaded(MemoryResultTable table, String[] tables, long remainingMillis) {
+			this.table = table;
+			this.tables = tables;
+			this.remainingMillis = remainingMillis;
+		}
+	}
+
+	private final Path directory;
+
+	private final long maxBytes;
+
+	/**
+	 * Сведения о файлах по их именам.
+	 */
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	private long totalBytes = 0;
+
+	/**
+	 * Число строк результатов в файле манифеста, включая устаревшие.
+	 */
+	private int manifestLines = 0;
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	private long writes = 0;
+
+	private long failures = 0;
+
+	/**
+	 * @see JdbcResultDiskStore
+	 * 
+	 * @param directory
+	 *            Каталог для файлов кеша. Если его нет, то он будет создан.
+	 *            Каталог не должен использоваться несколькими процессами
+	 *            одновременно.
+	 * 
+	 * @param maxBytes
+	 *            Максимальный общий размер файлов результатов в байтах.
+	 */
+	public JdbcResultDiskStore(Path directory, long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("Размер кеша должен быть положительным");
+		}
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		try {
+			Files.createDirectories(directory);
+			readManifest();
+			removeOrphans();
+			removeExpired(System.currentTimeMillis());
+			trim();
+			writeManifest();
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Чтение манифеста. Строки, файлы которых отсутствуют или имеют другой
+	 * размер, пропускаются. Из нескольких строк одного файла действует
+	 * последняя.
+	 */
+	private void readManifest() throws IOException {
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(directory.resolve(MANIFEST), StandardCharsets.UTF_8);
+		} catch (NoSuchFileException e) {
+			return;
+		}
+		if (lines.isEmpty() || !MANIFEST_HEADER.equals(lines.get(0))) {
+			return;
+		}
+		for (int i = 1; i < lines.size(); i++) {
+			String[] fields = lines.get(i).split("\t", -1);
+			if (fields.length != 7) {
+				continue;
+			}
+			try {
+				String[] tables = fields[6].isEmpty() ? new String[0] : fields[6].split(",");
+				Entry entry = new Entry(fields[0], fields[1], fields[2], Long.parseLong(fields[3]),
+						Long.parseLong(fields[4]), Long.parseLong(fields[5]), tables);
+				Path file = directory.resolve(entry.name);
+				if (entry.name.endsWith(SUFFIX) && Files.isRegularFile(file) && Files.size(file) == entry.size) {
+					Entry old = entries.put(entry.name, entry);
+					if (old != null) {
+						totalBytes -= old.size;
+					}
+					totalBytes += entry.size;
+				}
+
+			} catch (NumberFormatException e) {
+				// Поврежденная строка просто пропускается.
+			}
+		}
+	}
+
+	/**
+	 * Удаление временных файлов и файлов, не упомянутых в манифесте.
+	 */
+	private void removeOrphans() throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				if (name.endsWith(TEMP_SUFFIX) || (name.endsWith(SUFFIX) && !entries.containsKey(name))) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Атомарная перезапись манифеста.
+	 */
+	private void writeManifest() throws IOException {
+		Path temp = directory.resolve(MANIFEST + TEMP_SUFFIX);
+		try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+				BufferedWriter writer = new BufferedWriter(
+						new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+			writer.write(MANIFEST_HEADER);
+			writer.write('\n');
+			for (Entry entry : entries.values()) {
+				writer.write(manifestLine(entry));
+			}
+			writer.flush();
+			stream.getFD().sync();
+		}
+		Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		manifestLines = entries.size();
+	}
+
+	/**
+	 * Добавление в манифест строки нового результата. Если устаревших строк
+	 * (замененных и удаленных результатов) больше, чем действующих, то
+	 * манифест переписывается целиком.
+	 */
+	private void appendManifest(Entry entry) throws IOException {
+		if (manifestLines >= 2 * entries.size() + 16) {
+			writeManifest();
+			return;
+		}
+		Files.write(directory.resolve(MANIFEST), manifestLine(entry).getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+		manifestLines++;
+	}
+
+	private static String manifestLine(Entry entry) {
+		return entry.name + '\t' + entry.sqlFingerprint + '\t' + entry.paramHash + '\t' + entry.created + '\t'
+				+ entry.ttl + '\t' + entry.size + '\t' + String.join(",", entry.tables) + '\n';
+	}
+
+	/**
+	 * Получение результата с диска.
+	 * 
+	 * @param query
+	 *            Обработанный текст запроса.
+	 * 
+	 * @param values
+	 *            Значения параметров.
+	 * 
+	 * @return Результат или null, если его нет, он устарел или поврежден.
+	 */
+	Loaded load(String query, Object[] values) {
+		byte[] params = encodeParams(values);
+		if (params == null) {
+			return null;
+		}
+		String name = fileName(query, params);
+		Entry entry;
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			entry = entries.get(name);
+			if (entry == null) {
+				misses++;
+				return null;
+			}
+			if (entry.isExpired(now)) {
+				misses++;
+				remove(entry);
+				return null;
+			}
+			entry.accessed = now;
+		}
+
+		try {
+			MemoryResultTable table = readFile(directory.resolve(name), query, params);
+			if (table != null) {
+				synchronized (this) {
+					hits++;
+				}
+				return new Loaded(table, entry.tables, entry.ttl - (now - entry.created));
+			}
+
+		} catch (IOException | RuntimeException e) {
+			// Файл поврежден или удален: считаем, что его нет.
+		}
+		synchronized (this) {
+			misses++;
+			failures++;
+			if (entries.get(name) == entry) {
+				remove(entry);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Запись результата на диск. Ошибки записи не передаются вызывающему:
+	 * кеш на диске - лишь оптимизация.
+	 * 
+	 * @param query
+	 *            Обработанный текст запроса.
+	 * 
+	 * @param values
+	 *            Значения параметров.
+	 * 
+	 * @param tables
+	 *            Таблицы запроса.
+	 * 
+	 * @param table
+	 *            Результат запроса.
+	 * 
+	 * @param ttlMillis
+	 *            Время жизни результата. Результаты с неограниченным временем
+	 *            жизни на диск не пишутся.
+	 */
+	void store(String query, Object[] values, String[] tables, MemoryResultTable table, long ttlMillis) {
+		if (ttlMillis <= 0) {
+			return;
+		}
+		byte[] params = encodeParams(values);
+		if (params == null) {
+			return;
+		}
+		String name = fileName(query, params);
+		Path temp = directory.resolve(name + '.' + Thread.currentThread().getId() + TEMP_SUFFIX);
+		long created = System.currentTimeMillis();
+		try {
+			long size = writeFile(temp, query, params, created, ttlMillis, table);
+			if (size < 0 || size > maxBytes) {
+				Files.deleteIfExists(temp);
+				return;
+			}
+			synchronized (this) {
+				Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+				Entry old = entries.remove(name);
+				if (old != null) {
+					totalBytes -= old.size;
+				}
+				Entry entry = new Entry(name, name.substring(0, 16), name.substring(17, 33), created, ttlMillis,
+						size, tables);
+				entries.put(name, entry);
+				totalBytes += size;
+				writes++;
+				trim();
+				appendManifest(entry);
+			}
+
+		} catch (IOException e) {
+			synchronized (this) {
+				failures++;
+			}
+			try {
+				Files.deleteIfExists(temp);
+			} catch (IOException suppressed) {
+				// Удалить не удалось - файл будет удален при следующем открытии.
+			}
+		}
+	}
+
+	/**
+	 * Удаление результата запроса с диска.
+	 * 
+	 * @param query
+	 *            Обработанный текст запроса.
+	 * 
+	 * @param values
+	 *            Значения параметров.
+	 */
+	synchronized void remove(String query, Object[] values) {
+		byte[] params = encodeParams(values);
+		if (params != null) {
+			Entry entry = entries.get(fileName(query, params));
+			if (entry != null) {
+				remove(entry);
+				saveManifest();
+			}
+		}
+	}
+
+	/**
+	 * Удаление результатов, прочитанных из таблицы.
+	 * 
+	 * @param table
+	 *            Имя таблицы (без схемы, регистр не важен).
+	 */
+	public synchronized void invalidate(String table) {
+		table = table.toLowerCase();
+		boolean changed = false;
+		for (Entry entry : new ArrayList<Entry>(entries.values())) {
+			if (Arrays.asList(entry.tables).contains(table)) {
+				remove(entry);
+				changed = true;
+			}
+		}
+		if (changed) {
+			saveManifest();
+		}
+	}
+
+	/**
+	 * Удаление всех результатов.
+	 */
+	public synchronized void clear() {
+		if (entries.isEmpty()) {
+			return;
+		}
+		for (Entry entry : new ArrayList<Entry>(entries.values())) {
+			remove(entry);
+		}
+		saveManifest();
+	}
+
+	/**
+	 * Удаление файла результата. Манифест не перезаписывается.
+	 */
+	private void remove(Entry entry) {
+		entries.remove(entry.name);
+		totalBytes -= entry.size;
+		try {
+			Files.deleteIfExists(directory.resolve(entry.name));
+		} catch (IOException e) {
+			// Файл будет удален как лишний при следующем открытии.
+		}
+	}
+
+	private void saveManifest() {
+		try {
+			writeManifest();
+		} catch (IOException e) {
+			failures++;
+		}
+	}
+
+	private void removeExpired(long now) {
+		for (Entry entry : new ArrayList<Entry>(entries.values())) {
+			if (entry.isExpired(now)) {
+				remove(entry);
+			}
+		}
+	}
+
+	/**
+	 * Удаление результатов, к которым дольше всего не обращались, пока общий
+	 * размер превышает предел.
+	 */
+	private void trim() {
+		if (totalBytes <= maxBytes) {
+			return;
+		}
+		removeExpired(System.currentTimeMillis());
+		List<Entry> list = new ArrayList<Entry>(entries.values());
+		list.sort((a, b) -> Long.compare(a.accessed, b.accessed));
+		for (int i = 0; i < list.size() && totalBytes > maxBytes; i++) {
+			remove(list.get(i));
+		}
+	}
+
+	/**
+	 * Запись файла результата.
+	 * 
+	 * @return Размер файла или -1, если значения не могут быть записаны.
+	 */
+	private static long writeFile(Path file, String query, byte[] params, long created, long ttl,
+			MemoryResultTable table) throws IOException {
+		int columns = table.count();
+		int rows = table.getRowCount();
+		for (int r = 0; r < rows; r++) {
+			IRow row = table.getRow(r);
+			for (int c = 0; c < columns; c++) {
+				if (!ValueCodec.isSupported(row.get(c))) {
+					return -1;
+				}
+			}
+		}
+
+		CRC32 crc = new CRC32();
+		try (FileOutputStream stream = new FileOutputStream(file.toFile())) {
+			BufferedOutputStream buffered = new BufferedOutputStream(stream, 65536);
+			DataOutputStream out = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			ValueCodec.write(out, query);
+			out.writeInt(params.length);
+			out.write(params);
+			out.writeLong(created);
+			out.writeLong(ttl);
+			out.writeInt(columns);
+			for (int c = 0; c < columns; c++) {
+				ValueCodec.write(out, table.getColumnName(c));
+				ValueCodec.write(out, table.getColumnType(c).name());
+			}
+			out.writeInt(rows);
+			for (int r = 0; r < rows; r++) {
+				IRow row = table.getRow(r);
+				for (int c = 0; c < columns; c++) {
+					ValueCodec.write(out, row.get(c));
+				}
+			}
+			out.flush();
+
+			DataOutputStream trailer = new DataOutputStream(buffered);
+			trailer.writeInt((int) crc.getValue());
+			trailer.writeInt(END_MAGIC);
+			trailer.flush();
+			stream.getFD().sync();
+			return stream.getChannel().size();
+		}
+	}
+
+	/**
+	 * Чтение файла результата через отображение в память.
+	 * 
+	 * @return Результат или null, если в файле записан другой ключ.
+	 */
+	private static MemoryResultTable readFile(Path file, String query, byte[] params) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < 14 || size > Integer.MAX_VALUE) {
+				throw new IOException("Неверный размер файла");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+			// Сначала проверим хвост и контрольную сумму, чтобы не разбирать
+			// недописанный или поврежденный файл.
+			int bodyLength = (int) size - 8;
+			if (buffer.getInt(bodyLength + 4) != END_MAGIC) {
+				throw new IOException("Файл записан не полностью");
+			}
+			CRC32 crc = new CRC32();
+			ByteBuffer body = buffer.duplicate();
+			body.limit(bodyLength);
+			crc.update(body);
+			if ((int) crc.getValue() != buffer.getInt(bodyLength)) {
+				throw new IOException("Неверная контрольная сумма");
+			}
+
+			buffer.limit(bodyLength);
+			if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+				throw new IOException("Неизвестный формат файла");
+			}
+			if (!query.equals(ValueCodec.read(buffer))) {
+				return null;
+			}
+			byte[] storedParams = new byte[buffer.getInt()];
+			buffer.get(storedParams);
+			if (!Arrays.equals(params, storedParams)) {
+				return null;
+			}
+			buffer.getLong();
+			buffer.getLong();
+
+			int columns = buffer.getInt();
+			String[] names = new String[columns];
+			DataType[] types = new DataType[columns];
+			for (int c = 0; c < columns; c++) {
+				names[c] = (String) ValueCodec.read(buffer);
+				types[c] = DataType.valueOf((String) ValueCodec.read(buffer));
+			}
+			int rows = buffer.getInt();
+			List<Object[]> values = new ArrayList<Object[]>(rows);
+			for (int r = 0; r < rows; r++) {
+				Object[] row = new Object[columns];
+				for (int c = 0; c < columns; c++) {
+					row[c] = ValueCodec.read(buffer);
+				}
+				values.add(row);
+			}
+			return MemoryResultTable.of(names, types, values);
+		}
+	}
+
+	/**
+	 * @return Двоичное представление значений параметров или null, если
+	 *         какое-то значение не может быть записано.
+	 */
+	private static byte[] encodeParams(Object[] values) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(values.length);
+			for (Object value : values) {
+				if (!ValueCodec.isSupported(value)) {
+					return null;
+				}
+				ValueCodec.write(out, value);
+			}
+			out.flush();
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Имя файла: отпечаток запроса и хеш параметров.
+	 */
+	private static String fileName(String query, byte[] params) {
+		return hash(query.getBytes(StandardCharsets.UTF_8)) + '-' + hash(params) + SUFFIX;
+	}
+
+	/**
+	 * @return Первые 8 байт SHA-256 в шестнадцатеричном виде.
+	 */
+	private static String hash(byte[] data) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+			StringBuilder hex = new StringBuilder(16);
+			for (int i = 0; i < 8; i++) {
+				hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+				hex.append(Character.forDigit(digest[i] & 0xF, 16));
+			}
+			return hex.toString();
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return Каталог файлов кеша.
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return Максимальный общий размер файлов в байтах.
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return Текущий общий размер файлов в байтах.
+	 */
+	public synchronized long getBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * @return Число результатов на диске.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Число результатов, прочитанных с диска.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return Число обращений, при которых результата на диске не нашлось.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return Число записанных результатов.
+	 */
+	public synchronized long getWrites() {
+		return writes;
+	}
+
+	/**
+	 * @return Число ошибок чтения и записи файлов.
+	 */
+	public synchronized long getFailures() {
+		return failures;
+	}
+}
@@ -18,15 +18,20 @@
  */
 package q4s.dafobi.data.jdbc;
 
+import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import q4s.dafobi.data.AbstractResultTable;
+import q4s.dafobi.data.AbstractRow;
 import q4s.dafobi.data.IRow;
 import q4s.dafobi.data.IStatement;
 import q4s.dafobi.data.RowImpl;
+import q4s.dafobi.exception.DataException;
+import q4s.dafobi.exception.WrongIndexException;
 import q4s.dafobi.jaxb.common.DataType;
 
 /**
@@ -37,6 +42,47 @@ public class JdbcResultTable extends AbstractResultTable {
 
 	private final ResultSet resultSet;
 
+	/**
+	 * Способы чтения колонок, выбранные по их типам данных.
+	 */
+	private final JdbcColumnReader[] readers;
+
+	/**
+	 * Наибольший размер порции при адаптивной выборке.
+	 */
+	public static final int MAX_ADAPTIVE_FETCH_SIZE = 10000;
+
+	/**
+	 * Размер порции, с которого начинается адаптивная выборка, если драйвер
+	 * не сообщает своего.
+	 */
+	private static final int INITIAL_FETCH_SIZE = 10;
+
+	/**
+	 * Объем памяти на порцию строк при адаптивной выборке (0 - адаптивная
+	 * выборка выключена).
+	 */
+	private long fetchMemory = 0;
+
+	/**
+	 * Текущий размер порции.
+	 */
+	private int fetchSize;
+
+	/**
+	 * Число строк до следующего пересчета размера порции.
+	 */
+	private int rowsToCheck;
+
+	/**
+	 * Ширина строки, оцененная по описанию колонок.
+	 */
+	private long declaredWidth;
+
+	private long measuredRows = 0;
+
+	private long measuredBytes = 0;
+
 	public JdbcResultTable(IStatement statement, ResultSet resultSet) {
 		super(statement);
 
@@ -52,11 +98,117 @@ public class JdbcResultTable extends AbstractResultTable {
 			}
 			protect();
 
+			readers = new JdbcColumnReader[count];
+			for (int i = 0; i < count; i++) {
+				readers[i] = JdbcColumnReader.forType(getColumnType(i));
+			}
+
 		} catch (SQLException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * Включение адаптивной выборки. Размер порции пересчитывается после
+	 * каждой прочитанной порции: из объема памяти и средней ширины строки (по
+	 * прочитанным значениям, а пока их нет - по описанию колонок). Рост за
+	 * один шаг ограничен, чтобы единичная узкая строка не раздувала порцию.
+	 * 
+	 * @param fetchMemory
+	 *            Примерный объем памяти на порцию строк.
+	 */
+	final void setAdaptiveFetch(long fetchMemory) {
+		try {
+			this.fetchMemory = fetchMemory;
+			this.declaredWidth = declaredWidth(resultSet.getMetaData());
+			int current = resultSet.getFetchSize();
+			this.fetchSize = current > 0 ? current : INITIAL_FETCH_SIZE;
+			adjustFetchSize();
+
+		} catch (SQLException e) {
+			throw new DataException(e);
+		}
+	}
+
+	/**
+	 * Учет прочитанной строки при адаптивной выборке.
+	 * 
+	 * @param values
+	 *            Значения строки или null, если значения не читались.
+	 */
+	private void rowFetched(Object[] values) throws SQLException {
+		if (fetchMemory == 0) {
+			return;
+		}
+		if (values != null) {
+			measuredRows++;
+			measuredBytes += rowWidth(values);
+		}
+		if (--rowsToCheck <= 0) {
+			adjustFetchSize();
+		}
+	}
+
+	private void adjustFetchSize() throws SQLException {
+		long width = measuredRows > 0 ? Math.max(1, measuredBytes / measuredRows) : declaredWidth;
+		long target = Math.max(1, Math.min(MAX_ADAPTIVE_FETCH_SIZE, fetchMemory / width));
+		int next = (int) Math.min(target, 4L * fetchSize);
+		if (next != fetchSize) {
+			resultSet.setFetchSize(next);
+			fetchSize = next;
+		}
+		rowsToCheck = fetchSize;
+	}
+
+	/**
+	 * @return Текущий размер порции выборки.
+	 */
+	final int getAdaptiveFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Оценка ширины строки по описанию колонок: для строковых колонок по их
+	 * объявленной длине (но не больше 1000 символов).
+	 */
+	private long declaredWidth(ResultSetMetaData meta) {
+		long width = 0;
+		for (int i = 0; i < count(); i++) {
+			DataType type = getColumnType(i);
+			if (type == DataType.STRING || type == DataType.LONGSTRING || type == DataType.CHAR) {
+				int precision;
+				try {
+					precision = meta.getPrecision(i + 1);
+				} catch (SQLException | RuntimeException e) {
+					precision = 0;
+				}
+				width += 16 + 2L * (precision > 0 ? Math.min(precision, 1000) : 32);
+			} else {
+				width += 16;
+			}
+		}
+		return Math.max(width, 1);
+	}
+
+	/**
+	 * Примерный объем памяти, занимаемый значениями строки.
+	 */
+	private static long rowWidth(Object[] values) {
+		long width = 0;
+		for (Object value : values) {
+			if (value instanceof String) {
+				width += 16 + 2L * ((String) value).length();
+			} else if (value instanceof byte[]) {
+				width += 16 + ((byte[]) value).length;
+			} else if (value instanceof BigDecimal) {
+				width += 32 + ((BigDecimal) value).unscaledValue().bitLength() / 8;
+			} else {
+				width += 16;
+			}
+		}
+		return width;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -68,7 +220,7 @@ public class JdbcResultTable extends AbstractResultTable {
 			resultSet.close();
 
 		} catch (SQLException e) {
-			new RuntimeException(e);
+			throw new DataException(e);
 		}
 	}
 
@@ -97,6 +249,55 @@ public class JdbcResultTable extends AbstractResultTable {
 		return this.new RowIterator();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.AbstractResultTable#cursor()
+	 */
+	@Override
+	public Iterable<IRow> cursor() {
+		return () -> this.new CursorIterator();
+	}
+
+	/**
+	 * Чтение всех значений текущей строки {@link ResultSet}.
+	 * 
+	 * @return Значения колонок текущей строки.
+	 * 
+	 * @throws SQLException
+	 */
+	private Object[] readValues() throws SQLException {
+		JdbcColumnReader[] readers = this.readers;
+		Object[] values = new Object[readers.length];
+		for (int i = 0; i < readers.length; i++) {
+			values[i] = readers[i].read(resultSet, i + 1);
+		}
+		return values;
+	}
+
+	/**
+	 * Чтение следующей строки без создания итератора.
+	 * 
+	 * @return Строка, не зависящая от {@link ResultSet}, или null, если строк
+	 *         больше нет.
+	 * 
+	 * @throws SQLException
+	 */
+	final IRow fetchRow() throws SQLException {
+		return resultSet.next() ? new RowImpl(this, readValues()) : null;
+	}
+
+	/**
+	 * Переход к следующей строке без чтения ее значений.
+	 * 
+	 * @return true - если строка есть.
+	 * 
+	 * @throws SQLException
+	 */
+	final boolean skipRow() throws SQLException {
+		return resultSet.next();
+	}
+
 	/**
 	 * Данный итератор реализует выборку данных из {@link ResultSet}. Поскольку
 	 * {@link ResultSet} не поддерживает упреждающую выборку, то данный итератор
@@ -122,11 +323,8 @@ public class JdbcResultTable extends AbstractResultTable {
 
 				boolean rc = resultSet.next();
 				if (rc) {
-					int count = count();
-					Object[] values = new Object[count];
-					for (int i = 0; i < count; i++) {
-						values[i] = resultSet.getObject(i + 1);
-					}
+					Object[] values = readValues();
+					rowFetched(values);
 					IRow newRow = new RowImpl(JdbcResultTable.this, values);
 					return newRow;
 
@@ -169,4 +367,140 @@ public class JdbcResultTable extends AbstractResultTable {
 		}
 	}
 
+	/**
+	 * Строка, которая читает значения прямо из текущей позиции
+	 * {@link ResultSet}. Один объект используется для всех строк курсора.
+	 * 
+	 * @author Q4S
+	 * 
+	 */
+	private class CursorRow extends AbstractRow {
+
+		CursorRow() {
+			super(JdbcResultTable.this);
+		}
+
+		@Override
+		public Object get(int columnNum) throws WrongIndexException {
+			if (columnNum < 0 || columnNum >= readers.length) {
+				throw new WrongIndexException();
+			}
+			try {
+				Object value = readers[columnNum].read(resultSet, columnNum + 1);
+				setWasNull(value == null);
+				return value;
+
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public long getLong(int columnNum) throws WrongIndexException {
+			if (columnNum < 0 || columnNum >= readers.length) {
+				throw new WrongIndexException();
+			}
+			try {
+				long value = resultSet.getLong(columnNum + 1);
+				setWasNull(resultSet.wasNull());
+				return value;
+
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public int getInt(int columnNum) throws WrongIndexException {
+			if (columnNum < 0 || columnNum >= readers.length) {
+				throw new WrongIndexException();
+			}
+			try {
+				int value = resultSet.getInt(columnNum + 1);
+				setWasNull(resultSet.wasNull());
+				return value;
+
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public double getDouble(int columnNum) throws WrongIndexException {
+			if (columnNum < 0 || columnNum >= readers.length) {
+				throw new WrongIndexException();
+			}
+			try {
+				double value = resultSet.getDouble(columnNum + 1);
+				setWasNull(resultSet.wasNull());
+				return value;
+
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public IRow detach() {
+			try {
+				return new RowImpl(JdbcResultTable.this, readValues());
+
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Итератор курсора. Перемещает {@link ResultSet} на следующую строку и
+	 * возвращает все время один и тот же объект {@link CursorRow}. В отличие
+	 * от {@link RowIterator}, допускает повторный вызов {@link #hasNext()}.
+	 * 
+	 * @author Q4S
+	 * 
+	 */
+	private class CursorIterator implements Iterator<IRow> {
+
+		private final CursorRow row = new CursorRow();
+
+		/**
+		 * Признак того, что {@link ResultSet} уже перемещен на следующую
+		 * строку, но она еще не выдана методом {@link #next()}.
+		 */
+		private boolean fetched = false;
+
+		private boolean hasRow = false;
+
+		@Override
+		public boolean hasNext() {
+			if (!fetched) {
+				try {
+					hasRow = resultSet.next();
+					if (hasRow) {
+						rowFetched(null);
+					}
+
+				} catch (SQLException e) {
+					throw new RuntimeException(e);
+				}
+				fetched = true;
+			}
+			return hasRow;
+		}
+
+		@Override
+		public IRow next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			fetched = false;
+			return row;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Method remove() can't be used in this kind of iterator");
+		}
+	}
+
 }
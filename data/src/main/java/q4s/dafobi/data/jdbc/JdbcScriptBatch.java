@@ -0,0 +1,536 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.data.IStatement;
+import q4s.dafobi.exception.DataException;
+
+/**
+ * Выполнение операторов скрипта с объединением подряд идущих однотипных
+ * операторов в пакеты (см. {@link JdbcConnection#setBatchScripts(boolean)}).
+ * <ul>
+ * <li>Одинаковые операторы с параметрами выполняются одним подготовленным
+ * оператором в пакете.</li>
+ * <li>Операторы вставки без параметров, отличающиеся только константами в
+ * списке значений (<tt>INSERT ... VALUES(1, 'a')</tt>), выполняются одним
+ * подготовленным оператором, в который константы передаются как параметры.
+ * Константы в условиях (например, <tt>WHERE C IN ('A')</tt>) не заменяются:
+ * сравнение с параметром может отличаться от сравнения с константой
+ * (так, в Oracle строковая константа сравнивается с колонкой CHAR с
+ * дополнением пробелами, а параметр - без), и оператор затронул бы другие
+ * строки.</li>
+ * <li>Прочие операторы без параметров (например, DDL) выполняются пакетом
+ * через {@link Statement#addBatch(String)}.</li>
+ * </ul>
+ * Базе данных передается текст операторов вместе с комментариями и
+ * переводами строк, поэтому подсказки (<tt>INSERT /&#42;+ APPEND &#42;/</tt>)
+ * и исходный текст представлений и процедур сохраняются.
+ * В пакеты попадают только операторы, начинающиеся со слов
+ * {@link #BATCH_WORDS}. Остальные операторы (запросы, вызовы процедур и
+ * т.п.) выполняются по одному, как и раньше.
+ * 
+ * @author Q4S
+ * 
+ */
+final class JdbcScriptBatch {
+
+	/**
+	 * Первые слова операторов, которые можно выполнять в пакете.
+	 */
+	static final String[] BATCH_WORDS = { "INSERT", "UPDATE", "DELETE", "MERGE", "CREATE", "ALTER", "DROP",
+			"TRUNCATE", "COMMENT", "GRANT", "REVOKE" };
+
+	/**
+	 * Результат предварительного разбора оператора.
+	 */
+	private static final class Operator {
+
+		final String text;
+
+		/**
+		 * Текст в форме для JDBC (см. {@link SqlLexer#getParsedQuery()}).
+		 */
+		final String parsed;
+
+		/**
+		 * Текст без комментариев и лишних пробелов.
+		 */
+		final String processed;
+
+		final boolean batchable;
+
+		final boolean hasParams;
+
+		/**
+		 * Текст, в котором константы заменены знаками ?, или null, если
+		 * оператор содержит параметры или не является вставкой списка
+		 * значений.
+		 */
+		final String shape;
+
+		/**
+		 * Значения замененных констант.
+		 */
+		final Object[] literals;
+
+		Operator(String text) {
+			SqlLexer lexer = new SqlLexer(text);
+			this.text = text;
+			this.parsed = lexer.getParsedQuery();
+			this.processed = lexer.getProcessedQuery();
+			this.batchable = lexer.getOutParams().isEmpty() && startsWithBatchWord(processed);
+			this.hasParams = !lexer.getIndexMap().isEmpty();
+
+			if (batchable && !hasParams) {
+				List<Object> values = new ArrayList<Object>();
+				this.shape = extractLiterals(parsed, values);
+				this.literals = values.toArray();
+			} else {
+				this.shape = null;
+				this.literals = null;
+			}
+		}
+	}
+
+	private final JdbcConnection connection;
+
+	private final Map<String, DataParam> parameters;
+
+	private final Operator[] operators;
+
+	private final int[] rc;
+
+	/**
+	 * Операторы без параметров, накопленные для выполнения через
+	 * {@link Statement#addBatch(String)}.
+	 */
+	private final List<Integer> pending = new ArrayList<Integer>();
+
+	JdbcScriptBatch(JdbcConnection connection, String[] operators, Map<String, DataParam> parameters) {
+		this.connection = connection;
+		this.parameters = parameters;
+		this.operators = new Operator[operators.length];
+		for (int i = 0; i < operators.length; i++) {
+			this.operators[i] = new Operator(operators[i]);
+		}
+		this.rc = new int[operators.length];
+	}
+
+	/**
+	 * Выполнение всех операторов.
+	 * 
+	 * @return Количество затронутых каждым из операторов строк.
+	 */
+	int[] execute() {
+		int i = 0;
+		while (i < operators.length) {
+			Operator operator = operators[i];
+			int j = i + 1;
+
+			if (!operator.batchable) {
+				flushPending();
+				rc[i] = connection.execute(operator.text, parameters);
+
+			} else if (operator.hasParams) {
+				while (j < operators.length && operators[j].batchable
+						&& operators[j].parsed.equals(operator.parsed)) {
+					j++;
+				}
+				flushPending();
+				executeWithParams(i, j);
+
+			} else {
+				while (operator.shape != null && j < operators.length && operators[j].batchable
+						&& !operators[j].hasParams && operator.shape.equals(operators[j].shape)) {
+					j++;
+				}
+				if (j - i > 1) {
+					flushPending();
+					executeWithLiterals(i, j);
+				} else {
+					pending.add(i);
+				}
+			}
+			i = j;
+		}
+		flushPending();
+		return rc;
+	}
+
+	/**
+	 * Одинаковые операторы с параметрами.
+	 */
+	private void executeWithParams(int from, int to) {
+		if (to - from == 1) {
+			rc[from] = connection.execute(operators[from].text, parameters);
+			return;
+		}
+		try (IStatement statement = connection.prepare(operators[from].text)) {
+			for (int i = from; i < to; i++) {
+				statement.addBatch(parameters);
+			}
+			copyCounts(statement.executeBatch(), from);
+		}
+	}
+
+	/**
+	 * Операторы, отличающиеся только константами.
+	 */
+	private void executeWithLiterals(int from, int to) {
+		String shape = operators[from].shape;
+		PreparedStatement statement;
+		try {
+			statement = connection.getConnection().prepareStatement(shape);
+
+		} catch (SQLException e) {
+			// Не всякую константу можно заменить параметром (например, если
+			// по ней определяется тип выражения). Тогда операторы
+			// выполняются как есть.
+			for (int i = from; i < to; i++) {
+				pending.add(i);
+			}
+			flushPending();
+			return;
+		}
+
+		try {
+			for (int i = from; i < to; i++) {
+				Object[] literals = operators[i].literals;
+				for (int k = 0; k < literals.length; k++) {
+					Object value = literals[k];
+					if (value instanceof Long) {
+						statement.setLong(k + 1, (Long) value);
+					} else if (value instanceof BigDecimal) {
+						statement.setBigDecimal(k + 1, (BigDecimal) value);
+					} else {
+						statement.setString(k + 1, (String) value);
+					}
+				}
+				statement.addBatch();
+			}
+			copyCounts(statement.executeBatch(), from);
+
+		} catch (SQLException e) {
+			throw new DataException(e, operators[from + failedIndex(e, to - from)].text);
+
+		} finally {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				// Ошибка закрытия не должна скрывать результат выполнения.
+			}
+		}
+	}
+
+	/**
+	 * Выполнение накопленных операторов без параметров.
+	 */
+	private void flushPending() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		if (pending.size() == 1) {
+			int i = pending.get(0);
+			rc[i] = connection.execute(operators[i].text, parameters);
+			pending.clear();
+			return;
+		}
+
+		try (Statement statement = connection.getConnection().createStatement()) {
+			for (int i : pending) {
+				statement.addBatch(operators[i].parsed);
+			}
+			int[] counts = statement.executeBatch();
+			for (int k = 0; k < counts.length; k++) {
+				rc[pending.get(k)] = counts[k];
+			}
+
+		} catch (SQLException e) {
+			throw new DataException(e, operators[pending.get(failedIndex(e, pending.size()))].text);
+		}
+		pending.clear();
+	}
+
+	/**
+	 * Определение оператора пакета, вызвавшего ошибку. Драйвер либо
+	 * прекращает выполнение пакета на ошибочном операторе (и тогда число
+	 * результатов равно его номеру), либо выполняет пакет до конца и
+	 * отмечает ошибочные операторы значением
+	 * {@link Statement#EXECUTE_FAILED}.
+	 * 
+	 * @param e
+	 *            Ошибка выполнения пакета.
+	 * 
+	 * @param size
+	 *            Число операторов в пакете.
+	 * 
+	 * @return Номер ошибочного оператора в пакете (0, если его не удалось
+	 *         определить).
+	 */
+	static int failedIndex(SQLException e, int size) {
+		if (!(e instanceof BatchUpdateException)) {
+			return 0;
+		}
+		int[] counts = ((BatchUpdateException) e).getUpdateCounts();
+		if (counts == null) {
+			return 0;
+		}
+		int index = counts.length;
+		for (int k = 0; k < counts.length; k++) {
+			if (counts[k] == Statement.EXECUTE_FAILED) {
+				index = k;
+				break;
+			}
+		}
+		return index < size ? index : 0;
+	}
+
+	private void copyCounts(int[] counts, int from) {
+		System.arraycopy(counts, 0, rc, from, counts.length);
+	}
+
+	private static boolean startsWithBatchWord(String processed) {
+		for (String word : BATCH_WORDS) {
+			if (SqlLexer.startsWithWord(processed, 0, word)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Замена знаками ? строковых и числовых констант, являющихся элементами
+	 * списков значений оператора <tt>INSERT ... VALUES</tt> (перед константой
+	 * стоит '(' или ',', а после нее - ',' или ')').
+	 * 
+	 * Комментарии и пробельные символы сохраняются как есть.
+	 * 
+	 * @param parsed
+	 *            Текст оператора (см. {@link SqlLexer#getParsedQuery()}).
+	 * 
+	 * @param values
+	 *            Список, в который добавляются значения констант.
+	 * 
+	 * @return Текст с замененными константами или null, если оператор не
+	 *         является вставкой списка значений.
+	 */
+	static String extractLiterals(String parsed, List<Object> values) {
+		if (!SqlLexer.startsWithWord(parsed, skipInsignificant(parsed, 0), "INSERT")) {
+			return null;
+		}
+		int start = findValues(parsed);
+		if (start < 0) {
+			return null;
+		}
+
+		int length = parsed.length();
+		StringBuilder shape = new StringBuilder(length);
+		shape.append(parsed, 0, start);
+		char previous = 0;
+		int i = start;
+		while (i < length) {
+			char c = parsed.charAt(i);
+			int end = -1;
+			Object value = null;
+
+			int comment = skipComment(parsed, i);
+			if (comment > i) {
+				// Комментарий копируется как есть.
+				shape.append(parsed, i, comment);
+				i = comment;
+				continue;
+			}
+
+			if (c == '"') {
+				// Идентификатор в кавычках копируется как есть.
+				int close = parsed.indexOf('"', i + 1);
+				end = close < 0 ? length : close + 1;
+				shape.append(parsed, i, end);
+				previous = '"';
+				i = end;
+				continue;
+			}
+
+			if (c == '\'') {
+				StringBuilder text = new StringBuilder();
+				int j = i + 1;
+				while (j < length) {
+					char q = parsed.charAt(j);
+					if (q == '\'') {
+						if (j + 1 < length && parsed.charAt(j + 1) == '\'') {
+							text.append(q);
+							j += 2;
+							continue;
+						}
+						break;
+					}
+					text.append(q);
+					j++;
+				}
+				end = Math.min(j + 1, length);
+				value = text.toString();
+
+			} else if ((previous == '(' || previous == ',')
+					&& (Character.isDigit(c) || (c == '-' && i + 1 < length && Character.isDigit(parsed.charAt(i + 1))))) {
+				int j = i + 1;
+				boolean point = false;
+				boolean exponent = false;
+				while (j < length) {
+					char d = parsed.charAt(j);
+					if (Character.isDigit(d)) {
+						j++;
+					} else if (d == '.' && !point && !exponent) {
+						point = true;
+						j++;
+					} else if ((d == 'e' || d == 'E') && !exponent) {
+						exponent = true;
+						j++;
+						if (j < length && (parsed.charAt(j) == '+' || parsed.charAt(j) == '-')) {
+							j++;
+						}
+					} else {
+						break;
+					}
+				}
+				boolean decimal = point || exponent;
+				end = j;
+				String number = parsed.substring(i, j);
+				if (decimal) {
+					value = parseDecimal(number);
+				} else {
+					try {
+						value = Long.parseLong(number);
+					} catch (NumberFormatException e) {
+						value = parseDecimal(number);
+					}
+				}
+			}
+
+			if (value != null && (previous == '(' || previous == ',') && nextSignificant(parsed, end) != 0
+					&& ",)".indexOf(nextSignificant(parsed, end)) >= 0) {
+				values.add(value);
+				shape.append('?');
+				previous = '?';
+				i = end;
+				continue;
+			}
+
+			if (end > 0) {
+				shape.append(parsed, i, end);
+				previous = parsed.charAt(end - 1);
+				i = end;
+				continue;
+			}
+
+			shape.append(c);
+			if (!Character.isWhitespace(c)) {
+				previous = c;
+			}
+			i++;
+		}
+		return shape.toString();
+	}
+
+	/**
+	 * @return Позиция слова VALUES вне кавычек или -1, если его нет.
+	 */
+	private static int findValues(String parsed) {
+		int length = parsed.length();
+		int i = 0;
+		while (i < length) {
+			char c = parsed.charAt(i);
+			int comment = skipComment(parsed, i);
+			if (comment > i) {
+				i = comment;
+			} else if (c == '\'' || c == '"') {
+				int close = parsed.indexOf(c, i + 1);
+				if (close < 0) {
+					return -1;
+				}
+				i = close + 1;
+			} else if ((i == 0 || !Character.isJavaIdentifierPart(parsed.charAt(i - 1)))
+					&& SqlLexer.startsWithWord(parsed, i, "VALUES")) {
+				return i;
+			} else {
+				i++;
+			}
+		}
+		return -1;
+	}
+
+	private static Object parseDecimal(String number) {
+		try {
+			return new BigDecimal(number);
+		} catch (NumberFormatException e) {
+			// Например, "1e" - такой текст не константа, и оставляется как
+			// есть.
+			return null;
+		}
+	}
+
+	private static char nextSignificant(String text, int from) {
+		int i = skipInsignificant(text, from);
+		return i < text.length() ? text.charAt(i) : 0;
+	}
+
+	/**
+	 * @return Позиция первого символа не ранее from, не являющегося
+	 *         пробельным и не входящего в комментарий.
+	 */
+	private static int skipInsignificant(String text, int from) {
+		int i = from;
+		while (i < text.length()) {
+			int comment = skipComment(text, i);
+			if (comment > i) {
+				i = comment;
+			} else if (Character.isWhitespace(text.charAt(i))) {
+				i++;
+			} else {
+				break;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * @return Позиция после комментария, начинающегося в позиции i, или i,
+	 *         если там комментария нет.
+	 */
+	private static int skipComment(String text, int i) {
+		if (text.startsWith("--", i)) {
+			int end = text.indexOf('\n', i + 2);
+			return end < 0 ? text.length() : end + 1;
+		}
+		if (text.startsWith("/*", i)) {
+			int end = text.indexOf("*/", i + 2);
+			return end < 0 ? text.length() : end + 2;
+		}
+		return i;
+	}
+}
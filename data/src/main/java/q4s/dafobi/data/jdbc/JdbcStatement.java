@@ -18,31 +18,28 @@
  */
 package q4s.dafobi.data.jdbc;
 
-import java.math.BigDecimal;
 import java.sql.CallableStatement;
-import java.sql.Clob;
 import java.sql.Connection;
-import java.sql.Date;
+import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Time;
-import java.sql.Timestamp;
 import java.sql.Types;
 import java.text.MessageFormat;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import q4s.dafobi.common.DataParam;
 import q4s.dafobi.data.AbstractStatement;
 import q4s.dafobi.data.IResultTable;
+import q4s.dafobi.data.IRow;
 import q4s.dafobi.data.IStatement;
+import q4s.dafobi.data.MemoryResultTable;
+import q4s.dafobi.data.ParamSet;
 import q4s.dafobi.exception.DataException;
 import q4s.dafobi.jaxb.common.DataType;
+import q4s.dafobi.tools.ConcurrentCache;
 
 /**
  * Класс, реализующий инетрфейс {@link IStatement} для случая, когда работа с
@@ -55,35 +52,98 @@ public class JdbcStatement extends AbstractStatement {
 
 	private final JdbcConnection transaction;
 
+	/**
+	 * Исходный текст запроса. Он же является ключом в кеше операторов
+	 * подключения.
+	 */
+	private final String query;
+
+	/**
+	 * Признак того, что оператор выдан пользователю и еще не был им закрыт.
+	 */
+	private boolean leased;
+
 	/**
 	 * The statement this object is wrapping.
 	 */
 	private final PreparedStatement statement;
 
 	/**
-	 * Maps all parameter names to arrays of ints which are the parameter
-	 * indices.
+	 * Результат разбора текста запроса. Шаблон разделяется всеми операторами
+	 * с тем же текстом и тем же классом.
+	 */
+	private final JdbcQueryTemplate template;
+
+	/**
+	 * Объявленные в базе типы JDBC параметров по их позициям (начиная с 1),
+	 * полученные из {@link ParameterMetaData}. Используются при установке
+	 * пустых значений. Если описания не запрашивались или драйвер их не
+	 * предоставляет, то null.
+	 */
+	private final int[] declaredTypes;
+
+	/**
+	 * Установленные значения параметров по слотам. Нужны как часть ключа в
+	 * кеше результатов, поэтому запоминаются только для запросов с подсказкой
+	 * <tt>/&#42;+dafobi_cache&#42;/</tt>, для остальных - null.
+	 */
+	private final Object[] boundValues;
+
+	/**
+	 * Ограничение числа строк, установленное у оператора JDBC (0 - нет
+	 * ограничения).
 	 */
-	private final Map<String, int[]> indexMap;
+	private int maxRows = 0;
 
 	/**
-	 * Maps out parameter names to arrays of ints which are the parameter
-	 * indices.
+	 * Размер порции выборки, установленный у оператора JDBC (0 - выбирает
+	 * драйвер).
 	 */
-	private final Map<String, Integer> inOutParams;
+	private int fetchSize = 0;
 
 	/**
-	 * Запрос, превращенный в форму, пригодную для использования в JDBC.
+	 * Максимальное число шаблонов запросов, хранящихся в кеше.
 	 */
-	private final String parsedQuery;
+	public static final int TEMPLATE_CACHE_SIZE = 4096;
 
 	/**
-	 * Запрос, из которого в дополнение ко всему удалены комментарии, а так же
-	 * сделана другая возможная постобработка.
+	 * Общий для всего процесса кеш результатов разбора запросов.
 	 */
-	private final String processedQuery;
+	private static final ConcurrentCache<TemplateKey, JdbcQueryTemplate> TEMPLATES = new ConcurrentCache<TemplateKey, JdbcQueryTemplate>(
+			TEMPLATE_CACHE_SIZE);
 
-	private final boolean isCallable;
+	/**
+	 * Ключ кеша шаблонов. Поскольку методы {@link #processQuery(String)} и
+	 * {@link #isOperatorCallable(String)} могут быть переопределены, в ключ
+	 * кроме текста запроса входит и класс оператора.
+	 */
+	private static final class TemplateKey {
+		private final Class<?> statementClass;
+
+		private final String query;
+
+		TemplateKey(Class<?> statementClass, String query) {
+			this.statementClass = statementClass;
+			this.query = query;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * statementClass.hashCode() + query.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TemplateKey)) {
+				return false;
+			}
+			TemplateKey other = (TemplateKey) obj;
+			return statementClass == other.statementClass && query.equals(other.query);
+		}
+	}
 
 	/**
 	 * @see JdbcStatement
@@ -92,185 +152,151 @@ public class JdbcStatement extends AbstractStatement {
 	 * @param query
 	 */
 	public JdbcStatement(final JdbcConnection transaction, final String query) {
-		try {
-			this.transaction = transaction;
-
-			indexMap = new TreeMap<String, int[]>();
-			inOutParams = new TreeMap<String, Integer>();
-
-			// Разберем запрос и выделим входящие и выходные параметры.
-			// Учтем, что в начале вызова процедур может быть любое количетсво
-			// переносов строки и пробелов, а JDBC этого не разрешает.
-			parsedQuery = parse(query.replaceAll("^\\s+", ""), indexMap, inOutParams);
-
-			// Выполним необязательную постобработку запроса. По-умолчанию она
-			// включает в себя только удаление комментариев.
-			processedQuery = processQuery(parsedQuery);
-
-			// Процедурные запрос и обычные (DDL и т.п.) отрабатываются по
-			// разному.
-			//
-			isCallable = isOperatorCallable(processedQuery);
-			if (!isCallable && getOutParamNames().length > 0) {
-				throw new UnsupportedOperationException(MessageFormat.format(
-						"Выходные параметры можно использовать только в вызываемых операторах: ", getParsedQuery()));
-			}
+		this.transaction = transaction;
+		this.query = query;
+		this.leased = true;
+
+		// Разбор запроса выполняется один раз на процесс для каждого
+		// уникального текста запроса.
+		template = TEMPLATES.computeIfAbsent(new TemplateKey(getClass(), query), key -> createTemplate(query));
 
+		try {
 			Connection connection = transaction.getConnection();
-			if (isCallable) {
-				statement = connection.prepareCall(parsedQuery);
+			// Результаты читаются только последовательно, поэтому драйверу
+			// явно сообщается, что курсор однонаправленный и только для
+			// чтения: некоторые драйверы только так выдают строки потоком.
+			if (template.isCallable()) {
+				statement = connection.prepareCall(template.getParsedQuery(), ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY);
 
 			} else {
-				statement = connection.prepareStatement(parsedQuery);
+				statement = connection.prepareStatement(template.getParsedQuery(), ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY);
 			}
 
 		} catch (SQLException e) {
 			throw new DataException(e, getProcessedQuery());
 		}
+
+		declaredTypes = transaction.isUseParameterMetaData() ? readDeclaredTypes() : null;
+		boundValues = template.getCacheTtl() >= 0 ? new Object[template.getSlotCount()] : null;
 	}
 
 	/**
-	 * Метод выполняется в цикле конструктора оператора. В него можно внести
-	 * код, который допиливает запрос под особености драйвера JDBC.
+	 * Получение объявленных типов параметров у драйвера.
+	 * 
+	 * @return Типы параметров по их позициям или null, если драйвер не
+	 *         предоставляет такой информации.
+	 */
+	private int[] readDeclaredTypes() {
+		try {
+			ParameterMetaData meta = statement.getParameterMetaData();
+			int count = meta.getParameterCount();
+			int[] types = new int[count + 1];
+			for (int i = 1; i <= count; i++) {
+				types[i] = meta.getParameterType(i);
+			}
+			return types;
+
+		} catch (SQLException | RuntimeException e) {
+			// Многие драйверы эту возможность не поддерживают (или
+			// поддерживают не для всех операторов), тогда обходимся без нее.
+			return null;
+		}
+	}
+
+	/**
+	 * Разбор текста запроса.
+	 * 
+	 * @param query
+	 *            Исходный текст запроса.
+	 * 
+	 * @return Неизменяемый результат разбора.
+	 */
+	private JdbcQueryTemplate createTemplate(final String query) {
+		// Разберем запрос за один проход: выделим входящие и выходные
+		// параметры, удалим комментарии и лишние пробелы. Учтем, что в начале
+		// вызова процедур может быть любое количетсво переносов строки и
+		// пробелов, а JDBC этого не разрешает.
+		SqlLexer lexer = new SqlLexer(query);
+
+		// Выполним необязательную постобработку запроса.
+		String processedQuery = processQuery(lexer.getProcessedQuery());
+
+		// Процедурные запрос и обычные (DDL и т.п.) отрабатываются по
+		// разному.
+		//
+		boolean isCallable = isOperatorCallable(processedQuery);
+		if (!isCallable && !lexer.getOutParams().isEmpty()) {
+			throw new UnsupportedOperationException(MessageFormat.format(
+					"Выходные параметры можно использовать только в вызываемых операторах: {0}", processedQuery));
+		}
+
+		return new JdbcQueryTemplate(query, lexer.getParsedQuery(), processedQuery, lexer.getIndexMap(),
+				lexer.getOutParams(), isCallable, lexer.getCacheTtl());
+	}
+
+	/**
+	 * @return Общий для всего процесса кеш результатов разбора запросов.
+	 *         Через него можно получить статистику попаданий и вытеснений.
+	 */
+	public static ConcurrentCache<?, JdbcQueryTemplate> getTemplateCache() {
+		return TEMPLATES;
+	}
+
+	/**
+	 * Метод выполняется при разборе запроса. В него можно внести код, который
+	 * допиливает запрос под особености драйвера JDBC.
 	 * 
 	 * @param sourceQuery
-	 *            Запрос, в котором все имена параметров заменены на знаки ?
+	 *            Запрос, в котором все имена параметров заменены на знаки ?,
+	 *            комментарии удалены, а пробельные символы схлопнуты (см.
+	 *            {@link SqlLexer#getProcessedQuery()}).
 	 * 
 	 * @return Запрос, после всех произведенных допиливаний.
 	 */
 	protected String processQuery(String sourceQuery) {
-		return dropComment(sourceQuery).replaceAll("\\s+", " ").trim();
+		return sourceQuery;
 	}
 
 	/**
-	 * Метод выполняется в цикле конструктора оператора. В него можно внести
-	 * код, который определит, является запрос вызовом процедуры (и могут ли по
-	 * нему возвращаться выходные значения) или нет.
+	 * Метод выполняется при разборе запроса. В него можно внести код, который
+	 * определит, является запрос вызовом процедуры (и могут ли по нему
+	 * возвращаться выходные значения) или нет.
 	 * 
 	 * @param operator
 	 *            Текст оператора, на основании которого надо определить,
 	 *            является ли он вызовом процедуры или оператором базы данных.
+	 *            Текст уже не содержит комментариев и начальных пробелов.
 	 * 
 	 * @return true - если запрос является вызовом процедуры (или аналогом);
 	 *         false - если это обычный запрос к базе.
 	 */
 	protected boolean isOperatorCallable(String operator) {
 		// Запрос автоматически определяется как Callable, если он имеет
-		// формат "{call ...}"
-		return "{call".equalsIgnoreCase(operator.substring(0, 5));
-	}
-
-	/**
-	 * Parses a query with named parameters. The parameter-index mappings are
-	 * put into the map, and the parsed query is returned. DO NOT CALL FROM
-	 * CLIENT CODE. This method is non-private so JUnit code can test it.
-	 * 
-	 * @param query
-	 *            query to parse
-	 * 
-	 * @param paramMap
-	 *            map to hold parameter-index mappings
-	 * 
-	 * @return the parsed query
-	 */
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private static final String parse(final String query, final Map paramMap, final Map<String, Integer> inOutParams) {
-
-		// I was originally using regular expressions, but they didn't work well
-		// for ignoring
-		// parameter-like strings inside quotes.
-		int length = query.length();
-		StringBuffer parsedQuery = new StringBuffer(length);
-		boolean inSingleQuote = false;
-		boolean inDoubleQuote = false;
-		boolean inComment = false;
-		int index = 1;
-
-		// Информация собирается в LinkedList, а под конец перекладывается
-		// в массив, как и заявлено в переменной indexMap.
-		for (int i = 0; i < length; i++) {
-			char c = query.charAt(i);
-			if (inSingleQuote) {
-				// В строковой константе параметры не учитываются.
-				if (c == '\'') {
-					inSingleQuote = false;
-				}
-
-			} else if (inDoubleQuote) {
-				// В строковой константе параметры не учитываются.
-				if (c == '"') {
-					inDoubleQuote = false;
-				}
-
-			} else if (inComment) {
-				// В режиме комментария параметры не учитываются.
-				if (c == '*' && i + 1 < length && query.charAt(i + 1) == '/') {
-					inComment = false;
-					parsedQuery.append(c);
-					c = query.charAt(++i);
-				}
-
-			} else {
-				if (c == '\'') {
-					// Начало строки
-					inSingleQuote = true;
-
-				} else if (c == '"') {
-					// Начало строки
-					inDoubleQuote = true;
-
-				} else if (c == '/' && i + 1 < length && query.charAt(i + 1) == '*') {
-					// Начало комментария
-					inComment = true;
-					parsedQuery.append(c);
-					c = query.charAt(++i);
-
-				} else if ((c == ':' || c == '&') && i + 1 < length
-						&& Character.isJavaIdentifierStart(query.charAt(i + 1))) {
-					int j = i + 2;
-					while (j < length && Character.isJavaIdentifierPart(query.charAt(j))) {
-						j++;
-					}
-					String name = query.substring(i + 1, j).toLowerCase();
-					i += name.length(); // skip past the end if the parameter
-
-					List indexList = (List) paramMap.get(name);
-					if (indexList == null) {
-						indexList = new LinkedList();
-						paramMap.put(name, indexList);
-					}
-					indexList.add(new Integer(index));
-
-					// Если это выходной параметр, то добавим его в список.
-					if (c == '&') {
-						if (inOutParams.containsKey(name)) {
-							throw new RuntimeException("Нельзя определять переменную выходной дважды");
-						}
-						inOutParams.put(name.toLowerCase(), new Integer(index));
-					}
-
-					c = '?'; // replace the parameter with a question mark
-
-					index++;
-				}
+		// формат "{call ...}" или "{? = call ...}".
+		if (operator.isEmpty() || operator.charAt(0) != '{') {
+			return false;
+		}
+		int i = 1;
+		int length = operator.length();
+		while (i < length && operator.charAt(i) == ' ') {
+			i++;
+		}
+		if (i < length && operator.charAt(i) == '?') {
+			i++;
+			while (i < length && operator.charAt(i) == ' ') {
+				i++;
 			}
-			parsedQuery.append(c);
-		}
-
-		// replace the lists of Integer objects with arrays of ints
-		for (Iterator itr = paramMap.entrySet().iterator(); itr.hasNext();) {
-			Map.Entry entry = (Map.Entry) itr.next();
-			List list = (List) entry.getValue();
-			int[] indexes = new int[list.size()];
-			int i = 0;
-			for (Iterator itr2 = list.iterator(); itr2.hasNext();) {
-				Integer x = (Integer) itr2.next();
-				indexes[i++] = x.intValue();
+			if (i >= length || operator.charAt(i) != '=') {
+				return false;
+			}
+			i++;
+			while (i < length && operator.charAt(i) == ' ') {
+				i++;
 			}
-			entry.setValue(indexes);
 		}
-
-		return parsedQuery.toString();
+		return SqlLexer.startsWithWord(operator, i, "call");
 	}
 
 	/**
@@ -285,18 +311,33 @@ public class JdbcStatement extends AbstractStatement {
 	 *             if the parameter does not exist
 	 */
 	protected final int[] getIndexes(String name) {
-		int[] indexes = (int[]) indexMap.get(name.toLowerCase());
+		int[] indexes = template.getIndexes(name.toLowerCase());
 		if (indexes == null) {
 			throw new IllegalArgumentException("Parameter not found: " + name);
 		}
 		return indexes;
 	}
 
+	/**
+	 * @return Исходный текст запроса.
+	 */
+	public final String getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return Результат разбора текста запроса, общий для всех операторов с
+	 *         тем же текстом.
+	 */
+	public final JdbcQueryTemplate getTemplate() {
+		return template;
+	}
+
 	/**
 	 * @return the parsedQuery
 	 */
 	public final String getParsedQuery() {
-		return parsedQuery;
+		return template.getParsedQuery();
 	}
 
 	/**
@@ -306,7 +347,7 @@ public class JdbcStatement extends AbstractStatement {
 	 * @return the processedQuery
 	 */
 	public final String getProcessedQuery() {
-		return processedQuery;
+		return template.getProcessedQuery();
 	}
 
 	/**
@@ -318,7 +359,7 @@ public class JdbcStatement extends AbstractStatement {
 	 *         false - если это обычный запрос к базе.
 	 */
 	public final boolean isCallable() {
-		return isCallable;
+		return template.isCallable();
 	}
 
 	/*
@@ -328,7 +369,7 @@ public class JdbcStatement extends AbstractStatement {
 	 */
 	@Override
 	public final String[] getParamNames() {
-		return indexMap.keySet().toArray(new String[0]);
+		return template.getParamNames();
 	}
 
 	/*
@@ -338,12 +379,7 @@ public class JdbcStatement extends AbstractStatement {
 	 */
 	@Override
 	public final String[] getOutParamNames() {
-		if (statement instanceof CallableStatement) {
-			return inOutParams.keySet().toArray(new String[0]);
-
-		} else {
-			return new String[0];
-		}
+		return template.getOutParamNames();
 	}
 
 	/*
@@ -354,62 +390,147 @@ public class JdbcStatement extends AbstractStatement {
 	 */
 	@Override
 	public void setParam(String name, DataParam param) {
-		try {
-			int[] indexes = getIndexes(name.toLowerCase());
-			for (int i = 0; i < indexes.length; i++) {
-				Object value = param.getValue();
-
-				switch (param.getType().jdbcType()) {
-				case Types.VARCHAR:
-					statement.setString(indexes[i], value == null ? null : (String) value);
-					break;
-
-				case Types.INTEGER:
-					statement.setInt(indexes[i], value == null ? null : (Integer) value);
-					break;
+		// Установка параметров, которых нет в запросе, - обычное дело
+		// (например, в query(Map) передаются все переменные формы). Такие
+		// параметры просто пропускаются.
+		int slot = template.getSlot(name);
+		if (slot >= 0) {
+			bind(slot, param.getType(), param.getValue());
+		}
+	}
 
-				case Types.BIGINT:
-					statement.setLong(indexes[i], value == null ? null : (Long) value);
-					break;
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.AbstractStatement#createParamSet()
+	 */
+	@Override
+	public ParamSet createParamSet() {
+		// Номера слотов набора совпадают с номерами параметров шаблона, так
+		// что набор подходит всем операторам с тем же шаблоном.
+		return new ParamSet(template.getParamNames(), template);
+	}
 
-				case Types.NUMERIC:
-					statement.setBigDecimal(indexes[i], value == null ? null : (BigDecimal) value);
-					break;
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * q4s.dafobi.data.AbstractStatement#checkParams(q4s.dafobi.data.ParamSet)
+	 */
+	@Override
+	protected void checkParams(ParamSet parameters) {
+		if (parameters.getLayout() != template) {
+			super.checkParams(parameters);
+			return;
+		}
 
-				case Types.DATE:
-					statement.setDate(indexes[i], value == null ? null : (Date) value);
-					break;
+		// Слоты набора совпадают с параметрами шаблона, поэтому достаточно
+		// счетчика неустановленных слотов, а имя нужно только для сообщения.
+		if (!parameters.isComplete()) {
+			for (int slot = 0; slot < parameters.size(); slot++) {
+				if (!parameters.isSet(slot)) {
+					throw new IllegalArgumentException(MessageFormat
+							.format("Отсутствует описание параметра с именем: {0}", parameters.getName(slot)));
+				}
+			}
+		}
+	}
 
-				case Types.TIME:
-					statement.setTime(indexes[i], value == null ? null : (Time) value);
-					break;
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * q4s.dafobi.data.AbstractStatement#setParams(q4s.dafobi.data.ParamSet)
+	 */
+	@Override
+	protected void setParams(ParamSet parameters) {
+		if (parameters.getLayout() != template) {
+			super.setParams(parameters);
+			return;
+		}
 
-				case Types.TIMESTAMP:
-					statement.setTimestamp(indexes[i], value == null ? null : (Timestamp) value);
-					// С полем Timestamp в Оракле происходит хрень.
-					// Купируем баг путем перевода в другой тип.
-					// statement.setObject(indexes[i], value == null ? null :
-					// new Date(((Timestamp) value).getTime()));
-					break;
+		try {
+			int count = parameters.size();
+			for (int slot = 0; slot < count; slot++) {
+				if (!parameters.isSet(slot)) {
+					continue;
+				}
+				DataType type = parameters.getType(slot);
+				int[] indexes = template.getSlotIndexes(slot);
+				if (boundValues != null) {
+					boundValues[slot] = parameters.getValue(slot);
+				}
+				if (parameters.isLong(slot)) {
+					long value = parameters.getLong(slot);
+					for (int i = 0; i < indexes.length; i++) {
+						if (type == DataType.INTEGER) {
+							statement.setInt(indexes[i], (int) value);
+						} else {
+							statement.setLong(indexes[i], value);
+						}
+					}
 
-				case Types.CLOB:
-					statement.setClob(indexes[i], value == null ? null : (Clob) value);
-					break;
+				} else if (parameters.isDouble(slot)) {
+					double value = parameters.getDouble(slot);
+					for (int i = 0; i < indexes.length; i++) {
+						statement.setDouble(indexes[i], value);
+					}
 
-				default:
-					throw new UnsupportedOperationException(
-							MessageFormat.format("Тип данных {0} не поддерживается.", param.getClass().getName()));
+				} else {
+					bind(slot, type, parameters.getValue(slot));
 				}
 			}
 
-		} catch (IllegalArgumentException e) {
-			// Просто пропускаем случаи, когда параметр устанавливается зря.
+		} catch (SQLException e) {
+			throw new DataException(e, getProcessedQuery());
+		}
+	}
+
+	/**
+	 * Установка значения параметра во все его позиции в запросе.
+	 * 
+	 * @param slot
+	 *            Номер параметра (см. {@link JdbcQueryTemplate#getSlot(String)}).
+	 * 
+	 * @param type
+	 *            Тип данных значения.
+	 * 
+	 * @param value
+	 *            Значение или null.
+	 */
+	final void bind(int slot, DataType type, Object value) {
+		if (boundValues != null) {
+			boundValues[slot] = value;
+		}
+		JdbcParamBinder binder = JdbcParamBinder.forType(type);
+		int[] indexes = template.getSlotIndexes(slot);
+		try {
+			for (int i = 0; i < indexes.length; i++) {
+				binder.bind(statement, indexes[i], value, nullType(indexes[i], type));
+			}
 
 		} catch (SQLException e) {
-			throw new RuntimeException(e);
+			throw new DataException(e, getProcessedQuery());
 		}
 	}
 
+	/**
+	 * @param index
+	 *            Позиция параметра в запросе.
+	 * 
+	 * @param type
+	 *            Тип данных значения.
+	 * 
+	 * @return Тип JDBC, с которым надо устанавливать пустое значение.
+	 */
+	private int nullType(int index, DataType type) {
+		if (declaredTypes != null && index < declaredTypes.length && declaredTypes[index] != Types.NULL
+				&& declaredTypes[index] != Types.OTHER) {
+			return declaredTypes[index];
+		}
+		return type.jdbcType();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -418,7 +539,7 @@ public class JdbcStatement extends AbstractStatement {
 	 */
 	@Override
 	public Object getParam(String name, DataType type) {
-		Integer index = inOutParams.get(name.toLowerCase());
+		Integer index = template.getOutIndex(name.toLowerCase());
 		if (index != null) {
 			CallableStatement callStmt = (CallableStatement) statement;
 			Object value;
@@ -476,6 +597,55 @@ public class JdbcStatement extends AbstractStatement {
 	 */
 	@Override
 	public final void close() {
+		if (!leased) {
+			return;
+		}
+		leased = false;
+
+		// Оператор по возможности возвращается в кеш подключения, чтобы при
+		// следующем вызове с тем же текстом не готовить его заново.
+		if (!transaction.releaseStatement(this)) {
+			closeStatement();
+		}
+	}
+
+	/**
+	 * Метод вызывается кешем при повторной выдаче оператора пользователю.
+	 */
+	final void lease() {
+		leased = true;
+	}
+
+	/**
+	 * Подготовка оператора к повторному использованию: сбрасываются значения
+	 * параметров и накопленный пакет.
+	 * 
+	 * @return true - если оператор можно использовать повторно.
+	 */
+	final boolean reset() {
+		try {
+			if (statement.isClosed()) {
+				return false;
+			}
+			statement.clearParameters();
+			clearHints();
+			if (boundValues != null) {
+				Arrays.fill(boundValues, null);
+			}
+			if (!isCallable()) {
+				statement.clearBatch();
+			}
+			return true;
+
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Физическое закрытие оператора JDBC.
+	 */
+	final void closeStatement() {
 		try {
 			statement.close();
 
@@ -492,7 +662,7 @@ public class JdbcStatement extends AbstractStatement {
 	@Override
 	public final boolean isClosed() {
 		try {
-			return statement.isClosed();
+			return !leased || statement.isClosed();
 
 		} catch (SQLException e) {
 			throw new DataException(e);
@@ -508,16 +678,95 @@ public class JdbcStatement extends AbstractStatement {
 	public IResultTable query() {
 		try {
 			if (isCallable()) {
+				applyLimits(getMaxRows(), getFetchSize());
 				statement.execute();
 				if (statement.getMoreResults()) {
-					return new JdbcResultTable(this, statement.getResultSet());
+					return adaptive(new JdbcResultTable(this, statement.getResultSet()));
 				} else {
 					throw new UnsupportedOperationException(MessageFormat
 							.format("Оператор не вернул ResultSet как ожидалось: \"{0}\"", getProcessedQuery()));
 				}
 
+			} else if (boundValues != null && transaction.getResultCache() != null && getMaxRows() == 0
+					&& !transaction.isModified(template.tables())) {
+				return cachedQuery(transaction.getResultCache());
+
 			} else {
-				return new JdbcResultTable(this, statement.executeQuery());
+				applyLimits(getMaxRows(), getFetchSize());
+				return adaptive(new JdbcResultTable(this, statement.executeQuery()));
+			}
+
+		} catch (SQLException e) {
+			throw new DataException(e, getProcessedQuery());
+		}
+	}
+
+	/**
+	 * Выполнение запроса через кеш результатов. Результат полностью читается
+	 * в память, а набор данных JDBC сразу закрывается.
+	 * 
+	 * @param cache
+	 *            Кеш результатов подключения.
+	 * 
+	 * @return Неизменяемая копия результата.
+	 */
+	private IResultTable cachedQuery(JdbcResultCache cache) throws SQLException {
+		String processedQuery = getProcessedQuery();
+		MemoryResultTable table = cache.get(processedQuery, boundValues);
+		if (table != null) {
+			return table;
+		}
+
+		long stamp = cache.stamp();
+		applyLimits(0, getFetchSize());
+		try (JdbcResultTable result = adaptive(new JdbcResultTable(this, statement.executeQuery()))) {
+			table = MemoryResultTable.copyOf(result);
+		}
+		cache.put(processedQuery, boundValues, template.tables(), table, template.getCacheTtl(), stamp);
+		return table;
+	}
+
+	/**
+	 * Включение адаптивной выборки, если для оператора или подключения задан
+	 * объем памяти на порцию строк.
+	 */
+	private JdbcResultTable adaptive(JdbcResultTable result) {
+		long fetchMemory = getFetchMemory() > 0 ? getFetchMemory() : transaction.getFetchMemory();
+		if (fetchMemory > 0 && getFetchSize() == 0) {
+			result.setAdaptiveFetch(fetchMemory);
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.AbstractStatement#queryRow(boolean)
+	 */
+	@Override
+	public IRow queryRow(boolean exactlyOne) {
+		if (isCallable() || (boundValues != null && transaction.getResultCache() != null)) {
+			// Вызовы процедур и кешируемые запросы выполняются обычным путем.
+			return super.queryRow(exactlyOne);
+		}
+
+		// Драйверу незачем выбирать больше строк, чем нужно: одну, а для
+		// проверки единственности - две.
+		int limit = exactlyOne ? 2 : 1;
+		try {
+			applyLimits(limit, limit);
+			try (JdbcResultTable result = new JdbcResultTable(this, statement.executeQuery())) {
+				IRow row = result.fetchRow();
+				if (row == null) {
+					if (exactlyOne) {
+						throw noRows(getProcessedQuery());
+					}
+					return null;
+				}
+				if (exactlyOne && result.skipRow()) {
+					throw tooManyRows(getProcessedQuery());
+				}
+				return row;
 			}
 
 		} catch (SQLException e) {
@@ -525,6 +774,21 @@ public class JdbcStatement extends AbstractStatement {
 		}
 	}
 
+	/**
+	 * Установка ограничения числа строк и размера порции выборки. Драйвер
+	 * вызывается только тогда, когда значения меняются.
+	 */
+	private void applyLimits(int maxRows, int fetchSize) throws SQLException {
+		if (this.maxRows != maxRows) {
+			statement.setMaxRows(maxRows);
+			this.maxRows = maxRows;
+		}
+		if (this.fetchSize != fetchSize) {
+			statement.setFetchSize(fetchSize);
+			this.fetchSize = fetchSize;
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -535,10 +799,13 @@ public class JdbcStatement extends AbstractStatement {
 		try {
 			if (isCallable()) {
 				statement.execute();
+				transaction.tablesModified(template.tables());
 				return 0;
 
 			} else {
-				return statement.executeUpdate();
+				int count = statement.executeUpdate();
+				transaction.tablesModified(template.tables());
+				return count;
 			}
 
 		} catch (SQLException e) {
@@ -580,10 +847,14 @@ public class JdbcStatement extends AbstractStatement {
 				throw new UnsupportedOperationException(
 						MessageFormat.format(WRONG_BATCH_OPERATOR, getProcessedQuery()));
 			} else {
-				return statement.executeBatch();
+				int[] counts = statement.executeBatch();
+				transaction.tablesModified(template.tables());
+				return counts;
 			}
 
 		} catch (SQLException e) {
+			// Часть пакета могла быть выполнена.
+			transaction.tablesModified(template.tables());
 			throw new DataException(e, getProcessedQuery());
 		}
 	}
@@ -603,15 +874,19 @@ public class JdbcStatement extends AbstractStatement {
 	 * разбивать на подстроки или прятать в функции.
 	 * </p>
 	 * 
+	 * <p>
+	 * Сам оператор этим методом больше не пользуется: комментарии удаляются
+	 * при разборе запроса классом {@link SqlLexer}, который учитывает
+	 * строковые константы.
+	 * </p>
+	 * 
 	 * @param query
 	 *            Текст, из которого надо удалить комментарии.
 	 * 
 	 * @return Текст запроса, после удаления комментариев.
 	 */
 	public static final String dropComment(String query) {
-		String dropComments = "/\\*[\\s\\S]*?\\*/";
-		Pattern p = Pattern.compile(dropComments, Pattern.DOTALL | Pattern.UNIX_LINES | Pattern.UNICODE_CASE);
-		Matcher m = p.matcher(query); // get a matcher object
+		Matcher m = COMMENT.matcher(query); // get a matcher object
 		StringBuffer sb = new StringBuffer();
 		while (m.find()) {
 			m.appendReplacement(sb, "");
@@ -620,4 +895,7 @@ public class JdbcStatement extends AbstractStatement {
 		return sb.toString();
 	}
 
+	private static final Pattern COMMENT = Pattern.compile("/\\*[\\s\\S]*?\\*/",
+			Pattern.DOTALL | Pattern.UNIX_LINES | Pattern.UNICODE_CASE);
+
 }
@@ -0,0 +1,172 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кеш подготовленных операторов одного подключения {@link JdbcConnection}.
+ * <p>
+ * В кеше хранятся только свободные операторы. При вызове
+ * {@link JdbcConnection#prepare(String)} оператор изымается из кеша (если он
+ * там есть), а при закрытии оператора методом {@link JdbcStatement#close()}
+ * он возвращается обратно вместо того, чтобы быть закрытым. Ключом является
+ * исходный текст запроса. Если кеш переполнен, то физически закрывается
+ * оператор, который дольше всех не использовался.
+ * <p>
+ * Как и само подключение, кеш не рассчитан на одновременную работу из
+ * нескольких потоков.
+ * 
+ * @author Q4S
+ * 
+ */
+public class JdbcStatementCache {
+
+	/**
+	 * Максимальное число свободных операторов в кеше.
+	 */
+	private final int maxSize;
+
+	/**
+	 * Свободные операторы в порядке их последнего использования.
+	 */
+	private final LinkedHashMap<String, JdbcStatement> idle;
+
+	private long hits = 0;
+
+	private long misses = 0;
+
+	private long evictions = 0;
+
+	/**
+	 * @see JdbcStatementCache
+	 * 
+	 * @param maxSize
+	 *            Максимальное число операторов в кеше. Значение 0 отключает
+	 *            кеширование.
+	 */
+	public JdbcStatementCache(final int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Размер кеша не может быть отрицательным");
+		}
+		this.maxSize = maxSize;
+		this.idle = new LinkedHashMap<String, JdbcStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, JdbcStatement> eldest) {
+				if (size() > JdbcStatementCache.this.maxSize) {
+					evictions++;
+					eldest.getValue().closeStatement();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Изъятие оператора из кеша.
+	 * 
+	 * @param query
+	 *            Исходный текст запроса.
+	 * 
+	 * @return Оператор, готовый к использованию, или null, если такого
+	 *         оператора в кеше нет.
+	 */
+	JdbcStatement lease(final String query) {
+		JdbcStatement statement = idle.remove(query);
+		if (statement == null) {
+			misses++;
+		} else {
+			hits++;
+			statement.lease();
+		}
+		return statement;
+	}
+
+	/**
+	 * Возврат оператора в кеш.
+	 * 
+	 * @param statement
+	 *            Оператор, который был закрыт пользователем.
+	 * 
+	 * @return true - если оператор помещен в кеш; false - если оператор надо
+	 *         закрыть физически (кеш отключен, или в нем уже есть свободный
+	 *         оператор с тем же текстом).
+	 */
+	boolean release(final JdbcStatement statement) {
+		String query = statement.getQuery();
+		if (maxSize == 0 || idle.containsKey(query) || !statement.reset()) {
+			return false;
+		}
+		idle.put(query, statement);
+		return true;
+	}
+
+	/**
+	 * Физически закрывает все операторы, находящиеся в кеше.
+	 */
+	public void clear() {
+		List<JdbcStatement> statements = new ArrayList<JdbcStatement>(idle.values());
+		idle.clear();
+		for (JdbcStatement statement : statements) {
+			statement.closeStatement();
+		}
+	}
+
+	/**
+	 * @return Максимальное число операторов в кеше.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return Текущее число свободных операторов в кеше.
+	 */
+	public int size() {
+		return idle.size();
+	}
+
+	/**
+	 * @return Число случаев, когда оператор был взят из кеша.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return Число случаев, когда оператор пришлось готовить заново.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return Число операторов, закрытых из-за переполнения кеша.
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import q4s.dafobi.data.IStatement;
+
+/**
+ * Подключение, выдаваемое пулом {@link JdbcConnectionPool}. Объект живет
+ * столько же, сколько физическое подключение, и выдается пользователям
+ * многократно, поэтому кеш операторов сохраняется между выдачами. При
+ * закрытии транзакция завершается так же, как у обычного подключения, а
+ * само подключение возвращается в пул.
+ * 
+ * @author Q4S
+ * 
+ */
+final class PooledJdbcConnection extends JdbcConnection {
+
+	private final JdbcConnectionPool pool;
+
+	/**
+	 * Момент последнего возврата в пул (см. {@link System#nanoTime()}).
+	 */
+	private long releasedAt;
+
+	private boolean leased = false;
+
+	PooledJdbcConnection(JdbcConnectionPool pool, Connection connection, int statementCacheSize) {
+		super(connection, statementCacheSize);
+		this.pool = pool;
+		this.releasedAt = System.nanoTime();
+	}
+
+	/**
+	 * Метод вызывается пулом при выдаче подключения пользователю.
+	 */
+	void lease() {
+		leased = true;
+	}
+
+	/**
+	 * @return Момент последнего возврата в пул.
+	 */
+	long getReleasedAt() {
+		return releasedAt;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see q4s.dafobi.data.jdbc.JdbcConnection#prepare(java.lang.String)
+	 */
+	@Override
+	public IStatement prepare(String statement) {
+		if (!leased) {
+			throw new IllegalStateException("Подключение уже возвращено в пул");
+		}
+		return super.prepare(statement);
+	}
+
+	/**
+	 * Завершение транзакции и возврат подключения в пул. Повторный вызов
+	 * ничего не делает.
+	 * 
+	 * @see q4s.dafobi.data.jdbc.JdbcConnection#close()
+	 */
+	@Override
+	public void close() {
+		if (!leased) {
+			return;
+		}
+		leased = false;
+		releasedAt = System.nanoTime();
+
+		boolean reusable = false;
+		try {
+			endTransaction();
+			reusable = true;
+
+		} finally {
+			pool.release(this, reusable);
+		}
+	}
+
+	/**
+	 * Физическое закрытие подключения вместе со всеми операторами из кеша.
+	 * Ошибки игнорируются, т.к. подключение, как правило, закрывается именно
+	 * потому, что оно уже неисправно.
+	 */
+	void destroy() {
+		try {
+			getStatementCache().clear();
+
+		} catch (RuntimeException e) {
+			// Ошибка закрытия операторов не должна мешать закрытию
+			// подключения.
+		}
+		try {
+			getConnection().close();
+
+		} catch (SQLException e) {
+			// Подключение уже недоступно.
+		}
+	}
+}
@@ -0,0 +1,515 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Однопроходный разборщик текста запроса. За один проход по тексту он:
+ * <ul>
+ * <li>находит именованные параметры (<tt>:name</tt>) и выходные параметры
+ * (<tt>&amp;name</tt>) и заменяет их знаками <tt>?</tt>;</li>
+ * <li>формирует текст запроса без комментариев (как <tt>/&#42; &#42;/</tt>,
+ * так и <tt>--</tt>) и со схлопнутыми пробельными символами;</li>
+ * <li>распознает подсказку кеширования результата
+ * <tt>/&#42;+dafobi_cache(60s)&#42;/</tt> (см. {@link #getCacheTtl()}).</li>
+ * </ul>
+ * Содержимое строковых констант и идентификаторов в кавычках, а так же
+ * комментариев, никак не интерпретируется: параметры и кавычки внутри них не
+ * учитываются.
+ * 
+ * @author Q4S
+ * 
+ */
+public final class SqlLexer {
+
+	private static final int NORMAL = 0;
+
+	private static final int SINGLE_QUOTE = 1;
+
+	private static final int DOUBLE_QUOTE = 2;
+
+	private static final int BLOCK_COMMENT = 3;
+
+	private static final int LINE_COMMENT = 4;
+
+	/**
+	 * Подсказка кеширования: <tt>dafobi_cache</tt>, за которым может следовать
+	 * время жизни в скобках с единицей измерения ms, s, m или h
+	 * (по-умолчанию секунды). Имя с префиксом не совпадает с подсказками баз
+	 * данных (например, <tt>CACHE(emp)</tt> в Oracle), которые передаются
+	 * базе данных и кеширование не включают.
+	 */
+	private static final Pattern CACHE_HINT = Pattern.compile(
+			"(?<![\\w$])dafobi_cache(?![\\w$])\\s*(?:\\(\\s*(\\d+)\\s*(ms|s|m|h)?\\s*\\))?",
+			Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * Слова, за которыми в тексте запроса следуют имена таблиц.
+	 */
+	private static final String[] TABLE_WORDS = { "from", "join", "into", "update", "table" };
+
+	/**
+	 * Слова, которые могут стоять перед именем таблицы, но сами им не
+	 * являются.
+	 */
+	private static final String[] TABLE_PREFIXES = { "if", "not", "exists", "only", "lateral" };
+
+	/**
+	 * Слова, которые не могут быть псевдонимом таблицы.
+	 */
+	private static final String[] ALIAS_STOP_WORDS = { "where", "group", "order", "having", "union", "join", "left",
+			"right", "inner", "outer", "full", "cross", "natural", "on", "using", "limit", "offset", "fetch", "for",
+			"window", "connect", "start", "minus", "except", "intersect", "set", "values", "select", "with",
+			"default", "returning", "when" };
+
+	/**
+	 * Запрос, в котором параметры заменены знаками ?, а начальные пробелы
+	 * удалены. Комментарии сохраняются.
+	 */
+	private final String parsedQuery;
+
+	/**
+	 * Запрос без комментариев, в котором все последовательности пробельных
+	 * символов вне строковых констант заменены одним пробелом.
+	 */
+	private final String processedQuery;
+
+	/**
+	 * Имена параметров и их позиции в запросе.
+	 */
+	private final Map<String, int[]> indexMap = new TreeMap<String, int[]>();
+
+	/**
+	 * Имена выходных параметров и их позиции в запросе.
+	 */
+	private final Map<String, Integer> outParams = new TreeMap<String, Integer>();
+
+	/**
+	 * Время жизни результата в кеше из подсказки
+	 * <tt>/&#42;+dafobi_cache&#42;/</tt>.
+	 */
+	private long cacheTtl = -1;
+
+	/**
+	 * Разбор текста запроса.
+	 * 
+	 * @param query
+	 *            Исходный текст запроса.
+	 */
+	public SqlLexer(final String query) {
+		int length = query.length();
+		int start = 0;
+		while (start < length && Character.isWhitespace(query.charAt(start))) {
+			start++;
+		}
+
+		StringBuilder parsed = new StringBuilder(length - start);
+		StringBuilder processed = new StringBuilder(length - start);
+		boolean pendingSpace = false;
+		int state = NORMAL;
+		int index = 1;
+		int commentStart = 0;
+
+		for (int i = start; i < length; i++) {
+			char c = query.charAt(i);
+			char next = i + 1 < length ? query.charAt(i + 1) : 0;
+
+			switch (state) {
+			case SINGLE_QUOTE:
+			case DOUBLE_QUOTE:
+				// В строковой константе параметры не учитываются, а пробелы
+				// сохраняются как есть.
+				if (c == (state == SINGLE_QUOTE ? '\'' : '"')) {
+					state = NORMAL;
+				}
+				parsed.append(c);
+				processed.append(c);
+				continue;
+
+			case BLOCK_COMMENT:
+				parsed.append(c);
+				if (c == '*' && next == '/') {
+					if (query.charAt(commentStart) == '+' && commentStart < i) {
+						parseHint(query.substring(commentStart + 1, i));
+					}
+					parsed.append(next);
+					i++;
+					state = NORMAL;
+				}
+				continue;
+
+			case LINE_COMMENT:
+				parsed.append(c);
+				if (c == '\n') {
+					state = NORMAL;
+				}
+				continue;
+			}
+
+			if (Character.isWhitespace(c)) {
+				parsed.append(c);
+				pendingSpace = true;
+				continue;
+			}
+
+			if (c == '/' && next == '*') {
+				// Комментарий в обработанном запросе заменяется пробелом.
+				parsed.append(c).append(next);
+				i++;
+				state = BLOCK_COMMENT;
+				commentStart = i + 1 < length ? i + 1 : i;
+				pendingSpace = true;
+				continue;
+			}
+
+			if (c == '-' && next == '-') {
+				parsed.append(c).append(next);
+				i++;
+				state = LINE_COMMENT;
+				pendingSpace = true;
+				continue;
+			}
+
+			if (pendingSpace) {
+				if (processed.length() > 0) {
+					processed.append(' ');
+				}
+				pendingSpace = false;
+			}
+
+			if (c == '\'') {
+				state = SINGLE_QUOTE;
+
+			} else if (c == '"') {
+				state = DOUBLE_QUOTE;
+
+			} else if (c == ':' && next == ':') {
+				// Приведение типа вида x::int параметром не является.
+				parsed.append(c).append(next);
+				processed.append(c).append(next);
+				i++;
+				continue;
+
+			} else if ((c == ':' || c == '&') && Character.isJavaIdentifierStart(next)) {
+				int j = i + 2;
+				while (j < length && Character.isJavaIdentifierPart(query.charAt(j))) {
+					j++;
+				}
+				String name = query.substring(i + 1, j).toLowerCase();
+				addIndex(name, index);
+
+				// Если это выходной параметр, то добавим его в список.
+				if (c == '&') {
+					if (outParams.containsKey(name)) {
+						throw new RuntimeException("Нельзя определять переменную выходной дважды");
+					}
+					outParams.put(name, index);
+				}
+				index++;
+
+				parsed.append('?');
+				processed.append('?');
+				i = j - 1;
+				continue;
+			}
+
+			parsed.append(c);
+			processed.append(c);
+		}
+
+		parsedQuery = parsed.toString();
+		processedQuery = processed.toString();
+	}
+
+	/**
+	 * Разбор подсказки вида <tt>/&#42;+ ... &#42;/</tt>. Все подсказки, кроме
+	 * <tt>dafobi_cache</tt>, предназначены базе данных и здесь пропускаются.
+	 * 
+	 * @param hint
+	 *            Текст подсказки без начального знака +.
+	 */
+	private void parseHint(String hint) {
+		Matcher matcher = CACHE_HINT.matcher(hint);
+		if (!matcher.find()) {
+			return;
+		}
+		if (matcher.group(1) == null) {
+			cacheTtl = 0;
+			return;
+		}
+		long value = Long.parseLong(matcher.group(1));
+		String unit = matcher.group(2) == null ? "s" : matcher.group(2).toLowerCase();
+		switch (unit) {
+		case "ms":
+			cacheTtl = value;
+			break;
+		case "m":
+			cacheTtl = value * 60000L;
+			break;
+		case "h":
+			cacheTtl = value * 3600000L;
+			break;
+		default:
+			cacheTtl = value * 1000L;
+		}
+	}
+
+	/**
+	 * Добавление очередной позиции параметра.
+	 */
+	private void addIndex(String name, int index) {
+		int[] indexes = indexMap.get(name);
+		if (indexes == null) {
+			indexes = new int[] { index };
+		} else {
+			indexes = Arrays.copyOf(indexes, indexes.length + 1);
+			indexes[indexes.length - 1] = index;
+		}
+		indexMap.put(name, indexes);
+	}
+
+	/**
+	 * @return Запрос в форме, пригодной для JDBC: параметры заменены знаками
+	 *         ?, начальные пробелы удалены, комментарии сохранены.
+	 */
+	public String getParsedQuery() {
+		return parsedQuery;
+	}
+
+	/**
+	 * @return Запрос без комментариев и с единичными пробелами между
+	 *         лексемами. Строковые константы сохраняются без изменений.
+	 */
+	public String getProcessedQuery() {
+		return processedQuery;
+	}
+
+	/**
+	 * @return Имена параметров (в нижнем регистре) и их позиции в запросе.
+	 */
+	public Map<String, int[]> getIndexMap() {
+		return indexMap;
+	}
+
+	/**
+	 * @return Имена выходных параметров (в нижнем регистре) и их позиции в
+	 *         запросе.
+	 */
+	public Map<String, Integer> getOutParams() {
+		return outParams;
+	}
+
+	/**
+	 * @return Время жизни результата запроса в кеше (в миллисекундах),
+	 *         заданное подсказкой <tt>/&#42;+dafobi_cache(60s)&#42;/</tt>; 0 - если
+	 *         подсказка задана без времени (используется время кеша); -1 -
+	 *         если подсказки нет.
+	 */
+	public long getCacheTtl() {
+		return cacheTtl;
+	}
+
+	/**
+	 * Поиск имен таблиц, упоминаемых в запросе: после слов FROM, JOIN, INTO,
+	 * UPDATE и TABLE, включая перечисления через запятую. Разбор приблизителен
+	 * и может найти лишние имена (например, в <tt>EXTRACT(YEAR FROM d)</tt>),
+	 * но таблицы, к которым обращается обычный DML, он находит. Представления,
+	 * синонимы и триггеры не раскрываются.
+	 * 
+	 * @param processedQuery
+	 *            Запрос без комментариев (см. {@link #getProcessedQuery()}).
+	 * 
+	 * @return Имена таблиц в нижнем регистре без схемы и кавычек.
+	 */
+	public static String[] findTables(String processedQuery) {
+		Set<String> tables = new LinkedHashSet<String>();
+		int length = processedQuery.length();
+		int i = 0;
+		while (i < length) {
+			char c = processedQuery.charAt(i);
+			if (c == '\'' || c == '"') {
+				i = skipQuoted(processedQuery, i);
+
+			} else if (Character.isJavaIdentifierStart(c)) {
+				int end = wordEnd(processedQuery, i);
+				boolean tableWord = isOneOf(processedQuery, i, end, TABLE_WORDS);
+				i = tableWord ? readTables(processedQuery, end, tables) : end;
+
+			} else {
+				i++;
+			}
+		}
+		return tables.toArray(new String[tables.size()]);
+	}
+
+	/**
+	 * Чтение списка таблиц через запятую вместе с их псевдонимами.
+	 * 
+	 * @return Позиция, с которой надо продолжать разбор.
+	 */
+	private static int readTables(String text, int i, Set<String> tables) {
+		int length = text.length();
+		while (true) {
+			i = skipSpaces(text, i);
+			int end = nameEnd(text, i);
+			while (end > i && isOneOf(text, i, end, TABLE_PREFIXES)) {
+				i = skipSpaces(text, end);
+				end = nameEnd(text, i);
+			}
+			if (end == i) {
+				// Подзапрос или что-то непонятное: подзапрос будет разобран
+				// основным циклом.
+				return i;
+			}
+			tables.add(normalizeName(text.substring(i, end)));
+
+			// Пропустим псевдоним, но не ключевое слово за именем таблицы.
+			i = skipSpaces(text, end);
+			end = wordEnd(text, i);
+			if (end > i && isOneOf(text, i, end, new String[] { "as" })) {
+				i = skipSpaces(text, end);
+				end = nameEnd(text, i);
+			}
+			if (end > i && !isOneOf(text, i, end, ALIAS_STOP_WORDS)) {
+				i = skipSpaces(text, end);
+			}
+
+			if (i < length && text.charAt(i) == ',') {
+				i++;
+			} else {
+				return i;
+			}
+		}
+	}
+
+	/**
+	 * Имя таблицы без схемы и кавычек в нижнем регистре.
+	 */
+	private static String normalizeName(String name) {
+		int dot = -1;
+		boolean quoted = false;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == '.' && !quoted) {
+				dot = i;
+			}
+		}
+		String last = name.substring(dot + 1);
+		if (last.length() >= 2 && last.charAt(0) == '"' && last.charAt(last.length() - 1) == '"') {
+			last = last.substring(1, last.length() - 1);
+		}
+		return last.toLowerCase();
+	}
+
+	/**
+	 * @return Позиция за концом составного имени (с точками и частями в
+	 *         кавычках), начинающегося в позиции i, или i, если имени там нет.
+	 */
+	private static int nameEnd(String text, int i) {
+		int length = text.length();
+		int end = i;
+		while (end < length) {
+			char c = text.charAt(end);
+			if (c == '"') {
+				end = skipQuoted(text, end);
+			} else if (Character.isJavaIdentifierPart(c) || c == '.') {
+				end++;
+			} else {
+				break;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * @return Позиция за концом слова, начинающегося в позиции i, или i, если
+	 *         слова там нет.
+	 */
+	private static int wordEnd(String text, int i) {
+		int length = text.length();
+		if (i >= length || !Character.isJavaIdentifierStart(text.charAt(i))) {
+			return i;
+		}
+		int end = i + 1;
+		while (end < length && Character.isJavaIdentifierPart(text.charAt(end))) {
+			end++;
+		}
+		return end;
+	}
+
+	/**
+	 * @return Позиция за закрывающей кавычкой для строки или идентификатора,
+	 *         начинающегося в позиции i.
+	 */
+	private static int skipQuoted(String text, int i) {
+		char quote = text.charAt(i);
+		int close = text.indexOf(quote, i + 1);
+		return close < 0 ? text.length() : close + 1;
+	}
+
+	private static int skipSpaces(String text, int i) {
+		while (i < text.length() && text.charAt(i) == ' ') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return true - если фрагмент текста совпадает (без учета регистра) с
+	 *         одним из слов.
+	 */
+	private static boolean isOneOf(String text, int start, int end, String[] words) {
+		for (String word : words) {
+			if (word.length() == end - start && text.regionMatches(true, start, word, 0, word.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Проверка того, что текст начинается с указанного слова (без учета
+	 * регистра), за которым следует не буква и не цифра.
+	 * 
+	 * @param text
+	 *            Проверяемый текст.
+	 * 
+	 * @param offset
+	 *            Позиция, с которой начинается проверка.
+	 * 
+	 * @param word
+	 *            Слово.
+	 * 
+	 * @return true - если слово найдено.
+	 */
+	public static boolean startsWithWord(String text, int offset, String word) {
+		int end = offset + word.length();
+		return text.regionMatches(true, offset, word, 0, word.length())
+				&& (end == text.length() || !Character.isJavaIdentifierPart(text.charAt(end)));
+	}
+}
@@ -20,6 +20,7 @@ package q4s.dafobi.data.jdbc.oracle;
 
 import q4s.dafobi.data.jdbc.JdbcConnection;
 import q4s.dafobi.data.jdbc.JdbcStatement;
+import q4s.dafobi.data.jdbc.SqlLexer;
 
 /**
  * Oracle в отличии от стандартного JDBC умеет работать с DECLARE-BEGIN-END
@@ -52,9 +53,9 @@ public class OracleJdbcStatement extends JdbcStatement {
 		// Запрос автоматически определяется как Callable, если он имеет
 		// формат "{call ...}" или "[declare ... ]begin ... end".
 		// TODO Конструкция BEGIN-END существует только в Oracle
-		return "{call".equalsIgnoreCase(operator.substring(0, 5))
-				|| "begin".equalsIgnoreCase(operator.substring(0, 5))
-				|| "declare".equalsIgnoreCase(operator.substring(0, 7));
+		return super.isOperatorCallable(operator) //
+				|| SqlLexer.startsWithWord(operator, 0, "begin")
+				|| SqlLexer.startsWithWord(operator, 0, "declare");
 	}
 
 }
@@ -0,0 +1,51 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Создание исполнителя асинхронных операций, используемого по-умолчанию (см.
+ * {@link AsyncConnection}).
+ * <p>
+ * Это вариант для Java 21 и выше: каждая операция выполняется в своем
+ * виртуальном потоке, так что ожидание ответа базы не занимает обычный
+ * поток. Число одновременно выполняемых операций на деле ограничено числом
+ * подключений, которые может выдать пул.
+ * 
+ * @author Q4S
+ * 
+ */
+final class AsyncExecutors {
+
+	private AsyncExecutors() {
+	}
+
+	/**
+	 * @param maxThreads
+	 *            Не используется: виртуальные потоки не нуждаются в
+	 *            ограничении.
+	 * 
+	 * @return Новый исполнитель.
+	 */
+	static ExecutorService create(int maxThreads) {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dafobi-async-", 1).factory());
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import q4s.dafobi.common.DataParam;
+
+/**
+ * Источник строк запроса, передающий их получателю по мере спроса (см.
+ * {@link RowSubscription}). Каждая подписка заново выполняет запрос, курсор
+ * закрывается по окончании данных, при ошибке и при отказе от подписки.
+ * Оператор при этом не закрывается - им по-прежнему владеет вызывающий код.
+ * Так как у оператора может быть только один открытый результат, подписки
+ * должны следовать друг за другом; попытка подписаться, пока предыдущая
+ * подписка не завершена, заканчивается ошибкой {@link IllegalStateException}.
+ * <p>
+ * Это вариант для Java 9 и выше: кроме получателей {@link IRowSubscriber}
+ * класс принимает получателей {@link Flow.Subscriber}, так что его можно
+ * включать в реактивные цепочки обработки.
+ * 
+ * @author Q4S
+ * 
+ */
+public final class RowPublisher implements Flow.Publisher<IRow> {
+
+	/**
+	 * Максимальное число строк, читаемых драйвером за одно обращение к базе,
+	 * по-умолчанию.
+	 */
+	public static final int DEFAULT_MAX_FETCH_SIZE = 1000;
+
+	private final IStatement statement;
+
+	private final Map<String, DataParam> params;
+
+	private final Executor executor;
+
+	private volatile int maxFetchSize = DEFAULT_MAX_FETCH_SIZE;
+
+	/**
+	 * Признак незавершенной подписки.
+	 */
+	private final AtomicBoolean active = new AtomicBoolean();
+
+	/**
+	 * Строки передаются в потоке, запросившем их.
+	 * 
+	 * @param statement
+	 *            Оператор, выполняющий запрос.
+	 * 
+	 * @param params
+	 *            Параметры запроса.
+	 */
+	public RowPublisher(IStatement statement, Map<String, DataParam> params) {
+		this(statement, params, Runnable::run);
+	}
+
+	/**
+	 * @param statement
+	 *            Оператор, выполняющий запрос.
+	 * 
+	 * @param params
+	 *            Параметры запроса.
+	 * 
+	 * @param executor
+	 *            Исполнитель, в котором передаются строки. Передача одной
+	 *            подписки никогда не идет в нескольких потоках одновременно.
+	 */
+	public RowPublisher(IStatement statement, Map<String, DataParam> params, Executor executor) {
+		this.statement = statement;
+		this.params = params;
+		this.executor = executor;
+	}
+
+	/**
+	 * Подписка на строки запроса.
+	 * 
+	 * @param subscriber
+	 *            Получатель строк.
+	 */
+	public void subscribe(IRowSubscriber subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("Не задан получатель строк");
+		}
+		if (!active.compareAndSet(false, true)) {
+			subscriber.onSubscribe(RowSubscription.EMPTY);
+			subscriber.onError(new IllegalStateException("Предыдущая подписка на строки оператора не завершена"));
+			return;
+		}
+		subscriber.onSubscribe(new RowSubscription(this, subscriber, statement, params, executor));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.Flow.Publisher#subscribe(java.util.concurrent.Flow.Subscriber)
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super IRow> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("Не задан получатель строк");
+		}
+		subscribe(new FlowSubscriber(subscriber));
+	}
+
+	/**
+	 * Задание максимального числа строк, которое драйвер читает за одно
+	 * обращение к базе. Фактический размер порции определяется первым
+	 * запросом строк получателем.
+	 * 
+	 * @param maxFetchSize
+	 *            Положительное число строк.
+	 */
+	public void setMaxFetchSize(int maxFetchSize) {
+		if (maxFetchSize <= 0) {
+			throw new IllegalArgumentException("Размер порции должен быть положительным");
+		}
+		this.maxFetchSize = maxFetchSize;
+	}
+
+	/**
+	 * @return Максимальное число строк, которое драйвер читает за одно
+	 *         обращение к базе.
+	 */
+	public int getMaxFetchSize() {
+		return maxFetchSize;
+	}
+
+	/**
+	 * Завершение подписки.
+	 */
+	void release() {
+		active.set(false);
+	}
+
+	/**
+	 * Получатель {@link Flow.Subscriber}, представленный как
+	 * {@link IRowSubscriber}.
+	 */
+	private static final class FlowSubscriber implements IRowSubscriber {
+
+		private final Flow.Subscriber<? super IRow> subscriber;
+
+		FlowSubscriber(Flow.Subscriber<? super IRow> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void onSubscribe(IRowSubscription subscription) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+
+				@Override
+				public void request(long n) {
+					subscription.request(n);
+				}
+
+				@Override
+				public void cancel() {
+					subscription.cancel();
+				}
+			});
+		}
+
+		@Override
+		public void onNext(IRow row) {
+			subscriber.onNext(row);
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			subscriber.onError(error);
+		}
+
+		@Override
+		public void onComplete() {
+			subscriber.onComplete();
+		}
+	}
+}
@@ -27,6 +27,15 @@ import org.junit.runners.Suite.SuiteClasses;
 		JdbcResultTableTest.class, //
 		JdbcStatementInternalTest.class, //
 		JdbcStatementTest.class, //
+		JdbcStatementCacheTest.class, //
+		JdbcResultCacheTest.class, //
+		SpillingResultTableTest.class, //
+		DictionaryEncodingTest.class, //
+		BulkExecutorTest.class, //
+		TableCopierTest.class, //
+		JdbcConnectionPoolTest.class, //
+		AsyncConnectionTest.class, //
+		MultiReleaseTest.class, //
 		JdbcConnectionTest.class })
 public class AllJdbcTests {
 
@@ -0,0 +1,153 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.data.AsyncConnection;
+import q4s.dafobi.data.BulkResult;
+import q4s.dafobi.data.MemoryResultTable;
+import q4s.dafobi.exception.DataException;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Тестирование асинхронного выполнения {@link AsyncConnection}.
+ * 
+ * @author Q4S
+ * 
+ */
+public class AsyncConnectionTest {
+
+	private static final Map<String, DataParam> NO_PARAMS = Collections.emptyMap();
+
+	private static final String INSERT = "INSERT INTO TEST(ID, STR, DT) VALUES(:id, :str, :dt)";
+
+	private JdbcConnectionPool pool;
+
+	private AsyncConnection async;
+
+	@Before
+	public void setUp() throws Exception {
+		// Driver: "org.hsqldb.jdbcDriver",
+		pool = new JdbcConnectionPool("jdbc:hsqldb:mem:" + UUID.randomUUID().toString(), "sa", "");
+		pool.setMaxSize(4);
+		pool.setMaintenanceIntervalMillis(0);
+		async = new AsyncConnection(pool::getConnection, pool.getMaxSize());
+
+		try (JdbcConnection connection = pool.getConnection()) {
+			connection.execute(IOUtils.toString(HsqldbTest.class.getResourceAsStream("JdbcStatementTest_create.sql")),
+					NO_PARAMS);
+			connection.commit();
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		async.close();
+		try (JdbcConnection connection = pool.getConnection()) {
+			connection.execute("DROP TABLE TEST", NO_PARAMS);
+			connection.commit();
+		}
+		pool.close();
+	}
+
+	private static Map<String, DataParam> row(int id) {
+		Map<String, DataParam> parameters = new HashMap<>();
+		parameters.put("id", DataType.INTEGER.param(id));
+		parameters.put("str", DataType.STRING.param("Str " + id));
+		parameters.put("dt", DataType.TIMESTAMP.param(new Timestamp(id * 1000L)));
+		return parameters;
+	}
+
+	/**
+	 * Изменения фиксируются, а результат запроса доступен после возврата
+	 * подключения в пул.
+	 */
+	@Test
+	public void testExecuteAndQuery() throws Exception {
+		List<CompletableFuture<Integer>> inserts = new ArrayList<>();
+		for (int i = 1; i <= 10; i++) {
+			inserts.add(async.executeAsync(INSERT, row(i)));
+		}
+		for (CompletableFuture<Integer> insert : inserts) {
+			assertEquals(Integer.valueOf(1), insert.get());
+		}
+
+		MemoryResultTable table = async.queryAsync("SELECT ID, STR FROM TEST ORDER BY ID", NO_PARAMS).get();
+		assertEquals(10, table.getRowCount());
+		assertEquals("Str 3", table.getRow(2).getString("str"));
+		assertNull(table.getStatement());
+		assertEquals(0, pool.getActiveCount());
+	}
+
+	/**
+	 * Пакетное выполнение в одной транзакции.
+	 */
+	@Test
+	public void testExecuteBatch() throws Exception {
+		List<Map<String, DataParam>> rows = new ArrayList<>();
+		for (int i = 1; i <= 25; i++) {
+			rows.add(row(i));
+		}
+		BulkResult result = async.executeBatchAsync(INSERT, rows).get();
+		assertEquals(25, result.getRowCount());
+
+		long count = async.callAsync(connection -> connection.queryRow("SELECT count(*) FROM TEST", NO_PARAMS) //
+				.getLong(0)).get();
+		assertEquals(25, count);
+	}
+
+	/**
+	 * Ошибка передается через результат, а изменения откатываются.
+	 */
+	@Test
+	public void testError() throws Exception {
+		async.executeAsync(INSERT, row(1)).get();
+		try {
+			async.executeBatchAsync(INSERT, Arrays.asList(row(2), row(1))).get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof DataException);
+		}
+
+		long count = async.callAsync(connection -> connection.queryRow("SELECT count(*) FROM TEST", NO_PARAMS) //
+				.getLong(0)).get();
+		assertEquals(1, count);
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.data.BulkExecutor;
+import q4s.dafobi.data.BulkResult;
+import q4s.dafobi.data.IResultTable;
+import q4s.dafobi.data.ParamSet;
+
+/**
+ * Тестирование пакетного выполнения {@link BulkExecutor}.
+ * 
+ * @author Q4S
+ * 
+ */
+public class BulkExecutorTest {
+
+	private static final String INSERT = "INSERT INTO TEST(ID, STR, DT) VALUES(:id, :str, :dt)";
+
+	private static final Map<String, DataParam> NO_PARAMS = Collections.emptyMap();
+
+	private static Connection jdbcConnection = null;
+
+	private JdbcConnection connection;
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// Creating database server instance
+		// Driver: "org.hsqldb.jdbcDriver",
+		jdbcConnection = DriverManager.getConnection("jdbc:hsqldb:mem:" + UUID.randomUUID().toString(), "sa", "");
+
+		// Creating the table
+		try (InputStream createTable = HsqldbTest.class.getResourceAsStream("JdbcStatementTest_create.sql");
+				PreparedStatement stmt = jdbcConnection.prepareStatement(IOUtils.toString(createTable));) {
+			stmt.execute();
+		}
+	}
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// Dropping the table
+		String dropTable = "DROP TABLE TEST";
+		try (PreparedStatement stmt = jdbcConnection.prepareStatement(dropTable);) {
+			stmt.execute();
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		connection = new JdbcConnection(jdbcConnection);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		// Cleaning the table
+		try (PreparedStatement stmt = jdbcConnection.prepareStatement("DELETE FROM TEST");) {
+			stmt.executeUpdate();
+		}
+
+		connection.close();
+	}
+
+	private long getRowCount() {
+		return connection.queryRow("SELECT count(*) as c FROM TEST", NO_PARAMS).getLong(0);
+	}
+
+	/**
+	 * Создание наборов параметров для вставки строк с номерами от 1 до count.
+	 */
+	private List<ParamSet> createParams(BulkExecutor bulk, int count) {
+		List<ParamSet> list = new ArrayList<>();
+		for (int i = 1; i <= count; i++) {
+			ParamSet params = bulk.createParamSet();
+			params.setInt(params.slot("id"), i);
+			params.setString(params.slot("str"), "Str " + i);
+			params.setTimestamp(params.slot("dt"), new Timestamp(i * 1000L));
+			list.add(params);
+		}
+		return list;
+	}
+
+	/**
+	 * Пакеты отправляются по достижении заданного числа строк, а остаток -
+	 * в конце.
+	 */
+	@Test
+	public void testExecuteParams() {
+		try (BulkExecutor bulk = new BulkExecutor(connection, INSERT)) {
+			bulk.setBatchSize(10);
+			BulkResult result = bulk.executeParams(createParams(bulk, 25));
+
+			assertEquals(25, result.getRowCount());
+			assertEquals(3, result.getBatchCount());
+			assertEquals(25, result.getUpdateCount() + result.getUnknownCount());
+			assertEquals(0, result.getFailedCount());
+		}
+		assertEquals(25l, getRowCount());
+	}
+
+	/**
+	 * Ограничение объема пакета заставляет отправлять пакеты раньше.
+	 */
+	@Test
+	public void testMaxBatchBytes() {
+		try (BulkExecutor bulk = new BulkExecutor(connection, INSERT)) {
+			bulk.setBatchSize(100);
+			bulk.setMaxBatchBytes(1);
+			BulkResult result = bulk.executeParams(createParams(bulk, 5));
+
+			assertEquals(5, result.getRowCount());
+			assertEquals(5, result.getBatchCount());
+		}
+		assertEquals(5l, getRowCount());
+	}
+
+	/**
+	 * Копирование строк результата запроса: параметры заполняются из
+	 * одноименных колонок.
+	 */
+	@Test
+	public void testExecuteRows() {
+		try (BulkExecutor bulk = new BulkExecutor(connection, INSERT)) {
+			bulk.executeParams(createParams(bulk, 7));
+		}
+
+		try (IResultTable source = connection.query("SELECT ID + 100 AS ID, STR, DT FROM TEST", NO_PARAMS);
+				BulkExecutor bulk = new BulkExecutor(connection, INSERT)) {
+			bulk.setBatchSize(3);
+			BulkResult result = bulk.executeRows(source);
+
+			assertEquals(7, result.getRowCount());
+			assertEquals(3, result.getBatchCount());
+		}
+		assertEquals(14l, getRowCount());
+	}
+
+	/**
+	 * Если для параметра нет колонки, то выполнение не начинается.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testExecuteRowsMissingColumn() {
+		try (IResultTable source = connection.query("SELECT ID, STR FROM TEST", NO_PARAMS);
+				BulkExecutor bulk = new BulkExecutor(connection, INSERT)) {
+			bulk.executeRows(source);
+		}
+	}
+}
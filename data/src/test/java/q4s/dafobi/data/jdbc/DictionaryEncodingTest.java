@@ -0,0 +1,219 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.data.BulkExecutor;
+import q4s.dafobi.data.ColumnarResultTable;
+import q4s.dafobi.data.IResultTable;
+import q4s.dafobi.data.MemoryResultTable;
+import q4s.dafobi.data.ParamSet;
+import q4s.dafobi.data.SpillingResultTable;
+
+/**
+ * Тестирование словарного хранения колонок с малым числом различных значений
+ * в таблицах, копируемых в память.
+ * 
+ * @author Q4S
+ * 
+ */
+public class DictionaryEncodingTest {
+
+	private static final Map<String, DataParam> NO_PARAMS = Collections.emptyMap();
+
+	private static final String QUERY = "SELECT ID, STR, CASE MOD(ID, 3) " //
+			+ "WHEN 0 THEN CAST('NEW' AS VARCHAR(10)) WHEN 1 THEN CAST('OPEN' AS VARCHAR(10)) END AS STATUS, "
+			+ "CASE WHEN ID > 1 THEN CAST('Name ' || ID AS VARCHAR(20)) END AS NAME " //
+			+ "FROM TEST ORDER BY ID";
+
+	private static final int ROWS = 200;
+
+	private static Connection jdbcConnection = null;
+
+	private JdbcConnection connection;
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// Creating database server instance
+		// Driver: "org.hsqldb.jdbcDriver",
+		jdbcConnection = DriverManager.getConnection("jdbc:hsqldb:mem:" + UUID.randomUUID().toString(), "sa", "");
+
+		// Creating the table
+		try (InputStream createTable = HsqldbTest.class.getResourceAsStream("DictionaryEncodingTest_create.sql");
+				PreparedStatement stmt = jdbcConnection.prepareStatement(IOUtils.toString(createTable));) {
+			stmt.execute();
+		}
+	}
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// Dropping the table
+		try (PreparedStatement stmt = jdbcConnection.prepareStatement("DROP TABLE TEST");) {
+			stmt.execute();
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		connection = new JdbcConnection(jdbcConnection);
+
+		try (BulkExecutor bulk = new BulkExecutor(connection,
+				"INSERT INTO TEST(ID, STR, DT) VALUES(:id, :str, :dt)")) {
+			List<ParamSet> list = new ArrayList<>();
+			for (int i = 1; i <= ROWS; i++) {
+				ParamSet params = bulk.createParamSet();
+				params.setInt(params.slot("id"), i);
+				// Пустые значения в каждой третьей строке.
+				params.setString(params.slot("str"), i % 3 == 0 ? null : "Str " + i);
+				params.setTimestamp(params.slot("dt"), new Timestamp(i * 1000L));
+				list.add(params);
+			}
+			bulk.executeParams(list);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		// Cleaning the table
+		try (PreparedStatement stmt = jdbcConnection.prepareStatement("DELETE FROM TEST");) {
+			stmt.executeUpdate();
+		}
+
+		connection.close();
+	}
+
+	/**
+	 * Колонка с тремя значениями хранится как коды, а колонки, где различных
+	 * значений больше половины, - как обычные строки (в том числе колонка,
+	 * единственное пустое значение которой стоит в первой строке). Поиск и
+	 * группировка дают те же результаты, что и перебор строк.
+	 */
+	@Test
+	public void testColumnar() {
+		ColumnarResultTable table;
+		try (IResultTable source = connection.query(QUERY, NO_PARAMS)) {
+			table = ColumnarResultTable.copyOf(source);
+		}
+		int str = table.getColumnIndex("str");
+		int status = table.getColumnIndex("status");
+		assertTrue(table.isDictionaryEncoded(status));
+		assertFalse(table.isDictionaryEncoded(str));
+
+		assertEquals(67, table.filterEquals(status, "OPEN").cardinality());
+		assertEquals(0, table.filterEquals(status, "OPEN").nextSetBit(0));
+		assertEquals(66, table.filterEquals(status, "NEW").cardinality());
+		assertEquals(67, table.filterEquals(status, null).cardinality());
+		assertEquals(0, table.filterEquals(status, "CLOSED").cardinality());
+		assertEquals(4, table.filterEquals(table.getColumnIndex("id"), 5).nextSetBit(0));
+
+		Map<Object, int[]> groups = table.groupBy(status);
+		assertEquals(Arrays.asList("OPEN", "NEW", null), new ArrayList<>(groups.keySet()));
+		assertArrayEquals(new int[] { 0, 3, 6 }, Arrays.copyOf(groups.get("OPEN"), 3));
+		assertEquals(67, groups.get(null).length);
+		for (Map.Entry<Object, int[]> group : groups.entrySet()) {
+			for (int row : group.getValue()) {
+				assertEquals(group.getKey(), table.getRow(row).getString(status));
+			}
+		}
+		assertEquals(ROWS, table.groupBy(str).values().stream().mapToInt(rows -> rows.length).sum());
+		assertEquals(ROWS / 3, table.getNulls(str).cardinality());
+		assertEquals(4, table.filterEquals(str, "Str 5").nextSetBit(0));
+		int name = table.getColumnIndex("name");
+		assertFalse(table.isDictionaryEncoded(name));
+		assertEquals(1, table.getNulls(name).cardinality());
+		for (int i = 0; i < ROWS; i++) {
+			int id = i + 1;
+			assertEquals(id % 3 == 0 ? null : "Str " + id, table.getRow(i).getString(str));
+			assertEquals(id == 1 ? null : "Name " + id, table.getRow(i).getString(name));
+		}
+	}
+
+	/**
+	 * При копировании в память повторяющиеся значения заменяются одним
+	 * экземпляром.
+	 */
+	@Test
+	public void testMemory() {
+		try (IResultTable source = connection.query(QUERY, NO_PARAMS)) {
+			MemoryResultTable table = MemoryResultTable.copyOf(source);
+			assertEquals("OPEN", table.getRow(0).getString("status"));
+			assertSame(table.getRow(0).getString("status"), table.getRow(3).getString("status"));
+			assertSame(table.getRow(2).getString("status"), table.getRow(5).getString("status"));
+		}
+	}
+
+	/**
+	 * Таблица со сбросом на диск тоже хранит в памяти один экземпляр
+	 * повторяющегося значения и учитывает повтор только как ссылку.
+	 */
+	@Test
+	public void testSpilling() {
+		SpillingResultTable table;
+		long size;
+		try (IResultTable source = connection.query(QUERY, NO_PARAMS)) {
+			table = SpillingResultTable.copyOf(source, Long.MAX_VALUE);
+		}
+		// Тот же запрос, но все состояния разные.
+		String query = QUERY.replaceFirst("CASE MOD.*? END AS STATUS", "CAST('S' || ID AS VARCHAR(10)) AS STATUS");
+		try (IResultTable source = connection.query(query, NO_PARAMS);
+				SpillingResultTable distinct = SpillingResultTable.copyOf(source, Long.MAX_VALUE)) {
+			size = distinct.getMemorySize();
+		}
+		try {
+			assertEquals(0, table.getSpilledRowCount());
+			assertSame(table.getRow(0).getString("status"), table.getRow(3).getString("status"));
+			assertTrue(table.getMemorySize() < size);
+		} finally {
+			table.close();
+		}
+	}
+}
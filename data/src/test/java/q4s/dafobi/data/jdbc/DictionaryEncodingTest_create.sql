@@ -0,0 +1,4 @@
+CREATE TABLE TEST(
+ID INT NOT NULL PRIMARY KEY,
+STR VARCHAR(100),
+DT TIMESTAMP NOT NULL)
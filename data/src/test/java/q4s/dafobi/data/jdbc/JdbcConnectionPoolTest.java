@@ -0,0 +1,256 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import q4s.dafobi.exception.DataException;
+
+/**
+ * Тестирование пула подключений {@link JdbcConnectionPool}.
+ * 
+ * @author Q4S
+ * 
+ */
+public class JdbcConnectionPoolTest {
+
+	private JdbcConnectionPool pool;
+
+	@Before
+	public void setUp() throws Exception {
+		// Driver: "org.hsqldb.jdbcDriver",
+		pool = new JdbcConnectionPool("jdbc:hsqldb:mem:" + UUID.randomUUID().toString(), "sa", "");
+		pool.setMaxSize(2);
+		pool.setMaintenanceIntervalMillis(0);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		pool.close();
+	}
+
+	/**
+	 * Возвращенное подключение выдается повторно вместе со своим кешем
+	 * операторов.
+	 */
+	@Test
+	public void testReuse() {
+		JdbcConnection first = pool.getConnection();
+		first.prepare("VALUES(1)").close();
+		first.close();
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(1, pool.getIdleCount());
+
+		try (JdbcConnection second = pool.getConnection()) {
+			assertSame(first, second);
+			second.prepare("VALUES(1)").close();
+			assertEquals(1, second.getStatementCache().getHits());
+			assertEquals(1, pool.getActiveCount());
+		}
+		assertEquals(1, pool.getCreatedCount());
+		assertEquals(2, pool.getBorrowCount());
+	}
+
+	/**
+	 * Закрытое подключение нельзя использовать, пока пул не выдаст его
+	 * снова.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testUseAfterClose() {
+		JdbcConnection connection = pool.getConnection();
+		connection.close();
+		connection.prepare("VALUES(1)");
+	}
+
+	/**
+	 * Если все подключения заняты, то запрос завершается ошибкой по истечении
+	 * времени ожидания.
+	 */
+	@Test
+	public void testTimeout() {
+		pool.setMaxWaitMillis(50);
+		try (JdbcConnection first = pool.getConnection(); JdbcConnection second = pool.getConnection()) {
+			assertNotSame(first, second);
+			try {
+				pool.getConnection();
+				fail();
+			} catch (DataException e) {
+				assertEquals(1, pool.getTimeoutCount());
+			}
+		}
+		assertEquals(2, pool.getIdleCount());
+	}
+
+	/**
+	 * Ошибка источника подключений (в том числе непроверяемая) не занимает
+	 * место в пуле навсегда.
+	 */
+	@Test
+	public void testOpenFailure() throws Exception {
+		final String url = "jdbc:hsqldb:mem:" + UUID.randomUUID().toString();
+		final AtomicInteger failures = new AtomicInteger(3);
+		DataSource dataSource = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { DataSource.class }, (proxy, method, args) -> {
+					if (!"getConnection".equals(method.getName())) {
+						throw new UnsupportedOperationException(method.getName());
+					}
+					int left = failures.getAndDecrement();
+					if (left == 3) {
+						return null;
+					} else if (left > 0) {
+						throw new IllegalStateException("Источник недоступен");
+					}
+					return DriverManager.getConnection(url, "sa", "");
+				});
+
+		try (JdbcConnectionPool failing = new JdbcConnectionPool(dataSource)) {
+			failing.setMaxSize(2);
+			failing.setMaxWaitMillis(50);
+			failing.setMaintenanceIntervalMillis(0);
+			for (int i = 0; i < 3; i++) {
+				try {
+					failing.getConnection();
+					fail();
+				} catch (IllegalStateException e) {
+					assertEquals(0, failing.getTotalCount());
+				}
+			}
+			try (JdbcConnection connection = failing.getConnection()) {
+				assertEquals(1, failing.getTotalCount());
+			}
+			assertEquals(0, failing.getTimeoutCount());
+		}
+	}
+
+	/**
+	 * Ожидающий запрос получает подключение, как только его вернут в пул.
+	 */
+	@Test
+	public void testWait() throws Exception {
+		final JdbcConnection first = pool.getConnection();
+		final JdbcConnection second = pool.getConnection();
+		Thread thread = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				// Nothing to do
+			}
+			second.close();
+		});
+		thread.start();
+
+		try (JdbcConnection third = pool.getConnection()) {
+			assertSame(second, third);
+			assertEquals(1, pool.getWaitCount());
+			assertTrue(pool.getMaxWaitNanos() > 0);
+		}
+		thread.join();
+		first.close();
+	}
+
+	/**
+	 * Ожидающие получают подключения в порядке очереди, а новый запрос не
+	 * обходит их, даже если подключение только что вернули в пул.
+	 */
+	@Test
+	public void testWaitOrder() throws Exception {
+		pool.setMaxSize(1);
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		JdbcConnection connection = pool.getConnection();
+
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < threads.length; i++) {
+			final String name = "waiter" + i;
+			threads[i] = new Thread(() -> {
+				try (JdbcConnection next = pool.getConnection()) {
+					order.add(name);
+				}
+			});
+			threads[i].start();
+			while (pool.getWaitingCount() < i + 1) {
+				Thread.sleep(1);
+			}
+		}
+
+		connection.close();
+		try (JdbcConnection next = pool.getConnection()) {
+			order.add("late");
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(Arrays.asList("waiter0", "waiter1", "late"), order);
+		assertEquals(0, pool.getWaitingCount());
+	}
+
+	/**
+	 * Неисправное подключение не выдается, а заменяется новым.
+	 */
+	@Test
+	public void testValidation() throws Exception {
+		JdbcConnection first = pool.getConnection();
+		first.close();
+		first.getConnection().close();
+
+		try (JdbcConnection second = pool.getConnection()) {
+			assertNotSame(first, second);
+		}
+		assertEquals(1, pool.getValidationFailureCount());
+		assertEquals(1, pool.getDestroyedCount());
+	}
+
+	/**
+	 * Простаивающие подключения закрываются, но не меньше минимального
+	 * числа, а недостающие до минимума - открываются.
+	 */
+	@Test
+	public void testMaintain() throws Exception {
+		pool.setMinSize(1);
+		pool.setIdleTimeoutMillis(1);
+		pool.maintain();
+		assertEquals(1, pool.getIdleCount());
+
+		try (JdbcConnection first = pool.getConnection(); JdbcConnection second = pool.getConnection()) {
+			assertEquals(0, pool.getIdleCount());
+		}
+		Thread.sleep(10);
+		pool.maintain();
+		assertEquals(1, pool.getTotalCount());
+		assertEquals(1, pool.getDestroyedCount());
+	}
+}
@@ -19,9 +19,16 @@
 package q4s.dafobi.data.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.DriverManager;
@@ -38,9 +45,11 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import q4s.dafobi.common.DataParam;
+import q4s.dafobi.data.BulkResult;
 import q4s.dafobi.data.IResultTable;
 import q4s.dafobi.data.IRow;
 import q4s.dafobi.data.jdbc.JdbcConnection;
+import q4s.dafobi.exception.DataException;
 import q4s.dafobi.jaxb.common.DataType;
 
 /**
@@ -324,4 +333,153 @@ public class JdbcConnectionTest {
 			assertEquals(expected, ((DataParam) parameters.get("outp")).getValue());
 		}
 	}
+
+	/**
+	 * Test method for
+	 * {@link q4s.dafobi.data.jdbc.JdbcConnection#executeScript(java.io.Reader, Map)}
+	 * <p>
+	 * Потоковое выполнение дает тот же результат, что и выполнение скрипта из
+	 * строки.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testExecuteScriptReader() throws IOException {
+		Map<String, DataParam> parameters = new TreeMap<>();
+		parameters.put("id", DataType.INTEGER.param(10));
+		try (InputStream stream = HsqldbTest.class.getResourceAsStream("JdbcConnectionTest_script.sql")) {
+			BulkResult result = connection.executeScript(new InputStreamReader(stream, StandardCharsets.UTF_8),
+					parameters);
+
+			assertEquals(3, result.getRowCount());
+			assertEquals(7, result.getUpdateCount());
+			assertEquals(7l, getRowCount());
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link q4s.dafobi.data.jdbc.JdbcConnection#executeScript(java.nio.file.Path, Map)}
+	 * <p>
+	 * Строка-разделитель внутри строковой константы или комментария не
+	 * разделяет операторы, а операторы из одних комментариев пропускаются.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testExecuteScriptPath() throws IOException {
+		String script = "INSERT INTO TEST(ID, STR, DT) VALUES(3, 'a\n/\nb', :dt)\n" //
+				+ "/\n" //
+				+ "/* комментарий\n/\n*/\n" //
+				+ "/\n" //
+				+ "-- еще комментарий\n" //
+				+ "DELETE FROM TEST WHERE ID = 1\n" //
+				+ "/\n";
+		assertEquals(2, connection.parseScript(script).length);
+
+		Map<String, DataParam> parameters = new TreeMap<>();
+		parameters.put("dt", DataType.DATE.param(new Date(0)));
+		Path file = Files.createTempFile("script", ".sql");
+		try {
+			Files.write(file, script.getBytes(StandardCharsets.UTF_8));
+			BulkResult result = connection.executeScript(file, parameters);
+
+			assertEquals(2, result.getRowCount());
+			assertEquals(2l, getRowCount());
+			assertEquals("a\n/\nb", getOneRow("SELECT STR FROM TEST WHERE ID = 3").getString(0));
+
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link q4s.dafobi.data.jdbc.JdbcConnection#executeScript(String, Map)}
+	 * <p>
+	 * Однотипные операторы объединяются в пакеты, но количества строк
+	 * возвращаются для каждого оператора.
+	 */
+	@Test
+	public void testExecuteScriptBatch() {
+		StringBuilder script = new StringBuilder();
+		for (int i = 3; i <= 6; i++) {
+			script.append("INSERT INTO TEST(ID, STR, DT) VALUES(").append(i).append(", 'Str").append(i)
+					.append("', TIMESTAMP '2000-01-01 00:00:00')\n/\n");
+		}
+		script.append("UPDATE TEST SET STR = 'Upd' WHERE ID > :id\n/\n");
+		script.append("UPDATE TEST SET STR = 'Upd' WHERE ID > :id\n/\n");
+		script.append("DELETE FROM TEST WHERE ID IN (6)\n/\n");
+		script.append("DELETE FROM TEST WHERE STR IN ('Str7')\n/\n");
+
+		Map<String, DataParam> parameters = new TreeMap<>();
+		parameters.put("id", DataType.INTEGER.param(4));
+		int[] rc = connection.executeScript(script.toString(), parameters);
+
+		Assert.assertArrayEquals(new int[] { 1, 1, 1, 1, 2, 2, 1, 0 }, rc);
+		assertEquals(5l, getRowCount());
+		assertEquals("Str4", getOneRow("SELECT STR FROM TEST WHERE ID = 4").getString(0));
+		assertEquals("Upd", getOneRow("SELECT STR FROM TEST WHERE ID = 5").getString(0));
+	}
+
+	/**
+	 * Операторы пакета передаются базе вместе с комментариями, а в ошибке
+	 * указывается оператор, на котором пакет прервался, а не первый.
+	 */
+	@Test
+	public void testExecuteScriptBatchError() {
+		StringBuilder script = new StringBuilder();
+		for (int i = 3; i <= 4; i++) {
+			script.append("INSERT /* load */ INTO TEST(ID, STR, DT)\n-- values\nVALUES(").append(i)
+					.append(", 'Str").append(i).append("', TIMESTAMP '2000-01-01 00:00:00')\n/\n");
+		}
+		script.append("UPDATE TEST SET STR = 'Upd' WHERE ID = 3 -- first\n/\n");
+		script.append("UPDATE NO_SUCH_TABLE SET STR = 'Upd'\n/\n");
+		script.append("DELETE FROM TEST WHERE ID = 4\n/\n");
+
+		try {
+			connection.executeScript(script.toString(), new TreeMap<String, DataParam>());
+			fail("Ожидалось исключение");
+		} catch (DataException e) {
+			assertTrue(e.getOperator(), e.getOperator().contains("NO_SUCH_TABLE"));
+		}
+		assertEquals("Upd", getOneRow("SELECT STR FROM TEST WHERE ID = 3").getString(0));
+	}
+
+	/**
+	 * Получение одной строки, в том числе с проверкой того, что запрос вернул
+	 * ровно одну строку.
+	 */
+	@Test
+	public void testQueryRowExactlyOne() {
+		Map<String, DataParam> parameters = new TreeMap<String, DataParam>();
+		assertEquals(2l, connection.queryRow("SELECT count(*) AS c FROM TEST", parameters, true).getInteger("c")
+				.longValue());
+		assertNull(connection.queryRow("SELECT * FROM TEST WHERE 1 = 0", parameters));
+
+		try {
+			connection.queryRow("SELECT * FROM TEST WHERE 1 = 0", parameters, true);
+			fail("Ожидалось исключение");
+		} catch (DataException e) {
+			assertEquals("02000", e.getState());
+		}
+
+		try {
+			connection.queryRow("SELECT * FROM TEST", parameters, true);
+			fail("Ожидалось исключение");
+		} catch (DataException e) {
+			assertEquals("21000", e.getState());
+		}
+
+		// Оператор после выборки одной строки снова выдает все строки.
+		try (IResultTable table = connection.query("SELECT * FROM TEST", parameters)) {
+			int count = 0;
+			for (IRow row : table) {
+				if (row != null) {
+					count++;
+				}
+			}
+			assertEquals(2, count);
+		}
+	}
 }
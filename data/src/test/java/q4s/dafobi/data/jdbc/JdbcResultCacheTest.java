@@ -0,0 +1,359 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.data.IResultTable;
+import q4s.dafobi.data.IRow;
+import q4s.dafobi.data.IStatement;
+import q4s.dafobi.data.MemoryResultTable;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Тестирование кеша результатов запросов {@link JdbcResultCache}.
+ * 
+ * @author Q4S
+ * 
+ */
+public class JdbcResultCacheTest {
+
+	private static final String QUERY = "SELECT /*+dafobi_cache(60s)*/ ID, STR FROM TEST WHERE ID >= :id ORDER BY ID";
+
+	private static final String INSERT = "INSERT INTO TEST(ID, STR, DT) VALUES(:id, :str, :dt)";
+
+	private static Connection jdbcConnection = null;
+
+	private JdbcConnection connection;
+
+	private JdbcResultCache cache;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// Creating database server instance
+		// Driver: "org.hsqldb.jdbcDriver",
+		jdbcConnection = DriverManager.getConnection("jdbc:hsqldb:mem:" + UUID.randomUUID().toString(), "sa", "");
+
+		// Creating the table
+		try (InputStream createTable = HsqldbTest.class.getResourceAsStream("JdbcStatementTest_create.sql");
+				PreparedStatement stmt = jdbcConnection.prepareStatement(IOUtils.toString(createTable));) {
+			stmt.execute();
+		}
+	}
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// Dropping the table
+		String dropTable = "DROP TABLE TEST";
+		try (PreparedStatement stmt = jdbcConnection.prepareStatement(dropTable);) {
+			stmt.execute();
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		connection = new JdbcConnection(jdbcConnection);
+		cache = new JdbcResultCache(16);
+		connection.setResultCache(cache);
+		insert(1);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		connection.setAutocommit(true);
+
+		// Cleaning the table
+		try (PreparedStatement stmt = jdbcConnection.prepareStatement("DELETE FROM TEST");) {
+			stmt.executeUpdate();
+		}
+
+		connection.close();
+	}
+
+	private void insert(int id) {
+		Map<String, DataParam> parameters = new TreeMap<>();
+		parameters.put("id", DataType.INTEGER.param(id));
+		parameters.put("str", DataType.STRING.param("Str" + id));
+		parameters.put("dt", DataType.DATE.param(new java.sql.Date(0)));
+		connection.execute(INSERT, parameters);
+	}
+
+	private int count(String query, int id) {
+		Map<String, DataParam> parameters = new TreeMap<>();
+		parameters.put("id", DataType.INTEGER.param(id));
+		try (IResultTable table = connection.query(query, parameters)) {
+			int count = 0;
+			Iterator<IRow> iterator = table.iterator();
+			while (iterator.hasNext()) {
+				iterator.next();
+				count++;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Повторный запрос с теми же параметрами берется из кеша, а с другими -
+	 * выполняется.
+	 */
+	@Test
+	public void testHit() {
+		assertEquals(1, count(QUERY, 1));
+		assertEquals(1, count(QUERY, 1));
+		assertEquals(0, count(QUERY, 2));
+
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(2, cache.size());
+
+		Map<String, DataParam> parameters = new TreeMap<>();
+		parameters.put("id", DataType.INTEGER.param(1));
+		try (IStatement first = connection.prepare(QUERY); IStatement second = connection.prepare(QUERY);) {
+			assertSame(first.query(parameters), second.query(parameters));
+		}
+		assertEquals(1, connection.queryRow(QUERY, parameters).getInteger("ID").intValue());
+	}
+
+	/**
+	 * Запросы без подсказки не кешируются.
+	 */
+	@Test
+	public void testNoHint() {
+		String query = "SELECT ID FROM TEST WHERE ID >= :id";
+		assertEquals(1, count(query, 1));
+		assertEquals(1, count(query, 1));
+		assertEquals(0, cache.getHits() + cache.getMisses());
+	}
+
+	/**
+	 * Изменение таблицы делает недействительными прочитанные из нее
+	 * результаты.
+	 */
+	@Test
+	public void testInvalidation() {
+		assertEquals(1, count(QUERY, 1));
+		insert(2);
+		assertEquals(2, count(QUERY, 1));
+		assertEquals(1, cache.getInvalidations());
+
+		// Изменение другой таблицы результат не затрагивает.
+		cache.invalidate("OTHER");
+		assertEquals(2, count(QUERY, 1));
+		assertEquals(1, cache.getHits());
+	}
+
+	/**
+	 * Результат удаляется из кеша по окончании времени жизни.
+	 */
+	@Test
+	public void testExpiration() throws InterruptedException {
+		String query = "SELECT /*+dafobi_cache(20ms)*/ ID FROM TEST WHERE ID >= :id";
+		assertEquals(1, count(query, 1));
+		Thread.sleep(50);
+		assertEquals(1, count(query, 1));
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getExpirations());
+	}
+
+	/**
+	 * Внутри транзакции запросы к измененным таблицам идут в обход кеша, а
+	 * откат изменений не оставляет в кеше незафиксированных данных.
+	 */
+	@Test
+	public void testTransaction() {
+		assertEquals(1, count(QUERY, 1));
+		connection.setAutocommit(false);
+		insert(2);
+		assertEquals(2, count(QUERY, 1));
+		connection.rollback();
+
+		assertEquals(1, count(QUERY, 1));
+		assertEquals(0, cache.getHits());
+	}
+
+	/**
+	 * Результат из кеша - неизменяемая копия, не связанная с оператором.
+	 */
+	@Test
+	public void testMaterialized() {
+		Map<String, DataParam> parameters = new TreeMap<>();
+		parameters.put("id", DataType.INTEGER.param(1));
+		try (IStatement statement = connection.prepare(QUERY);) {
+			IResultTable table = statement.query(parameters);
+			assertEquals(MemoryResultTable.class, table.getClass());
+			assertEquals(1, ((MemoryResultTable) table).getRowCount());
+		}
+	}
+
+	/**
+	 * Читающие общий результат из кеша получают разные объекты строк, и
+	 * признак пустого значения у каждого свой.
+	 */
+	@Test
+	public void testSharedRows() {
+		String query = "SELECT /*+dafobi_cache(60s)*/ ID, CAST(NULL AS INTEGER) AS N FROM TEST WHERE ID >= :id";
+		Map<String, DataParam> parameters = new TreeMap<>();
+		parameters.put("id", DataType.INTEGER.param(1));
+		try (IStatement first = connection.prepare(query); IStatement second = connection.prepare(query);) {
+			IRow firstRow = first.query(parameters).iterator().next();
+			IRow secondRow = second.query(parameters).iterator().next();
+			assertNotSame(firstRow, secondRow);
+
+			assertEquals(0L, firstRow.getLong(1));
+			assertEquals(1L, secondRow.getLong(0));
+			assertTrue(firstRow.wasNull());
+			assertFalse(secondRow.wasNull());
+		}
+		assertEquals(1, cache.getHits());
+	}
+
+	/**
+	 * Результаты на диске доступны новому кешу (как после перезапуска), а
+	 * изменение таблицы удаляет их файлы.
+	 */
+	@Test
+	public void testDiskStore() throws Exception {
+		cache.setDiskStore(new JdbcResultDiskStore(folder.getRoot().toPath(), 1 << 20));
+		assertEquals(1, count(QUERY, 1));
+		assertEquals(1, cache.getDiskStore().getWrites());
+
+		JdbcResultCache restarted = new JdbcResultCache(16);
+		JdbcResultDiskStore store = new JdbcResultDiskStore(folder.getRoot().toPath(), 1 << 20);
+		restarted.setDiskStore(store);
+		connection.setResultCache(restarted);
+		assertEquals(1, count(QUERY, 1));
+		assertEquals(1, store.getHits());
+		assertEquals(1, restarted.getHits());
+
+		insert(2);
+		assertEquals(0, store.size());
+		assertEquals(0, store.getBytes());
+		assertEquals(2, count(QUERY, 1));
+	}
+
+	/**
+	 * @return Единственный файл результата в каталоге кеша.
+	 */
+	private Path getResultFile() throws IOException {
+		Path result = null;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(folder.getRoot().toPath(), "*.dfr")) {
+			for (Path file : files) {
+				assertEquals(null, result);
+				result = file;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Поврежденные и недописанные файлы не читаются: результат берется из
+	 * базы, а лишние файлы удаляются при открытии каталога.
+	 */
+	@Test
+	public void testDiskStoreDamaged() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		cache.setDiskStore(new JdbcResultDiskStore(directory, 1 << 20));
+		assertEquals(1, count(QUERY, 1));
+
+		// Содержимое файла испорчено без изменения размера.
+		Path file = getResultFile();
+		byte[] data = Files.readAllBytes(file);
+		data[data.length / 2] ^= 0xFF;
+		Files.write(file, data);
+
+		// Следы прерванной записи: временный файл, файл без строки в манифесте
+		// и недописанная строка манифеста.
+		Path temp = directory.resolve("0000000000000000-0000000000000000.dfr.1.tmp");
+		Path orphan = directory.resolve("0000000000000000-0000000000000000.dfr");
+		Files.write(temp, new byte[10]);
+		Files.write(orphan, new byte[10]);
+		Files.write(directory.resolve(JdbcResultDiskStore.MANIFEST), orphan.getFileName().toString()
+				.concat("\t0000").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+		JdbcResultDiskStore store = new JdbcResultDiskStore(directory, 1 << 20);
+		assertFalse(Files.exists(temp));
+		assertFalse(Files.exists(orphan));
+		assertEquals(1, store.size());
+
+		JdbcResultCache restarted = new JdbcResultCache(16);
+		restarted.setDiskStore(store);
+		connection.setResultCache(restarted);
+		assertEquals(1, count(QUERY, 1));
+		assertEquals(0, store.getHits());
+		assertEquals(1, store.getFailures());
+		assertEquals(1, store.getWrites());
+
+		// Файл, записанный из базы заново, обрезан.
+		file = getResultFile();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() / 2);
+		}
+		store = new JdbcResultDiskStore(directory, 1 << 20);
+		assertEquals(0, store.size());
+		assertFalse(Files.exists(file));
+
+		restarted = new JdbcResultCache(16);
+		restarted.setDiskStore(store);
+		connection.setResultCache(restarted);
+		insert(2);
+		assertEquals(2, count(QUERY, 1));
+		assertEquals(0, store.getHits());
+	}
+}
@@ -1,13 +1,25 @@
 package q4s.dafobi.data.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.After;
@@ -16,10 +28,18 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import q4s.dafobi.common.DataParam;
 import q4s.dafobi.data.AbstractResultTable;
+import q4s.dafobi.data.ColumnHandle;
+import q4s.dafobi.data.ColumnarResultTable;
 import q4s.dafobi.data.IResultTable;
 import q4s.dafobi.data.IRow;
+import q4s.dafobi.data.IRowSubscriber;
+import q4s.dafobi.data.IRowSubscription;
 import q4s.dafobi.data.IStatement;
+import q4s.dafobi.data.MemoryResultTable;
+import q4s.dafobi.data.PrefetchingIterator;
+import q4s.dafobi.data.RowPublisher;
 import q4s.dafobi.data.jdbc.JdbcConnection;
 import q4s.dafobi.jaxb.common.DataType;
 
@@ -130,4 +150,289 @@ public class JdbcResultTableTest {
 		}
 	}
 
+	/**
+	 * Проверка перебора строк в режиме курсора: строка одна на все время
+	 * перебора, а ее копии, полученные методом {@link IRow#detach()},
+	 * сохраняют свои значения.
+	 */
+	@Test
+	public void testCursor() {
+		String query = "SELECT ID, STR FROM TEST ORDER BY ID";
+		try (IStatement statement = connection.prepare(query);) {
+			IResultTable result = statement.query();
+
+			IRow cursorRow = null;
+			List<IRow> detached = new ArrayList<>();
+			for (IRow row : result.cursor()) {
+				if (cursorRow == null) {
+					cursorRow = row;
+				}
+				assertSame(cursorRow, row);
+				assertEquals(row.getInteger(0), row.getInteger("id"));
+
+				IRow copy = row.detach();
+				assertNotSame(row, copy);
+				assertSame(copy, copy.detach());
+				detached.add(copy);
+			}
+
+			assertEquals(2, detached.size());
+			assertEquals(new Long(1), detached.get(0).getInteger("id"));
+			assertEquals("Str1", detached.get(0).getString("str"));
+			assertEquals(new Long(2), detached.get(1).getInteger("id"));
+			assertEquals("Str2", detached.get(1).getString("str"));
+		}
+	}
+
+	/**
+	 * Проверка методов получения примитивных значений и признака пустого
+	 * значения как для обычных строк, так и в режиме курсора.
+	 */
+	@Test
+	public void testPrimitiveAccessors() {
+		String query = "SELECT ID, CAST(NULL AS INTEGER) AS N, CAST(ID AS DOUBLE) / 2 AS HALF FROM TEST ORDER BY ID";
+		for (int pass = 0; pass < 2; pass++) {
+			try (IStatement statement = connection.prepare(query);) {
+				IResultTable result = statement.query();
+
+				int i = 0;
+				for (IRow row : pass == 0 ? result : result.cursor()) {
+					i++;
+					assertEquals(i, row.getInt(0));
+					assertFalse(row.wasNull());
+					assertEquals(i, row.getLong("id"));
+					assertFalse(row.wasNull());
+
+					assertEquals(0, row.getLong("n"));
+					assertTrue(row.wasNull());
+					assertEquals(0, row.getInt(1));
+					assertTrue(row.wasNull());
+
+					assertEquals(i / 2.0, row.getDouble("half"), 0.0);
+					assertFalse(row.wasNull());
+				}
+				assertEquals(2, i);
+			}
+		}
+	}
+
+	/**
+	 * Проверка поиска колонок по имени без учета регистра и чтения значений
+	 * через описатели колонок {@link ColumnHandle}.
+	 */
+	@Test
+	public void testColumnHandle() {
+		String query = "SELECT ID, STR FROM TEST ORDER BY ID";
+		try (IResultTable result = connection.query(query, Collections.<String, DataParam> emptyMap());) {
+			assertEquals(1, result.getColumnIndex("STR"));
+			assertEquals(1, result.getColumnIndex("Str"));
+
+			ColumnHandle id = result.getColumn("Id");
+			ColumnHandle str = result.getColumn("str");
+			assertSame(str, result.getColumn("STR"));
+			assertEquals(0, id.getIndex());
+			assertEquals("id", id.getName());
+			assertEquals(DataType.INTEGER, id.getType());
+
+			int i = 0;
+			for (IRow row : result) {
+				i++;
+				assertEquals(i, id.getLong(row));
+				assertEquals("Str" + i, str.getString(row));
+			}
+			assertEquals(2, i);
+		}
+	}
+
+	/**
+	 * Обращение к несуществующей колонке.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongColumnName() {
+		try (IStatement statement = connection.prepare("SELECT ID FROM TEST");) {
+			statement.query().getColumn("nothing");
+		}
+	}
+
+	/**
+	 * Перебор строк итератором с упреждающим чтением: полностью и с
+	 * досрочным закрытием.
+	 */
+	@Test
+	public void testPrefetching() {
+		String query = "SELECT ID, STR FROM TEST ORDER BY ID";
+		try (PrefetchingIterator rows = new PrefetchingIterator(
+				connection.query(query, Collections.<String, DataParam> emptyMap()), 1)) {
+			int i = 0;
+			while (rows.hasNext()) {
+				IRow row = rows.next();
+				i++;
+				assertEquals(i, row.getLong("id"));
+				assertEquals("Str" + i, row.getString("str"));
+			}
+			assertEquals(2, i);
+			assertFalse(rows.hasNext());
+		}
+
+		PrefetchingIterator rows = new PrefetchingIterator(
+				connection.query(query, Collections.<String, DataParam> emptyMap()), 1);
+		assertEquals(1, rows.next().getLong("id"));
+		rows.close();
+		rows.close();
+		try {
+			rows.hasNext();
+			fail("Закрытый итератор не должен отдавать строки");
+		} catch (IllegalStateException e) {
+			// Ожидаемое исключение.
+		}
+	}
+
+	/**
+	 * Передача строк {@link RowPublisher} по мере спроса: строки не
+	 * передаются без запроса, конец данных сообщается сразу после последней
+	 * строки, после отказа от подписки оператор можно использовать снова.
+	 */
+	@Test
+	public void testPublisher() {
+		String query = "SELECT ID FROM TEST ORDER BY ID";
+		try (IStatement statement = connection.prepare(query);) {
+			RowPublisher publisher = new RowPublisher(statement, Collections.<String, DataParam> emptyMap());
+			List<Object> events = new ArrayList<>();
+			IRowSubscription[] subscription = new IRowSubscription[1];
+			IRowSubscriber subscriber = new IRowSubscriber() {
+
+				@Override
+				public void onSubscribe(IRowSubscription s) {
+					subscription[0] = s;
+				}
+
+				@Override
+				public void onNext(IRow row) {
+					events.add(row.getLong("id"));
+				}
+
+				@Override
+				public void onError(Throwable error) {
+					events.add(error);
+				}
+
+				@Override
+				public void onComplete() {
+					events.add("complete");
+				}
+			};
+
+			publisher.subscribe(subscriber);
+			assertTrue(events.isEmpty());
+			subscription[0].request(1);
+			assertEquals(Arrays.<Object> asList(1L), events);
+			subscription[0].request(1);
+			assertEquals(Arrays.<Object> asList(1L, 2L, "complete"), events);
+
+			events.clear();
+			publisher.subscribe(subscriber);
+			subscription[0].request(1);
+			subscription[0].cancel();
+			subscription[0].request(1);
+			assertEquals(Arrays.<Object> asList(1L), events);
+
+			events.clear();
+			publisher.subscribe(subscriber);
+			subscription[0].request(Long.MAX_VALUE);
+			assertEquals(Arrays.<Object> asList(1L, 2L, "complete"), events);
+		}
+	}
+
+	/**
+	 * Последовательный и параллельный потоки строк: порядок строк сохраняется,
+	 * закрытие потока закрывает таблицу.
+	 */
+	@Test
+	public void testStream() {
+		String query = "SELECT ID, STR FROM TEST ORDER BY ID";
+		IResultTable result = connection.query(query, Collections.<String, DataParam> emptyMap());
+		try (Stream<IRow> rows = result.stream()) {
+			assertTrue(rows.spliterator().hasCharacteristics(Spliterator.ORDERED | Spliterator.NONNULL));
+		}
+		assertTrue(result.isClosed());
+
+		result = connection.query(query, Collections.<String, DataParam> emptyMap());
+		try (Stream<IRow> rows = result.parallelStream()) {
+			assertEquals(Arrays.asList("Str1", "Str2"),
+					rows.map(row -> row.getString("str")).collect(Collectors.toList()));
+		}
+		assertTrue(result.isClosed());
+	}
+
+	/**
+	 * Таблица {@link ColumnarResultTable} возвращает те же значения тех же
+	 * типов, что и обычная копия в памяти, в том числе через методы доступа
+	 * к колонкам целиком.
+	 */
+	@Test
+	public void testColumnar() {
+		String query = "SELECT ID, STR, DT, CAST(NULL AS INTEGER) AS N, CAST(ID AS DOUBLE) / 2 AS HALF "
+				+ "FROM TEST ORDER BY ID";
+		MemoryResultTable expected;
+		ColumnarResultTable table;
+		try (IResultTable result = connection.query(query, Collections.<String, DataParam> emptyMap());) {
+			expected = MemoryResultTable.copyOf(result);
+		}
+		try (IResultTable result = connection.query(query, Collections.<String, DataParam> emptyMap());) {
+			table = ColumnarResultTable.copyOf(result);
+		}
+
+		assertEquals(expected.getRowCount(), table.getRowCount());
+		assertEquals(expected.count(), table.count());
+		for (int i = 0; i < table.getRowCount(); i++) {
+			IRow row = table.getRow(i);
+			for (int column = 0; column < table.count(); column++) {
+				Object value = expected.getRow(i).get(column);
+				assertEquals(value, row.get(column));
+				assertEquals(value == null, row.wasNull());
+				if (value != null) {
+					assertSame(value.getClass(), row.get(column).getClass());
+				}
+			}
+			assertEquals(i + 1, row.getInt("id"));
+			assertEquals(0, row.getLong("n"));
+			assertTrue(row.wasNull());
+		}
+
+		assertTrue(Arrays.equals(new long[] { 1, 2 }, table.getLongs(0)));
+		assertTrue(Arrays.equals(new double[] { 0.5, 1 }, table.getDoubles(4)));
+		assertEquals(2, table.getNulls(3).cardinality());
+		assertTrue(table.isNull(1, 3));
+		assertFalse(table.isNull(1, 1));
+	}
+
+	/**
+	 * Перевод колонки в более общий вид после заполнения более чем 64 строк,
+	 * когда пустое значение встретилось только в начале колонки.
+	 */
+	@Test
+	public void testColumnarFallback() {
+		int rows = 100;
+		List<Object[]> values = new ArrayList<>();
+		for (int i = 0; i < rows; i++) {
+			// Последняя дата не приходится на полночь и не помещается в
+			// колонку дат в днях.
+			Date date = i == rows - 1 ? new Date(12345L) : Date.valueOf("2000-01-01");
+			values.add(new Object[] { i == 0 ? null : date, i == 70 ? null : Long.valueOf(i) });
+		}
+		MemoryResultTable source = MemoryResultTable.of(new String[] { "DT", "N" },
+				new DataType[] { DataType.DATE, DataType.INTEGER }, values);
+
+		ColumnarResultTable table = ColumnarResultTable.copyOf(source);
+		assertEquals(rows, table.getRowCount());
+		for (int i = 0; i < rows; i++) {
+			assertEquals(values.get(i)[0], table.getRow(i).get(0));
+			assertEquals(values.get(i)[1], table.getRow(i).get(1));
+		}
+		assertEquals(1, table.getNulls(0).cardinality());
+		assertTrue(table.isNull(0, 0));
+		assertFalse(table.isNull(rows - 1, 0));
+		assertTrue(table.isNull(70, 1));
+	}
+
 }
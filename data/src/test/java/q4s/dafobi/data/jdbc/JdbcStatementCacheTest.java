@@ -0,0 +1,214 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.data.IResultTable;
+import q4s.dafobi.data.IRow;
+import q4s.dafobi.data.IStatement;
+import q4s.dafobi.jaxb.common.DataType;
+
+/**
+ * Тестирование кеша операторов {@link JdbcStatementCache}.
+ * 
+ * @author Q4S
+ * 
+ */
+public class JdbcStatementCacheTest {
+
+	private static Connection jdbcConnection = null;
+
+	private JdbcConnection connection;
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// Creating database server instance
+		// Driver: "org.hsqldb.jdbcDriver",
+		jdbcConnection = DriverManager.getConnection("jdbc:hsqldb:mem:" + UUID.randomUUID().toString(), "sa", "");
+
+		// Creating the table
+		try (InputStream createTable = HsqldbTest.class.getResourceAsStream("JdbcStatementTest_create.sql");
+				PreparedStatement stmt = jdbcConnection.prepareStatement(IOUtils.toString(createTable));) {
+			stmt.execute();
+		}
+	}
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// Dropping the table
+		String dropTable = "DROP TABLE TEST";
+		try (PreparedStatement stmt = jdbcConnection.prepareStatement(dropTable);) {
+			stmt.execute();
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		connection = new JdbcConnection(jdbcConnection, 2);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		// Cleaning the table
+		try (PreparedStatement stmt = jdbcConnection.prepareStatement("DELETE FROM TEST");) {
+			stmt.executeUpdate();
+		}
+
+		connection.close();
+	}
+
+	/**
+	 * Закрытый оператор возвращается в кеш и выдается повторно при подготовке
+	 * запроса с тем же текстом.
+	 */
+	@Test
+	public void testReuse() {
+		String query = "SELECT * FROM TEST WHERE ID = :id";
+		IStatement first = connection.prepare(query);
+		first.close();
+		assertTrue(first.isClosed());
+
+		IStatement second = connection.prepare(query);
+		assertSame(first, second);
+		assertFalse(second.isClosed());
+		second.close();
+
+		JdbcStatementCache cache = connection.getStatementCache();
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	/**
+	 * Пока оператор выдан пользователю, повторная подготовка того же запроса
+	 * должна вернуть другой оператор.
+	 */
+	@Test
+	public void testConcurrentLease() {
+		String query = "SELECT * FROM TEST";
+		try (IStatement first = connection.prepare(query); IStatement second = connection.prepare(query);) {
+			assertNotSame(first, second);
+		}
+		assertEquals(1, connection.getStatementCache().size());
+	}
+
+	/**
+	 * При переполнении кеша вытесняется дольше всех не использованный
+	 * оператор.
+	 */
+	@Test
+	public void testEviction() {
+		connection.prepare("SELECT ID FROM TEST").close();
+		connection.prepare("SELECT STR FROM TEST").close();
+		connection.prepare("SELECT DT FROM TEST").close();
+
+		JdbcStatementCache cache = connection.getStatementCache();
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+	}
+
+	/**
+	 * Значения параметров не должны переходить от одного использования
+	 * оператора к другому.
+	 */
+	@Test
+	public void testParametersAreReset() {
+		Map<String, DataParam> parameters = new TreeMap<>();
+		parameters.put("id", DataType.INTEGER.param(1));
+		parameters.put("str", DataType.STRING.param("Str1"));
+		parameters.put("dt", DataType.DATE.param(new java.sql.Date(0)));
+
+		String query = "INSERT INTO TEST(ID, STR, DT) VALUES(:id, :str, :dt)";
+		assertEquals(1, connection.execute(query, parameters));
+
+		parameters.put("id", DataType.INTEGER.param(2));
+		assertEquals(1, connection.execute(query, parameters));
+		assertEquals(1, connection.getStatementCache().getHits());
+	}
+
+	/**
+	 * Подсказки выборки действуют на запрос, но не переходят к следующему
+	 * пользователю оператора.
+	 */
+	@Test
+	public void testHintsAreReset() {
+		Map<String, DataParam> parameters = new TreeMap<>();
+		parameters.put("dt", DataType.DATE.param(new java.sql.Date(0)));
+		for (int id = 1; id <= 3; id++) {
+			parameters.put("id", DataType.INTEGER.param(id));
+			parameters.put("str", DataType.STRING.param("Str" + id));
+			connection.execute("INSERT INTO TEST(ID, STR, DT) VALUES(:id, :str, :dt)", parameters);
+		}
+
+		String query = "SELECT * FROM TEST";
+		try (IStatement statement = connection.prepare(query)) {
+			statement.setMaxRows(2);
+			statement.setFetchSize(1);
+			assertEquals(2, count(statement.query(parameters)));
+		}
+
+		try (IStatement statement = connection.prepare(query)) {
+			assertEquals(0, statement.getMaxRows());
+			assertEquals(0, statement.getFetchSize());
+			statement.setFetchMemory(1024);
+			assertEquals(3, count(statement.query(parameters)));
+		}
+	}
+
+	private static int count(IResultTable table) {
+		int count = 0;
+		try (IResultTable result = table) {
+			for (IRow row : result.cursor()) {
+				if (row != null) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+}
@@ -20,12 +20,19 @@ package q4s.dafobi.data.jdbc;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.InputStream;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 import org.apache.commons.io.IOUtils;
@@ -124,4 +131,84 @@ public class JdbcStatementInternalTest {
 			assertArrayEquals(new String[] {}, statement.getOutParamNames());
 		}
 	}
+
+	/**
+	 * Результат разбора запроса должен разделяться операторами с одинаковым
+	 * текстом даже в разных подключениях.
+	 */
+	@Test
+	public void testSharedTemplate() {
+		String query = "SELECT * FROM TEST WHERE ID = :id";
+		try (JdbcConnection otherConnection = new JdbcConnection(jdbcConnection);
+				JdbcStatement statement = (JdbcStatement) connection.prepare(query);
+				JdbcStatement other = (JdbcStatement) otherConnection.prepare(query);) {
+
+			assertNotSame(statement, other);
+			assertSame(statement.getTemplate(), other.getTemplate());
+		}
+	}
+
+	/**
+	 * Однострочные комментарии и строковые константы: внутри них параметры не
+	 * ищутся, а пробелы внутри констант не схлопываются.
+	 */
+	@Test
+	public void testCommentsAndLiterals() {
+		try (JdbcStatement statement = (JdbcStatement) connection.prepare("SELECT * FROM TEST -- it's :fake\r\n"//
+				+ "WHERE STR <> 'a  :b' AND ID = :id");) {
+
+			assertEquals("SELECT * FROM TEST -- it's :fake\r\n"//
+					+ "WHERE STR <> 'a  :b' AND ID = ?", statement.getParsedQuery());
+			assertEquals("SELECT * FROM TEST WHERE STR <> 'a  :b' AND ID = ?", statement.getProcessedQuery());
+			assertArrayEquals(new String[] { "id" }, statement.getParamNames());
+		}
+	}
+
+	/**
+	 * Константы в списке значений вставки заменяются параметрами, а константы
+	 * в других местах (и с префиксами вроде DATE) остаются в тексте. В
+	 * других операторах константы не заменяются.
+	 */
+	@Test
+	public void testExtractLiterals() {
+		List<Object> values = new ArrayList<>();
+		assertEquals("INSERT INTO TEST(ID, STR, DT) VALUES(?, ?, DATE '2000-01-01')",
+				JdbcScriptBatch.extractLiterals(
+						"INSERT INTO TEST(ID, STR, DT) VALUES(12, 'it''s', DATE '2000-01-01')", values));
+		assertEquals(Arrays.asList((Object) 12L, "it's"), values);
+
+		values.clear();
+		assertEquals("INSERT INTO \"VALUES\"(ID, STR) VALUES(?, 'a' || 'b'), (?, ?)", JdbcScriptBatch
+				.extractLiterals("INSERT INTO \"VALUES\"(ID, STR) VALUES(-1, 'a' || 'b'), (2.5, 'c')", values));
+		assertEquals(Arrays.asList((Object) (-1L), new BigDecimal("2.5"), "c"), values);
+
+		// Комментарии, подсказки и переводы строк сохраняются.
+		values.clear();
+		assertEquals("-- values of TEST\nINSERT /*+ APPEND */ INTO TEST(ID, STR)\nVALUES(?, -- id\n?)",
+				JdbcScriptBatch.extractLiterals(
+						"-- values of TEST\nINSERT /*+ APPEND */ INTO TEST(ID, STR)\nVALUES(1, -- id\n'it''s /* no */')",
+						values));
+		assertEquals(Arrays.asList((Object) 1L, "it's /* no */"), values);
+
+		values.clear();
+		assertNull(JdbcScriptBatch.extractLiterals("UPDATE TEST SET STR = 'a' WHERE ID IN (-1, 2.5)", values));
+		assertNull(JdbcScriptBatch.extractLiterals("DELETE FROM TEST WHERE STR IN ('A', 'B')", values));
+		assertNull(JdbcScriptBatch.extractLiterals("INSERT INTO TEST(ID) SELECT ID FROM T WHERE C IN ('A')", values));
+		assertTrue(values.isEmpty());
+	}
+
+	/**
+	 * Подсказка кеширования распознается только под своим именем, а
+	 * подсказки базы данных (в том числе CACHE в Oracle) кеширование не
+	 * включают.
+	 */
+	@Test
+	public void testCacheHint() {
+		assertEquals(60000, new SqlLexer("SELECT /*+dafobi_cache(60s)*/ * FROM T").getCacheTtl());
+		assertEquals(20, new SqlLexer("SELECT /*+ FULL(t) DAFOBI_CACHE(20ms) */ * FROM T t").getCacheTtl());
+		assertEquals(0, new SqlLexer("SELECT /*+dafobi_cache*/ * FROM T").getCacheTtl());
+		assertEquals(-1, new SqlLexer("SELECT /*+ CACHE(t) */ * FROM T t").getCacheTtl());
+		assertEquals(-1, new SqlLexer("SELECT /*+ cache */ * FROM T").getCacheTtl());
+		assertEquals(-1, new SqlLexer("SELECT /* dafobi_cache */ * FROM T").getCacheTtl());
+	}
 }
@@ -19,6 +19,7 @@
 package q4s.dafobi.data.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.io.InputStream;
 import java.sql.Connection;
@@ -41,6 +42,7 @@ import q4s.dafobi.common.DataParam;
 import q4s.dafobi.data.IResultTable;
 import q4s.dafobi.data.IRow;
 import q4s.dafobi.data.IStatement;
+import q4s.dafobi.data.ParamSet;
 import q4s.dafobi.data.jdbc.JdbcConnection;
 import q4s.dafobi.data.jdbc.JdbcStatement;
 import q4s.dafobi.jaxb.common.DataType;
@@ -279,6 +281,33 @@ public class JdbcStatementTest {
 		}
 	}
 
+	/**
+	 * Параметры, которых нет в запросе, должны просто пропускаться, имена
+	 * параметров не зависят от регистра, а пустые значения устанавливаются
+	 * без ошибок.
+	 */
+	@Test
+	public void testUnknownAndNullParams() {
+		try (IStatement statement = connection.prepare("SELECT * FROM TEST WHERE ID = :id");) {
+			Map<String, DataParam> params = new TreeMap<String, DataParam>();
+			params.put("ID", DataType.INTEGER.param(2));
+			params.put("unknown", DataType.STRING.param("unknown"));
+			try (IResultTable result = statement.query(params);) {
+				int i = 0;
+				for (IRow row : result) {
+					assertEquals(new Long(2), row.getInteger(0));
+					i++;
+				}
+				assertEquals(1, i);
+			}
+
+			statement.setParam("id", DataType.INTEGER.param(null));
+			try (IResultTable result = statement.query();) {
+				assertFalse(result.iterator().hasNext());
+			}
+		}
+	}
+
 	/**
 	 * Test method for {@link q4s.dafobi.data.jdbc.JdbcStatement#execute()}
 	 * <p>
@@ -401,4 +430,102 @@ public class JdbcStatementTest {
 		}
 	}
 
+	/**
+	 * Test method for
+	 * {@link q4s.dafobi.data.AbstractStatement#addBatch(ParamSet)}
+	 * <p>
+	 * Один набор параметров используется для всех строк пакета.
+	 */
+	@Test
+	public void testExecuteBatchParamSet() {
+		try (IStatement statement = connection.prepare("INSERT INTO TEST(ID, STR, DT)" //
+				+ "VALUES(:id, :str, :dt)");) {
+			ParamSet params = statement.createParamSet();
+			int id = params.slot("id");
+			int str = params.slot("STR");
+			int dt = params.slot("dt");
+			assertEquals(-1, params.slot("unknown"));
+
+			for (int i = 1; i <= 3; i++) {
+				params.reset();
+				params.setInt(id, i * 10);
+				params.setString(str, "Str " + i);
+				params.setDate(dt, new Date(i * 1000));
+				statement.addBatch(params);
+			}
+			statement.executeBatch();
+
+			assertEquals(5l, getRowCount());
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link q4s.dafobi.data.AbstractStatement#execute(ParamSet)}
+	 * <p>
+	 * Выходные параметры процедуры возвращаются в набор.
+	 */
+	@Test
+	public void testExecuteParamSet() {
+		try (IStatement statement = connection.prepare("{call test_out_param( &outp, :inp)}")) {
+			ParamSet params = statement.createParamSet();
+			params.setInt(params.slot("inp"), 13);
+			params.setInt(params.slot("outp"), 0);
+
+			statement.execute(params);
+
+			assertEquals(1311, params.getValue(params.slot("outp")));
+		}
+	}
+
+	/**
+	 * Выполнение с неполным набором параметров.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testExecuteParamSetMissing() {
+		try (IStatement statement = connection.prepare("INSERT INTO TEST(ID, STR, DT)" //
+				+ "VALUES(:id, :str, :dt)");) {
+			ParamSet params = statement.createParamSet();
+			params.setInt(params.slot("id"), 10);
+			statement.execute(params);
+		}
+	}
+
+	/**
+	 * Строка пакета с пропущенным параметром не получает значение от
+	 * предыдущей строки, а отвергается.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testExecuteBatchParamSetMissing() {
+		try (IStatement statement = connection.prepare("INSERT INTO TEST(ID, STR, DT)" //
+				+ "VALUES(:id, :str, :dt)");) {
+			ParamSet params = statement.createParamSet();
+			params.setInt(params.slot("id"), 10);
+			params.setString(params.slot("str"), "Str 1");
+			params.setDate(params.slot("dt"), new Date(1000));
+			statement.addBatch(params);
+
+			params.reset();
+			params.setInt(params.slot("id"), 20);
+			params.setDate(params.slot("dt"), new Date(2000));
+			statement.addBatch(params);
+		}
+	}
+
+	/**
+	 * Набор, построенный не оператором, проверяется по именам параметров.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testExecuteParamSetForeignMissing() {
+		try (IStatement statement = connection.prepare("INSERT INTO TEST(ID, STR, DT)" //
+				+ "VALUES(:id, :str, :dt)");) {
+			ParamSet params = new ParamSet(new String[] { "dt", "id", "str", "other" });
+			params.setInt(params.slot("id"), 30);
+			params.setDate(params.slot("dt"), new Date(3000));
+			params.setString(params.slot("other"), "Other");
+			assertFalse(params.isComplete());
+			statement.execute(params);
+		}
+	}
+
 }
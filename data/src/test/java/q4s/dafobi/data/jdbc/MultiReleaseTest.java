@@ -0,0 +1,224 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import q4s.dafobi.data.IStatement;
+import q4s.dafobi.data.RowPublisher;
+
+/**
+ * Тестирование классов многоверсионного jar (src/main/java9,
+ * src/main/java21).
+ * <p>
+ * При сборке они попадают в META-INF/versions каталога классов, а тесты
+ * запускаются по каталогу, а не по jar, так что обычный загрузчик видит
+ * только базовые варианты. Поэтому классы загружаются отдельным
+ * загрузчиком, в котором каталоги версий стоят перед основным, как это
+ * делает JVM для jar с Multi-Release: true. Если версия JVM или собранные
+ * классы не соответствуют варианту, то тест пропускается.
+ * 
+ * @author Q4S
+ * 
+ */
+public class MultiReleaseTest {
+
+	private Connection jdbcConnection;
+
+	private ClassLoader loader;
+
+	@Before
+	public void setUp() throws Exception {
+		// Driver: "org.hsqldb.jdbcDriver",
+		jdbcConnection = DriverManager.getConnection("jdbc:hsqldb:mem:" + UUID.randomUUID().toString(), "sa", "");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (loader instanceof URLClassLoader) {
+			((URLClassLoader) loader).close();
+		}
+		jdbcConnection.close();
+	}
+
+	/**
+	 * @return Номер версии JVM, в которой выполняется тест.
+	 */
+	private static int getJavaVersion() {
+		String version = System.getProperty("java.specification.version");
+		if (version.startsWith("1.")) {
+			version = version.substring(2);
+		}
+		return Integer.parseInt(version);
+	}
+
+	/**
+	 * Загрузчик, в котором классы из каталогов версий с номерами не выше
+	 * заданного заменяют основные.
+	 * 
+	 * @param version
+	 *            Версия, вариант для которой проверяется.
+	 * 
+	 * @return Загрузчик или null, если в каталоге классов нет варианта для
+	 *         этой версии.
+	 */
+	private static ClassLoader createLoader(int version) throws Exception {
+		URL base = RowPublisher.class.getProtectionDomain().getCodeSource().getLocation();
+		File classes = new File(base.toURI());
+		if (!classes.isDirectory()) {
+			// Из jar классы и так загружаются с учетом версии JVM.
+			return RowPublisher.class.getClassLoader();
+		}
+		if (!new File(classes, "META-INF/versions/" + version).isDirectory()) {
+			return null;
+		}
+
+		List<URL> urls = new ArrayList<>();
+		for (int i = getJavaVersion(); i >= 9; i--) {
+			File versioned = new File(classes, "META-INF/versions/" + i);
+			if (versioned.isDirectory()) {
+				urls.add(versioned.toURI().toURL());
+			}
+		}
+		for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			urls.add(new File(path).toURI().toURL());
+		}
+		return new URLClassLoader(urls.toArray(new URL[urls.size()]), ClassLoader.getSystemClassLoader().getParent());
+	}
+
+	/**
+	 * Вызов открытого метода объекта из другого загрузчика.
+	 */
+	private static Object call(Object target, String name, Object... args) throws Exception {
+		search: for (Method method : target.getClass().getMethods()) {
+			if (!method.getName().equals(name) || method.getParameterCount() != args.length) {
+				continue;
+			}
+			Class<?>[] types = method.getParameterTypes();
+			for (int i = 0; i < args.length; i++) {
+				if (types[i].isPrimitive() ? !(args[i] instanceof Number) : !types[i].isInstance(args[i])) {
+					continue search;
+				}
+			}
+			return method.invoke(target, args);
+		}
+		throw new NoSuchMethodException(name);
+	}
+
+	/**
+	 * Вариант {@link RowPublisher} для Java 9 является
+	 * java.util.concurrent.Flow.Publisher и передает строки подписчику Flow по
+	 * мере спроса.
+	 */
+	@Test
+	public void testFlowPublisher() throws Exception {
+		assumeTrue(getJavaVersion() >= 9);
+		loader = createLoader(9);
+		assumeTrue(loader != null);
+
+		Class<?> publisherType = Class.forName("java.util.concurrent.Flow$Publisher");
+		Class<?> subscriberType = Class.forName("java.util.concurrent.Flow$Subscriber");
+		Class<?> publisherClass = loader.loadClass(RowPublisher.class.getName());
+		assertTrue(publisherType.isAssignableFrom(publisherClass));
+
+		Object connection = loader.loadClass(JdbcConnection.class.getName()).getConstructor(Connection.class)
+				.newInstance(jdbcConnection);
+		Object statement = call(connection, "prepare", "SELECT * FROM (VALUES (1), (2)) AS T(ID) ORDER BY ID");
+		Object publisher = publisherClass.getConstructor(loader.loadClass(IStatement.class.getName()), Map.class)
+				.newInstance(statement, Collections.emptyMap());
+
+		final List<Object> events = new ArrayList<>();
+		final Object[] subscription = new Object[1];
+		InvocationHandler handler = (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "onSubscribe":
+				subscription[0] = args[0];
+				break;
+			case "onNext":
+				events.add(call(args[0], "getLong", 0));
+				break;
+			case "onError":
+				events.add(args[0]);
+				break;
+			case "onComplete":
+				events.add("complete");
+				break;
+			default:
+				// Методы Object.
+				return method.invoke(events, args);
+			}
+			return null;
+		};
+		Object subscriber = Proxy.newProxyInstance(subscriberType.getClassLoader(), new Class<?>[] { subscriberType },
+				handler);
+
+		publisherType.getMethod("subscribe", subscriberType).invoke(publisher, subscriber);
+		assertTrue(events.isEmpty());
+		Method request = Class.forName("java.util.concurrent.Flow$Subscription").getMethod("request", long.class);
+		request.invoke(subscription[0], 1L);
+		assertEquals(Arrays.<Object> asList(1L), events);
+		request.invoke(subscription[0], 1L);
+		assertEquals(Arrays.<Object> asList(1L, 2L, "complete"), events);
+
+		call(statement, "close");
+	}
+
+	/**
+	 * Вариант исполнителя асинхронных операций для Java 21 выполняет каждую
+	 * операцию в виртуальном потоке.
+	 */
+	@Test
+	public void testVirtualThreadExecutor() throws Exception {
+		assumeTrue(getJavaVersion() >= 21);
+		loader = createLoader(21);
+		assumeTrue(loader != null);
+
+		Method create = loader.loadClass("q4s.dafobi.data.AsyncExecutors").getDeclaredMethod("create", int.class);
+		create.setAccessible(true);
+		ExecutorService executor = (ExecutorService) create.invoke(null, 1);
+		try {
+			Thread thread = executor.submit(Thread::currentThread).get();
+			assertEquals(Boolean.TRUE, Thread.class.getMethod("isVirtual").invoke(thread));
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.data.BulkExecutor;
+import q4s.dafobi.data.IResultTable;
+import q4s.dafobi.data.IRow;
+import q4s.dafobi.data.MemoryBudget;
+import q4s.dafobi.data.ParamSet;
+import q4s.dafobi.data.SpillingResultTable;
+
+/**
+ * Тестирование таблицы {@link SpillingResultTable}, сбрасывающей строки на
+ * диск при превышении ограничения памяти.
+ * 
+ * @author Q4S
+ * 
+ */
+public class SpillingResultTableTest {
+
+	private static final Map<String, DataParam> NO_PARAMS = Collections.emptyMap();
+
+	private static final String QUERY = "SELECT ID, STR, DT FROM TEST ORDER BY ID";
+
+	private static final int ROWS = 200;
+
+	private static Connection jdbcConnection = null;
+
+	private JdbcConnection connection;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// Creating database server instance
+		// Driver: "org.hsqldb.jdbcDriver",
+		jdbcConnection = DriverManager.getConnection("jdbc:hsqldb:mem:" + UUID.randomUUID().toString(), "sa", "");
+
+		// Creating the table
+		try (InputStream createTable = HsqldbTest.class.getResourceAsStream("SpillingResultTableTest_create.sql");
+				PreparedStatement stmt = jdbcConnection.prepareStatement(IOUtils.toString(createTable));) {
+			stmt.execute();
+		}
+	}
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// Dropping the table
+		try (PreparedStatement stmt = jdbcConnection.prepareStatement("DROP TABLE TEST");) {
+			stmt.execute();
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		connection = new JdbcConnection(jdbcConnection);
+
+		try (BulkExecutor bulk = new BulkExecutor(connection,
+				"INSERT INTO TEST(ID, STR, DT) VALUES(:id, :str, :dt)")) {
+			List<ParamSet> list = new ArrayList<>();
+			for (int i = 1; i <= ROWS; i++) {
+				ParamSet params = bulk.createParamSet();
+				params.setInt(params.slot("id"), i);
+				// Пустые значения в каждой третьей строке.
+				params.setString(params.slot("str"), i % 3 == 0 ? null : "Str " + i);
+				params.setTimestamp(params.slot("dt"), new Timestamp(i * 1000L));
+				list.add(params);
+			}
+			bulk.executeParams(list);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		// Cleaning the table
+		try (PreparedStatement stmt = jdbcConnection.prepareStatement("DELETE FROM TEST");) {
+			stmt.executeUpdate();
+		}
+
+		connection.close();
+	}
+
+	private SpillingResultTable copy(long limit, MemoryBudget budget) throws Exception {
+		try (IResultTable source = connection.query(QUERY, NO_PARAMS)) {
+			return SpillingResultTable.copyOf(source, limit, budget, folder.getRoot().toPath());
+		}
+	}
+
+	private void checkRow(IRow row, int id) {
+		assertEquals(id, row.getLong("id"));
+		assertEquals(id % 3 == 0 ? null : "Str " + id, row.getString("str"));
+		assertEquals(new Timestamp(id * 1000L), row.getTimestamp("dt"));
+	}
+
+	/**
+	 * Строки сверх ограничения таблицы уходят в файл, но доступны по номеру в
+	 * любом порядке и при переборе. Закрытие удаляет файл.
+	 */
+	@Test
+	public void testSpill() throws Exception {
+		SpillingResultTable table = copy(2000, null);
+		try {
+			assertTrue(table.getMemoryRowCount() > 0);
+			assertTrue(table.getSpilledRowCount() > 0);
+			assertTrue(table.getMemorySize() <= 2000);
+			assertEquals(ROWS, table.getRowCount());
+			assertEquals(1, folder.getRoot().list().length);
+
+			for (int i = ROWS - 1; i >= 0; i--) {
+				checkRow(table.getRow(i), i + 1);
+			}
+			int id = 0;
+			for (IRow row : table) {
+				checkRow(row, ++id);
+			}
+			assertEquals(ROWS, id);
+
+		} finally {
+			table.close();
+		}
+		assertEquals(0, folder.getRoot().list().length);
+		checkRow(table.getRow(0), 1);
+		try {
+			table.getRow(ROWS - 1);
+			fail("Строки из файла не должны быть доступны после закрытия");
+		} catch (IllegalStateException e) {
+			// Ожидаемое исключение.
+		}
+	}
+
+	/**
+	 * Если все строки укладываются в ограничение, файл не создается.
+	 */
+	@Test
+	public void testNoSpill() throws Exception {
+		try (SpillingResultTable table = copy(Long.MAX_VALUE, null)) {
+			assertEquals(ROWS, table.getMemoryRowCount());
+			assertEquals(0, table.getSpilledRowCount());
+			assertEquals(0, folder.getRoot().list().length);
+			checkRow(table.getRow(ROWS - 1), ROWS);
+		}
+	}
+
+	/**
+	 * Общее ограничение действует на все таблицы сразу и освобождается при
+	 * их закрытии.
+	 */
+	@Test
+	public void testSharedBudget() throws Exception {
+		MemoryBudget budget = new MemoryBudget(5000);
+		try (SpillingResultTable first = copy(Long.MAX_VALUE, budget);
+				SpillingResultTable second = copy(Long.MAX_VALUE, budget)) {
+			assertTrue(first.getSpilledRowCount() > 0);
+			assertEquals(ROWS, second.getSpilledRowCount());
+			assertEquals(first.getMemorySize(), budget.getUsed());
+			checkRow(second.getRow(0), 1);
+		}
+		assertEquals(0, budget.getUsed());
+	}
+}
@@ -0,0 +1,4 @@
+CREATE TABLE TEST(
+ID INT NOT NULL PRIMARY KEY,
+STR LONGVARCHAR,
+DT TIMESTAMP NOT NULL)
@@ -0,0 +1,198 @@
+/*
+ * (C) Copyright 2018 - Vladimir Bogdanov | Data Form Builder
+ *
+ * https://github.com/quest4sanity/dafobi
+ *
+ * Licensed under the LGPL, Version 3 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License in LGPL.txt file in 
+ * the root directory or at https://www.gnu.org/licenses/lgpl.txt
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author Vladimir Bogdanov - quest4sanity@gmail.com
+ */
+package q4s.dafobi.data.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import q4s.dafobi.common.DataParam;
+import q4s.dafobi.data.BulkExecutor;
+import q4s.dafobi.data.BulkResult;
+import q4s.dafobi.data.ParamSet;
+import q4s.dafobi.data.TableCopier;
+
+/**
+ * Тестирование потокового копирования {@link TableCopier}.
+ * 
+ * @author Q4S
+ * 
+ */
+public class TableCopierTest {
+
+	private static final Map<String, DataParam> NO_PARAMS = Collections.emptyMap();
+
+	private static final int ROWS = 50;
+
+	private static Connection sourceJdbc = null;
+
+	private static Connection targetJdbc = null;
+
+	private JdbcConnection source;
+
+	private JdbcConnection target;
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		// Creating database server instances
+		// Driver: "org.hsqldb.jdbcDriver",
+		sourceJdbc = DriverManager.getConnection("jdbc:hsqldb:mem:" + UUID.randomUUID().toString(), "sa", "");
+		targetJdbc = DriverManager.getConnection("jdbc:hsqldb:mem:" + UUID.randomUUID().toString(), "sa", "");
+
+		// Creating the tables
+		for (Connection jdbcConnection : new Connection[] { sourceJdbc, targetJdbc }) {
+			try (InputStream createTable = HsqldbTest.class.getResourceAsStream("JdbcStatementTest_create.sql");
+					PreparedStatement stmt = jdbcConnection.prepareStatement(IOUtils.toString(createTable));) {
+				stmt.execute();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @throws java.lang.Exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		// Dropping the tables
+		for (Connection jdbcConnection : new Connection[] { sourceJdbc, targetJdbc }) {
+			try (PreparedStatement stmt = jdbcConnection.prepareStatement("DROP TABLE TEST");) {
+				stmt.execute();
+			}
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		source = new JdbcConnection(sourceJdbc);
+		target = new JdbcConnection(targetJdbc);
+
+		try (BulkExecutor bulk = new BulkExecutor(source, "INSERT INTO TEST(ID, STR, DT) VALUES(:id, :str, :dt)")) {
+			List<ParamSet> list = new ArrayList<>();
+			for (int i = 1; i <= ROWS; i++) {
+				ParamSet params = bulk.createParamSet();
+				params.setInt(params.slot("id"), i);
+				params.setString(params.slot("str"), "Str " + i);
+				params.setTimestamp(params.slot("dt"), new Timestamp(i * 1000L));
+				list.add(params);
+			}
+			bulk.executeParams(list);
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		// Cleaning the tables
+		for (Connection jdbcConnection : new Connection[] { sourceJdbc, targetJdbc }) {
+			try (PreparedStatement stmt = jdbcConnection.prepareStatement("DELETE FROM TEST");) {
+				stmt.executeUpdate();
+			}
+		}
+
+		source.close();
+		target.close();
+	}
+
+	private long getRowCount(JdbcConnection connection, String query) {
+		return connection.queryRow(query, NO_PARAMS).getLong(0);
+	}
+
+	/**
+	 * Копирование через очередь, которая намного меньше числа строк, с
+	 * отчетами о ходе выполнения после каждого пакета.
+	 */
+	@Test
+	public void testCopy() {
+		final List<BulkResult> progress = new ArrayList<>();
+		TableCopier copier = new TableCopier(source, target);
+		copier.setQueueSize(4);
+		copier.setBatchSize(7);
+		copier.setListener(progress::add);
+
+		BulkResult result = copier.copy("SELECT ID, STR, DT FROM TEST", NO_PARAMS,
+				"INSERT INTO TEST(ID, STR, DT) VALUES(:id, :str, :dt)");
+
+		assertEquals(ROWS, result.getRowCount());
+		assertEquals(8, result.getBatchCount());
+		assertEquals(8, progress.size());
+		assertEquals(ROWS, progress.get(progress.size() - 1).getRowCount());
+		assertEquals(ROWS, getRowCount(target, "SELECT count(*) FROM TEST"));
+	}
+
+	/**
+	 * Соответствие параметров колонкам по имени и по номеру.
+	 */
+	@Test
+	public void testMapping() {
+		TableCopier copier = new TableCopier(source, target);
+		copier.mapColumn("num", 0);
+		copier.mapColumn("text", "STR");
+
+		copier.copy("SELECT ID * 2, DT, STR FROM TEST", NO_PARAMS,
+				"INSERT INTO TEST(ID, STR, DT) VALUES(:num, :text, :dt)");
+
+		assertEquals(ROWS * (ROWS + 1), getRowCount(target, "SELECT sum(ID) FROM TEST"));
+		assertEquals(1, getRowCount(target, "SELECT count(*) FROM TEST WHERE ID = 4 AND STR = 'Str 2'"));
+	}
+
+	/**
+	 * Если для параметра нет колонки, то копирование не начинается.
+	 */
+	@Test
+	public void testMissingColumn() {
+		TableCopier copier = new TableCopier(source, target);
+		try {
+			copier.copy("SELECT ID, DT FROM TEST", NO_PARAMS, "INSERT INTO TEST(ID, STR, DT) VALUES(:id, :str, :dt)");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("str"));
+		}
+		assertEquals(0, getRowCount(target, "SELECT count(*) FROM TEST"));
+	}
+
+	/**
+	 * Источник и приемник не могут совпадать.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testSameConnection() {
+		new TableCopier(source, source);
+	}
+}